@@ -0,0 +1,83 @@
+package org.janelia.saalfeldlab.control.mcu;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures listener dispatch throughput of {@link MCUControl} alone
+ * ({@code dispatch}), and while two threads concurrently add and remove
+ * listeners ({@code contended}).
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MCUControlDispatchBenchmark {
+
+	@Param({"1", "8"})
+	public int numListeners;
+
+	private MCUControlTest.TestControl control;
+
+	/* only written by the dispatching thread */
+	private long sum = 0;
+
+	private int i = 0;
+
+	@Setup
+	public void setup() {
+
+		control = new MCUControlTest.TestControl();
+		for (int l = 0; l < numListeners; ++l)
+			control.addListener(value -> sum += value);
+	}
+
+	@Benchmark
+	public long dispatch() {
+
+		control.setValue(++i & 0x7f);
+		return sum;
+	}
+
+	@Benchmark
+	@Group("contended")
+	@GroupThreads(1)
+	public long contendedDispatch() {
+
+		return dispatch();
+	}
+
+	@Benchmark
+	@Group("contended")
+	@GroupThreads(2)
+	public boolean contendedMutate() {
+
+		final IntConsumer listener = value -> {};
+		control.addListener(listener);
+		return control.removeListener(listener);
+	}
+
+	public static void main(final String... args) throws RunnerException {
+
+		new Runner(new OptionsBuilder().include(MCUControlDispatchBenchmark.class.getSimpleName()).build()).run();
+	}
+}
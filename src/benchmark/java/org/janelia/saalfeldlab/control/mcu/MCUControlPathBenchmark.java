@@ -0,0 +1,84 @@
+package org.janelia.saalfeldlab.control.mcu;
+
+import java.io.BufferedReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.janelia.saalfeldlab.control.mcu.RecordingReceiver.TimedMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the time from replaying MIDI events into a
+ * {@link ControlPathLoopback} until all of them are applied to the viewer
+ * transform. Events are synthetic V-Pot turns, or a recording if
+ * {@code recording} is set to a file (see {@link RecordingReceiver} for the
+ * format). At a finite rate, the time is dominated by the replay, so compare
+ * it to {@code numEvents / rate}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MCUControlPathBenchmark {
+
+	@Param({"100", "1000"})
+	public int numEvents;
+
+	@Param({"1000", "Infinity"})
+	public double rate;
+
+	@Param({""})
+	public String recording;
+
+	private ControlPathLoopback loopback;
+
+	private List<TimedMessage> messages;
+
+	@Setup
+	public void setup() throws Exception {
+
+		if (recording.isEmpty())
+			messages = MidiReplay.vpotTurns(0x10, 1, numEvents);
+		else {
+			try (final BufferedReader reader = Files.newBufferedReader(Paths.get(recording))) {
+				messages = RecordingReceiver.read(reader);
+			}
+		}
+		loopback = new ControlPathLoopback();
+	}
+
+	@TearDown
+	public void tearDown() {
+
+		loopback.close();
+	}
+
+	@Benchmark
+	public int replay() throws Exception {
+
+		return loopback.replay(messages, rate, false).numApplied;
+	}
+
+	public static void main(final String... args) throws RunnerException {
+
+		new Runner(new OptionsBuilder().include(MCUControlPathBenchmark.class.getSimpleName()).build()).run();
+	}
+}
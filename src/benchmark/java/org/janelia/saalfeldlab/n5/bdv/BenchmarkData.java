@@ -0,0 +1,120 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.janelia.saalfeldlab.n5.Compression;
+import org.janelia.saalfeldlab.n5.GzipCompression;
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.janelia.saalfeldlab.n5.zarr.N5ZarrWriter;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.view.Views;
+
+/**
+ * Synthetic containers for the benchmarks, written to temporary directories.
+ */
+class BenchmarkData {
+
+	private BenchmarkData() {}
+
+	/**
+	 * Creates an empty N5 or Zarr container in a new temporary directory.
+	 *
+	 * @param format
+	 *            "n5" or "zarr"
+	 * @return the writer
+	 * @throws IOException
+	 *             if the directory can not be created
+	 */
+	static N5Writer createContainer(final String format) throws IOException {
+
+		final Path dir = Files.createTempDirectory("n5-viewer-benchmark");
+		switch (format) {
+		case "n5":
+			return new N5FSWriter(dir.resolve("data.n5").toString());
+		case "zarr":
+			return new N5ZarrWriter(dir.resolve("data.zarr").toString());
+		default:
+			throw new IllegalArgumentException("Unknown format " + format);
+		}
+	}
+
+	static Compression compression(final String codec) {
+
+		switch (codec) {
+		case "raw":
+			return new RawCompression();
+		case "gzip":
+			return new GzipCompression();
+		default:
+			throw new IllegalArgumentException("Unknown codec " + codec);
+		}
+	}
+
+	/**
+	 * Creates an image with smooth structure and some noise, so that it
+	 * compresses like microscopy data rather than like random or constant
+	 * data.
+	 *
+	 * @param dimensions
+	 *            the dimensions
+	 * @return the image
+	 */
+	static ArrayImg<UnsignedShortType, ShortArray> createImage(final long... dimensions) {
+
+		final ArrayImg<UnsignedShortType, ShortArray> img = ArrayImgs.unsignedShorts(dimensions);
+		final Random random = new Random(42);
+		final Cursor<UnsignedShortType> c = img.localizingCursor();
+		while (c.hasNext()) {
+			c.fwd();
+			double v = 0;
+			for (int d = 0; d < c.numDimensions(); ++d)
+				v += Math.sin(c.getDoublePosition(d) * 0.05 * (d + 1));
+
+			c.get().set((int)(1000 + 200 * v + random.nextInt(32)));
+		}
+		return img;
+	}
+
+	/**
+	 * Reads all elements of an image.
+	 *
+	 * @param img
+	 *            the image
+	 * @return the sum of all elements
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	static double sum(final RandomAccessibleInterval<?> img) {
+
+		double sum = 0;
+		for (final Object t : Views.iterable((RandomAccessibleInterval)img))
+			sum += ((RealType<?>)t).getRealDouble();
+
+		return sum;
+	}
+
+	static void delete(final N5Writer n5) {
+
+		final Path dir = Paths.get(n5.getURI()).getParent();
+		try (final Stream<Path> paths = Files.walk(dir)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import java.util.concurrent.TimeUnit;
+
+import org.janelia.saalfeldlab.n5.bdv.tools.boundingbox.BoxCrop;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.imglib2.FinalRealInterval;
+import net.imglib2.RealInterval;
+import net.imglib2.realtransform.AffineTransform3D;
+
+/**
+ * Computes {@link BoxCrop#transformedBoundingBox} of a box under a rotation
+ * with anisotropic scaling, as done for every crop and every visible source.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoxCropBenchmark {
+
+	private AffineTransform3D transform;
+
+	private RealInterval box;
+
+	@Setup
+	public void setup() {
+
+		transform = new AffineTransform3D();
+		transform.scale(4, 4, 40);
+		transform.rotate(2, 0.3);
+		transform.rotate(0, 0.1);
+		transform.translate(100, -50, 20);
+
+		box = new FinalRealInterval(new double[]{10, 20, 30}, new double[]{1000, 2000, 300});
+	}
+
+	@Benchmark
+	public FinalRealInterval transformedBoundingBox() {
+
+		return BoxCrop.transformedBoundingBox(transform, box);
+	}
+
+	@Benchmark
+	public FinalRealInterval inverseTransformedBoundingBox() {
+
+		return BoxCrop.transformedBoundingBox(transform.inverse(), box);
+	}
+
+	public static void main(final String... args) throws RunnerException {
+
+		new Runner(new OptionsBuilder().include(BoxCropBenchmark.class.getSimpleName()).build()).run();
+	}
+}
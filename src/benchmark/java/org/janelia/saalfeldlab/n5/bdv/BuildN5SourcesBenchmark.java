@@ -0,0 +1,100 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import bdv.cache.SharedQueue;
+import bdv.tools.brightness.ConverterSetup;
+import bdv.util.BdvOptions;
+import bdv.viewer.SourceAndConverter;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.view.Views;
+
+/**
+ * Builds the sources of N5 viewer multiscale groups from their uris with
+ * {@link N5Viewer#buildN5Sources(String[], SharedQueue, List, List, BdvOptions)},
+ * which includes metadata discovery, opening all scale levels, and creating
+ * converter setups. Nothing is shown and no blocks are loaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BuildN5SourcesBenchmark {
+
+	private static final int NUM_SCALES = 4;
+
+	@Param({"1", "8"})
+	public int numGroups;
+
+	private N5Writer n5;
+
+	private String[] uris;
+
+	private SharedQueue sharedQueue;
+
+	@Setup
+	public void setup() throws IOException {
+
+		n5 = BenchmarkData.createContainer("n5");
+		RandomAccessibleInterval<UnsignedShortType> img = BenchmarkData.createImage(256, 256, 64);
+		final String container = Paths.get(n5.getURI()).toString();
+
+		uris = new String[numGroups];
+		for (int s = 0; s < NUM_SCALES; ++s) {
+			for (int g = 0; g < numGroups; ++g) {
+				final String dataset = "volume" + g + "/s" + s;
+				N5Utils.save(img, n5, dataset, new int[]{64, 64, 64}, BenchmarkData.compression("raw"));
+				n5.setAttribute(dataset, "downsamplingFactors", new double[]{1 << s, 1 << s, 1 << s});
+				n5.setAttribute(dataset, "pixelResolution", new double[]{1, 1, 1});
+				uris[g] = container + "?volume" + g;
+			}
+			img = Views.subsample(img, 2);
+		}
+
+		sharedQueue = new SharedQueue(1);
+	}
+
+	@TearDown
+	public void tearDown() {
+
+		BenchmarkData.delete(n5);
+	}
+
+	@Benchmark
+	public List<SourceAndConverter<UnsignedShortType>> buildN5Sources() {
+
+		final List<SourceAndConverter<UnsignedShortType>> sources = new ArrayList<>();
+		N5Viewer.buildN5Sources(uris, sharedQueue, new ArrayList<ConverterSetup>(), sources, BdvOptions.options());
+		return sources;
+	}
+
+	public static void main(final String... args) throws RunnerException {
+
+		new Runner(new OptionsBuilder().include(BuildN5SourcesBenchmark.class.getSimpleName()).build()).run();
+	}
+}
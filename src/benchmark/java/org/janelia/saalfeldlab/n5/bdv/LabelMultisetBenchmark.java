@@ -0,0 +1,98 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.janelia.saalfeldlab.n5.GzipCompression;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.imglib2.N5LabelMultisets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.Converters;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.type.label.FromIntegerTypeConverter;
+import net.imglib2.type.label.LabelMultisetType;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+
+/**
+ * Opens a label multiset dataset with
+ * {@link N5Viewer#loadImage(org.janelia.saalfeldlab.n5.N5Reader, String)},
+ * which converts it to the arg max label, and reads all of it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LabelMultisetBenchmark {
+
+	private static final String DATASET = "labels";
+
+	/**
+	 * Edge length of the label boxes in pixels, smaller boxes mean more
+	 * labels per block.
+	 */
+	@Param({"4", "16"})
+	public int labelSize;
+
+	private N5Writer n5;
+
+	@Setup
+	public void setup() throws IOException {
+
+		final ArrayImg<UnsignedLongType, LongArray> labels = ArrayImgs.unsignedLongs(128, 128, 64);
+		final Cursor<UnsignedLongType> c = labels.localizingCursor();
+		while (c.hasNext()) {
+			c.fwd();
+			long label = 0;
+			for (int d = c.numDimensions() - 1; d >= 0; --d)
+				label = label * 128 + c.getLongPosition(d) / labelSize;
+
+			c.get().set(label + 1);
+		}
+
+		final RandomAccessibleInterval<LabelMultisetType> lms = Converters.convert(
+				(RandomAccessibleInterval<UnsignedLongType>)labels,
+				new FromIntegerTypeConverter<>(),
+				FromIntegerTypeConverter.getAppropriateType());
+
+		n5 = BenchmarkData.createContainer("n5");
+		N5LabelMultisets.saveLabelMultiset(lms, n5, DATASET, new int[]{64, 64, 64}, new GzipCompression());
+	}
+
+	@TearDown
+	public void tearDown() {
+
+		BenchmarkData.delete(n5);
+	}
+
+	@Benchmark
+	public double openAndRead() {
+
+		return BenchmarkData.sum(N5Viewer.loadImage(n5, DATASET));
+	}
+
+	public static void main(final String... args) throws RunnerException {
+
+		new Runner(new OptionsBuilder().include(LabelMultisetBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,87 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.imglib2.RandomAccessibleInterval;
+
+/**
+ * Opens a dataset with {@link N5Viewer#loadImage(org.janelia.saalfeldlab.n5.N5Reader, String)}
+ * and reads all of it, for N5 and Zarr containers with different block sizes
+ * and codecs. Every invocation opens a new image, so all blocks are loaded
+ * from the container.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadImageBenchmark {
+
+	private static final String DATASET = "img";
+
+	@Param({"n5", "zarr"})
+	public String format;
+
+	@Param({"32", "64", "128"})
+	public int blockSize;
+
+	@Param({"raw", "gzip"})
+	public String codec;
+
+	private N5Writer n5;
+
+	@Setup
+	public void setup() throws IOException {
+
+		n5 = BenchmarkData.createContainer(format);
+		N5Utils.save(
+				BenchmarkData.createImage(256, 256, 64),
+				n5,
+				DATASET,
+				new int[]{blockSize, blockSize, Math.min(blockSize, 64)},
+				BenchmarkData.compression(codec));
+	}
+
+	@TearDown
+	public void tearDown() {
+
+		BenchmarkData.delete(n5);
+	}
+
+	@Benchmark
+	public RandomAccessibleInterval<?> open() {
+
+		return N5Viewer.loadImage(n5, DATASET);
+	}
+
+	@Benchmark
+	public double openAndRead() {
+
+		return BenchmarkData.sum(N5Viewer.loadImage(n5, DATASET));
+	}
+
+	public static void main(final String... args) throws RunnerException {
+
+		new Runner(new OptionsBuilder().include(LoadImageBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,81 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+import org.janelia.saalfeldlab.n5.metadata.MetadataSource;
+import org.janelia.saalfeldlab.n5.universe.metadata.N5SingleScaleMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.N5SingleScaleMetadataParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.imglib2.RandomAccessibleInterval;
+
+/**
+ * Calls {@link MetadataSource#getSource(int, int)} of an N5 viewer dataset,
+ * which slices the image that was opened when the source was created, and
+ * creates sources, which opens the dataset.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetadataSourceBenchmark {
+
+	private static final String DATASET = "img";
+
+	private N5Writer n5;
+
+	private N5SingleScaleMetadata metadata;
+
+	private MetadataSource<?> source;
+
+	@Setup
+	public void setup() throws IOException {
+
+		n5 = BenchmarkData.createContainer("n5");
+		N5Utils.save(BenchmarkData.createImage(256, 256, 64), n5, DATASET, new int[]{64, 64, 64}, new RawCompression());
+		metadata = new N5SingleScaleMetadataParser().parseMetadata(n5, DATASET).get();
+		source = new MetadataSource<>(n5, metadata);
+	}
+
+	@TearDown
+	public void tearDown() {
+
+		BenchmarkData.delete(n5);
+	}
+
+	@Benchmark
+	public RandomAccessibleInterval<?> getSource() {
+
+		return source.getSource(0, 0);
+	}
+
+	@Benchmark
+	public RandomAccessibleInterval<?> createAndGetSource() {
+
+		return new MetadataSource<>(n5, metadata).getSource(0, 0);
+	}
+
+	public static void main(final String... args) throws RunnerException {
+
+		new Runner(new OptionsBuilder().include(MetadataSourceBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,73 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.imglib2.realtransform.AffineTransform3D;
+
+/**
+ * Sorts shuffled scale levels with {@link MultiscaleDatasets#sort}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiscaleSortBenchmark {
+
+	@Param({"4", "12"})
+	public int numScales;
+
+	private String[] paths;
+
+	private AffineTransform3D[] transforms;
+
+	@Setup
+	public void setup() {
+
+		final List<Integer> order = new ArrayList<>();
+		for (int i = 0; i < numScales; ++i)
+			order.add(i);
+
+		Collections.shuffle(order, new Random(42));
+
+		paths = new String[numScales];
+		transforms = new AffineTransform3D[numScales];
+		for (int i = 0; i < numScales; ++i) {
+			final int s = order.get(i);
+			paths[i] = "s" + s;
+			transforms[i] = new AffineTransform3D();
+			transforms[i].scale(1 << s, 1 << s, s == 0 ? 1 : 1 << (s - 1));
+		}
+	}
+
+	@Benchmark
+	public MultiscaleDatasets sort() {
+
+		return MultiscaleDatasets.sort(paths, transforms);
+	}
+
+	public static void main(final String... args) throws RunnerException {
+
+		new Runner(new OptionsBuilder().include(MultiscaleSortBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,90 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import java.util.concurrent.TimeUnit;
+
+import org.janelia.saalfeldlab.n5.universe.metadata.axes.AxisUtils;
+import org.janelia.saalfeldlab.n5.universe.metadata.axes.DefaultAxisMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.view.Views;
+
+/**
+ * Builds the view chain of
+ * {@link N5Viewer#permuteForImagePlus(RandomAccessibleInterval, AffineTransform3D, org.janelia.saalfeldlab.n5.universe.metadata.axes.AxisMetadata)}
+ * for a 5D image in ImageJ axis order (identity permutation) and in another
+ * order, and reads the first channel and time point through it, like a source
+ * does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PermuteForImagePlusBenchmark {
+
+	@Param({"xyczt", "zcyxt"})
+	public String axes;
+
+	private ArrayImg<UnsignedShortType, ShortArray> img;
+
+	private DefaultAxisMetadata metadata;
+
+	@Setup
+	public void setup() {
+
+		final String[] labels = axes.split("");
+		final long[] dimensions = new long[labels.length];
+		for (int d = 0; d < labels.length; ++d) {
+			switch (labels[d]) {
+			case "c":
+				dimensions[d] = 2;
+				break;
+			case "t":
+				dimensions[d] = 3;
+				break;
+			default:
+				dimensions[d] = 64;
+			}
+		}
+
+		img = BenchmarkData.createImage(dimensions);
+		metadata = new DefaultAxisMetadata("img", labels, AxisUtils.getDefaultTypes(labels), new String[]{"um", "um", "um", "um", "um"});
+	}
+
+	@Benchmark
+	public RandomAccessibleInterval<UnsignedShortType> permute() {
+
+		return N5Viewer.permuteForImagePlus(img, new AffineTransform3D(), metadata);
+	}
+
+	@Benchmark
+	public double permuteAndRead() {
+
+		final RandomAccessibleInterval<UnsignedShortType> permuted = N5Viewer.permuteForImagePlus(img, new AffineTransform3D(), metadata);
+		return BenchmarkData.sum(Views.hyperSlice(Views.hyperSlice(permuted, 4, 0), 2, 0));
+	}
+
+	public static void main(final String... args) throws RunnerException {
+
+		new Runner(new OptionsBuilder().include(PermuteForImagePlusBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,129 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+import org.janelia.saalfeldlab.n5.universe.metadata.N5Metadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.N5SingleScaleMetadataParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import bdv.cache.SharedQueue;
+import bdv.tools.brightness.ConverterSetup;
+import bdv.util.BdvOptions;
+import bdv.viewer.SourceAndConverter;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.Volatile;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+/**
+ * Builds a volatile source from a {@link SimulatedRemoteReader} with
+ * {@link N5Viewer#buildN5Sources(org.janelia.saalfeldlab.n5.N5Reader, List, SharedQueue, List, List, BdvOptions)}
+ * and waits until all blocks were loaded by the fetcher threads, for
+ * different latencies and numbers of fetcher threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RemoteLoadBenchmark {
+
+	private static final String DATASET = "img";
+
+	private static final int BLOCK_SIZE = 32;
+
+	@Param({"0", "20", "100"})
+	public double latencyMillis;
+
+	@Param({"1", "4", "16"})
+	public int numFetcherThreads;
+
+	@Param({"0", "100000000"})
+	public double bytesPerSecond;
+
+	private N5Writer n5;
+
+	private SimulatedRemoteReader remote;
+
+	private List<N5Metadata> metadata;
+
+	private SharedQueue sharedQueue;
+
+	@Setup
+	public void setup() throws IOException {
+
+		n5 = BenchmarkData.createContainer("n5");
+		N5Utils.save(BenchmarkData.createImage(256, 256, 64), n5, DATASET, new int[]{BLOCK_SIZE, BLOCK_SIZE, BLOCK_SIZE}, new RawCompression());
+		metadata = Collections.singletonList(new N5SingleScaleMetadataParser().parseMetadata(n5, DATASET).get());
+
+		remote = new SimulatedRemoteReader(n5)
+				.latency(latencyMillis)
+				.jitter(latencyMillis / 4)
+				.bandwidth(bytesPerSecond);
+
+		sharedQueue = new SharedQueue(numFetcherThreads);
+	}
+
+	@TearDown
+	public void tearDown() {
+
+		BenchmarkData.delete(n5);
+	}
+
+	@Benchmark
+	public long loadAllBlocks() throws IOException, InterruptedException {
+
+		final List<SourceAndConverter<UnsignedShortType>> sources = new ArrayList<>();
+		N5Viewer.buildN5Sources(remote.getReader(), metadata, sharedQueue, new ArrayList<ConverterSetup>(), sources, BdvOptions.options());
+
+		final RandomAccessibleInterval<? extends Volatile<UnsignedShortType>> img =
+				sources.get(0).asVolatile().getSpimSource().getSource(0, 0);
+
+		/* the first pass requests all blocks, later passes wait for them */
+		while (!allBlocksValid(img))
+			Thread.sleep(1);
+
+		return remote.getBlockReads();
+	}
+
+	private static boolean allBlocksValid(final RandomAccessibleInterval<? extends Volatile<?>> img) {
+
+		boolean valid = true;
+		final RandomAccess<? extends Volatile<?>> access = img.randomAccess();
+		for (long z = img.min(2); z <= img.max(2); z += BLOCK_SIZE)
+			for (long y = img.min(1); y <= img.max(1); y += BLOCK_SIZE)
+				for (long x = img.min(0); x <= img.max(0); x += BLOCK_SIZE) {
+					access.setPosition(new long[]{x, y, z});
+					valid &= access.get().isValid();
+				}
+
+		return valid;
+	}
+
+	public static void main(final String... args) throws RunnerException {
+
+		new Runner(new OptionsBuilder().include(RemoteLoadBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,425 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import javax.imageio.ImageIO;
+
+import org.janelia.saalfeldlab.n5.bdv.cache.BlockLoadStatistics;
+import org.janelia.saalfeldlab.n5.bdv.cache.ViewerStatistics;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import bdv.cache.CacheControl;
+import bdv.cache.SharedQueue;
+import bdv.tools.brightness.ConverterSetup;
+import bdv.util.BdvOptions;
+import bdv.viewer.BasicViewerState;
+import bdv.viewer.DisplayMode;
+import bdv.viewer.SourceAndConverter;
+import bdv.viewer.SynchronizedViewerState;
+import bdv.viewer.render.AccumulateProjectorARGB;
+import bdv.viewer.render.MultiResolutionRenderer;
+import bdv.viewer.render.RenderTarget;
+import bdv.viewer.render.awt.BufferedImageRenderResult;
+import net.imglib2.RealInterval;
+import net.imglib2.parallel.TaskExecutors;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+/**
+ * Renders a sequence of viewer transforms and timepoints offscreen, without
+ * a viewer window, and reports for every step the time to the first frame,
+ * the time to the complete frame, and the number of blocks loaded.
+ * <p>
+ * Sources are built with
+ * {@link N5Viewer#buildN5Sources(String[], SharedQueue, ViewerStatistics, List, List, BdvOptions)}
+ * and rendered with volatile accesses like in the viewer, so that the first
+ * frame shows the data that is available and the frame is complete when all
+ * blocks are loaded. Every step is rendered at full resolution only.
+ * <p>
+ * Run as a Java application with the uris of the datasets or multiscale
+ * groups to show and the options
+ * <ul>
+ * <li>{@code --path <file>} a camera path, a json object with an array
+ * {@code steps} of objects with the 12 values of the viewer transform
+ * {@code transform} (row-packed) and a {@code timepoint}; without a path, a
+ * rotation around the vertical axis, a zoom, and all timepoints are
+ * rendered</li>
+ * <li>{@code --size <width>x<height>} the size of the rendered image, default
+ * 800x600</li>
+ * <li>{@code --fetchers <n>} the number of fetcher threads</li>
+ * <li>{@code --renderers <n>} the number of rendering threads</li>
+ * <li>{@code --report <file>} the json report, default stdout</li>
+ * <li>{@code --images <dir>} writes the complete frame of every step as
+ * png</li>
+ * </ul>
+ */
+public class RenderBenchmark {
+
+	private static final long STEP_TIMEOUT_NANOS = 60_000_000_000L;
+
+	/**
+	 * A camera path as read from json.
+	 */
+	public static class CameraPath {
+
+		public List<Step> steps = new ArrayList<>();
+	}
+
+	public static class Step {
+
+		public double[] transform;
+
+		public int timepoint;
+
+		public Step() {}
+
+		public Step(final AffineTransform3D transform, final int timepoint) {
+
+			this.transform = transform.getRowPackedCopy();
+			this.timepoint = timepoint;
+		}
+	}
+
+	/**
+	 * The result of one step in the json report.
+	 */
+	public static class StepResult {
+
+		public int step;
+
+		public int timepoint;
+
+		public double firstFrameMillis;
+
+		public double completeFrameMillis;
+
+		public int frames;
+
+		public long blocksLoaded;
+
+		public boolean timedOut;
+	}
+
+	public static class Report {
+
+		public String[] uris;
+
+		public int width;
+
+		public int height;
+
+		public int fetcherThreads;
+
+		public int renderingThreads;
+
+		public String javaVersion = System.getProperty("java.version");
+
+		public double medianFirstFrameMillis;
+
+		public double medianCompleteFrameMillis;
+
+		public long blocksLoaded;
+
+		public List<StepResult> steps = new ArrayList<>();
+	}
+
+	private static class Target implements RenderTarget<BufferedImageRenderResult> {
+
+		private final int width;
+
+		private final int height;
+
+		private final BufferedImageRenderResult reusable = new BufferedImageRenderResult();
+
+		private BufferedImageRenderResult result = null;
+
+		Target(final int width, final int height) {
+
+			this.width = width;
+			this.height = height;
+		}
+
+		@Override
+		public BufferedImageRenderResult getReusableRenderResult() {
+
+			return reusable;
+		}
+
+		@Override
+		public BufferedImageRenderResult createRenderResult() {
+
+			return new BufferedImageRenderResult();
+		}
+
+		@Override
+		public void setRenderResult(final BufferedImageRenderResult renderResult) {
+
+			result = renderResult;
+		}
+
+		@Override
+		public int getWidth() {
+
+			return width;
+		}
+
+		@Override
+		public int getHeight() {
+
+			return height;
+		}
+	}
+
+	public static void main(final String... args) throws IOException, InterruptedException {
+
+		System.setProperty("java.awt.headless", "true");
+
+		final List<String> uris = new ArrayList<>();
+		String path = null, report = null, images = null;
+		int width = 800, height = 600;
+		int fetcherThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		int renderingThreads = Runtime.getRuntime().availableProcessors();
+		for (int i = 0; i < args.length; ++i) {
+			switch (args[i]) {
+			case "--path":
+				path = args[++i];
+				break;
+			case "--size":
+				final String[] size = args[++i].split("x");
+				width = Integer.parseInt(size[0]);
+				height = Integer.parseInt(size[1]);
+				break;
+			case "--fetchers":
+				fetcherThreads = Integer.parseInt(args[++i]);
+				break;
+			case "--renderers":
+				renderingThreads = Integer.parseInt(args[++i]);
+				break;
+			case "--report":
+				report = args[++i];
+				break;
+			case "--images":
+				images = args[++i];
+				break;
+			default:
+				uris.add(args[i]);
+			}
+		}
+
+		if (uris.isEmpty()) {
+			System.err.println("usage: RenderBenchmark <uri>... [--path <file>] [--size <w>x<h>] [--fetchers <n>] [--renderers <n>] [--report <file>] [--images <dir>]");
+			System.exit(1);
+		}
+
+		final Report result = run(uris.toArray(new String[0]), path, width, height, fetcherThreads, renderingThreads, images);
+
+		final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+		if (report == null)
+			System.out.println(gson.toJson(result));
+		else
+			try (final Writer writer = Files.newBufferedWriter(Paths.get(report))) {
+				gson.toJson(result, writer);
+			}
+
+		System.exit(0);
+	}
+
+	public static Report run(
+			final String[] uris,
+			final String path,
+			final int width,
+			final int height,
+			final int fetcherThreads,
+			final int renderingThreads,
+			final String images) throws IOException, InterruptedException {
+
+		final SharedQueue sharedQueue = new SharedQueue(fetcherThreads);
+		final ViewerStatistics statistics = new ViewerStatistics(sharedQueue, true);
+		final List<SourceAndConverter<UnsignedShortType>> sources = new ArrayList<>();
+		final int numTimepoints = N5Viewer.buildN5Sources(uris, sharedQueue, statistics, new ArrayList<ConverterSetup>(), sources, BdvOptions.options());
+		if (sources.isEmpty())
+			throw new IOException("No sources found at " + Arrays.toString(uris));
+
+		final SynchronizedViewerState state = new SynchronizedViewerState(new BasicViewerState());
+		state.addSources(sources);
+		state.setSourcesActive(sources, true);
+		state.setCurrentSource(sources.get(0));
+		state.setDisplayMode(DisplayMode.FUSED);
+		state.setNumTimepoints(numTimepoints);
+
+		final CameraPath cameraPath = path == null
+				? scriptedPath(sources.get(0), numTimepoints, width, height)
+				: readPath(path);
+
+		final Target target = new Target(width, height);
+		final AtomicBoolean repaintRequested = new AtomicBoolean();
+		final MultiResolutionRenderer renderer = new MultiResolutionRenderer(
+				target,
+				() -> repaintRequested.set(true),
+				new double[]{1},
+				0,
+				TaskExecutors.fixedThreadPool(renderingThreads),
+				true,
+				AccumulateProjectorARGB.factory,
+				new CacheControl.Dummy());
+
+		final Report report = new Report();
+		report.uris = uris;
+		report.width = width;
+		report.height = height;
+		report.fetcherThreads = fetcherThreads;
+		report.renderingThreads = renderingThreads;
+
+		for (int i = 0; i < cameraPath.steps.size(); ++i) {
+			final Step step = cameraPath.steps.get(i);
+			final AffineTransform3D transform = new AffineTransform3D();
+			transform.set(step.transform);
+			state.setViewerTransform(transform);
+			state.setCurrentTimepoint(step.timepoint);
+
+			final StepResult stepResult = new StepResult();
+			stepResult.step = i;
+			stepResult.timepoint = step.timepoint;
+			stepResult.firstFrameMillis = -1;
+
+			final long loadsBefore = loads(statistics);
+			final long t = System.nanoTime();
+			renderer.requestRepaint();
+			while (true) {
+				repaintRequested.set(false);
+				if (renderer.paint(state)) {
+					++stepResult.frames;
+					if (stepResult.firstFrameMillis < 0)
+						stepResult.firstFrameMillis = (System.nanoTime() - t) * 1e-6;
+				}
+
+				/* the renderer requests a repaint while the frame is incomplete */
+				if (!repaintRequested.get())
+					break;
+
+				if (System.nanoTime() - t > STEP_TIMEOUT_NANOS) {
+					stepResult.timedOut = true;
+					break;
+				}
+				Thread.sleep(1);
+			}
+			stepResult.completeFrameMillis = (System.nanoTime() - t) * 1e-6;
+			stepResult.blocksLoaded = loads(statistics) - loadsBefore;
+			report.steps.add(stepResult);
+
+			if (images != null && target.result != null)
+				ImageIO.write(target.result.getBufferedImage(), "png", new File(images, String.format("step-%04d.png", i)));
+		}
+
+		report.medianFirstFrameMillis = median(report.steps, true);
+		report.medianCompleteFrameMillis = median(report.steps, false);
+		report.blocksLoaded = loads(statistics);
+
+		return report;
+	}
+
+	public static CameraPath readPath(final String path) throws IOException {
+
+		try (final Reader reader = Files.newBufferedReader(Paths.get(path))) {
+			return new Gson().fromJson(reader, CameraPath.class);
+		}
+	}
+
+	/**
+	 * Fits the source into the screen, rotates it around the vertical axis
+	 * in 10 degree steps, zooms in by 1.25 eight times, and steps through all
+	 * timepoints.
+	 *
+	 * @param source
+	 *            the source to fit
+	 * @param numTimepoints
+	 *            the number of timepoints
+	 * @param width
+	 *            the screen width
+	 * @param height
+	 *            the screen height
+	 * @return the path
+	 */
+	public static CameraPath scriptedPath(
+			final SourceAndConverter<?> source,
+			final int numTimepoints,
+			final int width,
+			final int height) {
+
+		final AffineTransform3D sourceTransform = new AffineTransform3D();
+		source.getSpimSource().getSourceTransform(0, 0, sourceTransform);
+		final RealInterval bounds = sourceTransform.estimateBounds(source.getSpimSource().getSource(0, 0));
+
+		final double[] center = new double[3];
+		for (int d = 0; d < 3; ++d)
+			center[d] = 0.5 * (bounds.realMin(d) + bounds.realMax(d));
+
+		final double scale = Math.min(
+				width / (bounds.realMax(0) - bounds.realMin(0) + 1),
+				height / (bounds.realMax(1) - bounds.realMin(1) + 1));
+
+		final AffineTransform3D transform = new AffineTransform3D();
+		transform.translate(-center[0], -center[1], -center[2]);
+		transform.scale(scale);
+		transform.translate(0.5 * width, 0.5 * height, 0);
+
+		final CameraPath path = new CameraPath();
+		path.steps.add(new Step(transform, 0));
+
+		for (int i = 0; i < 36; ++i) {
+			aroundScreenCenter(transform, width, height, t -> t.rotate(1, Math.toRadians(10)));
+			path.steps.add(new Step(transform, 0));
+		}
+
+		for (int i = 0; i < 8; ++i) {
+			aroundScreenCenter(transform, width, height, t -> t.scale(1.25));
+			path.steps.add(new Step(transform, 0));
+		}
+
+		for (int t = 1; t < numTimepoints; ++t)
+			path.steps.add(new Step(transform, t));
+
+		return path;
+	}
+
+	private static void aroundScreenCenter(
+			final AffineTransform3D transform,
+			final int width,
+			final int height,
+			final Consumer<AffineTransform3D> change) {
+
+		transform.translate(-0.5 * width, -0.5 * height, 0);
+		change.accept(transform);
+		transform.translate(0.5 * width, 0.5 * height, 0);
+	}
+
+	private static long loads(final ViewerStatistics statistics) {
+
+		long loads = 0;
+		for (final BlockLoadStatistics source : statistics.getSourceStatistics())
+			loads += source.getLoads();
+
+		return loads;
+	}
+
+	private static double median(final List<StepResult> steps, final boolean firstFrame) {
+
+		if (steps.isEmpty())
+			return 0;
+
+		final double[] values = steps.stream().mapToDouble(s -> firstFrame ? s.firstFrameMillis : s.completeFrameMillis).sorted().toArray();
+		return values[values.length / 2];
+	}
+}
@@ -0,0 +1,153 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+import org.janelia.saalfeldlab.n5.universe.metadata.axes.AxisUtils;
+import org.janelia.saalfeldlab.n5.universe.metadata.axes.DefaultAxisMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.view.Views;
+
+/**
+ * Reads one channel and timepoint of an OME-NGFF-like czyx or tczyx Zarr
+ * dataset with one channel and timepoint per chunk, through the view chain
+ * that the viewer used to build ({@code chain}: permutation to XYCZT and
+ * hyperslices), and through {@link ViewChains} ({@code flat}), with a random
+ * access like the samplers of the renderer: row by row, and at random
+ * positions. All blocks are cached before the measurement, so the numbers are
+ * the cost per voxel of the views.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ViewChainsBenchmark {
+
+	private static final String DATASET = "img";
+
+	private static final int NUM_SAMPLES = 1 << 20;
+
+	@Param({"czyx", "tczyx"})
+	public String axes;
+
+	@Param({"chain", "flat"})
+	public String views;
+
+	private N5Writer n5;
+
+	private RandomAccessibleInterval<UnsignedShortType> slice;
+
+	private long[] samples;
+
+	@Setup
+	public void setup() throws IOException {
+
+		/* imglib2 order is the reverse of the OME-NGFF order */
+		final String[] labels = new StringBuilder(axes).reverse().toString().split("");
+		final long[] dimensions = new long[labels.length];
+		final int[] blockSize = new int[labels.length];
+		for (int d = 0; d < labels.length; ++d) {
+			final boolean spatial = d < 3;
+			dimensions[d] = spatial ? new long[]{256, 256, 64}[d] : 2;
+			blockSize[d] = spatial ? 64 : 1;
+		}
+
+		n5 = BenchmarkData.createContainer("zarr");
+		N5Utils.save(BenchmarkData.createImage(dimensions), n5, DATASET, blockSize, new RawCompression());
+
+		final CachedCellImg<UnsignedShortType, ?> img = N5Utils.open(n5, DATASET);
+		final DefaultAxisMetadata metadata = new DefaultAxisMetadata(
+				DATASET,
+				labels,
+				AxisUtils.getDefaultTypes(labels),
+				Arrays.copyOf(new String[]{"um", "um", "um", "", ""}, labels.length));
+		final RandomAccessibleInterval<UnsignedShortType> xyczt = N5Viewer.permuteForImagePlus(img, new AffineTransform3D(), metadata);
+		final long t = xyczt.dimension(4) - 1;
+		if (views.equals("chain"))
+			slice = Views.hyperSlice(Views.hyperSlice(xyczt, 2, 1), 3, t);
+		else
+			slice = ViewChains.hyperSlice(ViewChains.hyperSlice(ViewChains.flatten(xyczt), 2, 1), 3, t);
+
+		final Random random = new Random(42);
+		samples = new long[3 * NUM_SAMPLES];
+		for (int i = 0; i < samples.length; ++i)
+			samples[i] = (long)(random.nextDouble() * slice.dimension(i % 3));
+
+		/* load all blocks */
+		BenchmarkData.sum(slice);
+	}
+
+	@TearDown
+	public void tearDown() {
+
+		BenchmarkData.delete(n5);
+	}
+
+	@Benchmark
+	public long rows() {
+
+		final RandomAccess<UnsignedShortType> access = slice.randomAccess();
+		final long width = slice.dimension(0);
+		long sum = 0;
+		for (long z = 0; z < slice.dimension(2); ++z) {
+			for (long y = 0; y < slice.dimension(1); ++y) {
+				access.setPosition(0, 0);
+				access.setPosition(y, 1);
+				access.setPosition(z, 2);
+				for (long x = 0; x < width; ++x) {
+					sum += access.get().get();
+					access.fwd(0);
+				}
+			}
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long random() {
+
+		final RandomAccess<UnsignedShortType> access = slice.randomAccess();
+		final long[] position = new long[3];
+		long sum = 0;
+		for (int i = 0; i < samples.length; i += 3) {
+			position[0] = samples[i];
+			position[1] = samples[i + 1];
+			position[2] = samples[i + 2];
+			access.setPosition(position);
+			sum += access.get().get();
+		}
+		return sum;
+	}
+
+	public static void main(final String... args) throws RunnerException {
+
+		new Runner(new OptionsBuilder().include(ViewChainsBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,259 @@
+/**
+ *
+ */
+package org.janelia.saalfeldlab.control.mcu;
+
+import javax.swing.Timer;
+
+/**
+ * Turns discrete shift, rotation, and zoom steps into smooth motion.
+ *
+ * Every step adds to the velocity of its channel, the velocity decays
+ * exponentially with a damping time constant, and the motion is integrated
+ * at display rate and passed to a {@link ViewerTransformAccumulator}. The
+ * integration is exact for exponential decay, so a step moves the view by
+ * exactly the same amount as in direct mode, independent of the frame rate,
+ * only spread over time. Fast knob spins add up to a high velocity that
+ * decays smoothly instead of jumping, so the path of the view is predictable
+ * from its current velocity.
+ *
+ * Velocities are in units per second: screen pixels for shifts, radians for
+ * rotations, and the natural logarithm of the scale factor for zoom.
+ */
+public class InertialNavigator {
+
+	/**
+	 * Default damping time constant in milliseconds.
+	 */
+	public static final double DEFAULT_DAMPING = 150;
+
+	/**
+	 * Velocities below this fraction of a unit per second stop the motion.
+	 */
+	private static final double MIN_VELOCITY = 1e-3;
+
+	private static final int SHIFT = 0;
+
+	private static final int ROTATE = 3;
+
+	private static final int ZOOM = 6;
+
+	private final ViewerTransformAccumulator accumulator;
+
+	private final double tau;
+
+	private final double[] velocity = new double[7];
+
+	private final double[] maxVelocity = new double[7];
+
+	private final double[] motion = new double[7];
+
+	private long lastTick;
+
+	private final Timer timer;
+
+	/**
+	 * @param accumulator
+	 *            receives the integrated motion
+	 * @param damping
+	 *            the damping time constant in milliseconds
+	 * @param maxShiftVelocity
+	 *            the maximum shift velocity in pixels per second
+	 * @param maxRotationVelocity
+	 *            the maximum rotation velocity in radians per second
+	 * @param maxZoomVelocity
+	 *            the maximum zoom velocity in log scale per second
+	 * @param interval
+	 *            the integration interval in milliseconds
+	 */
+	public InertialNavigator(
+			final ViewerTransformAccumulator accumulator,
+			final double damping,
+			final double maxShiftVelocity,
+			final double maxRotationVelocity,
+			final double maxZoomVelocity,
+			final int interval) {
+
+		this.accumulator = accumulator;
+		tau = damping / 1000.0;
+		for (int d = 0; d < 3; ++d) {
+			maxVelocity[SHIFT + d] = maxShiftVelocity;
+			maxVelocity[ROTATE + d] = maxRotationVelocity;
+		}
+		maxVelocity[ZOOM] = maxZoomVelocity;
+
+		timer = new Timer(interval, e -> {
+			synchronized (velocity) {
+				if (!integrate()) {
+					((Timer)e.getSource()).stop();
+					return;
+				}
+			}
+			apply();
+		});
+		timer.setRepeats(true);
+		timer.setCoalesce(true);
+	}
+
+	public InertialNavigator(final ViewerTransformAccumulator accumulator) {
+
+		this(accumulator, DEFAULT_DAMPING, 4000, 4 * Math.PI, 4, ViewerTransformAccumulator.DEFAULT_INTERVAL);
+	}
+
+	/**
+	 * Add a shift along a screen axis.
+	 *
+	 * @param axis
+	 *            the axis
+	 * @param distance
+	 *            the total distance in screen pixels
+	 */
+	public void shift(final int axis, final double distance) {
+
+		push(SHIFT + axis, distance);
+	}
+
+	/**
+	 * Add a rotation around a screen axis through the display center.
+	 *
+	 * @param axis
+	 *            the axis
+	 * @param angle
+	 *            the total angle in radians
+	 */
+	public void rotate(final int axis, final double angle) {
+
+		push(ROTATE + axis, angle);
+	}
+
+	/**
+	 * Add a zoom around the display center.
+	 *
+	 * @param scale
+	 *            the total scale factor
+	 */
+	public void zoom(final double scale) {
+
+		push(ZOOM, Math.log(scale));
+	}
+
+	/**
+	 * @return the current shift velocity along a screen axis in pixels per
+	 *         second
+	 */
+	public double getShiftVelocity(final int axis) {
+
+		synchronized (velocity) {
+			return velocity[SHIFT + axis];
+		}
+	}
+
+	/**
+	 * @return the current rotation velocity around a screen axis in radians
+	 *         per second
+	 */
+	public double getRotationVelocity(final int axis) {
+
+		synchronized (velocity) {
+			return velocity[ROTATE + axis];
+		}
+	}
+
+	/**
+	 * @return the current zoom velocity in log scale per second
+	 */
+	public double getZoomVelocity() {
+
+		synchronized (velocity) {
+			return velocity[ZOOM];
+		}
+	}
+
+	/**
+	 * @return true if the view is in motion
+	 */
+	public boolean isMoving() {
+
+		synchronized (velocity) {
+			for (final double v : velocity)
+				if (Math.abs(v) >= MIN_VELOCITY)
+					return true;
+
+			return false;
+		}
+	}
+
+	/**
+	 * Stop the motion immediately.
+	 */
+	public void stop() {
+
+		synchronized (velocity) {
+			timer.stop();
+			for (int i = 0; i < velocity.length; ++i)
+				velocity[i] = 0;
+		}
+	}
+
+	private void push(final int channel, final double amount) {
+
+		synchronized (velocity) {
+			// the integral of v * exp(-t / tau) is v * tau, so this velocity
+			// moves by amount until the motion stops
+			final double max = maxVelocity[channel];
+			velocity[channel] = Math.max(-max, Math.min(max, velocity[channel] + amount / tau));
+			if (!timer.isRunning()) {
+				lastTick = System.nanoTime();
+				timer.start();
+			}
+		}
+	}
+
+	/**
+	 * Integrates the velocities over the time since the last tick into
+	 * {@link #motion} and damps them.
+	 *
+	 * @return false if the view is at rest
+	 */
+	private boolean integrate() {
+
+		final long now = System.nanoTime();
+		final double dt = (now - lastTick) * 1e-9;
+		lastTick = now;
+
+		final double decay = Math.exp(-dt / tau);
+		boolean moving = false;
+		for (int i = 0; i < velocity.length; ++i) {
+			motion[i] = velocity[i] * tau * (1.0 - decay);
+			velocity[i] *= decay;
+			if (Math.abs(velocity[i]) < MIN_VELOCITY)
+				velocity[i] = 0;
+			else
+				moving = true;
+		}
+		return moving || hasMotion();
+	}
+
+	private boolean hasMotion() {
+
+		for (final double m : motion)
+			if (m != 0)
+				return true;
+
+		return false;
+	}
+
+	private void apply() {
+
+		for (int d = 0; d < 3; ++d) {
+			if (motion[SHIFT + d] != 0)
+				accumulator.shift(d, motion[SHIFT + d]);
+			if (motion[ROTATE + d] != 0)
+				accumulator.rotate(d, motion[ROTATE + d]);
+		}
+		if (motion[ZOOM] != 0)
+			accumulator.zoom(Math.exp(motion[ZOOM]));
+
+		accumulator.flush();
+	}
+}
@@ -3,9 +3,12 @@
  */
 package org.janelia.saalfeldlab.control.mcu;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.IntConsumer;
 
 import org.janelia.saalfeldlab.control.ButtonControl;
+import org.janelia.saalfeldlab.control.IntControl;
 import org.janelia.saalfeldlab.control.VPotControl;
 
 import bdv.viewer.AbstractViewerPanel.AlignPlane;
@@ -13,7 +16,6 @@ import bdv.viewer.Interpolation;
 import bdv.viewer.SynchronizedViewerState;
 import bdv.viewer.ViewerFrame;
 import bdv.viewer.ViewerPanel;
-import net.imglib2.realtransform.AffineTransform3D;
 
 /**
  * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
@@ -28,74 +30,100 @@ public class MCUBDVControls {
 
 	private final ViewerPanel viewerPanel;
 
+	private final ViewerTransformAccumulator transformAccumulator;
+
+	private final InertialNavigator navigator;
+
+	/**
+	 * In inertial mode, V-Pot steps set a velocity that decays smoothly
+	 * instead of moving the view in discrete jumps.
+	 */
+	private volatile boolean inertial = false;
+
+	/* removes the listeners added to the panel */
+	private final List<Runnable> removals = new ArrayList<>();
+
 	public MCUBDVControls(final ViewerPanel viewer, final MCUControlPanel panel) {
 
 		this.viewerPanel = viewer;
+		transformAccumulator = new ViewerTransformAccumulator(
+				viewer.state(),
+				viewer::getSize,
+				ViewerTransformAccumulator.DEFAULT_INTERVAL);
+		navigator = new InertialNavigator(transformAccumulator);
 
 		/* add handlers */
 		VPotControl control = panel.getVPotControl(0);
 		control.setAbsolute(false);
 		control.setMinMax(-10, 10);
 		control.setDisplayType(VPotControl.DISPLAY_TRIM);
-		control.addListener(new VPotAxisShiftHandler(0));
+		listen(control, new VPotAxisShiftHandler(0));
 
 		control = panel.getVPotControl(1);
 		control.setAbsolute(false);
 		control.setMinMax(-10, 10);
 		control.setDisplayType(VPotControl.DISPLAY_TRIM);
-		control.addListener(new VPotAxisShiftHandler(1));
+		listen(control, new VPotAxisShiftHandler(1));
 
 		control = panel.getVPotControl(2);
 		control.setAbsolute(false);
 		control.setMinMax(-10, 10);
 		control.setDisplayType(VPotControl.DISPLAY_TRIM);
-		control.addListener(new VPotAxisShiftHandler(2));
+		listen(control, new VPotAxisShiftHandler(2));
 
 		control = panel.getVPotControl(3);
 		control.setAbsolute(false);
 		control.setMinMax(-10, 10);
 		control.setDisplayType(VPotControl.DISPLAY_TRIM);
-		control.addListener(new VPotAxisRotationHandler(0));
+		listen(control, new VPotAxisRotationHandler(0));
 
 		control = panel.getVPotControl(4);
 		control.setAbsolute(false);
 		control.setMinMax(-10, 10);
 		control.setDisplayType(VPotControl.DISPLAY_TRIM);
-		control.addListener(new VPotAxisRotationHandler(1));
+		listen(control, new VPotAxisRotationHandler(1));
 
 		control = panel.getVPotControl(5);
 		control.setAbsolute(false);
 		control.setMinMax(-10, 10);
 		control.setDisplayType(VPotControl.DISPLAY_TRIM);
-		control.addListener(new VPotAxisRotationHandler(2));
+		listen(control, new VPotAxisRotationHandler(2));
 
 		control = panel.getVPotControl(6);
 		control.setAbsolute(false);
 		control.setMinMax(-10, 10);
 		control.setDisplayType(VPotControl.DISPLAY_TRIM);
-		control.addListener(new VPotZoomHandler());
+		listen(control, new VPotZoomHandler());
 
 		ButtonControl key = panel.getButtonControl(0);
 		key.setToggle(true);
-		key.addListener(new InterpolationSwitcher());
+		listen(key, new InterpolationSwitcher());
+
+		key = panel.getButtonControl(1);
+		key.setToggle(true);
+		listen(key, i -> {
+			inertial = i != 0;
+			if (!inertial)
+				navigator.stop();
+		});
 
 		key = panel.getButtonControl(18);
 		key.setToggle(false);
-		key.addListener(i -> {
+		listen(key, i -> {
 			if (i != 0)
 				viewer.align(AlignPlane.ZY);
 		});
 
 		key = panel.getButtonControl(19);
 		key.setToggle(false);
-		key.addListener(i -> {
+		listen(key, i -> {
 			if (i != 0)
 				viewer.align(AlignPlane.XZ);
 		});
 
 		key = panel.getButtonControl(20);
 		key.setToggle(false);
-		key.addListener(i -> {
+		listen(key, i -> {
 			if (i != 0)
 				viewer.align(AlignPlane.XY);
 		});
@@ -103,6 +131,24 @@ public class MCUBDVControls {
 		System.out.println((ViewerFrame)viewerPanel.getRootPane().getParent());
 	}
 
+	private void listen(final IntControl control, final IntConsumer listener) {
+
+		control.addListener(listener);
+		removals.add(() -> control.removeListener(listener));
+	}
+
+	/**
+	 * Removes the listeners from the panel and stops the timers, e.g. before
+	 * attaching new controls to a reconnected panel.
+	 */
+	public void dispose() {
+
+		removals.forEach(Runnable::run);
+		removals.clear();
+		navigator.stop();
+		transformAccumulator.stop();
+	}
+
 	public class VPotAxisRotationHandler implements IntConsumer {
 
 		private final int axis;
@@ -115,23 +161,10 @@ public class MCUBDVControls {
 		@Override
 		public void accept(final int value) {
 
-			final SynchronizedViewerState state = viewerPanel.state();
-			final AffineTransform3D viewerTransform = state.getViewerTransform();
-
-			// center shift
-			final double cX = 0.5 * viewerPanel.getWidth();
-			final double cY = 0.5 * viewerPanel.getHeight();
-			viewerTransform.set(viewerTransform.get(0, 3) - cX, 0, 3);
-			viewerTransform.set(viewerTransform.get(1, 3) - cY, 1, 3);
-
-			// rotate
-			viewerTransform.rotate(axis, value * step);
-
-			// center un-shift
-			viewerTransform.set(viewerTransform.get(0, 3) + cX, 0, 3);
-			viewerTransform.set(viewerTransform.get(1, 3) + cY, 1, 3);
-
-			state.setViewerTransform(viewerTransform);
+			if (inertial)
+				navigator.rotate(axis, value * step);
+			else
+				transformAccumulator.rotate(axis, value * step);
 		}
 	}
 
@@ -147,12 +180,10 @@ public class MCUBDVControls {
 		@Override
 		public void accept(final int value) {
 
-			final SynchronizedViewerState state = viewerPanel.state();
-			final AffineTransform3D viewerTransform = state.getViewerTransform();
-
-			viewerTransform.set(viewerTransform.get(axis, 3) + value, axis, 3);
-
-			state.setViewerTransform(viewerTransform);
+			if (inertial)
+				navigator.shift(axis, value);
+			else
+				transformAccumulator.shift(axis, value);
 		}
 	}
 
@@ -161,24 +192,11 @@ public class MCUBDVControls {
 		@Override
 		public void accept(final int value) {
 
-			final SynchronizedViewerState state = viewerPanel.state();
-			final AffineTransform3D viewerTransform = state.getViewerTransform();
-
-			// center shift
-			final double cX = 0.5 * viewerPanel.getWidth();
-			final double cY = 0.5 * viewerPanel.getHeight();
-			viewerTransform.set(viewerTransform.get(0, 3) - cX, 0, 3);
-			viewerTransform.set(viewerTransform.get(1, 3) - cY, 1, 3);
-
-			// rotate
 			final double dScale = 1.0 + 0.05;
-			viewerTransform.scale(Math.pow(dScale, value));
-
-			// center un-shift
-			viewerTransform.set(viewerTransform.get(0, 3) + cX, 0, 3);
-			viewerTransform.set(viewerTransform.get(1, 3) + cY, 1, 3);
-
-			state.setViewerTransform(viewerTransform);
+			if (inertial)
+				navigator.zoom(Math.pow(dScale, value));
+			else
+				transformAccumulator.zoom(Math.pow(dScale, value));
 		}
 	}
 
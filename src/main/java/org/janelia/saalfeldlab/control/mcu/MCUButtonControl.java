@@ -3,8 +3,6 @@
  */
 package org.janelia.saalfeldlab.control.mcu;
 
-import java.util.function.IntConsumer;
-
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.Receiver;
 import javax.sound.midi.ShortMessage;
@@ -57,9 +55,7 @@ public class MCUButtonControl extends MCUControl implements ButtonControl {
 
 		display();
 
-		for (final IntConsumer listener : listeners) {
-			listener.accept(value);
-		}
+		notifyListeners(value);
 	}
 
 	@Override
@@ -3,21 +3,36 @@
  */
 package org.janelia.saalfeldlab.control.mcu;
 
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.IntConsumer;
 
 import org.janelia.saalfeldlab.control.IntControl;
 
 /**
+ * Listeners are stored in a copy-on-write array that is replaced atomically
+ * when listeners are added or removed. Dispatch iterates over the current
+ * array without locking or allocation, so listeners can be added and removed
+ * from any thread while events are dispatched. Events from the device are
+ * dispatched on the event thread of the {@link MCUControlPanel}.
+ * <p>
+ * The protected {@code HashSet} field {@code listeners} was replaced by the
+ * array, subclasses that accessed it must use {@link #addListener},
+ * {@link #removeListener} and {@link #listeners()} instead.
+ *
  * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
  *
  */
 abstract public class MCUControl implements IntControl {
 
-	protected int value = 0;
+	private static final IntConsumer[] NO_LISTENERS = new IntConsumer[0];
+
+	protected volatile int value = 0;
 
-	protected HashSet<IntConsumer> listeners = new HashSet<>();
+	private final AtomicReference<IntConsumer[]> listeners = new AtomicReference<>(NO_LISTENERS);
 
 	@Override
 	public int getValue() {
@@ -30,33 +45,91 @@ abstract public class MCUControl implements IntControl {
 
 		this.value = value;
 
-		for (final IntConsumer listener : listeners) {
-			listener.accept(value);
-		}
+		notifyListeners(value);
+	}
+
+	/**
+	 * Calls all listeners that are registered when the call starts.
+	 *
+	 * @param value
+	 *            the value passed to the listeners
+	 */
+	protected void notifyListeners(final int value) {
+
+		final IntConsumer[] currentListeners = listeners();
+		for (int i = 0; i < currentListeners.length; ++i)
+			currentListeners[i].accept(value);
+	}
+
+	/**
+	 * @return the current listeners, must not be modified
+	 */
+	protected IntConsumer[] listeners() {
+
+		return listeners.get();
+	}
+
+	protected int getNumListeners() {
+
+		return listeners.get().length;
 	}
 
+	/**
+	 * @return an unmodifiable snapshot of the listeners
+	 */
 	@Override
 	public Set<IntConsumer> getListeners() {
 
-		return listeners;
+		return Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(listeners.get())));
 	}
 
 	@Override
 	public boolean addListener(final IntConsumer listener) {
 
-		return listeners.add(listener);
+		IntConsumer[] current, updated;
+		do {
+			current = listeners.get();
+			if (indexOf(current, listener) >= 0)
+				return false;
+
+			updated = Arrays.copyOf(current, current.length + 1);
+			updated[current.length] = listener;
+		} while (!listeners.compareAndSet(current, updated));
+
+		return true;
 	}
 
 	@Override
 	public boolean removeListener(final IntConsumer listener) {
 
-		return listeners.remove(listener);
+		IntConsumer[] current, updated;
+		do {
+			current = listeners.get();
+			final int i = indexOf(current, listener);
+			if (i < 0)
+				return false;
+
+			updated = new IntConsumer[current.length - 1];
+			System.arraycopy(current, 0, updated, 0, i);
+			System.arraycopy(current, i + 1, updated, i, updated.length - i);
+		} while (!listeners.compareAndSet(current, updated));
+
+		return true;
 	}
 
 	@Override
 	public void clearListeners() {
 
-		listeners.clear();
+		listeners.set(NO_LISTENERS);
+	}
+
+	private static int indexOf(final IntConsumer[] array, final IntConsumer listener) {
+
+		for (int i = 0; i < array.length; ++i)
+			if (array[i].equals(listener))
+				return i;
+
+		return -1;
 	}
 
 	abstract void update(final int data);
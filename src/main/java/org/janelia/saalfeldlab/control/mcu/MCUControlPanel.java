@@ -3,6 +3,10 @@
  */
 package org.janelia.saalfeldlab.control.mcu;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MidiMessage;
 import javax.sound.midi.Receiver;
@@ -22,6 +26,18 @@ public abstract class MCUControlPanel implements Receiver {
 	private Transmitter trans = null;
 	private Receiver rec = null;
 
+	/**
+	 * Event thread of this panel. Messages from the device are dispatched to
+	 * the controls and their listeners on this thread, and it runs delayed
+	 * work of all controls such as delayed LED messages. It is a single
+	 * daemon thread and is shut down by {@link #close()}.
+	 */
+	protected final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+		final Thread thread = new Thread(r, "MCU control panel scheduler");
+		thread.setDaemon(true);
+		return thread;
+	});
+
 	public MCUControlPanel(final Transmitter trans, final Receiver rec) {
 
 		this.trans = trans;
@@ -66,7 +82,7 @@ public abstract class MCUControlPanel implements Receiver {
 	public void send(final MidiMessage msg, final long timeStamp) {
 
 //		System.out.println(timeStamp);
-		final byte[] bytes = msg.getMessage();
+//		final byte[] bytes = msg.getMessage();
 //		System.out.println("received : " + String.format("%02x %02x %02x", bytes[0], bytes[1], bytes[2]));
 
 		if (msg instanceof ShortMessage) {
@@ -78,34 +94,58 @@ public abstract class MCUControlPanel implements Receiver {
 //					"  DAT1 " + String.format("%02x", sm.getData1()) +
 //					"  DAT2 " + String.format("%02x", sm.getData2()));
 
+			/* read the message now, the transmitter may reuse it */
 			final int status = sm.getStatus();
-//			System.out.println(sm.getData2());
-			switch (status) {
-			case STATUS_CONTROL: {
-				final int data = sm.getData2();
-				final MCUVPotControl control = getVPotControlById(sm.getData1());
-				control.update(data);
-			}
-				break;
-			case STATUS_KEY: {
-				final int data = sm.getData2();
-				final MCUButtonControl key = getButtonControlById(sm.getData1());
-				key.update(data);
-			}
-				break;
-			case STATUS_FADER: {
-				final int data = sm.getData2();
-				final MCUFaderControl fader = getFaderControlById(sm.getData1());
-				fader.update(data);
-			}
-				break;
+			final int data1 = sm.getData1();
+			final int data2 = sm.getData2();
+			try {
+				scheduler.execute(() -> dispatch(status, data1, data2));
+			} catch (final RejectedExecutionException e) {
+				/* the panel is closed */
 			}
 		}
 	}
 
+	/**
+	 * Passes a message to the addressed control. Called on the event thread.
+	 *
+	 * @param status
+	 *            the status byte
+	 * @param id
+	 *            the control id
+	 * @param data
+	 *            the data
+	 */
+	protected void dispatch(final int status, final int id, final int data) {
+
+		switch (status) {
+		case STATUS_CONTROL: {
+			final MCUVPotControl control = getVPotControlById(id);
+			control.update(data);
+		}
+			break;
+		case STATUS_KEY: {
+			final MCUButtonControl key = getButtonControlById(id);
+			key.update(data);
+		}
+			break;
+		case STATUS_FADER: {
+			final MCUFaderControl fader = getFaderControlById(id);
+			fader.update(data);
+		}
+			break;
+		}
+	}
+
+	public ScheduledExecutorService getScheduler() {
+
+		return scheduler;
+	}
+
 	@Override
 	public void close() {
 
+		scheduler.shutdownNow();
 		trans.close();
 		rec.close();
 	}
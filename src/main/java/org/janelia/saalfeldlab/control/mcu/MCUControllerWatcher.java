@@ -0,0 +1,211 @@
+/**
+ *
+ */
+package org.janelia.saalfeldlab.control.mcu;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Discovers an X-Touch Mini controller in the background and keeps watching
+ * for it to be unplugged and plugged in again.
+ *
+ * Every poll interval, the watcher either tries to build a control panel if
+ * none is connected, or checks that the device of the connected panel is
+ * still listed by the MIDI system. Opening MIDI devices can not be
+ * interrupted, so a discovery attempt runs to completion in the background
+ * and no new attempt is started while it runs, so a slow MIDI subsystem never
+ * blocks the caller. A panel is kept however long it took to build, unless
+ * the watcher was closed meanwhile. Whether unplugged devices
+ * disappear from the device list depends on the platform's MIDI
+ * implementation.
+ */
+public class MCUControllerWatcher implements AutoCloseable {
+
+	public static final long DEFAULT_POLL_INTERVAL = 2000;
+
+	public static final long DEFAULT_TIMEOUT = 1000;
+
+	private final String deviceDescription;
+
+	private final Consumer<XTouchMiniMCUControlPanel> onConnect;
+
+	private final Consumer<XTouchMiniMCUControlPanel> onDisconnect;
+
+	private final long pollInterval;
+
+	private final long timeout;
+
+	private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+		final Thread thread = new Thread(r, "MCU controller watcher");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final ExecutorService discovery = Executors.newSingleThreadExecutor(r -> {
+		final Thread thread = new Thread(r, "MCU controller discovery");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private XTouchMiniMCUControlPanel panel = null;
+
+	/* the running discovery attempt */
+	private Future<?> attempt = null;
+
+	/**
+	 * @param deviceDescription
+	 *            part of the device name or description
+	 * @param onConnect
+	 *            called on the discovery thread when a panel is connected
+	 * @param onDisconnect
+	 *            called on the watcher thread after a panel was closed
+	 *            because its device disappeared
+	 * @param pollInterval
+	 *            the poll interval in milliseconds
+	 * @param timeout
+	 *            how long the watcher thread waits for the device list in
+	 *            milliseconds
+	 */
+	public MCUControllerWatcher(
+			final String deviceDescription,
+			final Consumer<XTouchMiniMCUControlPanel> onConnect,
+			final Consumer<XTouchMiniMCUControlPanel> onDisconnect,
+			final long pollInterval,
+			final long timeout) {
+
+		this.deviceDescription = deviceDescription;
+		this.onConnect = onConnect;
+		this.onDisconnect = onDisconnect;
+		this.pollInterval = pollInterval;
+		this.timeout = timeout;
+	}
+
+	public MCUControllerWatcher(final Consumer<XTouchMiniMCUControlPanel> onConnect) {
+
+		this(XTouchMiniMCUControlPanel.DEFAULT_DEVICE_DESCRIPTION, onConnect, p -> {}, DEFAULT_POLL_INTERVAL, DEFAULT_TIMEOUT);
+	}
+
+	/**
+	 * Starts polling. Returns immediately.
+	 *
+	 * @return this
+	 */
+	public MCUControllerWatcher start() {
+
+		poller.scheduleWithFixedDelay(this::poll, 0, pollInterval, TimeUnit.MILLISECONDS);
+		return this;
+	}
+
+	public synchronized XTouchMiniMCUControlPanel getPanel() {
+
+		return panel;
+	}
+
+	private void poll() {
+
+		synchronized (this) {
+			if (attempt != null && !attempt.isDone())
+				return;
+		}
+
+		final XTouchMiniMCUControlPanel current = getPanel();
+		if (current == null)
+			connect();
+		else if (!isListed())
+			disconnect(current);
+	}
+
+	private void connect() {
+
+		submit(() -> {
+			final XTouchMiniMCUControlPanel connected;
+			try {
+				connected = XTouchMiniMCUControlPanel.build(deviceDescription);
+			} catch (final Exception e) {
+				/* no controller found */
+				return null;
+			}
+			connected(connected);
+			return null;
+		});
+	}
+
+	/*
+	 * Called by the discovery attempt when a panel was built.
+	 */
+	private void connected(final XTouchMiniMCUControlPanel connected) {
+
+		synchronized (this) {
+			if (poller.isShutdown()) {
+				connected.close();
+				return;
+			}
+			panel = connected;
+		}
+		onConnect.accept(connected);
+	}
+
+	private boolean isListed() {
+
+		final Future<Boolean> listed = submit(() -> XTouchMiniMCUControlPanel.isListed(deviceDescription));
+		if (listed == null)
+			return true;
+
+		try {
+			return listed.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (final TimeoutException | ExecutionException e) {
+			/* assume the device is still there, the next poll waits for the attempt to finish */
+			return true;
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return true;
+		}
+	}
+
+	private synchronized <T> Future<T> submit(final Callable<T> task) {
+
+		try {
+			final Future<T> future = discovery.submit(task);
+			attempt = future;
+			return future;
+		} catch (final RejectedExecutionException e) {
+			/* closed */
+			return null;
+		}
+	}
+
+	private void disconnect(final XTouchMiniMCUControlPanel current) {
+
+		synchronized (this) {
+			panel = null;
+		}
+		current.close();
+		onDisconnect.accept(current);
+	}
+
+	/**
+	 * Stops polling and closes the connected panel.
+	 */
+	@Override
+	public void close() {
+
+		final XTouchMiniMCUControlPanel current;
+		synchronized (this) {
+			poller.shutdownNow();
+			discovery.shutdownNow();
+			current = panel;
+			panel = null;
+		}
+		if (current != null)
+			current.close();
+	}
+}
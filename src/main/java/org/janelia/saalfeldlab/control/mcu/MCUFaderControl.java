@@ -3,8 +3,6 @@
  */
 package org.janelia.saalfeldlab.control.mcu;
 
-import java.util.function.IntConsumer;
-
 import org.janelia.saalfeldlab.control.ClippingIntControl;
 
 /**
@@ -18,9 +16,7 @@ public class MCUFaderControl extends MCUControl implements ClippingIntControl {
 
 		this.value = Math.min(127, Math.max(0, value));
 
-		for (final IntConsumer listener : listeners) {
-			listener.accept(value);
-		}
+		notifyListeners(value);
 	}
 
 	@Override
@@ -3,8 +3,8 @@
  */
 package org.janelia.saalfeldlab.control.mcu;
 
-import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.IntConsumer;
 
@@ -21,6 +21,11 @@ import org.janelia.saalfeldlab.control.VPotControl;
  * it generates visual feedback via an assigned LED display. Only 11
  * LEDs are used because MCU does not permit more.
  *
+ * LED messages are sent at most once per {@link #LED_INTERVAL} milliseconds,
+ * later messages within the interval replace earlier ones that are not yet
+ * sent. Delayed messages and the reset of the LED ring in relative mode are
+ * sent by a scheduler that is shared by all controls of a panel.
+ *
  * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
  *
  */
@@ -30,6 +35,17 @@ public class MCUVPotControl extends MCUControl implements VPotControl {
 
 	private static final int[] LED_CODES = {0x00, 0x00, 0x10, 0x20, 0x30};
 
+	/**
+	 * Minimum interval between two LED messages in milliseconds.
+	 */
+	public static final long LED_INTERVAL = 20;
+
+	/**
+	 * Delay after which the LED ring is reset in relative mode in
+	 * milliseconds.
+	 */
+	public static final long RESET_DELAY = 200;
+
 	private int min = 0, max = 127;
 
 	private final int led;
@@ -41,9 +57,18 @@ public class MCUVPotControl extends MCUControl implements VPotControl {
 
 	private final ShortMessage ledMsg = new ShortMessage();
 
-	/* for delayed relative reset of led ring display */
-	private final ScheduledThreadPoolExecutor resetExec = new ScheduledThreadPoolExecutor(1);
-	private Future<?> resetTask;
+	private final ScheduledExecutorService scheduler;
+
+	/* coalesced led messages, guarded by this */
+	private int pendingLedData = -1;
+	private long lastLedWrite;
+	private boolean ledFlushScheduled = false;
+
+	/* delayed relative reset of led ring display, guarded by this */
+	private int resetLedData;
+	private long resetDeadline;
+	private boolean resetRequested = false;
+	private boolean resetScheduled = false;
 
 	/**
 	 *
@@ -51,11 +76,15 @@ public class MCUVPotControl extends MCUControl implements VPotControl {
 	 *            LED display MIDI id associated with this V-Pot
 	 * @param rec
 	 *            MIDI receiver for LED display
+	 * @param scheduler
+	 *            scheduler for delayed LED messages
 	 */
-	public MCUVPotControl(final int led, final Receiver rec) {
+	public MCUVPotControl(final int led, final Receiver rec, final ScheduledExecutorService scheduler) {
 
 		this.led = led;
 		this.rec = rec;
+		this.scheduler = scheduler;
+		lastLedWrite = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(LED_INTERVAL);
 	}
 
 	private void send(final ShortMessage msg) throws InvalidMidiDataException {
@@ -69,7 +98,7 @@ public class MCUVPotControl extends MCUControl implements VPotControl {
 		final int j;
 		if (absolute) {
 			final double n = max - min;
-			if (listeners.size() == 0) {
+			if (getNumListeners() == 0) {
 				j = 0;
 			} else
 				switch (ledType) {
@@ -82,15 +111,13 @@ public class MCUVPotControl extends MCUControl implements VPotControl {
 				default:
 					j = Math.max(1, Math.min(0xb, (int)Math.floor((double)0xb * (value - min) / n) + 1));
 				}
-			try {
-				ledMsg.setMessage(STATUS, led, ledCode | j);
-				send(ledMsg);
-			} catch (final InvalidMidiDataException e) {
-				e.printStackTrace();
+			synchronized (this) {
+				resetRequested = false;
+				setLed(ledCode | j);
 			}
 		} else {
 			final int k;
-			if (listeners.size() == 0) {
+			if (getNumListeners() == 0) {
 				j = 0;
 				k = 0;
 			} else
@@ -107,30 +134,86 @@ public class MCUVPotControl extends MCUControl implements VPotControl {
 					j = Math.max(1, Math.min(0xb, (int)Math.floor((double)0xb * (value + 7) / 14) + 1));
 					k = 6;
 				}
-			try {
-				if (resetTask != null)
-					resetTask.cancel(false);
-				resetExec.purge();
-
-				ledMsg.setMessage(STATUS, led, ledCode | j);
-				send(ledMsg);
-
-				resetTask = resetExec.schedule(() -> {
-					try {
-						ledMsg.setMessage(STATUS, led, ledCode | k);
-						send(ledMsg);
-						resetTask = null;
-					} catch (final InvalidMidiDataException e) {
-						// TODO Auto-generated catch block
-						e.printStackTrace();
-					}
-				}, 200, TimeUnit.MILLISECONDS);
-			} catch (final InvalidMidiDataException e) {
-				e.printStackTrace();
+			synchronized (this) {
+				setLed(ledCode | j);
+
+				/* move the deadline instead of cancelling the scheduled reset */
+				resetLedData = ledCode | k;
+				resetDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RESET_DELAY);
+				resetRequested = true;
+				if (!resetScheduled) {
+					resetScheduled = true;
+					schedule(this::resetLed, TimeUnit.MILLISECONDS.toNanos(RESET_DELAY));
+				}
 			}
 		}
 	}
 
+	private synchronized void setLed(final int data) {
+
+		pendingLedData = data;
+		if (ledFlushScheduled)
+			return;
+
+		final long wait = lastLedWrite + TimeUnit.MILLISECONDS.toNanos(LED_INTERVAL) - System.nanoTime();
+		if (wait <= 0)
+			writeLed();
+		else {
+			ledFlushScheduled = true;
+			schedule(this::flushLed, wait);
+		}
+	}
+
+	private synchronized void flushLed() {
+
+		ledFlushScheduled = false;
+		writeLed();
+	}
+
+	private synchronized void resetLed() {
+
+		if (!resetRequested) {
+			resetScheduled = false;
+			return;
+		}
+
+		final long remaining = resetDeadline - System.nanoTime();
+		if (remaining > 0) {
+			schedule(this::resetLed, remaining);
+			return;
+		}
+
+		resetScheduled = false;
+		resetRequested = false;
+		setLed(resetLedData);
+	}
+
+	private void writeLed() {
+
+		if (pendingLedData < 0)
+			return;
+
+		try {
+			ledMsg.setMessage(STATUS, led, pendingLedData);
+			send(ledMsg);
+		} catch (final InvalidMidiDataException e) {
+			e.printStackTrace();
+		}
+		pendingLedData = -1;
+		lastLedWrite = System.nanoTime();
+	}
+
+	private void schedule(final Runnable task, final long delayNanos) {
+
+		try {
+			scheduler.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+		} catch (final RejectedExecutionException e) {
+			/* the panel is closed */
+			ledFlushScheduled = false;
+			resetScheduled = false;
+		}
+	}
+
 	void setValueSilently(final int value) {
 
 		this.value = Math.min(max, Math.max(min, value));
@@ -143,9 +226,7 @@ public class MCUVPotControl extends MCUControl implements VPotControl {
 
 		display();
 
-		for (final IntConsumer listener : listeners) {
-			listener.accept(value);
-		}
+		notifyListeners(value);
 	}
 
 	@Override
@@ -0,0 +1,177 @@
+/**
+ *
+ */
+package org.janelia.saalfeldlab.control.mcu;
+
+import java.awt.Dimension;
+import java.util.function.Supplier;
+
+import javax.swing.Timer;
+
+import bdv.viewer.SynchronizedViewerState;
+import net.imglib2.realtransform.AffineTransform3D;
+
+/**
+ * Accumulates shift, rotation, and zoom steps in screen space and applies
+ * them to the viewer transform at most once per refresh interval.
+ *
+ * Controls can send many events per frame. Each call to
+ * {@link SynchronizedViewerState#setViewerTransform(AffineTransform3D)}
+ * triggers a repaint request, so applying one merged transform per interval
+ * instead of one per event avoids rendering frames that are never shown.
+ * Steps are merged by pre-concatenating them to a pending screen space
+ * transform, which gives the same result as applying them one by one.
+ */
+public class ViewerTransformAccumulator {
+
+	/**
+	 * Default refresh interval in milliseconds (about 60 Hz).
+	 */
+	public static final int DEFAULT_INTERVAL = 16;
+
+	private final SynchronizedViewerState state;
+
+	private final Supplier<Dimension> displaySize;
+
+	private final AffineTransform3D pending = new AffineTransform3D();
+
+	private final AffineTransform3D step = new AffineTransform3D();
+
+	private boolean dirty = false;
+
+	private final Timer timer;
+
+	/**
+	 * @param state
+	 *            the viewer state
+	 * @param displaySize
+	 *            supplies the size of the display, rotations and zoom are
+	 *            centered in the display
+	 * @param interval
+	 *            the refresh interval in milliseconds
+	 */
+	public ViewerTransformAccumulator(
+			final SynchronizedViewerState state,
+			final Supplier<Dimension> displaySize,
+			final int interval) {
+
+		this.state = state;
+		this.displaySize = displaySize;
+
+		timer = new Timer(interval, e -> {
+			// stop under the lock so that a step added concurrently restarts
+			// the timer
+			synchronized (pending) {
+				if (!dirty) {
+					((Timer)e.getSource()).stop();
+					return;
+				}
+			}
+			flush();
+		});
+		timer.setRepeats(true);
+		timer.setCoalesce(true);
+	}
+
+	/**
+	 * Shift along a screen axis.
+	 *
+	 * @param axis
+	 *            the axis
+	 * @param distance
+	 *            the distance in screen pixels
+	 */
+	public void shift(final int axis, final double distance) {
+
+		synchronized (pending) {
+			pending.set(pending.get(axis, 3) + distance, axis, 3);
+			dirty = true;
+			startTimer();
+		}
+	}
+
+	/**
+	 * Rotate around a screen axis through the display center.
+	 *
+	 * @param axis
+	 *            the axis
+	 * @param angle
+	 *            the angle in radians
+	 */
+	public void rotate(final int axis, final double angle) {
+
+		synchronized (pending) {
+			centered(() -> pending.rotate(axis, angle));
+			startTimer();
+		}
+	}
+
+	/**
+	 * Zoom around the display center.
+	 *
+	 * @param scale
+	 *            the scale factor
+	 */
+	public void zoom(final double scale) {
+
+		synchronized (pending) {
+			centered(() -> pending.scale(scale));
+			startTimer();
+		}
+	}
+
+	/**
+	 * Apply all pending steps to the viewer transform now.
+	 *
+	 * @return true if there were pending steps
+	 */
+	public boolean flush() {
+
+		synchronized (pending) {
+			if (!dirty)
+				return false;
+
+			step.set(pending);
+			pending.identity();
+			dirty = false;
+		}
+
+		final AffineTransform3D viewerTransform = state.getViewerTransform();
+		viewerTransform.preConcatenate(step);
+		state.setViewerTransform(viewerTransform);
+		return true;
+	}
+
+	/**
+	 * Apply pending steps and stop the refresh timer.
+	 */
+	public void stop() {
+
+		synchronized (pending) {
+			timer.stop();
+		}
+		flush();
+	}
+
+	private void centered(final Runnable operation) {
+
+		final Dimension size = displaySize.get();
+		final double cX = 0.5 * size.width;
+		final double cY = 0.5 * size.height;
+
+		pending.set(pending.get(0, 3) - cX, 0, 3);
+		pending.set(pending.get(1, 3) - cY, 1, 3);
+
+		operation.run();
+
+		pending.set(pending.get(0, 3) + cX, 0, 3);
+		pending.set(pending.get(1, 3) + cY, 1, 3);
+		dirty = true;
+	}
+
+	private void startTimer() {
+
+		if (!timer.isRunning())
+			timer.start();
+	}
+}
@@ -21,7 +21,7 @@ import gnu.trove.map.hash.TIntIntHashMap;
  */
 public class XTouchMiniMCUControlPanel extends MCUControlPanel {
 
-	private static final String DEFAULT_DEVICE_DESCRIPTION = "X-TOUCH MINI";
+	public static final String DEFAULT_DEVICE_DESCRIPTION = "X-TOUCH MINI";
 
 	private final int[] vpotIds = {0x10, 0x11, 0x12, 0x13, 0x14, 0x15, 0x16, 0x17};
 	private final int[] vpotLedIds = {0x30, 0x31, 0x32, 0x33, 0x34, 0x35, 0x36, 0x37};
@@ -65,7 +65,7 @@ public class XTouchMiniMCUControlPanel extends MCUControlPanel {
 		super(trans, rec);
 
 		for (int i = 0; i < vpots.length; ++i)
-			vpots[i] = new MCUVPotControl(vpotLedIds[i], rec);
+			vpots[i] = new MCUVPotControl(vpotLedIds[i], rec, scheduler);
 
 		for (int i = 0; i < keys.length; ++i)
 			keys[i] = new MCUButtonControl(keyLedIds[i], rec);
@@ -158,11 +158,8 @@ public class XTouchMiniMCUControlPanel extends MCUControlPanel {
 		Receiver rec = null;
 
 		for (final Info info : MidiSystem.getMidiDeviceInfo()) {
-			final MidiDevice device = MidiSystem.getMidiDevice(info);
-			System.out.println(info.getName() + " : " + info.getDescription());
-			final String lowerDeviceDescription = deviceDescription.toLowerCase();
-			if (info.getDescription().toLowerCase().contains(lowerDeviceDescription)
-					|| info.getName().toLowerCase().contains(lowerDeviceDescription)) {
+			if (matches(info, deviceDescription)) {
+				final MidiDevice device = MidiSystem.getMidiDevice(info);
 				if (device.getMaxTransmitters() != 0) {
 					transDev = device;
 					trans = device.getTransmitter();
@@ -190,6 +187,30 @@ public class XTouchMiniMCUControlPanel extends MCUControlPanel {
 		}
 	}
 
+	private static boolean matches(final Info info, final String deviceDescription) {
+
+		final String lowerDeviceDescription = deviceDescription.toLowerCase();
+		return info.getDescription().toLowerCase().contains(lowerDeviceDescription)
+				|| info.getName().toLowerCase().contains(lowerDeviceDescription);
+	}
+
+	/**
+	 * Checks whether a device matching the description is listed by the MIDI
+	 * system without opening it.
+	 *
+	 * @param deviceDescription
+	 *            part of the device name or description
+	 * @return true if a matching device is listed
+	 */
+	public static boolean isListed(final String deviceDescription) {
+
+		for (final Info info : MidiSystem.getMidiDeviceInfo())
+			if (matches(info, deviceDescription))
+				return true;
+
+		return false;
+	}
+
 	public static XTouchMiniMCUControlPanel build() throws InvalidMidiDataException, MidiUnavailableException, InterruptedException {
 
 		return build(DEFAULT_DEVICE_DESCRIPTION);
@@ -0,0 +1,362 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.SwingUtilities;
+
+import bdv.tools.brightness.ConverterSetup;
+import bdv.viewer.ConverterSetups;
+import bdv.viewer.Source;
+import bdv.viewer.SourceAndConverter;
+import bdv.viewer.ViewerPanel;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Initializes the display ranges of the sources of a viewer from the data, in
+ * the background.
+ * <p>
+ * For every source of a {@link RealType}, the display range is first set to
+ * the {@value #LOW_PERCENTILE} and {@value #HIGH_PERCENTILE} percentiles of
+ * the coarsest scale level of the current timepoint.
+ * {@link #refine(boolean)} refines it from the finest scale level at which
+ * the current view has at most {@value #MAX_SAMPLES} voxels. If even the
+ * coarsest level has more voxels, only a box of {@value #MAX_SAMPLES} voxels
+ * around the center of the view is sampled, so that a large single scale
+ * dataset costs a bounded number of block reads and not a read of blocks
+ * across the whole volume. Sources with {@link SourceBlockStatistics} approximate the
+ * percentiles from the statistics of the blocks instead of reading voxels.
+ * The window is shown before the percentiles are computed, and display ranges
+ * that were changed by the user in the meantime are not overwritten.
+ * <p>
+ * Set the system property {@value #AUTO_CONTRAST_PROPERTY} to {@code false}
+ * to keep the default display ranges.
+ */
+public class AutoContrast implements AutoCloseable {
+
+	public static final String AUTO_CONTRAST_PROPERTY = "n5.viewer.autoContrast";
+
+	public static final double LOW_PERCENTILE = 0.005;
+
+	public static final double HIGH_PERCENTILE = 0.995;
+
+	public static final int MAX_SAMPLES = 1 << 20;
+
+	private final ViewerPanel viewer;
+
+	private final ConverterSetups converterSetups;
+
+	private final List<? extends SourceAndConverter<?>> sources;
+
+	/* the display ranges set by this, to detect changes by the user */
+	private final Map<ConverterSetup, double[]> applied = new ConcurrentHashMap<>();
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+		final Thread thread = new Thread(r, "n5-viewer auto-contrast");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		return thread;
+	});
+
+	/**
+	 * @param viewer
+	 *            the viewer
+	 * @param converterSetups
+	 *            the converter setups of the viewer
+	 * @param sources
+	 *            the sources
+	 */
+	public AutoContrast(
+			final ViewerPanel viewer,
+			final ConverterSetups converterSetups,
+			final List<? extends SourceAndConverter<?>> sources) {
+
+		this.viewer = viewer;
+		this.converterSetups = converterSetups;
+		this.sources = new ArrayList<>(sources);
+	}
+
+	/**
+	 * Starts computing display ranges unless the system property
+	 * {@value #AUTO_CONTRAST_PROPERTY} is {@code false}.
+	 *
+	 * @param viewer
+	 *            the viewer
+	 * @param converterSetups
+	 *            the converter setups of the viewer
+	 * @param sources
+	 *            the sources
+	 * @return the auto contrast, or null if disabled
+	 */
+	public static AutoContrast startIfEnabled(
+			final ViewerPanel viewer,
+			final ConverterSetups converterSetups,
+			final List<? extends SourceAndConverter<?>> sources) {
+
+		if ("false".equalsIgnoreCase(System.getProperty(AUTO_CONTRAST_PROPERTY)))
+			return null;
+
+		return new AutoContrast(viewer, converterSetups, sources).start();
+	}
+
+	/**
+	 * Computes the display ranges from the coarsest scale levels.
+	 *
+	 * @return this
+	 */
+	public AutoContrast start() {
+
+		for (final SourceAndConverter<?> source : sources) {
+			final ConverterSetup setup = converterSetups.getConverterSetup(source);
+			if (setup == null || !(source.getSpimSource().getType() instanceof RealType))
+				continue;
+
+			applied.put(setup, new double[]{setup.getDisplayRangeMin(), setup.getDisplayRangeMax()});
+			executor.submit(() -> update(setup, source.getSpimSource(), coarsestLevel(source.getSpimSource()), false));
+		}
+		return this;
+	}
+
+	/**
+	 * Recomputes the display ranges from the data in the current view.
+	 *
+	 * @param force
+	 *            also update display ranges that were changed by the user
+	 */
+	public void refine(final boolean force) {
+
+		for (final SourceAndConverter<?> source : sources) {
+			final ConverterSetup setup = converterSetups.getConverterSetup(source);
+			if (setup != null && source.getSpimSource().getType() instanceof RealType)
+				executor.submit(() -> update(setup, source.getSpimSource(), visibleLevel(source.getSpimSource()), force));
+		}
+	}
+
+	/*
+	 * A scale level and the interval of it to sample.
+	 */
+	private static class Region {
+
+		final int level;
+
+		final Interval interval;
+
+		Region(final int level, final Interval interval) {
+
+			this.level = level;
+			this.interval = interval;
+		}
+	}
+
+	private Region coarsestLevel(final Source<?> source) {
+
+		final int t = viewer.state().getCurrentTimepoint();
+		if (!source.isPresent(t))
+			return null;
+
+		final int level = source.getNumMipmapLevels() - 1;
+		final AffineTransform3D sourceToScreen = new AffineTransform3D();
+		source.getSourceTransform(t, level, sourceToScreen);
+		sourceToScreen.preConcatenate(viewer.state().getViewerTransform());
+		return new Region(level, sampleBox(source.getSource(t, level), viewCenter(sourceToScreen)));
+	}
+
+	/*
+	 * The finest level at which the bounding box of the display has at most
+	 * MAX_SAMPLES voxels, or the coarsest level.
+	 */
+	private Region visibleLevel(final Source<?> source) {
+
+		final int t = viewer.state().getCurrentTimepoint();
+		if (!source.isPresent(t))
+			return null;
+
+		final AffineTransform3D viewerTransform = viewer.state().getViewerTransform();
+		final int width = viewer.getDisplay().getWidth();
+		final int height = viewer.getDisplay().getHeight();
+		Region region = null;
+		for (int level = source.getNumMipmapLevels() - 1; level >= 0; --level) {
+			final AffineTransform3D sourceToScreen = new AffineTransform3D();
+			source.getSourceTransform(t, level, sourceToScreen);
+			sourceToScreen.preConcatenate(viewerTransform);
+
+			final RandomAccessibleInterval<?> img = source.getSource(t, level);
+			final Interval visible = Intervals.intersect(img, screenBoundingBox(sourceToScreen, width, height));
+			if (Intervals.isEmpty(visible))
+				return region;
+
+			if (region != null && Intervals.numElements(visible) > MAX_SAMPLES)
+				break;
+
+			region = new Region(level, sampleBox(visible, viewCenter(sourceToScreen)));
+		}
+		return region;
+	}
+
+	/*
+	 * The center of the display in source coordinates.
+	 */
+	private double[] viewCenter(final AffineTransform3D sourceToScreen) {
+
+		final double[] center = new double[]{0.5 * viewer.getDisplay().getWidth(), 0.5 * viewer.getDisplay().getHeight(), 0};
+		sourceToScreen.applyInverse(center, center);
+		return center;
+	}
+
+	/**
+	 * Returns a box of at most {@value #MAX_SAMPLES} voxels inside an
+	 * interval, as close to a center as possible. Intervals that are not
+	 * larger are returned as is.
+	 *
+	 * @param interval
+	 *            the interval
+	 * @param center
+	 *            the center of the box
+	 * @return the box
+	 */
+	public static Interval sampleBox(final Interval interval, final double[] center) {
+
+		final int n = interval.numDimensions();
+		if (Intervals.numElements(interval) <= MAX_SAMPLES)
+			return interval;
+
+		// distribute the samples over the dimensions, smallest first, so that
+		// dimensions smaller than the box keep their size
+		final Integer[] order = new Integer[n];
+		for (int d = 0; d < n; ++d)
+			order[d] = d;
+		Arrays.sort(order, (a, b) -> Long.compare(interval.dimension(a), interval.dimension(b)));
+
+		final long[] min = new long[n];
+		final long[] max = new long[n];
+		double remaining = MAX_SAMPLES;
+		for (int i = 0; i < n; ++i) {
+			final int d = order[i];
+			final long size = Math.max(1, Math.min(
+					interval.dimension(d),
+					(long)Math.floor(Math.pow(remaining, 1.0 / (n - i)) + 1e-9)));
+			remaining /= size;
+
+			min[d] = Math.max(interval.min(d), Math.min(interval.max(d) - size + 1, Math.round(center[d] - 0.5 * size)));
+			max[d] = min[d] + size - 1;
+		}
+		return new FinalInterval(min, max);
+	}
+
+	/*
+	 * The bounding box of the display in source coordinates, one voxel
+	 * larger on all sides.
+	 */
+	private static Interval screenBoundingBox(final AffineTransform3D sourceToScreen, final int width, final int height) {
+
+		final AffineTransform3D screenToSource = sourceToScreen.inverse();
+		final long[] min = new long[3];
+		final long[] max = new long[3];
+		Arrays.fill(min, Long.MAX_VALUE);
+		Arrays.fill(max, Long.MIN_VALUE);
+		final double[] p = new double[3];
+		for (int i = 0; i < 4; ++i) {
+			p[0] = (i & 1) * width;
+			p[1] = (i >> 1) * height;
+			p[2] = 0;
+			screenToSource.apply(p, p);
+			for (int d = 0; d < 3; ++d) {
+				min[d] = Math.min(min[d], (long)Math.floor(p[d]) - 1);
+				max[d] = Math.max(max[d], (long)Math.ceil(p[d]) + 1);
+			}
+		}
+		return new FinalInterval(min, max);
+	}
+
+	private void update(final ConverterSetup setup, final Source<?> source, final Region region, final boolean force) {
+
+		if (region == null)
+			return;
+
+		final int t = viewer.state().getCurrentTimepoint();
+		final SourceBlockStatistics blockStatistics = SourceBlockStatistics.of(source);
+		final double[] range;
+		try {
+			range = blockStatistics != null && blockStatistics.hasLevel(region.level)
+					? blockStatistics.percentiles(region.level, t, region.interval, LOW_PERCENTILE, HIGH_PERCENTILE)
+					: percentiles(source.getSource(t, region.level), region.interval);
+		} catch (final RuntimeException e) {
+			System.err.println("Could not compute display range of " + source.getName() + ": " + e.getMessage());
+			return;
+		}
+		if (range == null)
+			return;
+
+		SwingUtilities.invokeLater(() -> {
+			final double[] previous = applied.get(setup);
+			final boolean unchanged = previous != null &&
+					previous[0] == setup.getDisplayRangeMin() &&
+					previous[1] == setup.getDisplayRangeMax();
+			if (force || unchanged) {
+				setup.setDisplayRange(range[0], range[1]);
+				applied.put(setup, new double[]{setup.getDisplayRangeMin(), setup.getDisplayRangeMax()});
+			}
+		});
+	}
+
+	/**
+	 * Computes the {@value #LOW_PERCENTILE} and {@value #HIGH_PERCENTILE}
+	 * percentiles of an interval of an image. Intervals of more than
+	 * {@value #MAX_SAMPLES} voxels are subsampled, NaNs are ignored.
+	 *
+	 * @param img
+	 *            the image
+	 * @param interval
+	 *            the interval
+	 * @return the low and high percentile, or null if there is no value or
+	 *         all values are equal
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public static double[] percentiles(final RandomAccessibleInterval<?> img, final Interval interval) {
+
+		final int n = interval.numDimensions();
+		final long numElements = Intervals.numElements(interval);
+		final long step = Math.max(1, (long)Math.ceil(Math.pow((double)numElements / MAX_SAMPLES, 1.0 / n)));
+		final long[] steps = new long[n];
+		Arrays.fill(steps, step);
+
+		final RandomAccessibleInterval<RealType<?>> samples = Views.subsample(Views.interval((RandomAccessibleInterval)img, interval), steps);
+		final double[] values = new double[(int)Math.min(Integer.MAX_VALUE - 8, Intervals.numElements(samples))];
+		int size = 0;
+		for (final RealType<?> t : Views.flatIterable(samples)) {
+			if (Thread.currentThread().isInterrupted())
+				return null;
+
+			final double v = t.getRealDouble();
+			if (!Double.isNaN(v))
+				values[size++] = v;
+		}
+		if (size == 0)
+			return null;
+
+		Arrays.sort(values, 0, size);
+		final double low = values[(int)Math.floor(LOW_PERCENTILE * (size - 1))];
+		final double high = values[(int)Math.ceil(HIGH_PERCENTILE * (size - 1))];
+		return low < high ? new double[]{low, high} : null;
+	}
+
+	/**
+	 * Stops computing display ranges.
+	 */
+	@Override
+	public void close() {
+
+		executor.shutdownNow();
+	}
+}
@@ -31,10 +31,14 @@ import java.awt.event.ItemListener;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.ActionMap;
 import javax.swing.InputMap;
+import javax.swing.SwingUtilities;
 
+import org.janelia.saalfeldlab.n5.bdv.tools.boundingbox.CropProgress;
+import org.janelia.saalfeldlab.n5.bdv.tools.boundingbox.ObliqueCrop;
 import org.scijava.ui.behaviour.Behaviour;
 import org.scijava.ui.behaviour.BehaviourMap;
 import org.scijava.ui.behaviour.ClickBehaviour;
@@ -44,6 +48,7 @@ import org.scijava.ui.behaviour.KeyStrokeAdder;
 import org.scijava.ui.behaviour.io.InputTriggerConfig;
 import org.scijava.ui.behaviour.util.InputActionBindings;
 
+import bdv.viewer.Interpolation;
 import bdv.viewer.Source;
 import bdv.viewer.ViewerPanel;
 import ij.IJ;
@@ -75,6 +80,7 @@ public class CropController<T extends NumericType<T> & NativeType<T>> {
 	static private int depth = 512;
 	static private int scaleLevel = 0;
 	static private boolean single4DStack = true;
+	static private boolean alignToViewer = false;
 
 	// for behavioUrs
 	private final BehaviourMap behaviourMap = new BehaviourMap();
@@ -166,6 +172,7 @@ public class CropController<T extends NumericType<T> & NativeType<T>> {
 			gd.addNumericField("depth : ", depth, 0, 5, "px");
 			gd.addNumericField("scale_level : ", scaleLevel, 0);
 			gd.addCheckbox("Single_4D_stack", single4DStack);
+			gd.addCheckbox("Align_to_viewer", alignToViewer);
 
 			centerPointTextFields = new ArrayList<>();
 			for (int i = 0; i < 3; ++i)
@@ -206,6 +213,7 @@ public class CropController<T extends NumericType<T> & NativeType<T>> {
 			depth = (int)gd.getNextNumber();
 			scaleLevel = (int)gd.getNextNumber();
 			single4DStack = gd.getNextBoolean();
+			alignToViewer = gd.getNextBoolean();
 
 			final int w = width;
 			final int h = height;
@@ -237,6 +245,9 @@ public class CropController<T extends NumericType<T> & NativeType<T>> {
 					return;
 				}
 
+				if (alignToViewer)
+					continue;
+
 				final RealPoint center = new RealPoint(3);
 				final AffineTransform3D transform = new AffineTransform3D();
 				source.getSourceTransform(timepoint, s, transform);
@@ -272,7 +283,9 @@ public class CropController<T extends NumericType<T> & NativeType<T>> {
 				}
 			}
 
-			if (single4DStack) {
+			if (alignToViewer)
+				cropAlignedToViewer(s, new long[]{w, h, d}, centerPosStr);
+			else if (single4DStack) {
 				// FIXME: need to permute slices/channels. Swapping them in the
 				// resulting ImagePlus produces wrong output
 				final ImagePlus imp = ImageJFunctions
@@ -284,6 +297,115 @@ public class CropController<T extends NumericType<T> & NativeType<T>> {
 			viewer.requestRepaint();
 		}
 
+		/**
+		 * Resamples a box of the given size in isotropic voxels of the
+		 * sources at the given scale level, centered at the last click and
+		 * aligned with the viewer axes. All channels are resampled onto the
+		 * grid of the smallest voxel size of all sources. Resampling runs on a
+		 * worker thread that is interrupted when the progress monitor is
+		 * cancelled, and the results are shown when all channels are done.
+		 */
+		private void cropAlignedToViewer(
+				final int level,
+				final long[] size,
+				final String centerPosStr) {
+
+			if (!ObliqueCrop.fitsInMemory(sources, size)) {
+				IJ.error(
+						"Crop",
+						String.format(
+								"Resampling %s pixels of %d channels does not fit into memory, reduce the size.",
+								Arrays.toString(size),
+								sources.size()));
+				return;
+			}
+
+			final int timepoint = viewer.state().getCurrentTimepoint();
+			final Interpolation interpolation = viewer.state().getInterpolation();
+			final double spacing = ObliqueCrop.minVoxelSize(sources, timepoint, level);
+			final AffineTransform3D outputToWorld = ObliqueCrop.outputToWorld(
+					viewer.state().getViewerTransform(),
+					lastClick.positionAsDoubleArray(),
+					size,
+					spacing);
+
+			IJ
+					.log(
+							String
+									.format(
+											"Resampling %s pixels of size %f aligned to the viewer using scale level %d",
+											Arrays.toString(size),
+											spacing,
+											level));
+
+			final List<? extends Source<T>> channels = new ArrayList<>(sources);
+			CropProgress.run(viewer, "Resampling " + centerPosStr, progress -> {
+				final List<RandomAccessibleInterval<T>> channelsImages = new ArrayList<>();
+				for (int channel = 0; channel < channels.size(); ++channel) {
+					final int part = channel;
+					try {
+						channelsImages
+								.add(
+										ObliqueCrop
+												.resample(
+														channels.get(channel),
+														timepoint,
+														level,
+														interpolation,
+														outputToWorld,
+														size,
+														Runtime.getRuntime().availableProcessors(),
+														f -> progress.accept((part + f) / channels.size())));
+					} catch (final InterruptedException e) {
+						IJ.log("Resampling " + centerPosStr + " cancelled");
+						return;
+					} catch (final ExecutionException e) {
+						IJ.handleException(e);
+						return;
+					}
+				}
+
+				SwingUtilities.invokeLater(() -> {
+					if (single4DStack) {
+						// FIXME: need to permute slices/channels. Swapping them
+						// in the resulting ImagePlus produces wrong output
+						final ImagePlus imp = ImageJFunctions
+								.show(Views.permute(Views.stack(channelsImages), 2, 3), centerPosStr);
+						setMetadata(imp, outputToWorld);
+					} else {
+						for (int channel = 0; channel < channelsImages.size(); ++channel) {
+							final ImagePlus imp = show(channelsImages.get(channel), "channel " + channel + " " + centerPosStr);
+							setMetadata(imp, outputToWorld);
+						}
+					}
+				});
+			});
+		}
+
+		/**
+		 * Set image metadata after resampling aligned to the viewer. The pixel
+		 * size is the isotropic output spacing, the full output to world
+		 * transform is stored in the image info.
+		 *
+		 * @param imp
+		 *            the imageplus
+		 * @param outputToWorld
+		 *            the transformation from output pixel to physical
+		 *            coordinates
+		 */
+		private void setMetadata(final ImagePlus imp, final AffineTransform3D outputToWorld) {
+
+			final double spacing = Math.sqrt(
+					outputToWorld.get(0, 0) * outputToWorld.get(0, 0) +
+					outputToWorld.get(1, 0) * outputToWorld.get(1, 0) +
+					outputToWorld.get(2, 0) * outputToWorld.get(2, 0));
+
+			imp.getCalibration().pixelWidth = spacing;
+			imp.getCalibration().pixelHeight = spacing;
+			imp.getCalibration().pixelDepth = spacing;
+			imp.setProperty("Info", "output to world transform: " + outputToWorld);
+		}
+
 		/**
 		 * Set image metadata after cropping.
 		 * The sourceTransform must be scaling only.
@@ -0,0 +1,209 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import net.imglib2.display.RealARGBColorConverter;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.volatiles.VolatileUnsignedByteType;
+import net.imglib2.type.volatiles.VolatileUnsignedShortType;
+
+/**
+ * A {@link RealARGBColorConverter} for 8- and 16-bit unsigned integer types
+ * that looks up the color of every value in a table of 256 or 65536 entries
+ * instead of scaling and clamping it. The table maps values exactly like
+ * {@link RealARGBColorConverter#create} and is rebuilt on the next conversion
+ * after the display range or color changed.
+ *
+ * @param <R>
+ *            the type
+ */
+public abstract class LookupTableARGBConverter<R extends RealType<?>> implements RealARGBColorConverter<R> {
+
+	private final int size;
+
+	private double min;
+
+	private double max;
+
+	private final ARGBType color = new ARGBType(ARGBType.rgba(255, 255, 255, 255));
+
+	private volatile int[] lut = null;
+
+	protected LookupTableARGBConverter(final int size, final double min, final double max) {
+
+		this.size = size;
+		this.min = min;
+		this.max = max;
+	}
+
+	/**
+	 * Creates a lookup table converter for {@link UnsignedByteType},
+	 * {@link UnsignedShortType} and their volatile types.
+	 *
+	 * @param <R>
+	 *            the type
+	 * @param type
+	 *            an instance of the type
+	 * @param min
+	 *            the value that is mapped to black
+	 * @param max
+	 *            the value that is mapped to the color
+	 * @return the converter, or null for other types
+	 */
+	public static <R> LookupTableARGBConverter<?> create(final R type, final double min, final double max) {
+
+		if (type instanceof UnsignedByteType)
+			return new UnsignedByte(min, max);
+		else if (type instanceof VolatileUnsignedByteType)
+			return new VolatileUnsignedByte(min, max);
+		else if (type instanceof UnsignedShortType)
+			return new UnsignedShort(min, max);
+		else if (type instanceof VolatileUnsignedShortType)
+			return new VolatileUnsignedShort(min, max);
+		else
+			return null;
+	}
+
+	/**
+	 * @return the lookup table for the current range and color
+	 */
+	protected int[] lut() {
+
+		final int[] table = lut;
+		return table == null ? createLut() : table;
+	}
+
+	/*
+	 * Same arithmetic as RealARGBColorConverter.
+	 */
+	private synchronized int[] createLut() {
+
+		if (lut != null)
+			return lut;
+
+		final double scale = 1.0 / (max - min);
+		final int value = color.get();
+		final int a = ARGBType.alpha(value);
+		final double scaleR = ARGBType.red(value) * scale;
+		final double scaleG = ARGBType.green(value) * scale;
+		final double scaleB = ARGBType.blue(value) * scale;
+		final int black = ARGBType.rgba(0, 0, 0, a);
+
+		final int[] table = new int[size];
+		for (int i = 0; i < size; ++i) {
+			final double v = i - min;
+			if (v < 0)
+				table[i] = black;
+			else {
+				final int r = Math.min(255, (int)(scaleR * v + 0.5));
+				final int g = Math.min(255, (int)(scaleG * v + 0.5));
+				final int b = Math.min(255, (int)(scaleB * v + 0.5));
+				table[i] = ARGBType.rgba(r, g, b, a);
+			}
+		}
+		lut = table;
+		return table;
+	}
+
+	@Override
+	public ARGBType getColor() {
+
+		return color.copy();
+	}
+
+	@Override
+	public synchronized void setColor(final ARGBType c) {
+
+		color.set(c);
+		lut = null;
+	}
+
+	@Override
+	public boolean supportsColor() {
+
+		return true;
+	}
+
+	@Override
+	public double getMin() {
+
+		return min;
+	}
+
+	@Override
+	public double getMax() {
+
+		return max;
+	}
+
+	@Override
+	public synchronized void setMax(final double max) {
+
+		this.max = max;
+		lut = null;
+	}
+
+	@Override
+	public synchronized void setMin(final double min) {
+
+		this.min = min;
+		lut = null;
+	}
+
+	public static class UnsignedByte extends LookupTableARGBConverter<UnsignedByteType> {
+
+		public UnsignedByte(final double min, final double max) {
+
+			super(256, min, max);
+		}
+
+		@Override
+		public void convert(final UnsignedByteType input, final ARGBType output) {
+
+			output.set(lut()[input.get()]);
+		}
+	}
+
+	public static class VolatileUnsignedByte extends LookupTableARGBConverter<VolatileUnsignedByteType> {
+
+		public VolatileUnsignedByte(final double min, final double max) {
+
+			super(256, min, max);
+		}
+
+		@Override
+		public void convert(final VolatileUnsignedByteType input, final ARGBType output) {
+
+			output.set(lut()[input.get().get()]);
+		}
+	}
+
+	public static class UnsignedShort extends LookupTableARGBConverter<UnsignedShortType> {
+
+		public UnsignedShort(final double min, final double max) {
+
+			super(65536, min, max);
+		}
+
+		@Override
+		public void convert(final UnsignedShortType input, final ARGBType output) {
+
+			output.set(lut()[input.get()]);
+		}
+	}
+
+	public static class VolatileUnsignedShort extends LookupTableARGBConverter<VolatileUnsignedShortType> {
+
+		public VolatileUnsignedShort(final double min, final double max) {
+
+			super(65536, min, max);
+		}
+
+		@Override
+		public void convert(final VolatileUnsignedShortType input, final ARGBType output) {
+
+			output.set(lut()[input.get().get()]);
+		}
+	}
+}
@@ -0,0 +1,178 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.janelia.saalfeldlab.n5.Bzip2Compression;
+import org.janelia.saalfeldlab.n5.Compression;
+import org.janelia.saalfeldlab.n5.GzipCompression;
+import org.janelia.saalfeldlab.n5.Lz4Compression;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.janelia.saalfeldlab.n5.XzCompression;
+import org.janelia.saalfeldlab.n5.bdv.tools.boundingbox.BatchCrop;
+import org.janelia.saalfeldlab.n5.bdv.tools.boundingbox.CropBox;
+import org.janelia.saalfeldlab.n5.universe.N5Factory;
+import org.janelia.saalfeldlab.n5.zstandard.ZstandardCompression;
+
+import bdv.cache.SharedQueue;
+import bdv.tools.brightness.ConverterSetup;
+import bdv.util.BdvOptions;
+import bdv.viewer.SourceAndConverter;
+import ij.IJ;
+import ij.ImageJ;
+import ij.gui.GenericDialog;
+import ij.plugin.PlugIn;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.NumericType;
+
+/**
+ * Fiji plugin that crops a list of boxes from N5 datasets without opening a
+ * viewer. All options can be given as macro options, e.g.
+ *
+ * <pre>
+ * run("N5 Batch Crop", "urls=/data/sample.n5?/raw boxes=/data/boxes.csv output=/data/crops.n5 format=n5 level=0 block_size=64 compression=gzip");
+ * </pre>
+ *
+ * See {@link CropBox} for the csv and json box formats and {@link BatchCrop}
+ * for how boxes are grouped.
+ */
+public class N5CropPlugin implements PlugIn {
+
+	public static final String COMMAND_NAME = "N5 Batch Crop";
+
+	public static final String FORMAT_N5 = "n5";
+	public static final String FORMAT_TIFF = "tiff";
+
+	public static final String[] COMPRESSIONS = {"gzip", "raw", "bzip2", "lz4", "xz", "zstd"};
+
+	final public static void main(final String... args) {
+
+		new ImageJ();
+		new N5CropPlugin().run("");
+	}
+
+	@Override
+	public void run(final String args) {
+
+		final GenericDialog gd = new GenericDialog(COMMAND_NAME);
+		gd.addStringField("urls", "", 40);
+		gd.addStringField("boxes", "", 40);
+		gd.addStringField("output", "", 40);
+		gd.addChoice("format", new String[]{FORMAT_N5, FORMAT_TIFF}, FORMAT_N5);
+		gd.addNumericField("level", 0, 0);
+		gd.addNumericField("block_size", BatchCrop.DEFAULT_BLOCK_SIZE, 0);
+		gd.addChoice("compression", COMPRESSIONS, COMPRESSIONS[0]);
+		gd.showDialog();
+		if (gd.wasCanceled())
+			return;
+
+		final String urls = gd.getNextString();
+		final String boxes = gd.getNextString();
+		final String output = gd.getNextString();
+		final String format = gd.getNextChoice();
+		final int level = (int)gd.getNextNumber();
+		final int blockSize = (int)gd.getNextNumber();
+		final String compression = gd.getNextChoice();
+
+		try {
+			final int numCrops = crop(urls.split(","), boxes, output, format, level, blockSize, compression(compression));
+			IJ.log(COMMAND_NAME + ": wrote " + numCrops + " crops to " + output);
+		} catch (IOException | ExecutionException e) {
+			IJ.handleException(e);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Crops the boxes in a csv or json file from the datasets at the given
+	 * uris.
+	 *
+	 * @param <T>
+	 *            the type
+	 * @param uris
+	 *            the dataset or multiscale group uris
+	 * @param boxesPath
+	 *            the csv or json file with the boxes
+	 * @param output
+	 *            an N5 or Zarr container uri, or a directory for tiff files
+	 * @param format
+	 *            {@link #FORMAT_N5} for N5 and Zarr containers,
+	 *            {@link #FORMAT_TIFF} for tiff files
+	 * @param level
+	 *            the scale level for boxes that do not specify one
+	 * @param blockSize
+	 *            the block size of written datasets, and the storage block
+	 *            size used to group boxes for sources whose blocks are not
+	 *            known
+	 * @param compression
+	 *            the compression of written datasets
+	 * @return the number of crops written
+	 * @throws IOException
+	 *             if the boxes can not be read
+	 * @throws InterruptedException
+	 *             if interrupted while cropping
+	 * @throws ExecutionException
+	 *             if a crop could not be written
+	 */
+	public static <T extends NumericType<T> & NativeType<T>> int crop(
+			final String[] uris,
+			final String boxesPath,
+			final String output,
+			final String format,
+			final int level,
+			final int blockSize,
+			final Compression compression) throws IOException, InterruptedException, ExecutionException {
+
+		final List<CropBox> boxes = CropBox.read(boxesPath);
+
+		// the queue is never used because only the non-volatile sources are cropped
+		final List<SourceAndConverter<T>> sources = new ArrayList<>();
+		N5Viewer.buildN5Sources(uris, new SharedQueue(1), new ArrayList<ConverterSetup>(), sources, BdvOptions.options());
+
+		final BatchCrop<T> batchCrop = new BatchCrop<>(sources);
+		batchCrop.setDefaultLevel(level);
+		batchCrop.setBlockSize(blockSize);
+
+		if (format.equals(FORMAT_TIFF)) {
+			final File directory = new File(output);
+			if (!directory.isDirectory() && !directory.mkdirs())
+				throw new IOException("Could not create " + directory);
+
+			return batchCrop.run(boxes, BatchCrop.tiffWriter(directory));
+		}
+
+		try (final N5Writer n5 = new N5Factory().openWriter(output)) {
+			return batchCrop.run(boxes, BatchCrop.n5Writer(n5, new int[]{blockSize, blockSize, blockSize}, compression));
+		}
+	}
+
+	/**
+	 * @param name
+	 *            one of {@link #COMPRESSIONS}
+	 * @return the compression
+	 */
+	public static Compression compression(final String name) {
+
+		switch (name) {
+		case "raw":
+			return new RawCompression();
+		case "bzip2":
+			return new Bzip2Compression();
+		case "lz4":
+			return new Lz4Compression();
+		case "xz":
+			return new XzCompression();
+		case "zstd":
+			return new ZstandardCompression();
+		case "gzip":
+			return new GzipCompression();
+		default:
+			throw new IllegalArgumentException("Unknown compression " + name);
+		}
+	}
+}
@@ -29,6 +29,7 @@ import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
@@ -37,22 +38,35 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import javax.swing.ActionMap;
+import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
 
 import org.janelia.saalfeldlab.control.mcu.MCUBDVControls;
-import org.janelia.saalfeldlab.control.mcu.XTouchMiniMCUControlPanel;
+import org.janelia.saalfeldlab.control.mcu.MCUControllerWatcher;
 import org.janelia.saalfeldlab.n5.N5Reader;
 import org.janelia.saalfeldlab.n5.N5URI;
+import org.janelia.saalfeldlab.n5.bdv.cache.BlockLoadStatistics;
+import org.janelia.saalfeldlab.n5.bdv.cache.BlockStatistics;
+import org.janelia.saalfeldlab.n5.bdv.cache.InstrumentedN5Utils;
+import org.janelia.saalfeldlab.n5.bdv.cache.ReadTrace;
+import org.janelia.saalfeldlab.n5.bdv.cache.ReaderStatistics;
+import org.janelia.saalfeldlab.n5.bdv.cache.StatisticsMBeans;
+import org.janelia.saalfeldlab.n5.bdv.cache.TelemetryOverlay;
+import org.janelia.saalfeldlab.n5.bdv.cache.ViewerStatistics;
+import org.janelia.saalfeldlab.n5.bdv.session.SessionRecorder;
 import org.janelia.saalfeldlab.n5.bdv.tools.boundingbox.BoxCrop;
 import org.janelia.saalfeldlab.n5.ij.N5Importer.N5ViewerReaderFun;
-import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
 import org.janelia.saalfeldlab.n5.metadata.MetadataSource;
 import org.janelia.saalfeldlab.n5.metadata.N5ViewerMultichannelMetadata;
 import org.janelia.saalfeldlab.n5.ui.DataSelection;
@@ -73,7 +87,6 @@ import org.janelia.saalfeldlab.n5.universe.metadata.SpatialMetadata;
 import org.janelia.saalfeldlab.n5.universe.metadata.axes.Axis;
 import org.janelia.saalfeldlab.n5.universe.metadata.axes.AxisMetadata;
 import org.janelia.saalfeldlab.n5.universe.metadata.axes.AxisUtils;
-import org.janelia.saalfeldlab.n5.universe.metadata.axes.DefaultAxisMetadata;
 import org.janelia.saalfeldlab.n5.universe.metadata.canonical.CanonicalMultichannelMetadata;
 import org.janelia.saalfeldlab.n5.universe.metadata.canonical.CanonicalMultiscaleMetadata;
 import org.janelia.saalfeldlab.n5.universe.metadata.canonical.CanonicalSpatialMetadata;
@@ -99,7 +112,6 @@ import bdv.util.BdvHandleFrame;
 import bdv.util.BdvHandlePanel;
 import bdv.util.BdvOptions;
 import bdv.util.Prefs;
-import bdv.util.RandomAccessibleIntervalMipmapSource4D;
 import bdv.util.volatiles.VolatileViews;
 import bdv.viewer.Source;
 import bdv.viewer.SourceAndConverter;
@@ -126,6 +138,7 @@ import net.imglib2.type.label.LabelMultisetType;
 import net.imglib2.type.numeric.ARGBType;
 import net.imglib2.type.numeric.NumericType;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.LongType;
 import net.imglib2.type.numeric.integer.UnsignedLongType;
 import net.imglib2.type.volatiles.VolatileARGBType;
 import net.imglib2.type.volatiles.VolatileUnsignedLongType;
@@ -273,14 +286,14 @@ public class N5Viewer {
 
 	public static BdvHandle show( final N5URI uri ) {
 
-		return show( new N5Factory().openReader(uri.getContainerPath()),
+		return show( ReadTrace.traceIfEnabled(new N5Factory().openReader(uri.getContainerPath())),
 				uri.getGroupPath() != null ? uri.getGroupPath() : "/",
 				true, null);
 	}
 
 	public static BdvHandle show(String n5root, final String group) {
 
-		return show(new N5Factory().openReader(n5root), group, true, null);
+		return show(ReadTrace.traceIfEnabled(new N5Factory().openReader(n5root)), group, true, null);
 	}
 
 	public static BdvHandle show(N5Reader n5, final String group) {
@@ -306,8 +319,52 @@ public class N5Viewer {
 	public static <T extends NumericType<T> & NativeType<T>> BdvHandle show(final String[] uris, final BdvOptions options, final boolean wantFrame, final Frame parentFrame) {
 
 		final SharedQueue sharedQueue = new SharedQueue(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+		final ViewerStatistics statistics = new ViewerStatistics(sharedQueue);
 		final List<ConverterSetup> converterSetups = new ArrayList<>();
 		final List<SourceAndConverter<T>> sourcesAndConverters = new ArrayList<>();
+		final int numTimepoints = buildN5Sources(uris, sharedQueue, statistics, converterSetups, sourcesAndConverters, options);
+
+		return show(sourcesAndConverters, numTimepoints, options, wantFrame, parentFrame, statistics);
+	}
+
+	public static <T extends NumericType<T> & NativeType<T>> int buildN5Sources(
+			final String[] uris,
+			final SharedQueue sharedQueue,
+			final List<ConverterSetup> converterSetups,
+			final List<SourceAndConverter<T>> sourcesAndConverters,
+			final BdvOptions options) {
+
+		return buildN5Sources(uris, sharedQueue, null, converterSetups, sourcesAndConverters, options);
+	}
+
+	/**
+	 * Builds sources for the datasets or multiscale groups at the given uris
+	 * without showing them. Metadata are parsed once for each container.
+	 *
+	 * @param <T>
+	 *            the type
+	 * @param uris
+	 *            the dataset or group uris
+	 * @param sharedQueue
+	 *            the shared queue for the volatile sources
+	 * @param statistics
+	 *            records block loads of the sources, can be null
+	 * @param converterSetups
+	 *            list to which converter setups are added
+	 * @param sourcesAndConverters
+	 *            list to which sources are added
+	 * @param options
+	 *            the options
+	 * @return the number of timepoints
+	 */
+	public static <T extends NumericType<T> & NativeType<T>> int buildN5Sources(
+			final String[] uris,
+			final SharedQueue sharedQueue,
+			final ViewerStatistics statistics,
+			final List<ConverterSetup> converterSetups,
+			final List<SourceAndConverter<T>> sourcesAndConverters,
+			final BdvOptions options) {
+
 		int numTimepoints = 1;
 
 		// find unique containers in the uris and make a DataSelection for each
@@ -328,7 +385,7 @@ public class N5Viewer {
 			if( !n5Readers.containsKey(n5uri.getContainerPath()))
 			{
 				// make a reader for this container and track it
-				final N5Reader n5 = n5fun.apply(n5uri.getContainerPath());
+				final N5Reader n5 = ReadTrace.traceIfEnabled(n5fun.apply(n5uri.getContainerPath()));
 				n5Readers.put(n5uri.getContainerPath(), n5);
 
 				// start a list of paths for this container
@@ -358,19 +415,21 @@ public class N5Viewer {
 			final DataSelection selection = new DataSelection(n5, metadataList );
 			try {
 				numTimepoints = Math.max(numTimepoints,
-						buildN5Sources(n5, selection, sharedQueue, converterSetups, sourcesAndConverters, options));
+						buildN5Sources(n5, unwrapMultichannelSelections(selection), sharedQueue, statistics, converterSetups, sourcesAndConverters, options));
 			} catch (final IOException e) {
 				System.err.println("Could not load from: " + n5.getURI().toString());
 			}
 		}
 
-		return show(sourcesAndConverters, numTimepoints, options, wantFrame, parentFrame);
+		return numTimepoints;
 	}
 
 	public static <T extends NumericType<T> & NativeType<T>> BdvHandle show(N5Reader n5, List<N5Metadata> metadata, final boolean wantFrame, final Frame parentFrame) {
 
+		n5 = ReadTrace.traceIfEnabled(n5);
 		final DataSelection selection = new DataSelection(n5, metadata);
 		final SharedQueue sharedQueue = new SharedQueue(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+		final ViewerStatistics statistics = new ViewerStatistics(sharedQueue);
 		final List<ConverterSetup> converterSetups = new ArrayList<>();
 		final List<SourceAndConverter<T>> sourcesAndConverters = new ArrayList<>();
 
@@ -379,8 +438,9 @@ public class N5Viewer {
 		try {
 			numTimepoints = buildN5Sources(
 					n5,
-					selection,
+					unwrapMultichannelSelections(selection),
 					sharedQueue,
+					statistics,
 					converterSetups,
 					sourcesAndConverters,
 					options);
@@ -390,7 +450,7 @@ public class N5Viewer {
 			return null;
 		}
 
-		return show(sourcesAndConverters, numTimepoints, options, wantFrame, parentFrame);
+		return show(sourcesAndConverters, numTimepoints, options, wantFrame, parentFrame, statistics);
 	}
 
 	public static <T extends NumericType<T> & NativeType<T>> BdvHandle show(final List<SourceAndConverter<T>> sourcesAndConverters, final int numTimepoints,
@@ -402,6 +462,33 @@ public class N5Viewer {
 	public static <T extends NumericType<T> & NativeType<T>> BdvHandle show(final List<SourceAndConverter<T>> sourcesAndConverters, final int numTimepoints,
 			final BdvOptions options, final boolean wantFrame, final Frame parentFrame) {
 
+		return show(sourcesAndConverters, numTimepoints, options, wantFrame, parentFrame, null);
+	}
+
+	/**
+	 * Shows sources in a new viewer.
+	 *
+	 * @param <T>
+	 *            the type
+	 * @param sourcesAndConverters
+	 *            the sources
+	 * @param numTimepoints
+	 *            the number of timepoints
+	 * @param options
+	 *            the options
+	 * @param wantFrame
+	 *            if true, use BdvHandleFrame and display a window. If false,
+	 *            use a BdvHandlePanel and do not display anything.
+	 * @param parentFrame
+	 *            parent frame, can be null
+	 * @param statistics
+	 *            block load statistics of the sources, if not null a
+	 *            telemetry overlay can be toggled from the Tools menu
+	 * @return the bdv handle
+	 */
+	public static <T extends NumericType<T> & NativeType<T>> BdvHandle show(final List<SourceAndConverter<T>> sourcesAndConverters, final int numTimepoints,
+			final BdvOptions options, final boolean wantFrame, final Frame parentFrame, final ViewerStatistics statistics) {
+
 		BdvHandle bdvHandle = null;
 		for (final SourceAndConverter<?> sourcesAndConverter : sourcesAndConverters) {
 			if (bdvHandle == null) {
@@ -422,6 +509,9 @@ public class N5Viewer {
 		}
 
 		final BdvHandle bdv = bdvHandle;
+		final AutoContrast autoContrast = bdv == null || bdv.getViewerPanel() == null
+				? null
+				: AutoContrast.startIfEnabled(bdv.getViewerPanel(), bdv.getConverterSetups(), sourcesAndConverters);
 		if (bdv != null) {
 			final ViewerPanel viewerPanel = bdv.getViewerPanel();
 			if (viewerPanel != null) {
@@ -438,6 +528,8 @@ public class N5Viewer {
 
 						if (needsInit) {
 							InitializeViewerState.initTransform(viewerPanel);
+							if (autoContrast != null)
+								autoContrast.refine(false);
 							needsInit = false;
 						}
 					}
@@ -457,29 +549,93 @@ public class N5Viewer {
 			cropItem.setText("Extract to ImageJ");
 			toolsMenu.add(cropItem);
 
-			/* create XTouchMini midi controller */
-			try {
-				final XTouchMiniMCUControlPanel controlPanel = XTouchMiniMCUControlPanel.build();
-				new MCUBDVControls(
-						bdv.getBdvHandle().getViewerPanel(),
-						controlPanel);
-
-				((JFrame)SwingUtilities.getWindowAncestor(bdv.getBdvHandle().getViewerPanel()))
-						.addWindowListener(new WindowAdapter() {
+			final ViewerPanel viewerPanel = bdv.getBdvHandle().getViewerPanel();
+			final boolean collecting = statistics != null && statistics.isCollecting();
+			final TelemetryOverlay telemetry = collecting ? new TelemetryOverlay(viewerPanel, statistics) : null;
+			final StatisticsMBeans mbeans = collecting ? StatisticsMBeans.register(statistics) : null;
+			if (collecting)
+				statistics.monitorRendering(viewerPanel);
+
+			if (autoContrast != null) {
+				final JMenuItem autoContrastItem = new JMenuItem("Auto Contrast");
+				autoContrastItem.addActionListener(e -> autoContrast.refine(true));
+				toolsMenu.add(autoContrastItem);
+			}
 
-							@Override
-							public void windowClosing(final WindowEvent e) {
+			if (telemetry != null) {
+				final JCheckBoxMenuItem telemetryItem = new JCheckBoxMenuItem("Show Cache Telemetry");
+				telemetryItem.addActionListener(e -> telemetry.setVisible(telemetryItem.isSelected()));
+				toolsMenu.add(telemetryItem);
+			}
 
-								controlPanel.close();
-							}
+			final List<String> datasets = statistics == null ? Collections.emptyList() : statistics.getDatasets();
+			final AtomicReference<SessionRecorder> sessionRecorder = new AtomicReference<>(
+					SessionRecorder.startIfEnabled(viewerPanel, datasets));
+			final JCheckBoxMenuItem sessionItem = new JCheckBoxMenuItem("Record Session...", sessionRecorder.get() != null);
+			sessionItem.addActionListener(e -> {
+				if (sessionItem.isSelected())
+					sessionRecorder.set(startSessionRecorder(viewerPanel, datasets));
+				else if (sessionRecorder.get() != null)
+					sessionRecorder.getAndSet(null).close();
+
+				sessionItem.setSelected(sessionRecorder.get() != null);
+			});
+			toolsMenu.add(sessionItem);
+
+			/* discover XTouchMini midi controller in the background, attach controls when (re)connected */
+			final AtomicReference<MCUBDVControls> mcuControls = new AtomicReference<>();
+			final MCUControllerWatcher midiWatcher = new MCUControllerWatcher(
+					controlPanel -> SwingUtilities.invokeLater(() -> {
+						final MCUBDVControls previous = mcuControls.getAndSet(null);
+						if (previous != null)
+							previous.dispose();
+						mcuControls.set(new MCUBDVControls(viewerPanel, controlPanel));
+					}))
+					.start();
+
+			((JFrame)SwingUtilities.getWindowAncestor(viewerPanel))
+					.addWindowListener(new WindowAdapter() {
+
+						@Override
+						public void windowClosing(final WindowEvent e) {
+
+							midiWatcher.close();
+							if (mcuControls.get() != null)
+								mcuControls.getAndSet(null).dispose();
+							if (autoContrast != null)
+								autoContrast.close();
+							if (sessionRecorder.get() != null)
+								sessionRecorder.getAndSet(null).close();
+							if (telemetry != null)
+								telemetry.setVisible(false);
+							if (mbeans != null)
+								mbeans.close();
+						}
 
-						});
-			} catch (final Exception e) {}
+					});
 		}
 
 		return bdv;
 	}
 
+	/*
+	 * Asks for a session file and starts recording, returns null if cancelled.
+	 */
+	private static SessionRecorder startSessionRecorder(final ViewerPanel viewerPanel, final List<String> datasets) {
+
+		final JFileChooser fileChooser = new JFileChooser();
+		fileChooser.setSelectedFile(new File(SessionRecorder.defaultFileName()));
+		if (fileChooser.showSaveDialog(viewerPanel) != JFileChooser.APPROVE_OPTION)
+			return null;
+
+		try {
+			return SessionRecorder.start(viewerPanel, fileChooser.getSelectedFile().toPath(), datasets);
+		} catch (final IOException e) {
+			JOptionPane.showMessageDialog(viewerPanel, "Could not record session: " + e.getMessage(), "Record Session", JOptionPane.ERROR_MESSAGE);
+			return null;
+		}
+	}
+
 	public static <T extends NumericType<T> & NativeType<T>, V extends Volatile<T> & NumericType<V>> int buildN5Sources(
 			final N5Reader n5,
 			final DataSelection dataSelection,
@@ -501,7 +657,20 @@ public class N5Viewer {
 			final List<SourceAndConverter<T>> sourcesAndConverters,
 			final BdvOptions options ) throws IOException {
 
+		return buildN5Sources(n5, selectedMetadata, sharedQueue, null, converterSetups, sourcesAndConverters, options);
+	}
+
+	public static <T extends NumericType<T> & NativeType<T>, V extends Volatile<T> & NumericType<V>, M extends AxisMetadata & N5Metadata> int buildN5Sources(
+			final N5Reader n5,
+			final List<N5Metadata> selectedMetadata,
+			final SharedQueue sharedQueue,
+			final ViewerStatistics statistics,
+			final List<ConverterSetup> converterSetups,
+			final List<SourceAndConverter<T>> sourcesAndConverters,
+			final BdvOptions options ) throws IOException {
+
 		final ArrayList<MetadataSource<?>> additionalSources = new ArrayList<>();
+		final ReaderStatistics readerStatistics = statistics == null ? null : statistics.getReaderStatistics(n5);
 
 		// is2D should be true at the end of this loop if all sources are 2D
 		boolean is2D = true;
@@ -514,7 +683,8 @@ public class N5Viewer {
 
 			final N5Metadata metadata = selectedMetadata.get(i);
 			final String srcName = metadata.getName();
-
+			if (statistics != null)
+				statistics.addDataset(n5.getURI() + "?" + metadata.getPath());
 
 			// TODO: simplify this if/elseif block: much of these ifwall cases can be combined
 			if (metadata instanceof N5SingleScaleMetadata) {
@@ -568,7 +738,11 @@ public class N5Viewer {
 				transforms = new AffineTransform3D[]{ ((SpatialMetadata)metadata).spatialTransform3d() };
 			} else if (metadata instanceof N5DatasetMetadata) {
 				final List<MetadataSource<?>> addTheseSources = MetadataSource
-						.buildMetadataSources(n5, (N5DatasetMetadata)metadata);
+						.buildMetadataSources(
+								n5,
+								(N5DatasetMetadata)metadata,
+								statistics == null ? null : statistics.getSourceStatistics(srcName),
+								readerStatistics);
 				if (addTheseSources != null)
 					additionalSources.addAll(addTheseSources);
 			} else {
@@ -581,53 +755,25 @@ public class N5Viewer {
 
 			@SuppressWarnings("rawtypes")
 			final RandomAccessibleInterval[] images = new RandomAccessibleInterval[datasetsToOpen.length];
+			final BlockLoadStatistics sourceStatistics = statistics == null ? null : statistics.getSourceStatistics(srcName);
+			@SuppressWarnings("unchecked")
+			final Supplier<BlockStatistics>[] blockStatistics = new Supplier[datasetsToOpen.length];
+			@SuppressWarnings("unchecked")
+			final RandomAccessibleInterval<LongType>[] blockIndices = new RandomAccessibleInterval[datasetsToOpen.length];
 			String unit = "pixel";
 			for (int s = 0; s < images.length; ++s) {
 
+				blockStatistics[s] = BlockStatistics.readLaterIfEnabled(n5, datasetsToOpen[s]);
+
 				@SuppressWarnings("unchecked")
-				final RandomAccessibleInterval<T> img = (RandomAccessibleInterval<T>)loadImage(n5, datasetsToOpen[s]);
+				final RandomAccessibleInterval<T> img = (RandomAccessibleInterval<T>)loadImage(n5, datasetsToOpen[s], sourceStatistics, readerStatistics, blockStatistics[s]);
 
-				final RandomAccessibleInterval< ? > imagejImg;
-				if (metadata instanceof AxisMetadata)
-				{
-					imagejImg = AxisUtils.permuteForImagePlus(img, (M)metadata);
-					unit = unitFromAxes(((AxisMetadata)metadata).getAxes());
-				}
-				else if( metadata instanceof N5SingleScaleMetadata )
-				{
-					final DefaultAxisMetadata axes = AxisUtils.defaultN5ViewerAxes( (N5SingleScaleMetadata)metadata );
-					imagejImg = AxisUtils.permuteForImagePlus( img, axes );
-					unit = ((N5SingleScaleMetadata)metadata).unit();
-				}
-				else if( isN5ViewerMultiscale(metadata))
-				{
-					final DefaultAxisMetadata axes = AxisUtils.defaultN5ViewerAxes( (N5SingleScaleMetadata)(((N5MultiScaleMetadata)metadata).getChildrenMetadata()[0]) );
-					imagejImg = AxisUtils.permuteForImagePlus( img, axes );
-					unit = unitFromAxes(axes.getAxes());
-				}
-				else if( isCosemMultiscale(metadata))
-				{
-					final N5CosemMultiScaleMetadata cosemMulti = ((N5CosemMultiScaleMetadata)metadata);
-					final N5CosemMetadata cosemMeta = cosemMulti.getChildrenMetadata()[0];
-					imagejImg = permuteForImagePlus(img, transforms[s], cosemMeta);
-					unit = cosemMeta.unit();
-				}
-				else
-				{
-					final NgffSingleScaleAxesMetadata ngffMeta = isNgffMultiscale(metadata);
-					if( ngffMeta != null ) {
-						imagejImg = permuteForImagePlus(img, transforms[s], ngffMeta);
-						unit = ngffMeta.unit();
-					}
-					else
-					{
-						RandomAccessibleInterval< ? > imgTmp = img;
-						while( imgTmp.numDimensions() < 5 )
-							imgTmp = Views.addDimension(imgTmp, 0, 0 );
-						imagejImg = imgTmp;
-					}
-				}
-				images[s] = imagejImg;
+				final RandomAccessibleInterval< ? > imagejImg = permuteToXYCZT(img, metadata, transforms[s]);
+				unit = unit(metadata, unit);
+				blockIndices[s] = ViewChains.flatten(permuteToXYCZT(
+						BlockStatistics.blockIndices(n5.getDatasetAttributes(datasetsToOpen[s])), metadata, new AffineTransform3D()));
+
+				images[s] = ViewChains.flatten(imagejImg);
 
 				is2D &= imagejImg.dimension(3) == 1;
 				numTimepoints = (int)Math.max(numTimepoints, imagejImg.dimension(4));
@@ -662,6 +808,8 @@ public class N5Viewer {
 					type,
 					srcName,
 					images,
+					blockStatistics,
+					blockIndices,
 					transforms,
 					sharedQueue,
 					new FinalVoxelDimensions(unit, rx, ry, rz));
@@ -684,6 +832,53 @@ public class N5Viewer {
 		return numTimepoints;
 	}
 
+	/*
+	 * Permutes an image of a dataset of the metadata to XYCZT and the
+	 * transform in-place like permuteForImagePlus.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T, M extends AxisMetadata & N5Metadata> RandomAccessibleInterval<T> permuteToXYCZT(
+			final RandomAccessibleInterval<T> img,
+			final N5Metadata metadata,
+			final AffineTransform3D transform) {
+
+		if (metadata instanceof AxisMetadata)
+			return AxisUtils.permuteForImagePlus(img, (M)metadata);
+		else if( metadata instanceof N5SingleScaleMetadata )
+			return AxisUtils.permuteForImagePlus( img, AxisUtils.defaultN5ViewerAxes( (N5SingleScaleMetadata)metadata ) );
+		else if( isN5ViewerMultiscale(metadata))
+			return AxisUtils.permuteForImagePlus( img, AxisUtils.defaultN5ViewerAxes( (N5SingleScaleMetadata)(((N5MultiScaleMetadata)metadata).getChildrenMetadata()[0]) ) );
+		else if( isCosemMultiscale(metadata))
+			return permuteForImagePlus(img, transform, ((N5CosemMultiScaleMetadata)metadata).getChildrenMetadata()[0]);
+
+		final NgffSingleScaleAxesMetadata ngffMeta = isNgffMultiscale(metadata);
+		if( ngffMeta != null )
+			return permuteForImagePlus(img, transform, ngffMeta);
+
+		RandomAccessibleInterval<T> imgTmp = img;
+		while( imgTmp.numDimensions() < 5 )
+			imgTmp = Views.addDimension(imgTmp, 0, 0 );
+		return imgTmp;
+	}
+
+	/*
+	 * The spatial unit of the metadata, or the given unit if it has none.
+	 */
+	private static String unit(final N5Metadata metadata, final String unit) {
+
+		if (metadata instanceof AxisMetadata)
+			return unitFromAxes(((AxisMetadata)metadata).getAxes());
+		else if( metadata instanceof N5SingleScaleMetadata )
+			return ((N5SingleScaleMetadata)metadata).unit();
+		else if( isN5ViewerMultiscale(metadata))
+			return unitFromAxes(AxisUtils.defaultN5ViewerAxes( (N5SingleScaleMetadata)(((N5MultiScaleMetadata)metadata).getChildrenMetadata()[0]) ).getAxes());
+		else if( isCosemMultiscale(metadata))
+			return ((N5CosemMultiScaleMetadata)metadata).getChildrenMetadata()[0].unit();
+
+		final NgffSingleScaleAxesMetadata ngffMeta = isNgffMultiscale(metadata);
+		return ngffMeta != null ? ngffMeta.unit() : unit;
+	}
+
 	/**
 	 * Returns an image with dimensions in a canonical order XYCZY. Also
 	 * permutes the given pixel to physical transform in-place.
@@ -728,7 +923,30 @@ public class N5Viewer {
 	protected static <T extends NumericType<T> & NativeType<T>> RandomAccessibleInterval<?> loadImage(
 			final N5Reader n5, final String dataset) {
 
-		final CachedCellImg<?, ?> img = N5Utils.openVolatile(n5, dataset);
+		return loadImage(n5, dataset, null, null);
+	}
+
+	/*
+	 * As above, records block loads if statistics are not null.
+	 */
+	protected static <T extends NumericType<T> & NativeType<T>> RandomAccessibleInterval<?> loadImage(
+			final N5Reader n5, final String dataset, final BlockLoadStatistics statistics, final ReaderStatistics readerStatistics) {
+
+		return loadImage(n5, dataset, statistics, readerStatistics, null);
+	}
+
+	/*
+	 * As above, fills uniform blocks from the block statistics once they are
+	 * available.
+	 */
+	protected static <T extends NumericType<T> & NativeType<T>> RandomAccessibleInterval<?> loadImage(
+			final N5Reader n5,
+			final String dataset,
+			final BlockLoadStatistics statistics,
+			final ReaderStatistics readerStatistics,
+			final Supplier<BlockStatistics> blockStatistics) {
+
+		final CachedCellImg<?, ?> img = InstrumentedN5Utils.openVolatile(n5, dataset, statistics, readerStatistics, blockStatistics);
 		final Object t = img.getType();
 		if( t instanceof LabelMultisetType ) {
 
@@ -875,6 +1093,8 @@ public class N5Viewer {
 			final T type,
 			final String srcName,
 			final RandomAccessibleInterval<T>[] images,
+			final Supplier<BlockStatistics>[] blockStatistics,
+			final RandomAccessibleInterval<LongType>[] blockIndices,
 			final AffineTransform3D[] transforms,
 			final SharedQueue sharedQueue,
 			final VoxelDimensions vd) {
@@ -885,11 +1105,15 @@ public class N5Viewer {
 		for ( int c = 0; c < nChannels; ++c ) {
 
 			final RandomAccessibleInterval<T>[] channels = new RandomAccessibleInterval[images.length];
-			for (int level = 0; level < images.length; ++level)
-				channels[level] = Views.hyperSlice(images[level], 2, c);
+			final RandomAccessibleInterval<LongType>[] channelBlockIndices = new RandomAccessibleInterval[images.length];
+			for (int level = 0; level < images.length; ++level) {
+				channels[level] = ViewChains.hyperSlice(images[level], 2, c);
+				channelBlockIndices[level] = ViewChains.hyperSlice(blockIndices[level], 2, c);
+			}
 
-			final RandomAccessibleIntervalMipmapSource4D<T> source = new RandomAccessibleIntervalMipmapSource4D<>(
+			final SlicedMipmapSource4D<T> source = new SlicedMipmapSource4D<>(
 					channels, type, transforms, vd, srcName, true);
+			source.setBlockStatistics(new SourceBlockStatistics(blockStatistics, channelBlockIndices));
 
 			// TODO fix generics
 			final ValuePair<Source<T>, Source<V>> pair = new ValuePair(
@@ -1064,14 +1288,32 @@ public class N5Viewer {
 
 		final SourceAndConverter<V> vsoc = (volatileSource == null)
 				? null
-				: new SourceAndConverter<>(volatileSource, createConverterToARGB(volatileSource.getType()));
+				: new SourceAndConverter<>(volatileSource, converterToARGB(volatileSource.getType()));
 		final SourceAndConverter<T> soc = new SourceAndConverter<>(
 				source,
-				createConverterToARGB(source.getType()),
+				converterToARGB(source.getType()),
 				vsoc);
 		final SourceAndConverter<T> tsoc = wrapWithTransformedSource(soc);
 
 		converterSetups.add(BigDataViewer.createConverterSetup(tsoc, setupId));
 		sources.add(tsoc);
 	}
+
+	/*
+	 * Lookup table converters for 8- and 16-bit unsigned types, with the same
+	 * initial display range as BigDataViewer's converters.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static <T extends NumericType<T>> Converter<T, ARGBType> converterToARGB(final T type) {
+
+		if (type instanceof RealType) {
+			final RealType<?> realType = (RealType<?>)type;
+			final double min = Math.max(0, Math.min(realType.getMinValue(), 65535));
+			final double max = Math.max(0, Math.min(realType.getMaxValue(), 65535));
+			final LookupTableARGBConverter<?> converter = LookupTableARGBConverter.create(type, min, max);
+			if (converter != null)
+				return (Converter)converter;
+		}
+		return createConverterToARGB(type);
+	}
 }
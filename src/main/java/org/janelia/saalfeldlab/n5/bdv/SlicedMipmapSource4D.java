@@ -0,0 +1,143 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import bdv.cache.SharedQueue;
+import bdv.util.AbstractSource;
+import bdv.util.RandomAccessibleIntervalMipmapSource4D;
+import bdv.util.volatiles.VolatileTypeMatcher;
+import bdv.util.volatiles.VolatileViews;
+import mpicbg.spim.data.sequence.VoxelDimensions;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.Volatile;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.NumericType;
+
+/**
+ * A multi-resolution source of 4D images (x, y, z, t) like
+ * {@link RandomAccessibleIntervalMipmapSource4D}, that slices timepoints with
+ * {@link ViewChains#hyperSlice}. Its volatile version wraps the slices rather
+ * than the 4D images, so that the volatile slices of cached cell images read
+ * the cells directly.
+ *
+ * @param <T>
+ *            the type
+ */
+public class SlicedMipmapSource4D<T extends NumericType<T>> extends AbstractSource<T> {
+
+	private final RandomAccessibleInterval<?>[] mipmapSources;
+
+	private final AffineTransform3D[] mipmapTransforms;
+
+	private final VoxelDimensions voxelDimensions;
+
+	private final Function<RandomAccessibleInterval<?>, RandomAccessibleInterval<T>> wrap;
+
+	private final ConcurrentHashMap<Long, RandomAccessibleInterval<T>> slices = new ConcurrentHashMap<>();
+
+	private SourceBlockStatistics blockStatistics = null;
+
+	@SuppressWarnings("unchecked")
+	public SlicedMipmapSource4D(
+			final RandomAccessibleInterval<T>[] imgs,
+			final T type,
+			final AffineTransform3D[] mipmapTransforms,
+			final VoxelDimensions voxelDimensions,
+			final String name,
+			final boolean doBoundingBoxCulling) {
+
+		this(imgs, type, mipmapTransforms, voxelDimensions, name, doBoundingBoxCulling, img -> (RandomAccessibleInterval<T>)img);
+	}
+
+	private SlicedMipmapSource4D(
+			final RandomAccessibleInterval<?>[] imgs,
+			final T type,
+			final AffineTransform3D[] mipmapTransforms,
+			final VoxelDimensions voxelDimensions,
+			final String name,
+			final boolean doBoundingBoxCulling,
+			final Function<RandomAccessibleInterval<?>, RandomAccessibleInterval<T>> wrap) {
+
+		super(type, name, doBoundingBoxCulling);
+		assert imgs.length == mipmapTransforms.length: "Number of mipmaps and scale factors do not match.";
+
+		this.mipmapSources = imgs;
+		this.mipmapTransforms = mipmapTransforms;
+		this.voxelDimensions = voxelDimensions;
+		this.wrap = wrap;
+	}
+
+	@Override
+	public boolean isPresent(final int t) {
+
+		return t >= 0 && t < mipmapSources[0].dimension(3);
+	}
+
+	@Override
+	public RandomAccessibleInterval<T> getSource(final int t, final int level) {
+
+		return slices.computeIfAbsent(
+				(long)t * mipmapSources.length + level,
+				key -> wrap.apply(ViewChains.hyperSlice(mipmapSources[level], 3, t)));
+	}
+
+	@Override
+	public void getSourceTransform(final int t, final int level, final AffineTransform3D transform) {
+
+		transform.set(mipmapTransforms[level]);
+	}
+
+	@Override
+	public VoxelDimensions getVoxelDimensions() {
+
+		return voxelDimensions;
+	}
+
+	@Override
+	public int getNumMipmapLevels() {
+
+		return mipmapSources.length;
+	}
+
+	/**
+	 * @return the block statistics of the scale levels, or null
+	 */
+	public SourceBlockStatistics getBlockStatistics() {
+
+		return blockStatistics;
+	}
+
+	/**
+	 * @param blockStatistics
+	 *            the block statistics of the scale levels, can be null
+	 */
+	public void setBlockStatistics(final SourceBlockStatistics blockStatistics) {
+
+		this.blockStatistics = blockStatistics;
+	}
+
+	/**
+	 * @param <V>
+	 *            the volatile type
+	 * @param sharedQueue
+	 *            the fetcher queue
+	 * @return a volatile version of this source
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public <V extends Volatile<T> & NumericType<V>> SlicedMipmapSource4D<V> asVolatile(final SharedQueue sharedQueue) {
+
+		final V vType = (V)VolatileTypeMatcher.getVolatileTypeForType((NativeType)getType());
+		final SlicedMipmapSource4D<V> source = new SlicedMipmapSource4D<>(
+				mipmapSources,
+				vType,
+				mipmapTransforms,
+				voxelDimensions,
+				getName(),
+				doBoundingBoxCulling(),
+				img -> (RandomAccessibleInterval<V>)VolatileViews.wrapAsVolatile((RandomAccessibleInterval)img, sharedQueue));
+		source.setBlockStatistics(blockStatistics);
+		return source;
+	}
+}
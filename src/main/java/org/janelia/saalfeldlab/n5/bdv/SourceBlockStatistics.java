@@ -0,0 +1,157 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import org.janelia.saalfeldlab.n5.bdv.cache.BlockStatistics;
+
+import bdv.tools.transformation.TransformedSource;
+import bdv.viewer.Source;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * The {@link BlockStatistics} of the scale levels of a
+ * {@link SlicedMipmapSource4D}, with the views of their
+ * {@link BlockStatistics#blockIndices() block indices} that match the views
+ * of the datasets in the source, so that the blocks of a region of the source
+ * can be summarized without reading voxels. Channels that share blocks share
+ * their statistics. Levels have no statistics until they are read.
+ */
+public class SourceBlockStatistics {
+
+	private final Supplier<BlockStatistics>[] statistics;
+
+	private final RandomAccessibleInterval<LongType>[] blockIndices;
+
+	/**
+	 * @param statistics
+	 *            supply the statistics per scale level, or null while they
+	 *            are not available
+	 * @param blockIndices
+	 *            the 4D (x, y, z, t) block indices per scale level, null for
+	 *            levels whose blocks are not known
+	 */
+	public SourceBlockStatistics(final Supplier<BlockStatistics>[] statistics, final RandomAccessibleInterval<LongType>[] blockIndices) {
+
+		this.statistics = statistics;
+		this.blockIndices = blockIndices;
+	}
+
+	/**
+	 * @param source
+	 *            a source, possibly wrapped in a {@link TransformedSource}
+	 * @return the block statistics of the source, or null if it has none
+	 */
+	public static SourceBlockStatistics of(final Source<?> source) {
+
+		final Source<?> wrapped = source instanceof TransformedSource ? ((TransformedSource<?>)source).getWrappedSource() : source;
+		return wrapped instanceof SlicedMipmapSource4D ? ((SlicedMipmapSource4D<?>)wrapped).getBlockStatistics() : null;
+	}
+
+	/**
+	 * @param level
+	 *            the scale level
+	 * @return whether the statistics of the level are available
+	 */
+	public boolean hasLevel(final int level) {
+
+		return hasBlocks(level) && statistics[level].get() != null;
+	}
+
+	/**
+	 * @param level
+	 *            the scale level
+	 * @return whether the blocks of the level are known, with or without
+	 *         statistics
+	 */
+	public boolean hasBlocks(final int level) {
+
+		return level >= 0 && level < blockIndices.length && blockIndices[level] != null;
+	}
+
+	/**
+	 * @param level
+	 *            the scale level, must have known blocks
+	 * @param t
+	 *            the timepoint
+	 * @param interval
+	 *            the interval of the scale level
+	 * @return the flat indices of the blocks that intersect the interval
+	 */
+	public long[] blocks(final int level, final int t, final Interval interval) {
+
+		final RandomAccessibleInterval<LongType> indices = Views.hyperSlice(blockIndices[level], 3, t);
+		final Interval region = Intervals.intersect(indices, interval);
+		if (Intervals.isEmpty(region))
+			return new long[0];
+
+		/* the block size in this view is the run length of the first block */
+		final int n = indices.numDimensions();
+		final long[] step = new long[n];
+		final RandomAccess<LongType> access = indices.randomAccess();
+		for (int d = 0; d < n; ++d) {
+			access.setPosition(Intervals.minAsLongArray(indices));
+			final long first = access.get().get();
+			step[d] = 1;
+			for (access.fwd(d); step[d] < indices.dimension(d) && access.get().get() == first; access.fwd(d))
+				++step[d];
+		}
+
+		final long[] min = new long[n];
+		final long[] position = new long[n];
+		long numBlocks = 1;
+		for (int d = 0; d < n; ++d) {
+			min[d] = indices.min(d) + (region.min(d) - indices.min(d)) / step[d] * step[d];
+			position[d] = min[d];
+			numBlocks *= (region.max(d) - min[d]) / step[d] + 1;
+		}
+
+		final long[] blocks = new long[(int)numBlocks];
+		for (int i = 0; i < blocks.length; ++i) {
+			access.setPosition(position);
+			blocks[i] = access.get().get();
+			for (int d = 0; d < n; ++d) {
+				position[d] += step[d];
+				if (position[d] <= region.max(d))
+					break;
+				position[d] = min[d];
+			}
+		}
+
+		Arrays.sort(blocks);
+		int size = 0;
+		for (int i = 0; i < blocks.length; ++i)
+			if (i == 0 || blocks[i] != blocks[i - 1])
+				blocks[size++] = blocks[i];
+
+		return Arrays.copyOf(blocks, size);
+	}
+
+	/**
+	 * Approximates two percentiles of an interval of a scale level from the
+	 * statistics of the blocks that intersect it.
+	 *
+	 * @param level
+	 *            the scale level, must have statistics
+	 * @param t
+	 *            the timepoint
+	 * @param interval
+	 *            the interval of the scale level
+	 * @param low
+	 *            the low percentile in [0, 1]
+	 * @param high
+	 *            the high percentile in [0, 1]
+	 * @return the low and high percentile, or null if there is no value or
+	 *         all values are equal
+	 * @see BlockStatistics#percentiles(long[], double, double)
+	 */
+	public double[] percentiles(final int level, final int t, final Interval interval, final double low, final double high) {
+
+		return statistics[level].get().percentiles(blocks(level, t, interval), low, high);
+	}
+}
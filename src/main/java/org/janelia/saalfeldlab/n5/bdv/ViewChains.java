@@ -0,0 +1,235 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import java.util.Arrays;
+
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.cache.Cache;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.cache.ref.SoftRefLoaderCache;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.transform.integer.MixedTransform;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.view.IntervalView;
+import net.imglib2.view.MixedTransformView;
+import net.imglib2.view.Views;
+
+/**
+ * Collapses chains of {@link IntervalView}s and {@link MixedTransformView}s,
+ * as built by {@link Views#addDimension}, axis permutations and
+ * {@link Views#hyperSlice}, into a single view.
+ * <p>
+ * If the view is on a {@link CachedCellImg} and only slices it along
+ * dimensions in which the cells are one pixel thick, adds singleton
+ * dimensions, and keeps the order of the other dimensions, then the cells of
+ * the view are the same arrays as the cells of the image. In that case the
+ * view is a {@link CachedCellImg} that shares the cells of the image, so that
+ * random accesses and the volatile version of the view read the cell arrays
+ * directly instead of through a transforming random access. This is the case
+ * for the channels and timepoints of OME-NGFF (t)czyx datasets with one
+ * channel and one timepoint per chunk, and for images with added dimensions.
+ */
+public class ViewChains {
+
+	private ViewChains() {}
+
+	/**
+	 * As {@link Views#hyperSlice(RandomAccessibleInterval, int, long)}, but
+	 * returns a flattened view.
+	 *
+	 * @param <T>
+	 *            the type
+	 * @param img
+	 *            the image
+	 * @param d
+	 *            the dimension to slice
+	 * @param pos
+	 *            the position of the slice
+	 * @return the slice
+	 */
+	public static <T> RandomAccessibleInterval<T> hyperSlice(final RandomAccessibleInterval<T> img, final int d, final long pos) {
+
+		return flatten(Views.hyperSlice(img, d, pos));
+	}
+
+	/**
+	 * Collapses a chain of views into a single {@link MixedTransformView} on
+	 * the image at the bottom of the chain, or into the image itself if the
+	 * chain is the identity, or into a {@link CachedCellImg} that shares the
+	 * cells of a cached cell image as described above.
+	 *
+	 * @param <T>
+	 *            the type
+	 * @param view
+	 *            the view
+	 * @return an equivalent view
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public static <T> RandomAccessibleInterval<T> flatten(final RandomAccessibleInterval<T> view) {
+
+		if (!(view instanceof IntervalView || view instanceof MixedTransformView))
+			return view;
+
+		final int n = view.numDimensions();
+		MixedTransform transform = new MixedTransform(n, n);
+		RandomAccessible<T> source = view;
+		while (true) {
+			if (source instanceof IntervalView)
+				source = ((IntervalView<T>)source).getSource();
+			else if (source instanceof MixedTransformView) {
+				final MixedTransformView<T> mixed = (MixedTransformView<T>)source;
+				transform = mixed.getTransformToSource().concatenate(transform);
+				source = mixed.getSource();
+			} else if (source instanceof SlicedCellImg) {
+				final SlicedCellImg<?, ?> sliced = (SlicedCellImg<?, ?>)source;
+				transform = sliced.transformToSource.concatenate(transform);
+				source = (RandomAccessible<T>)sliced.source;
+			} else
+				break;
+		}
+
+		if (isIdentity(transform) && source instanceof RandomAccessibleInterval && equals(view, (Interval)source))
+			return (RandomAccessibleInterval<T>)source;
+
+		if (source instanceof CachedCellImg) {
+			final RandomAccessibleInterval<T> cells = sliceCells((CachedCellImg)source, transform, view);
+			if (cells != null)
+				return cells;
+		}
+
+		return Views.interval(new MixedTransformView<>(source, transform), view);
+	}
+
+	private static boolean isIdentity(final MixedTransform transform) {
+
+		final int n = transform.numTargetDimensions();
+		if (transform.numSourceDimensions() != n)
+			return false;
+
+		for (int d = 0; d < n; ++d)
+			if (transform.getComponentZero(d) || transform.getComponentMapping(d) != d || transform.getComponentInversion(d) || transform.getTranslation(d) != 0)
+				return false;
+
+		return true;
+	}
+
+	private static boolean equals(final Interval a, final Interval b) {
+
+		if (a.numDimensions() != b.numDimensions())
+			return false;
+
+		for (int d = 0; d < a.numDimensions(); ++d)
+			if (a.min(d) != b.min(d) || a.max(d) != b.max(d))
+				return false;
+
+		return true;
+	}
+
+	/*
+	 * Returns null if the cells of the view are not the cells of the image.
+	 */
+	private static <T extends NativeType<T>, A> RandomAccessibleInterval<T> sliceCells(
+			final CachedCellImg<T, A> img,
+			final MixedTransform transform,
+			final Interval interval) {
+
+		final int m = transform.numSourceDimensions();
+		final int n = transform.numTargetDimensions();
+
+		final CellGrid grid = img.getCellGrid();
+		final int[] cellDimensions = new int[n];
+		grid.cellDimensions(cellDimensions);
+		final long[] gridDimensions = grid.getGridDimensions();
+
+		/* view dimension d is image dimension imageDimension[d], or a singleton if -1 */
+		final int[] imageDimension = new int[m];
+		Arrays.fill(imageDimension, -1);
+		final long[] fixedCell = new long[n];
+		int previous = -1;
+		for (int k = 0; k < n; ++k) {
+			if (transform.getComponentInversion(k))
+				return null;
+
+			if (transform.getComponentZero(k)) {
+				if (cellDimensions[k] != 1 && img.dimension(k) != 1)
+					return null;
+
+				fixedCell[k] = transform.getTranslation(k) / cellDimensions[k];
+			} else {
+				final int d = transform.getComponentMapping(k);
+				if (d <= previous || transform.getTranslation(k) != 0 || interval.min(d) != img.min(k) || interval.max(d) != img.max(k))
+					return null;
+
+				imageDimension[d] = k;
+				previous = d;
+			}
+		}
+
+		final long[] dimensions = new long[m];
+		final int[] viewCellDimensions = new int[m];
+		for (int d = 0; d < m; ++d) {
+			if (imageDimension[d] < 0) {
+				if (interval.min(d) != 0 || interval.max(d) != 0)
+					return null;
+
+				dimensions[d] = 1;
+				viewCellDimensions[d] = 1;
+			} else {
+				dimensions[d] = img.dimension(imageDimension[d]);
+				viewCellDimensions[d] = cellDimensions[imageDimension[d]];
+			}
+		}
+
+		final CellGrid viewGrid = new CellGrid(dimensions, viewCellDimensions);
+		final long[] viewGridDimensions = viewGrid.getGridDimensions();
+		final Cache<Long, Cell<A>> cells = img.getCache();
+		final Cache<Long, Cell<A>> viewCells = new SoftRefLoaderCache<Long, Cell<A>>().withLoader(index -> {
+
+			final long[] viewPosition = new long[m];
+			IntervalIndexer.indexToPosition(index, viewGridDimensions, viewPosition);
+			final long[] position = fixedCell.clone();
+			for (int d = 0; d < m; ++d)
+				if (imageDimension[d] >= 0)
+					position[imageDimension[d]] = viewPosition[d];
+
+			final Cell<A> cell = cells.get(IntervalIndexer.positionToIndex(position, gridDimensions));
+			final int[] viewCellSize = new int[m];
+			final long[] viewCellMin = new long[m];
+			for (int d = 0; d < m; ++d) {
+				if (imageDimension[d] >= 0) {
+					viewCellSize[d] = (int)cell.dimension(imageDimension[d]);
+					viewCellMin[d] = cell.min(imageDimension[d]);
+				} else
+					viewCellSize[d] = 1;
+			}
+			return new Cell<>(viewCellSize, viewCellMin, cell.getData());
+		});
+
+		return new SlicedCellImg<>(viewGrid, img, viewCells, transform);
+	}
+
+	/*
+	 * Remembers the image and transform it was sliced from, so that slicing
+	 * it again reads the cells of the image directly.
+	 */
+	private static class SlicedCellImg<T extends NativeType<T>, A> extends CachedCellImg<T, A> {
+
+		private final CachedCellImg<T, A> source;
+
+		private final MixedTransform transformToSource;
+
+		private SlicedCellImg(
+				final CellGrid grid,
+				final CachedCellImg<T, A> source,
+				final Cache<Long, Cell<A>> cache,
+				final MixedTransform transformToSource) {
+
+			super(grid, source.getType(), cache, source.getAccessType());
+			this.source = source;
+			this.transformToSource = transformToSource;
+		}
+	}
+}
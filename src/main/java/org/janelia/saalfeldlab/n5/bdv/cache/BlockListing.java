@@ -0,0 +1,172 @@
+package org.janelia.saalfeldlab.n5.bdv.cache;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.janelia.saalfeldlab.n5.GsonKeyValueN5Reader;
+import org.janelia.saalfeldlab.n5.KeyValueAccess;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.N5URI;
+
+/**
+ * Tells which blocks of a dataset are missing from listings of the
+ * directories (or key prefixes) that contain the blocks, or the shards of
+ * sharded datasets. A directory is listed once, when the first block in it is
+ * requested, so the absence of all other blocks in it is known without
+ * further requests. Listings expire after the time to live of the
+ * {@link NegativeBlockCache} and are listed again when needed, so that blocks
+ * that are written later are eventually found.
+ * <p>
+ * Listing is only possible for key value readers. It is disabled by default
+ * because the blocks of some layouts, e.g. Zarr with {@code "."} dimension
+ * separator, are all in one directory. Set the system property
+ * {@value #LIST_BLOCKS_PROPERTY} to {@code true} to enable it.
+ */
+public class BlockListing {
+
+	public static final String LIST_BLOCKS_PROPERTY = "n5.viewer.listBlocks";
+
+	/* directories that could not be listed */
+	private static final Set<String> UNKNOWN = Collections.unmodifiableSet(new HashSet<>());
+
+	private final GsonKeyValueN5Reader n5;
+
+	private final KeyValueAccess keyValueAccess;
+
+	private final String dataset;
+
+	private final long ttlNanos;
+
+	private final Map<String, Listing> directories = new ConcurrentHashMap<>();
+
+	/* completed by the thread that lists the directory, outside of the map */
+	private static class Listing {
+
+		final CompletableFuture<Set<String>> children = new CompletableFuture<>();
+
+		final long time = System.nanoTime();
+	}
+
+	private BlockListing(final GsonKeyValueN5Reader n5, final String dataset, final long ttlMillis) {
+
+		this.n5 = n5;
+		this.keyValueAccess = n5.getKeyValueAccess();
+		this.dataset = N5URI.normalizeGroupPath(dataset);
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+	}
+
+	/**
+	 * Creates a listing unless the system property
+	 * {@value #LIST_BLOCKS_PROPERTY} is not {@code true}.
+	 *
+	 * @param n5
+	 *            the reader
+	 * @param dataset
+	 *            the dataset path
+	 * @return the listing, or null if disabled or not supported by the reader
+	 */
+	public static BlockListing createIfEnabled(final N5Reader n5, final String dataset) {
+
+		return Boolean.getBoolean(LIST_BLOCKS_PROPERTY) ? create(n5, dataset) : null;
+	}
+
+	/**
+	 * @param n5
+	 *            the reader
+	 * @param dataset
+	 *            the dataset path
+	 * @return the listing with the time to live of
+	 *         {@link NegativeBlockCache#ttlMillis()}, or null if not supported
+	 *         by the reader
+	 */
+	public static BlockListing create(final N5Reader n5, final String dataset) {
+
+		return create(n5, dataset, NegativeBlockCache.ttlMillis());
+	}
+
+	/**
+	 * @param n5
+	 *            the reader
+	 * @param dataset
+	 *            the dataset path
+	 * @param ttlMillis
+	 *            the time to live of listings in milliseconds, listings never
+	 *            expire if not positive
+	 * @return the listing, or null if not supported by the reader
+	 */
+	public static BlockListing create(final N5Reader n5, final String dataset, final long ttlMillis) {
+
+		return n5 instanceof GsonKeyValueN5Reader ? new BlockListing((GsonKeyValueN5Reader)n5, dataset, ttlMillis) : null;
+	}
+
+	/**
+	 * @param gridPosition
+	 *            the grid position of the block
+	 * @return true if the block is known to be missing, false if it exists or
+	 *         its directory could not be listed
+	 */
+	public boolean isMissing(final long... gridPosition) {
+
+		final String path = n5.absoluteDataBlockPath(dataset, gridPosition);
+		final String[] components = keyValueAccess.components(path);
+		final Set<String> children = listing(keyValueAccess.parent(path)).children.join();
+		return children != UNKNOWN && !children.contains(components[components.length - 1]);
+	}
+
+	/*
+	 * Returns the current listing of a directory. If there is none or it
+	 * expired, the thread that replaces it lists the directory, and other
+	 * threads wait for that listing.
+	 */
+	private Listing listing(final String directory) {
+
+		while (true) {
+			final Listing listing = directories.get(directory);
+			if (listing != null && !isExpired(listing))
+				return listing;
+
+			final Listing fresh = new Listing();
+			final boolean replaced = listing == null
+					? directories.putIfAbsent(directory, fresh) == null
+					: directories.replace(directory, listing, fresh);
+			if (replaced) {
+				fresh.children.complete(list(directory));
+				return fresh;
+			}
+		}
+	}
+
+	private boolean isExpired(final Listing listing) {
+
+		return ttlNanos > 0 && System.nanoTime() - listing.time > ttlNanos;
+	}
+
+	private Set<String> list(final String directory) {
+
+		try {
+			return new HashSet<>(Arrays.asList(keyValueAccess.list(directory)));
+		} catch (final Exception e) {
+			/* file systems can not list directories that do not exist */
+			if (!exists(directory))
+				return Collections.emptySet();
+
+			System.err.println("Could not list " + directory + ": " + e.getMessage());
+			return UNKNOWN;
+		}
+	}
+
+	private boolean exists(final String directory) {
+
+		try {
+			return keyValueAccess.exists(directory);
+		} catch (final Exception e) {
+			return true;
+		}
+	}
+}
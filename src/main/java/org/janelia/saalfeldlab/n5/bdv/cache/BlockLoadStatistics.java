@@ -0,0 +1,210 @@
+package org.janelia.saalfeldlab.n5.bdv.cache;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts block requests, loads, and loaded bytes of one source and records
+ * the latency of block loads.
+ * <p>
+ * A load is a cache miss that reads and decodes a block from the
+ * {@link org.janelia.saalfeldlab.n5.N5Reader}. Hits are requests to the
+ * soft reference cache of the source that were answered without loading.
+ * Requests that are answered by the weak reference cache of the volatile view
+ * in front of it are not counted. All counters are {@link LongAdder}s, so
+ * recording is cheap and does not contend between fetcher threads.
+ * <p>
+ * Loaded cells are tracked with weak references. A cell that was garbage
+ * collected after the cache released it counts as an eviction, so the number
+ * and size of cached blocks are the loaded cells that are still reachable.
+ */
+public class BlockLoadStatistics implements BlockLoadStatisticsMBean {
+
+	private final String name;
+
+	private final LongAdder requests = new LongAdder();
+
+	private final LongAdder presentHits = new LongAdder();
+
+	private final LongAdder loads = new LongAdder();
+
+	private final LongAdder bytes = new LongAdder();
+
+	private final LatencyHistogram loadLatency = new LatencyHistogram();
+
+	private final LatencyHistogram fetchLatency = new LatencyHistogram();
+
+	private final LongAdder evictions = new LongAdder();
+
+	private final LongAdder cachedBytes = new LongAdder();
+
+	private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+
+	private final Set<CellReference> cells = ConcurrentHashMap.newKeySet();
+
+	private static class CellReference extends WeakReference<Object> {
+
+		final long bytes;
+
+		CellReference(final Object cell, final long bytes, final ReferenceQueue<Object> queue) {
+
+			super(cell, queue);
+			this.bytes = bytes;
+		}
+	}
+
+	public BlockLoadStatistics(final String name) {
+
+		this.name = name;
+	}
+
+	@Override
+	public String getName() {
+
+		return name;
+	}
+
+	void recordRequest() {
+
+		requests.increment();
+	}
+
+	void recordHit() {
+
+		presentHits.increment();
+	}
+
+	void recordFetch(final long nanos) {
+
+		fetchLatency.record(nanos);
+	}
+
+	void recordLoad(final long nanos, final long numBytes, final Object cell) {
+
+		loads.increment();
+		bytes.add(numBytes);
+		loadLatency.record(nanos);
+
+		expungeCollected();
+		cells.add(new CellReference(cell, numBytes, collected));
+		cachedBytes.add(numBytes);
+	}
+
+	private void expungeCollected() {
+
+		Reference<?> ref;
+		while ((ref = collected.poll()) != null) {
+			if (cells.remove(ref)) {
+				evictions.increment();
+				cachedBytes.add(-((CellReference)ref).bytes);
+			}
+		}
+	}
+
+	@Override
+	public long getLoads() {
+
+		return loads.sum();
+	}
+
+	@Override
+	public long getHits() {
+
+		return Math.max(0, presentHits.sum() + requests.sum() - loads.sum());
+	}
+
+	@Override
+	public long getBytes() {
+
+		return bytes.sum();
+	}
+
+	@Override
+	public long getCachedBlocks() {
+
+		expungeCollected();
+		return cells.size();
+	}
+
+	@Override
+	public long getCachedBytes() {
+
+		expungeCollected();
+		return cachedBytes.sum();
+	}
+
+	@Override
+	public long getEvictions() {
+
+		expungeCollected();
+		return evictions.sum();
+	}
+
+	/**
+	 * @return the histogram of block load latencies, including reading and
+	 *         decoding
+	 */
+	public LatencyHistogram getLoadLatency() {
+
+		return loadLatency;
+	}
+
+	/**
+	 * @return the histogram of block read latencies of the reader, available
+	 *         if the reader is instrumented
+	 */
+	public LatencyHistogram getFetchLatency() {
+
+		return fetchLatency;
+	}
+
+	@Override
+	public long[] getLoadLatencyBuckets() {
+
+		return loadLatency.snapshot();
+	}
+
+	@Override
+	public double getLoadLatencyP50Millis() {
+
+		return 1e-6 * LatencyHistogram.percentile(loadLatency.snapshot(), 0.5);
+	}
+
+	@Override
+	public double getLoadLatencyP99Millis() {
+
+		return 1e-6 * LatencyHistogram.percentile(loadLatency.snapshot(), 0.99);
+	}
+
+	@Override
+	public long[] getFetchLatencyBuckets() {
+
+		return fetchLatency.snapshot();
+	}
+
+	@Override
+	public double getFetchLatencyP50Millis() {
+
+		return 1e-6 * LatencyHistogram.percentile(fetchLatency.snapshot(), 0.5);
+	}
+
+	@Override
+	public double getFetchLatencyP99Millis() {
+
+		return 1e-6 * LatencyHistogram.percentile(fetchLatency.snapshot(), 0.99);
+	}
+
+	@Override
+	public double getMeanDecodeMillis() {
+
+		final long n = fetchLatency.getCount();
+		if (n == 0)
+			return 0;
+
+		return 1e-6 * Math.max(0, loadLatency.getSum() - fetchLatency.getSum()) / n;
+	}
+}
@@ -0,0 +1,41 @@
+package org.janelia.saalfeldlab.n5.bdv.cache;
+
+/**
+ * JMX view of {@link BlockLoadStatistics}. Counters and histogram buckets are
+ * cumulative since the source was opened, latency bucket i counts durations
+ * below 2<sup>i</sup> microseconds (see {@link LatencyHistogram}).
+ */
+public interface BlockLoadStatisticsMBean {
+
+	String getName();
+
+	long getLoads();
+
+	long getHits();
+
+	long getBytes();
+
+	long getCachedBlocks();
+
+	long getCachedBytes();
+
+	long getEvictions();
+
+	long[] getLoadLatencyBuckets();
+
+	double getLoadLatencyP50Millis();
+
+	double getLoadLatencyP99Millis();
+
+	long[] getFetchLatencyBuckets();
+
+	double getFetchLatencyP50Millis();
+
+	double getFetchLatencyP99Millis();
+
+	/**
+	 * @return the mean time of a load spent outside of the reader, i.e.
+	 *         converting the data block into a cell
+	 */
+	double getMeanDecodeMillis();
+}
@@ -0,0 +1,469 @@
+package org.janelia.saalfeldlab.n5.bdv.cache;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.GzipCompression;
+import org.janelia.saalfeldlab.n5.N5Exception;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.N5URI;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.position.FunctionRandomAccessible;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.view.Views;
+
+/**
+ * The minimum, maximum, mean and number of non-zero voxels of every block of
+ * a dataset.
+ * <p>
+ * The statistics are stored in a FLOAT64 sidecar dataset in the hidden group
+ * {@value #GROUP} of the container, at the path of the dataset in that group,
+ * so that sidecars are not listed next to the scale levels of a multiscale
+ * group. Its first dimension holds the {@value #NUM_STATISTICS} statistics of
+ * a block, the other dimensions are the block grid of the dataset. Missing
+ * blocks have the statistics of a block of zeros.
+ * <p>
+ * The writer sets the attribute {@value #STAMP_KEY} of the dataset and the
+ * sidecar to the same random stamp. A sidecar is only read if the stamps, the
+ * dimensions and the block size of the dataset match, and if the statistics
+ * of a few sampled blocks still match the blocks. Tools that rewrite a dataset
+ * in place should remove its stamp.
+ * <p>
+ * The viewer ignores sidecars unless the system property
+ * {@value #BLOCK_STATISTICS_PROPERTY} is {@code true}, and then reads them in
+ * the background.
+ *
+ * @see BlockStatisticsWriter
+ */
+public class BlockStatistics {
+
+	public static final String BLOCK_STATISTICS_PROPERTY = "n5.viewer.blockStatistics";
+
+	public static final String GROUP = ".blockstats";
+
+	public static final String DIMENSIONS_KEY = "blockStatisticsOfDimensions";
+
+	public static final String BLOCK_SIZE_KEY = "blockStatisticsOfBlockSize";
+
+	public static final String STAMP_KEY = "blockStatisticsStamp";
+
+	public static final int MIN = 0;
+
+	public static final int MAX = 1;
+
+	public static final int MEAN = 2;
+
+	public static final int NONZERO = 3;
+
+	public static final int NUM_STATISTICS = 4;
+
+	public static final int NUM_BINS = 1024;
+
+	/* block size of the sidecar in blocks of the dataset */
+	private static final int SIDECAR_BLOCK_SIZE = 64;
+
+	/* blocks that are compared with their statistics when reading a sidecar */
+	private static final int NUM_SAMPLES = 3;
+
+	/* reads sidecars off the path that opens the sources */
+	private static final ExecutorService READER = Executors.newSingleThreadExecutor(r -> {
+		final Thread thread = new Thread(r, "n5-viewer block statistics reader");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final CellGrid grid;
+
+	private final double[] statistics;
+
+	/**
+	 * @param dimensions
+	 *            the dimensions of the dataset
+	 * @param blockSize
+	 *            the block size of the dataset
+	 * @param statistics
+	 *            the {@value #NUM_STATISTICS} statistics of every block, in
+	 *            flat block index order
+	 */
+	public BlockStatistics(final long[] dimensions, final int[] blockSize, final double[] statistics) {
+
+		this.grid = new CellGrid(dimensions, blockSize);
+		if (statistics.length != NUM_STATISTICS * numBlocks(grid))
+			throw new IllegalArgumentException("Expected " + NUM_STATISTICS * numBlocks(grid) + " statistics, got " + statistics.length);
+
+		this.statistics = statistics;
+	}
+
+	/**
+	 * @param dataset
+	 *            the dataset path
+	 * @return the path of the sidecar of the dataset
+	 */
+	public static String sidecarPath(final String dataset) {
+
+		final String path = N5URI.normalizeGroupPath(dataset);
+		return path.isEmpty() ? GROUP : GROUP + "/" + path;
+	}
+
+	/**
+	 * @param path
+	 *            a dataset path
+	 * @return whether the path is the path of a sidecar
+	 */
+	public static boolean isSidecar(final String path) {
+
+		final String normalized = N5URI.normalizeGroupPath(path);
+		return normalized.equals(GROUP) || normalized.startsWith(GROUP + "/");
+	}
+
+	/**
+	 * @return whether the system property {@value #BLOCK_STATISTICS_PROPERTY}
+	 *         is {@code true}
+	 */
+	public static boolean isEnabled() {
+
+		return Boolean.getBoolean(BLOCK_STATISTICS_PROPERTY);
+	}
+
+	/**
+	 * Reads the statistics of a dataset in the background if the system
+	 * property {@value #BLOCK_STATISTICS_PROPERTY} is {@code true}.
+	 *
+	 * @param n5
+	 *            the reader
+	 * @param dataset
+	 *            the dataset path
+	 * @return the statistics once read, null while they are read or if
+	 *         disabled, missing or out of date
+	 */
+	public static Supplier<BlockStatistics> readLaterIfEnabled(final N5Reader n5, final String dataset) {
+
+		if (!isEnabled())
+			return () -> null;
+
+		final CompletableFuture<BlockStatistics> statistics = CompletableFuture.supplyAsync(() -> {
+			try {
+				return read(n5, dataset);
+			} catch (final N5Exception e) {
+				System.err.println("Could not read block statistics of " + dataset + ": " + e.getMessage());
+				return null;
+			}
+		}, READER);
+		return () -> statistics.getNow(null);
+	}
+
+	/**
+	 * Reads the statistics of a dataset.
+	 *
+	 * @param n5
+	 *            the reader
+	 * @param dataset
+	 *            the dataset path
+	 * @return the statistics, or null if missing or out of date
+	 */
+	public static BlockStatistics read(final N5Reader n5, final String dataset) {
+
+		final String stamp = n5.getAttribute(dataset, STAMP_KEY, String.class);
+		if (stamp == null)
+			return null;
+
+		final String sidecar = sidecarPath(dataset);
+		if (!n5.datasetExists(sidecar) || !stamp.equals(n5.getAttribute(sidecar, STAMP_KEY, String.class)))
+			return null;
+
+		final DatasetAttributes attributes = n5.getDatasetAttributes(dataset);
+		final long[] dimensions = n5.getAttribute(sidecar, DIMENSIONS_KEY, long[].class);
+		final int[] blockSize = n5.getAttribute(sidecar, BLOCK_SIZE_KEY, int[].class);
+		if (!Arrays.equals(dimensions, attributes.getDimensions()) || !Arrays.equals(blockSize, attributes.getBlockSize()))
+			return null;
+
+		final RandomAccessibleInterval<RealType<?>> img = N5Utils.open(n5, sidecar);
+		final CellGrid grid = new CellGrid(dimensions, blockSize);
+		final double[] statistics = new double[NUM_STATISTICS * numBlocks(grid)];
+		if (img.numDimensions() != grid.numDimensions() + 1 || img.dimension(0) != NUM_STATISTICS)
+			return null;
+
+		int i = 0;
+		for (final RealType<?> t : Views.flatIterable(img))
+			statistics[i++] = t.getRealDouble();
+
+		if (i != statistics.length)
+			return null;
+
+		final BlockStatistics blockStatistics = new BlockStatistics(dimensions, blockSize, statistics);
+		return blockStatistics.matches(n5, dataset, attributes) ? blockStatistics : null;
+	}
+
+	/*
+	 * Compares the statistics of the first, middle and last block with the
+	 * blocks, to catch datasets that were rewritten with the same attributes.
+	 */
+	private boolean matches(final N5Reader n5, final String dataset, final DatasetAttributes attributes) {
+
+		final int numBlocks = numBlocks();
+		final double[] sample = new double[NUM_STATISTICS];
+		for (int s = 0; s < NUM_SAMPLES; ++s) {
+			final long block = numBlocks == 1 ? 0 : (long)s * (numBlocks - 1) / (NUM_SAMPLES - 1);
+			Arrays.fill(sample, 0);
+			BlockStatisticsWriter.summarize(n5, dataset, attributes, grid, block, sample, 0);
+			for (int i = 0; i < NUM_STATISTICS; ++i)
+				if (Double.compare(sample[i], get(block, i)) != 0)
+					return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the statistics to the sidecar of a dataset and stamps the dataset
+	 * and the sidecar.
+	 *
+	 * @param n5
+	 *            the writer
+	 * @param dataset
+	 *            the dataset path
+	 */
+	public void write(final N5Writer n5, final String dataset) {
+
+		final long[] gridDimensions = grid.getGridDimensions();
+		final long[] dimensions = new long[gridDimensions.length + 1];
+		final int[] blockSize = new int[dimensions.length];
+		dimensions[0] = NUM_STATISTICS;
+		blockSize[0] = NUM_STATISTICS;
+		for (int d = 0; d < gridDimensions.length; ++d) {
+			dimensions[d + 1] = gridDimensions[d];
+			blockSize[d + 1] = (int)Math.min(SIDECAR_BLOCK_SIZE, gridDimensions[d]);
+		}
+
+		final String stamp = UUID.randomUUID().toString();
+		final String sidecar = sidecarPath(dataset);
+		N5Utils.save(ArrayImgs.doubles(statistics, dimensions), n5, sidecar, blockSize, new GzipCompression());
+		n5.setAttribute(sidecar, DIMENSIONS_KEY, grid.getImgDimensions());
+		n5.setAttribute(sidecar, BLOCK_SIZE_KEY, blockSize());
+		n5.setAttribute(sidecar, STAMP_KEY, stamp);
+		n5.setAttribute(dataset, STAMP_KEY, stamp);
+	}
+
+	public long[] getDimensions() {
+
+		return grid.getImgDimensions();
+	}
+
+	public int[] blockSize() {
+
+		final int[] blockSize = new int[grid.numDimensions()];
+		grid.cellDimensions(blockSize);
+		return blockSize;
+	}
+
+	public int numBlocks() {
+
+		return numBlocks(grid);
+	}
+
+	private static int numBlocks(final CellGrid grid) {
+
+		final long n = Arrays.stream(grid.getGridDimensions()).reduce(1, (a, b) -> a * b);
+		if (n > Integer.MAX_VALUE / NUM_STATISTICS)
+			throw new IllegalArgumentException("Too many blocks: " + n);
+
+		return (int)n;
+	}
+
+	/**
+	 * @param block
+	 *            the flat block index, as in {@link CellGrid}
+	 * @param statistic
+	 *            {@link #MIN}, {@link #MAX}, {@link #MEAN} or {@link #NONZERO}
+	 * @return the statistic of the block
+	 */
+	public double get(final long block, final int statistic) {
+
+		return statistics[(int)block * NUM_STATISTICS + statistic];
+	}
+
+	/**
+	 * @param block
+	 *            the flat block index
+	 * @return the number of voxels of the block, smaller than the block size
+	 *         at the border of the dataset
+	 */
+	public long numElements(final long block) {
+
+		final int n = grid.numDimensions();
+		final long[] min = new long[n];
+		final int[] dimensions = new int[n];
+		grid.getCellDimensions(block, min, dimensions);
+		long numElements = 1;
+		for (final int s : dimensions)
+			numElements *= s;
+
+		return numElements;
+	}
+
+	/**
+	 * @param block
+	 *            the flat block index
+	 * @return whether all voxels of the block have the same value
+	 */
+	public boolean isUniform(final long block) {
+
+		final double min = get(block, MIN);
+		return min == get(block, MAX) && !Double.isNaN(min);
+	}
+
+	/**
+	 * A virtual image of the size of the dataset whose voxels are the flat
+	 * indices of the blocks they are in. Views of it map voxels of the same
+	 * views of the dataset to their blocks.
+	 *
+	 * @return the block index image
+	 */
+	public RandomAccessibleInterval<LongType> blockIndices() {
+
+		return blockIndices(grid);
+	}
+
+	/**
+	 * @param attributes
+	 *            the attributes of a dataset
+	 * @return the block index image of the dataset
+	 * @see #blockIndices()
+	 */
+	public static RandomAccessibleInterval<LongType> blockIndices(final DatasetAttributes attributes) {
+
+		return blockIndices(new CellGrid(attributes.getDimensions(), attributes.getBlockSize()));
+	}
+
+	private static RandomAccessibleInterval<LongType> blockIndices(final CellGrid grid) {
+
+		final int n = grid.numDimensions();
+		final int[] blockSize = new int[n];
+		grid.cellDimensions(blockSize);
+		final long[] gridDimensions = grid.getGridDimensions();
+		final FunctionRandomAccessible<LongType> indices = new FunctionRandomAccessible<>(
+				n,
+				(position, index) -> {
+					long i = 0;
+					for (int d = n - 1; d >= 0; --d)
+						i = i * gridDimensions[d] + position.getLongPosition(d) / blockSize[d];
+					index.set(i);
+				},
+				LongType::new);
+		return Views.interval(indices, new FinalInterval(grid.getImgDimensions()));
+	}
+
+	/**
+	 * Approximates the histogram of the voxels of some blocks from their
+	 * statistics. The zeros of a block are counted in the bin of 0, its other
+	 * voxels are spread evenly between its minimum and maximum.
+	 *
+	 * @param blocks
+	 *            the flat block indices
+	 * @param min
+	 *            the minimum of the first bin
+	 * @param max
+	 *            the maximum of the last bin
+	 * @param numBins
+	 *            the number of bins
+	 * @return the number of voxels per bin
+	 */
+	public double[] histogram(final long[] blocks, final double min, final double max, final int numBins) {
+
+		final double[] histogram = new double[numBins];
+		final double binWidth = (max - min) / numBins;
+		for (final long block : blocks) {
+			final double blockMin = get(block, MIN);
+			final double blockMax = get(block, MAX);
+			if (!(blockMin <= blockMax))
+				continue;
+
+			final double numElements = numElements(block);
+			final double nonzero = get(block, NONZERO);
+			if (blockMin == blockMax) {
+				add(histogram, bin(blockMin, min, binWidth, numBins), numElements);
+				continue;
+			}
+
+			add(histogram, bin(0, min, binWidth, numBins), numElements - nonzero);
+			final int first = bin(blockMin, min, binWidth, numBins);
+			final int last = bin(blockMax, min, binWidth, numBins);
+			for (int b = Math.max(0, first); b <= Math.min(numBins - 1, last); ++b) {
+				final double overlap = Math.min(blockMax, min + (b + 1) * binWidth) - Math.max(blockMin, min + b * binWidth);
+				histogram[b] += nonzero * Math.max(0, overlap) / (blockMax - blockMin);
+			}
+		}
+		return histogram;
+	}
+
+	private static int bin(final double value, final double min, final double binWidth, final int numBins) {
+
+		return binWidth > 0 ? (int)Math.min(numBins - 1, Math.floor((value - min) / binWidth)) : 0;
+	}
+
+	private static void add(final double[] histogram, final int bin, final double count) {
+
+		if (bin >= 0 && bin < histogram.length)
+			histogram[bin] += count;
+	}
+
+	/**
+	 * Approximates two percentiles of the voxels of some blocks from the
+	 * {@link #histogram} of their statistics, without reading voxels.
+	 *
+	 * @param blocks
+	 *            the flat block indices
+	 * @param low
+	 *            the low percentile in [0, 1]
+	 * @param high
+	 *            the high percentile in [0, 1]
+	 * @return the low and high percentile, or null if there is no value or
+	 *         all values are equal
+	 */
+	public double[] percentiles(final long[] blocks, final double low, final double high) {
+
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		for (final long block : blocks) {
+			if (get(block, MIN) <= get(block, MAX)) {
+				min = Math.min(min, get(block, MIN));
+				max = Math.max(max, get(block, MAX));
+			}
+		}
+		if (!(min < max) || Double.isInfinite(min) || Double.isInfinite(max))
+			return null;
+
+		final double[] histogram = histogram(blocks, min, max, NUM_BINS);
+		final double total = Arrays.stream(histogram).sum();
+		final double binWidth = (max - min) / NUM_BINS;
+		final double lowValue = percentile(histogram, total * low, min, binWidth);
+		final double highValue = percentile(histogram, total * high, min, binWidth);
+		return lowValue < highValue ? new double[]{lowValue, highValue} : null;
+	}
+
+	/*
+	 * The value below which count voxels are, interpolated within the bin.
+	 */
+	private static double percentile(final double[] histogram, final double count, final double min, final double binWidth) {
+
+		double sum = 0;
+		for (int b = 0; b < histogram.length; ++b) {
+			if (histogram[b] > 0 && sum + histogram[b] >= count)
+				return min + (b + (count - sum) / histogram[b]) * binWidth;
+
+			sum += histogram[b];
+		}
+		return min + histogram.length * binWidth;
+	}
+}
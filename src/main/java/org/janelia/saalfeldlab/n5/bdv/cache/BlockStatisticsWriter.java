@@ -0,0 +1,255 @@
+package org.janelia.saalfeldlab.n5.bdv.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntToDoubleFunction;
+
+import org.janelia.saalfeldlab.n5.DataBlock;
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.imglib2.N5LabelMultisets;
+import org.janelia.saalfeldlab.n5.universe.N5Factory;
+
+import net.imglib2.img.cell.CellGrid;
+
+/**
+ * Computes the {@link BlockStatistics} of datasets in parallel and writes
+ * them to their sidecars.
+ * <p>
+ * Run as a Java application with a container and a dataset or group to
+ * write the statistics of the dataset or of all datasets in the group, e.g.
+ * of all scale levels of a multiscale group.
+ */
+public class BlockStatisticsWriter {
+
+	/* blocks per task */
+	private static final int BATCH_SIZE = 64;
+
+	private BlockStatisticsWriter() {}
+
+	/**
+	 * Computes the statistics of every block of a dataset.
+	 *
+	 * @param n5
+	 *            the reader
+	 * @param dataset
+	 *            the dataset path
+	 * @param executor
+	 *            reads and summarizes the blocks
+	 * @return the statistics
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the executor
+	 * @throws ExecutionException
+	 *             if a block could not be read
+	 */
+	public static BlockStatistics compute(
+			final N5Reader n5,
+			final String dataset,
+			final ExecutorService executor) throws InterruptedException, ExecutionException {
+
+		final DatasetAttributes attributes = n5.getDatasetAttributes(dataset);
+		final CellGrid grid = new CellGrid(attributes.getDimensions(), attributes.getBlockSize());
+		final long numBlocks = Arrays.stream(grid.getGridDimensions()).reduce(1, (a, b) -> a * b);
+		if (numBlocks > Integer.MAX_VALUE / BlockStatistics.NUM_STATISTICS)
+			throw new IllegalArgumentException("Too many blocks: " + numBlocks);
+
+		final double[] statistics = new double[(int)numBlocks * BlockStatistics.NUM_STATISTICS];
+		final List<Future<?>> futures = new ArrayList<>();
+		for (long first = 0; first < numBlocks; first += BATCH_SIZE) {
+			final long from = first;
+			final long to = Math.min(numBlocks, first + BATCH_SIZE);
+			futures.add(executor.submit(() -> {
+				for (long block = from; block < to; ++block)
+					summarize(n5, dataset, attributes, grid, block, statistics, (int)block * BlockStatistics.NUM_STATISTICS);
+			}));
+		}
+		for (final Future<?> future : futures)
+			future.get();
+
+		return new BlockStatistics(attributes.getDimensions(), attributes.getBlockSize(), statistics);
+	}
+
+	/**
+	 * Computes and writes the statistics of a dataset, or of all datasets in
+	 * a group except label multisets and sidecars.
+	 *
+	 * @param n5
+	 *            the writer
+	 * @param path
+	 *            the dataset or group path
+	 * @param executor
+	 *            reads and summarizes the blocks
+	 * @return the datasets whose statistics were written
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the executor
+	 * @throws ExecutionException
+	 *             if a block could not be read
+	 */
+	public static List<String> write(
+			final N5Writer n5,
+			final String path,
+			final ExecutorService executor) throws InterruptedException, ExecutionException {
+
+		final List<String> datasets = new ArrayList<>();
+		if (n5.datasetExists(path))
+			datasets.add(path);
+		else
+			for (final String dataset : n5.deepListDatasets(path))
+				datasets.add(path.isEmpty() || path.equals("/") ? dataset : path + "/" + dataset);
+
+		final List<String> written = new ArrayList<>();
+		for (final String dataset : datasets) {
+			if (BlockStatistics.isSidecar(dataset) || N5LabelMultisets.isLabelMultisetType(n5, dataset))
+				continue;
+
+			compute(n5, dataset, executor).write(n5, dataset);
+			written.add(dataset);
+		}
+		return written;
+	}
+
+	/*
+	 * Reads a block and writes its statistics, leaves them unchanged if the
+	 * block is missing.
+	 */
+	static void summarize(
+			final N5Reader n5,
+			final String dataset,
+			final DatasetAttributes attributes,
+			final CellGrid grid,
+			final long block,
+			final double[] statistics,
+			final int offset) {
+
+		final long[] gridPosition = new long[grid.numDimensions()];
+		final long[] min = new long[grid.numDimensions()];
+		final int[] size = new int[grid.numDimensions()];
+		grid.getCellGridPositionFlat(block, gridPosition);
+		grid.getCellDimensions(block, min, size);
+		final DataBlock<?> dataBlock = n5.readBlock(dataset, attributes, gridPosition);
+		if (dataBlock != null)
+			summarize(dataBlock, attributes.getDataType(), size, statistics, offset);
+	}
+
+	/*
+	 * Writes min, max, mean and number of non-zero voxels of the part of the
+	 * block that is inside the dataset. Edge blocks of some formats are
+	 * padded to the full block size.
+	 */
+	private static void summarize(
+			final DataBlock<?> dataBlock,
+			final DataType dataType,
+			final int[] size,
+			final double[] statistics,
+			final int offset) {
+
+		final IntToDoubleFunction values = values(dataBlock.getData(), dataType);
+		final int[] blockSize = dataBlock.getSize();
+		final int n = size.length;
+
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		double sum = 0;
+		long count = 0;
+		long nonzero = 0;
+		final int[] position = new int[n];
+		final long numElements = Arrays.stream(size).asLongStream().reduce(1, (a, b) -> a * b);
+		for (long i = 0; i < numElements; ++i) {
+			int index = 0;
+			for (int d = n - 1; d >= 0; --d)
+				index = index * blockSize[d] + position[d];
+
+			final double value = values.applyAsDouble(index);
+			if (!Double.isNaN(value)) {
+				min = Math.min(min, value);
+				max = Math.max(max, value);
+				sum += value;
+				++count;
+			}
+			if (value != 0)
+				++nonzero;
+
+			for (int d = 0; d < n && ++position[d] == size[d]; ++d)
+				position[d] = 0;
+		}
+
+		statistics[offset + BlockStatistics.MIN] = count == 0 ? Double.NaN : min;
+		statistics[offset + BlockStatistics.MAX] = count == 0 ? Double.NaN : max;
+		statistics[offset + BlockStatistics.MEAN] = count == 0 ? Double.NaN : sum / count;
+		statistics[offset + BlockStatistics.NONZERO] = nonzero;
+	}
+
+	private static IntToDoubleFunction values(final Object data, final DataType dataType) {
+
+		switch (dataType) {
+		case INT8:
+			return i -> ((byte[])data)[i];
+		case UINT8:
+			return i -> ((byte[])data)[i] & 0xff;
+		case INT16:
+			return i -> ((short[])data)[i];
+		case UINT16:
+			return i -> ((short[])data)[i] & 0xffff;
+		case INT32:
+			return i -> ((int[])data)[i];
+		case UINT32:
+			return i -> ((int[])data)[i] & 0xffffffffL;
+		case INT64:
+			return i -> ((long[])data)[i];
+		case UINT64:
+			return i -> {
+				final long value = ((long[])data)[i];
+				return value >= 0 ? value : value + 0x1p64;
+			};
+		case FLOAT32:
+			return i -> ((float[])data)[i];
+		case FLOAT64:
+			return i -> ((double[])data)[i];
+		default:
+			throw new IllegalArgumentException("Unsupported data type " + dataType);
+		}
+	}
+
+	public static void main(final String... args) throws InterruptedException, ExecutionException {
+
+		String container = null, path = "";
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		for (int i = 0; i < args.length; ++i) {
+			switch (args[i]) {
+			case "--threads":
+				numThreads = Integer.parseInt(args[++i]);
+				break;
+			default:
+				if (container == null)
+					container = args[i];
+				else
+					path = args[i];
+			}
+		}
+
+		if (container == null) {
+			System.err.println("usage: BlockStatisticsWriter <container> [<dataset or group>] [--threads <n>]");
+			System.exit(1);
+		}
+
+		final N5Writer n5 = new N5Factory().openWriter(container);
+		final ExecutorService executor = Executors.newFixedThreadPool(numThreads, r -> {
+			final Thread thread = new Thread(r, "n5-viewer block statistics");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			for (final String dataset : write(n5, path, executor))
+				System.out.println("Wrote " + BlockStatistics.sidecarPath(dataset));
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package org.janelia.saalfeldlab.n5.bdv.cache;
+
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.imglib2.N5LabelMultisets;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+
+import net.imglib2.cache.Cache;
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.cache.ref.SoftRefLoaderCache;
+import net.imglib2.img.basictypeaccess.AccessFlags;
+import net.imglib2.img.basictypeaccess.ArrayDataAccessFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.NativeType;
+
+/**
+ * Opens N5 datasets like {@link N5Utils#openVolatile(N5Reader, String)}, with
+ * a cache and loader that record {@link BlockLoadStatistics} if given, that
+ * fill uniform blocks from their {@link BlockStatistics} instead of reading
+ * them, that share one array of zeros between all missing blocks of a
+ * volatile image without allocating one per missing block
+ * ({@link N5BlockCacheLoader}), and that remember which blocks are missing
+ * ({@link MissingBlockCacheLoader}). Non-volatile images can be written to
+ * and get an array per missing block.
+ */
+public class InstrumentedN5Utils {
+
+	private InstrumentedN5Utils() {}
+
+	/**
+	 * Opens a dataset as a {@link CachedCellImg} with volatile accesses whose
+	 * block loads are recorded. Label multiset datasets and datasets of types
+	 * that {@link N5Utils} can not map to an imglib2 type are opened with
+	 * {@link N5Utils#openVolatile(N5Reader, String)} and are not recorded.
+	 *
+	 * @param <T>
+	 *            the type
+	 * @param n5
+	 *            the reader
+	 * @param dataset
+	 *            the dataset path
+	 * @param statistics
+	 *            records block loads
+	 * @return the image
+	 */
+	public static <T extends NativeType<T>> CachedCellImg<T, ?> openVolatile(
+			final N5Reader n5,
+			final String dataset,
+			final BlockLoadStatistics statistics) {
+
+		return openVolatile(n5, dataset, statistics, null);
+	}
+
+	/**
+	 * As {@link #openVolatile(N5Reader, String, BlockLoadStatistics)}, and
+	 * also records block reads in the statistics of the reader.
+	 *
+	 * @param <T>
+	 *            the type
+	 * @param n5
+	 *            the reader
+	 * @param dataset
+	 *            the dataset path
+	 * @param statistics
+	 *            records block loads
+	 * @param readerStatistics
+	 *            records block reads, can be null
+	 * @return the image
+	 */
+	public static <T extends NativeType<T>> CachedCellImg<T, ?> openVolatile(
+			final N5Reader n5,
+			final String dataset,
+			final BlockLoadStatistics statistics,
+			final ReaderStatistics readerStatistics) {
+
+		return openVolatile(n5, dataset, statistics, readerStatistics, null);
+	}
+
+	/**
+	 * As {@link #openVolatile(N5Reader, String, BlockLoadStatistics, ReaderStatistics)},
+	 * and fills blocks that the block statistics of the dataset mark as
+	 * uniform without reading them.
+	 *
+	 * @param <T>
+	 *            the type
+	 * @param n5
+	 *            the reader
+	 * @param dataset
+	 *            the dataset path
+	 * @param statistics
+	 *            records block loads, can be null
+	 * @param readerStatistics
+	 *            records block reads, can be null
+	 * @param blockStatistics
+	 *            supplies the block statistics of the dataset, or null
+	 *            while they are not available, can be null
+	 * @return the image
+	 */
+	public static <T extends NativeType<T>> CachedCellImg<T, ?> openVolatile(
+			final N5Reader n5,
+			final String dataset,
+			final BlockLoadStatistics statistics,
+			final ReaderStatistics readerStatistics,
+			final Supplier<BlockStatistics> blockStatistics) {
+
+		if (N5LabelMultisets.isLabelMultisetType(n5, dataset))
+			return N5Utils.openVolatile(n5, dataset);
+
+		final CachedCellImg<T, ?> img = open(n5, dataset, statistics, readerStatistics, blockStatistics, AccessFlags.setOf(AccessFlags.VOLATILE));
+		return img == null ? N5Utils.openVolatile(n5, dataset) : img;
+	}
+
+	/**
+	 * Opens a dataset as a {@link CachedCellImg} like
+	 * {@link N5Utils#open(N5Reader, String)} whose block loads are recorded.
+	 * Label multiset datasets and datasets of types that {@link N5Utils} can
+	 * not map to an imglib2 type are not recorded.
+	 *
+	 * @param <T>
+	 *            the type
+	 * @param n5
+	 *            the reader
+	 * @param dataset
+	 *            the dataset path
+	 * @param statistics
+	 *            records block loads
+	 * @param readerStatistics
+	 *            records block reads, can be null
+	 * @return the image
+	 */
+	public static <T extends NativeType<T>> CachedCellImg<T, ?> open(
+			final N5Reader n5,
+			final String dataset,
+			final BlockLoadStatistics statistics,
+			final ReaderStatistics readerStatistics) {
+
+		if (N5LabelMultisets.isLabelMultisetType(n5, dataset))
+			return N5Utils.open(n5, dataset);
+
+		final CachedCellImg<T, ?> img = open(n5, dataset, statistics, readerStatistics, null, AccessFlags.setOf());
+		return img == null ? N5Utils.open(n5, dataset) : img;
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static <T extends NativeType<T>> CachedCellImg<T, ?> open(
+			final N5Reader n5,
+			final String dataset,
+			final BlockLoadStatistics statistics,
+			final ReaderStatistics readerStatistics,
+			final Supplier<BlockStatistics> blockStatistics,
+			final Set<AccessFlags> accessFlags) {
+
+		final DatasetAttributes attributes = n5.getDatasetAttributes(dataset);
+		final T type = N5Utils.type(attributes.getDataType());
+		if (type == null)
+			return null;
+
+		final CellGrid grid = new CellGrid(attributes.getDimensions(), attributes.getBlockSize());
+		final N5Reader reader = statistics == null ? n5 : StatisticsReaderHandler.wrap(n5, statistics, readerStatistics);
+		final ArrayDataAccess accessType = ArrayDataAccessFactory.get(type, accessFlags);
+
+		/* only the volatile images of the viewer are never written to */
+		final boolean shareEmpty = accessFlags.contains(AccessFlags.VOLATILE);
+		final N5BlockCacheLoader blocks = new N5BlockCacheLoader(reader, dataset, attributes, grid, accessType, shareEmpty);
+		CacheLoader<Long, Cell> loader = blocks;
+		if (statistics != null)
+			loader = new StatisticsCacheLoader(loader, statistics, bytesPerElement(attributes.getDataType()));
+		loader = new MissingBlockCacheLoader(loader, blocks, NegativeBlockCache.create(), BlockListing.createIfEnabled(n5, dataset));
+		if (blockStatistics != null)
+			loader = new UniformBlockCacheLoader(loader, blocks, blockStatistics, attributes.getDataType(), accessType);
+
+		final Cache<Long, Cell> cache = statistics == null
+				? new SoftRefLoaderCache<Long, Cell>().withLoader(loader)
+				: new StatisticsLoaderCache<Long, Cell>(statistics).withLoader(loader);
+
+		return new CachedCellImg(grid, type, cache, accessType);
+	}
+
+	/**
+	 * @param dataType
+	 *            the data type
+	 * @return the number of bytes of a decoded element
+	 */
+	public static int bytesPerElement(final DataType dataType) {
+
+		switch (dataType) {
+		case INT16:
+		case UINT16:
+			return 2;
+		case INT32:
+		case UINT32:
+		case FLOAT32:
+			return 4;
+		case INT64:
+		case UINT64:
+		case FLOAT64:
+			return 8;
+		default:
+			return 1;
+		}
+	}
+}
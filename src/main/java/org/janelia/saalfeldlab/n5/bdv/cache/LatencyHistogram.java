@@ -0,0 +1,116 @@
+package org.janelia.saalfeldlab.n5.bdv.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations with power-of-two microsecond buckets.
+ * <p>
+ * Bucket 0 counts durations below one microsecond, bucket i &gt; 0 counts
+ * durations in [2<sup>i-1</sup>, 2<sup>i</sup>) microseconds. Recording is
+ * one {@link LongAdder} increment, so the histogram can stay enabled on hot
+ * paths. Percentiles are estimated as the upper bound of the bucket that
+ * contains them, i.e. they are accurate to a factor of two.
+ */
+public class LatencyHistogram {
+
+	public static final int NUM_BUCKETS = 40;
+
+	private final LongAdder[] buckets = new LongAdder[NUM_BUCKETS];
+
+	private final LongAdder sum = new LongAdder();
+
+	public LatencyHistogram() {
+
+		for (int i = 0; i < NUM_BUCKETS; ++i)
+			buckets[i] = new LongAdder();
+	}
+
+	/**
+	 * @param nanos
+	 *            the duration in nanoseconds
+	 */
+	public void record(final long nanos) {
+
+		buckets[bucket(nanos)].increment();
+		sum.add(nanos);
+	}
+
+	/**
+	 * @return a copy of the bucket counts
+	 */
+	public long[] snapshot() {
+
+		final long[] counts = new long[NUM_BUCKETS];
+		for (int i = 0; i < NUM_BUCKETS; ++i)
+			counts[i] = buckets[i].sum();
+
+		return counts;
+	}
+
+	/**
+	 * @return the number of recorded durations
+	 */
+	public long getCount() {
+
+		long count = 0;
+		for (final LongAdder bucket : buckets)
+			count += bucket.sum();
+
+		return count;
+	}
+
+	/**
+	 * @return the sum of all recorded durations in nanoseconds
+	 */
+	public long getSum() {
+
+		return sum.sum();
+	}
+
+	/**
+	 * Estimates a percentile from bucket counts, e.g. of a {@link #snapshot()}
+	 * or of the difference of two snapshots.
+	 *
+	 * @param counts
+	 *            the bucket counts
+	 * @param quantile
+	 *            the quantile in [0, 1]
+	 * @return the upper bound of the bucket that contains the quantile in
+	 *         nanoseconds, or 0 if there are no counts
+	 */
+	public static long percentile(final long[] counts, final double quantile) {
+
+		long total = 0;
+		for (final long c : counts)
+			total += c;
+
+		if (total == 0)
+			return 0;
+
+		final long rank = Math.max(1, (long)Math.ceil(quantile * total));
+		long cumulative = 0;
+		for (int i = 0; i < counts.length; ++i) {
+			cumulative += counts[i];
+			if (cumulative >= rank)
+				return upperBound(i);
+		}
+		return upperBound(counts.length - 1);
+	}
+
+	/**
+	 * @param bucket
+	 *            the bucket index
+	 * @return the exclusive upper bound of a bucket in nanoseconds
+	 */
+	public static long upperBound(final int bucket) {
+
+		return 1000L << bucket;
+	}
+
+	private static int bucket(final long nanos) {
+
+		final long micros = nanos / 1000;
+		final int i = 64 - Long.numberOfLeadingZeros(micros);
+		return Math.min(i, NUM_BUCKETS - 1);
+	}
+}
@@ -0,0 +1,82 @@
+package org.janelia.saalfeldlab.n5.bdv.cache;
+
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+
+/**
+ * Loads cells with a loader on top of an {@link N5BlockCacheLoader}, whose
+ * cells of missing blocks share a single array of zeros, so that missing
+ * blocks cost no memory per block. Blocks that were missing once are kept in
+ * a {@link NegativeBlockCache} and are not requested from the storage again
+ * when their cells are evicted from the cache. With a {@link BlockListing},
+ * blocks that are not in the listing of their directory are not requested at
+ * all.
+ *
+ * @param <A>
+ *            the access type
+ */
+public class MissingBlockCacheLoader<A extends ArrayDataAccess<A>> implements CacheLoader<Long, Cell<A>> {
+
+	private final CacheLoader<Long, Cell<A>> loader;
+
+	private final N5BlockCacheLoader<A> blocks;
+
+	private final NegativeBlockCache missing;
+
+	private final BlockListing listing;
+
+	/**
+	 * @param loader
+	 *            loads the cells, with blocks at the bottom
+	 * @param blocks
+	 *            reads the blocks and creates the empty cells
+	 * @param missing
+	 *            the keys of blocks known to be missing
+	 * @param listing
+	 *            lists the blocks of the dataset, can be null
+	 */
+	public MissingBlockCacheLoader(
+			final CacheLoader<Long, Cell<A>> loader,
+			final N5BlockCacheLoader<A> blocks,
+			final NegativeBlockCache missing,
+			final BlockListing listing) {
+
+		this.loader = loader;
+		this.blocks = blocks;
+		this.missing = missing;
+		this.listing = listing;
+	}
+
+	@Override
+	public Cell<A> get(final Long key) throws Exception {
+
+		if (missing.contains(key))
+			return blocks.emptyCell(key);
+
+		if (listing != null) {
+			final CellGrid grid = blocks.getGrid();
+			final long[] gridPosition = new long[grid.numDimensions()];
+			grid.getCellGridPositionFlat(key, gridPosition);
+			if (listing.isMissing(gridPosition)) {
+				missing.add(key);
+				return blocks.emptyCell(key);
+			}
+		}
+
+		final Cell<A> cell = loader.get(key);
+		if (blocks.isEmpty(cell))
+			missing.add(key);
+
+		return cell;
+	}
+
+	/**
+	 * @return the keys of blocks known to be missing
+	 */
+	public NegativeBlockCache getMissing() {
+
+		return missing;
+	}
+}
@@ -0,0 +1,232 @@
+package org.janelia.saalfeldlab.n5.bdv.cache;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+import org.janelia.saalfeldlab.n5.DataBlock;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.imglib2.N5CacheLoader;
+
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.basictypeaccess.volatiles.VolatileAccess;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileByteArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileDoubleArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileFloatArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileIntArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileLongArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileShortArray;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+
+/**
+ * Loads the cells of a dataset from its blocks like {@link N5CacheLoader}.
+ * For read-only images, e.g. the volatile images of the viewer, cells of
+ * missing blocks share a single array of zeros instead of allocating and
+ * filling an array per missing block. For images that may be written to, an
+ * array is allocated per missing block. Blocks that are padded to the full
+ * block size at the border of the dataset are cropped to their cell.
+ *
+ * @param <A>
+ *            the access type
+ */
+public class N5BlockCacheLoader<A extends ArrayDataAccess<A>> implements CacheLoader<Long, Cell<A>> {
+
+	private final N5Reader n5;
+
+	private final String dataset;
+
+	private final DatasetAttributes attributes;
+
+	private final CellGrid grid;
+
+	private final A accessType;
+
+	private final boolean shareEmpty;
+
+	private volatile A empty = null;
+
+	/* marks the cells of missing blocks */
+	private static class EmptyCell<A> extends Cell<A> {
+
+		private static final long serialVersionUID = 1L;
+
+		EmptyCell(final int[] dimensions, final long[] min, final A data) {
+
+			super(dimensions, min, data);
+		}
+	}
+
+	/**
+	 * @param n5
+	 *            the reader
+	 * @param dataset
+	 *            the dataset path
+	 * @param attributes
+	 *            the attributes of the dataset
+	 * @param grid
+	 *            the cell grid
+	 * @param accessType
+	 *            the type of the accesses, volatile accesses are valid
+	 * @param shareEmpty
+	 *            whether cells of missing blocks share one array, only if
+	 *            the cells are never written to
+	 */
+	public N5BlockCacheLoader(
+			final N5Reader n5,
+			final String dataset,
+			final DatasetAttributes attributes,
+			final CellGrid grid,
+			final A accessType,
+			final boolean shareEmpty) {
+
+		this.n5 = n5;
+		this.dataset = dataset;
+		this.attributes = attributes;
+		this.grid = grid;
+		this.accessType = accessType;
+		this.shareEmpty = shareEmpty;
+	}
+
+	@Override
+	public Cell<A> get(final Long key) throws Exception {
+
+		final long index = key;
+		final int n = grid.numDimensions();
+		final long[] min = new long[n];
+		final int[] size = new int[n];
+		final long[] gridPosition = new long[n];
+		grid.getCellDimensions(index, min, size);
+		grid.getCellGridPositionFlat(index, gridPosition);
+
+		final DataBlock<?> block = n5.readBlock(dataset, attributes, gridPosition);
+		if (block == null)
+			return emptyCell(size, min);
+
+		return new Cell<>(size, min, wrap(crop(block, size)));
+	}
+
+	public CellGrid getGrid() {
+
+		return grid;
+	}
+
+	/**
+	 * @param index
+	 *            the flat cell index
+	 * @return a cell of zeros, that shares its array with all other empty
+	 *         cells of this loader if they are shared
+	 */
+	public Cell<A> emptyCell(final long index) {
+
+		final long[] min = new long[grid.numDimensions()];
+		final int[] size = new int[grid.numDimensions()];
+		grid.getCellDimensions(index, min, size);
+		return emptyCell(size, min);
+	}
+
+	/**
+	 * @param cell
+	 *            a cell
+	 * @return whether the cell is an empty cell of this loader
+	 */
+	public boolean isEmpty(final Cell<A> cell) {
+
+		return cell instanceof EmptyCell;
+	}
+
+	private Cell<A> emptyCell(final int[] size, final long[] min) {
+
+		if (shareEmpty)
+			return new EmptyCell<>(size, min, empty());
+
+		long numElements = 1;
+		for (final int s : size)
+			numElements *= s;
+		return new EmptyCell<>(size, min, accessType.createArray((int)numElements));
+	}
+
+	/*
+	 * Cells at the border are smaller than a block and use the beginning of
+	 * the array.
+	 */
+	private A empty() {
+
+		A access = empty;
+		if (access == null) {
+			synchronized (this) {
+				access = empty;
+				if (access == null) {
+					final int[] blockSize = new int[grid.numDimensions()];
+					grid.cellDimensions(blockSize);
+					long numElements = 1;
+					for (final int s : blockSize)
+						numElements *= s;
+					empty = access = accessType.createArray((int)numElements);
+				}
+			}
+		}
+		return access;
+	}
+
+	/*
+	 * Copies the part of a padded block that is inside its cell.
+	 */
+	private static Object crop(final DataBlock<?> block, final int[] size) {
+
+		final Object data = block.getData();
+		final int[] blockSize = block.getSize();
+		if (Arrays.equals(blockSize, size))
+			return data;
+
+		final int n = size.length;
+		long numElements = 1;
+		for (final int s : size)
+			numElements *= s;
+
+		final Object cropped = Array.newInstance(data.getClass().getComponentType(), (int)numElements);
+		final int rowLength = Math.min(size[0], blockSize[0]);
+		final int[] position = new int[n];
+		for (int offset = 0; offset < numElements; offset += size[0]) {
+			int index = 0;
+			boolean inside = true;
+			for (int d = n - 1; d > 0; --d) {
+				index = index * blockSize[d] + position[d];
+				inside &= position[d] < blockSize[d];
+			}
+			if (inside)
+				System.arraycopy(data, index * blockSize[0], cropped, offset, rowLength);
+
+			for (int d = 1; d < n && ++position[d] == size[d]; ++d)
+				position[d] = 0;
+		}
+		return cropped;
+	}
+
+	@SuppressWarnings("unchecked")
+	private A wrap(final Object data) {
+
+		final boolean isVolatile = accessType instanceof VolatileAccess;
+		if (data instanceof byte[])
+			return (A)(isVolatile ? new VolatileByteArray((byte[])data, true) : new ByteArray((byte[])data));
+		if (data instanceof short[])
+			return (A)(isVolatile ? new VolatileShortArray((short[])data, true) : new ShortArray((short[])data));
+		if (data instanceof int[])
+			return (A)(isVolatile ? new VolatileIntArray((int[])data, true) : new IntArray((int[])data));
+		if (data instanceof long[])
+			return (A)(isVolatile ? new VolatileLongArray((long[])data, true) : new LongArray((long[])data));
+		if (data instanceof float[])
+			return (A)(isVolatile ? new VolatileFloatArray((float[])data, true) : new FloatArray((float[])data));
+		if (data instanceof double[])
+			return (A)(isVolatile ? new VolatileDoubleArray((double[])data, true) : new DoubleArray((double[])data));
+
+		throw new IllegalArgumentException("Unsupported block data " + data.getClass());
+	}
+}
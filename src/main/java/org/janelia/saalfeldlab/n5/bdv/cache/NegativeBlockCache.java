@@ -0,0 +1,125 @@
+package org.janelia.saalfeldlab.n5.bdv.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded set of the keys of blocks of a dataset that are known to be
+ * missing, so that requesting them again does not cost a storage lookup. When
+ * full, the least recently used key is dropped. Keys expire after a time to
+ * live, so that blocks that are written later are eventually loaded.
+ * <p>
+ * The maximum number of keys per dataset is set with the system property
+ * {@value #SIZE_PROPERTY}, {@value #DEFAULT_SIZE} by default. A key costs
+ * about 80 bytes (the map entry and the boxed key and expiry time), so a full
+ * cache with the default size takes about 5 MiB. That is enough to remember
+ * all blocks of a 2560<sup>3</sup> dataset with blocks of 64<sup>3</sup>. The
+ * time to live is set in seconds with the system property
+ * {@value #TTL_PROPERTY}, {@value #DEFAULT_TTL} by default, 0 for keys that
+ * never expire.
+ */
+public class NegativeBlockCache {
+
+	public static final String SIZE_PROPERTY = "n5.viewer.negativeCacheSize";
+
+	public static final int DEFAULT_SIZE = 1 << 16;
+
+	public static final String TTL_PROPERTY = "n5.viewer.negativeCacheTtl";
+
+	public static final int DEFAULT_TTL = 60;
+
+	private final int maxSize;
+
+	private final long ttlNanos;
+
+	private final LinkedHashMap<Long, Long> keys;
+
+	/**
+	 * Creates a cache whose keys never expire.
+	 *
+	 * @param maxSize
+	 *            the maximum number of keys
+	 */
+	public NegativeBlockCache(final int maxSize) {
+
+		this(maxSize, 0);
+	}
+
+	/**
+	 * @param maxSize
+	 *            the maximum number of keys
+	 * @param ttlMillis
+	 *            the time to live of keys in milliseconds, keys never expire
+	 *            if not positive
+	 */
+	public NegativeBlockCache(final int maxSize, final long ttlMillis) {
+
+		this.maxSize = maxSize;
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+		keys = new LinkedHashMap<Long, Long>(16, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Long, Long> eldest) {
+
+				return size() > NegativeBlockCache.this.maxSize;
+			}
+		};
+	}
+
+	/**
+	 * @return a cache of the size and time to live set by the system
+	 *         properties {@value #SIZE_PROPERTY} and {@value #TTL_PROPERTY}
+	 */
+	public static NegativeBlockCache create() {
+
+		return new NegativeBlockCache(Integer.getInteger(SIZE_PROPERTY, DEFAULT_SIZE), ttlMillis());
+	}
+
+	/**
+	 * @return the time to live in milliseconds set by the system property
+	 *         {@value #TTL_PROPERTY}
+	 */
+	public static long ttlMillis() {
+
+		return TimeUnit.SECONDS.toMillis(Integer.getInteger(TTL_PROPERTY, DEFAULT_TTL));
+	}
+
+	/**
+	 * @param key
+	 *            the block key
+	 * @return whether the block is known to be missing
+	 */
+	public synchronized boolean contains(final long key) {
+
+		final Long expiry = keys.get(key);
+		if (expiry == null)
+			return false;
+
+		if (ttlNanos > 0 && System.nanoTime() - expiry > 0) {
+			keys.remove(key);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @param key
+	 *            the key of a missing block
+	 */
+	public synchronized void add(final long key) {
+
+		if (maxSize > 0)
+			keys.put(key, System.nanoTime() + ttlNanos);
+	}
+
+	public synchronized int size() {
+
+		return keys.size();
+	}
+
+	public int getMaxSize() {
+
+		return maxSize;
+	}
+}
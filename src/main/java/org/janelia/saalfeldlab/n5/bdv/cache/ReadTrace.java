@@ -0,0 +1,529 @@
+package org.janelia.saalfeldlab.n5.bdv.cache;
+
+import java.io.FilterInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.janelia.saalfeldlab.n5.KeyValueAccess;
+import org.janelia.saalfeldlab.n5.LockedChannel;
+import org.janelia.saalfeldlab.n5.N5KeyValueReader;
+import org.janelia.saalfeldlab.n5.N5Reader;
+
+import com.google.gson.GsonBuilder;
+
+/**
+ * An opt-in trace of all reads from the storage of an {@link N5Reader}.
+ * <p>
+ * If the system property {@value #TRACE_PROPERTY} is set to a file path,
+ * {@link #traceIfEnabled(N5Reader)} returns a reader that records every call
+ * to its {@link KeyValueAccess} with its key, size, latency, and calling
+ * subsystem as one CSV line in that file. When the JVM exits, a summary with
+ * the most expensive keys, duplicate reads, and totals per subsystem and
+ * method is written next to the trace with the suffix {@code .summary.txt}.
+ * <p>
+ * Keys are the method name followed by the path arguments of the call, e.g.
+ * the path of a block, an attributes file, or a listed directory. Channels
+ * and streams that are opened for reading are recorded when they are closed,
+ * with the number of bytes read from them and the latency until then, so
+ * that both include the transfer and not only opening. Other calls are
+ * recorded when they return, without a size. The subsystem is inferred from
+ * the call stack, which is expensive, but only done while tracing.
+ */
+public class ReadTrace {
+
+	public static final String TRACE_PROPERTY = "n5.viewer.trace";
+
+	/**
+	 * The part of the viewer that issued a read.
+	 */
+	public enum Subsystem {
+		DISCOVERY, SOURCE_OPEN, BLOCK_LOAD, CROP, OTHER
+	}
+
+	private static final int TOP_KEYS = 20;
+
+	/* key value access methods that only compute paths */
+	private static final Set<String> PATH_METHODS = new HashSet<>(Arrays.asList(
+			"components", "compose", "parent", "relativize", "normalize", "uri"));
+
+	private static ReadTrace trace = null;
+
+	private final Path path;
+
+	private final PrintWriter writer;
+
+	private final long start = System.nanoTime();
+
+	private final Map<String, KeyStatistics> keys = new HashMap<>();
+
+	private static class KeyStatistics {
+
+		final String key;
+
+		final Map<Subsystem, Long> countBySubsystem = new EnumMap<>(Subsystem.class);
+
+		long count = 0;
+
+		long bytes = 0;
+
+		long nanos = 0;
+
+		KeyStatistics(final String key) {
+
+			this.key = key;
+		}
+	}
+
+	private ReadTrace(final Path path) throws IOException {
+
+		this.path = path;
+		writer = new PrintWriter(Files.newBufferedWriter(path));
+		writer.println("start_us,thread,subsystem,method,key,bytes,latency_us");
+		Runtime.getRuntime().addShutdownHook(new Thread(this::close, "n5-viewer read trace"));
+	}
+
+	/**
+	 * @return the trace of this JVM, or null if tracing is not enabled
+	 */
+	public static synchronized ReadTrace get() {
+
+		if (trace == null) {
+			final String file = System.getProperty(TRACE_PROPERTY);
+			if (file == null || file.isEmpty())
+				return null;
+
+			try {
+				trace = new ReadTrace(Paths.get(file));
+			} catch (final IOException e) {
+				System.err.println("Could not create read trace " + file + ": " + e.getMessage());
+				System.clearProperty(TRACE_PROPERTY);
+				return null;
+			}
+		}
+		return trace;
+	}
+
+	/**
+	 * Returns a reader of the same container that records all reads from its
+	 * storage in the trace if tracing is enabled. The traced reader is a new
+	 * {@link N5KeyValueReader} whose key value access wraps the key value
+	 * access of the given reader, the given reader is not changed. Readers
+	 * that are not {@link N5KeyValueReader}s are returned as is and not
+	 * traced.
+	 *
+	 * @param n5
+	 *            the reader
+	 * @return the traced reader, or n5 if tracing is not enabled or not
+	 *         possible
+	 */
+	public static N5Reader traceIfEnabled(final N5Reader n5) {
+
+		if (n5 == null)
+			return n5;
+
+		final ReadTrace readTrace = get();
+		if (readTrace == null)
+			return n5;
+
+		if (!(n5 instanceof N5KeyValueReader)) {
+			System.err.println("Can not trace reads of " + n5.getClass().getName());
+			return n5;
+		}
+
+		final N5KeyValueReader kvn5 = (N5KeyValueReader)n5;
+		if (isTraced(kvn5.getKeyValueAccess()))
+			return n5;
+
+		return new N5KeyValueReader(
+				trace(kvn5.getKeyValueAccess(), readTrace),
+				n5.getURI().toString(),
+				new GsonBuilder(),
+				kvn5.cacheMeta());
+	}
+
+	/**
+	 * @param keyValueAccess
+	 *            the key value access
+	 * @return true if the key value access is traced
+	 */
+	public static boolean isTraced(final KeyValueAccess keyValueAccess) {
+
+		return Proxy.isProxyClass(keyValueAccess.getClass()) && Proxy.getInvocationHandler(keyValueAccess) instanceof Handler;
+	}
+
+	/**
+	 * Wraps a key value access so that all reads through it are recorded in a
+	 * trace.
+	 *
+	 * @param keyValueAccess
+	 *            the key value access
+	 * @param readTrace
+	 *            the trace
+	 * @return the traced key value access
+	 */
+	public static KeyValueAccess trace(final KeyValueAccess keyValueAccess, final ReadTrace readTrace) {
+
+		return (KeyValueAccess)Proxy.newProxyInstance(
+				KeyValueAccess.class.getClassLoader(),
+				new Class<?>[]{KeyValueAccess.class},
+				new Handler(keyValueAccess, readTrace));
+	}
+
+	/*
+	 * One read. Channels and streams are recorded when they are closed, with
+	 * the bytes read from them until then.
+	 */
+	private static class Read {
+
+		private final ReadTrace readTrace;
+
+		private final long t = System.nanoTime();
+
+		private final Subsystem subsystem = subsystem();
+
+		private final String method;
+
+		private final String key;
+
+		private final AtomicLong bytes = new AtomicLong();
+
+		private final AtomicBoolean recorded = new AtomicBoolean();
+
+		Read(final ReadTrace readTrace, final String method, final String key) {
+
+			this.readTrace = readTrace;
+			this.method = method;
+			this.key = key;
+		}
+
+		void record(final long numBytes) {
+
+			if (recorded.compareAndSet(false, true))
+				readTrace.record(t, subsystem, method, key, numBytes, System.nanoTime() - t);
+		}
+
+		void close() {
+
+			record(bytes.get());
+		}
+	}
+
+	private static class Handler implements InvocationHandler {
+
+		private final KeyValueAccess keyValueAccess;
+
+		private final ReadTrace readTrace;
+
+		Handler(final KeyValueAccess keyValueAccess, final ReadTrace readTrace) {
+
+			this.keyValueAccess = keyValueAccess;
+			this.readTrace = readTrace;
+		}
+
+		@Override
+		public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+
+			if (!isRead(method, args))
+				return forward(keyValueAccess, method, args);
+
+			final Read read = new Read(readTrace, method.getName(), key(method, args));
+			final Object result = forward(keyValueAccess, method, args);
+			if (result instanceof LockedChannel && method.getReturnType() == LockedChannel.class)
+				return Proxy.newProxyInstance(
+						LockedChannel.class.getClassLoader(),
+						new Class<?>[]{LockedChannel.class},
+						new ChannelHandler((LockedChannel)result, read));
+			else if (result instanceof InputStream && method.getReturnType() == InputStream.class)
+				return new CountingInputStream((InputStream)result, read);
+			else if (result instanceof byte[])
+				read.record(((byte[])result).length);
+			else
+				read.record(-1);
+
+			return result;
+		}
+	}
+
+	/*
+	 * Counts the bytes read from the streams of a channel, and records the
+	 * read when the channel or one of its streams is closed.
+	 */
+	private static class ChannelHandler implements InvocationHandler {
+
+		private final LockedChannel channel;
+
+		private final Read read;
+
+		ChannelHandler(final LockedChannel channel, final Read read) {
+
+			this.channel = channel;
+			this.read = read;
+		}
+
+		@Override
+		public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+
+			final Object result = forward(channel, method, args);
+			if (result instanceof InputStream)
+				return new CountingInputStream((InputStream)result, read);
+			else if (result instanceof Reader)
+				return new CountingReader((Reader)result, read);
+			else if (method.getName().equals("close") && method.getParameterCount() == 0)
+				read.close();
+
+			return result;
+		}
+	}
+
+	private static class CountingInputStream extends FilterInputStream {
+
+		private final Read read;
+
+		CountingInputStream(final InputStream in, final Read read) {
+
+			super(in);
+			this.read = read;
+		}
+
+		@Override
+		public int read() throws IOException {
+
+			final int b = super.read();
+			if (b >= 0)
+				read.bytes.incrementAndGet();
+
+			return b;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+
+			final int n = super.read(b, off, len);
+			if (n > 0)
+				read.bytes.addAndGet(n);
+
+			return n;
+		}
+
+		@Override
+		public void close() throws IOException {
+
+			super.close();
+			read.close();
+		}
+	}
+
+	/*
+	 * Counts characters as bytes, attributes are mostly ASCII.
+	 */
+	private static class CountingReader extends FilterReader {
+
+		private final Read read;
+
+		CountingReader(final Reader in, final Read read) {
+
+			super(in);
+			this.read = read;
+		}
+
+		@Override
+		public int read() throws IOException {
+
+			final int c = super.read();
+			if (c >= 0)
+				read.bytes.incrementAndGet();
+
+			return c;
+		}
+
+		@Override
+		public int read(final char[] cbuf, final int off, final int len) throws IOException {
+
+			final int n = super.read(cbuf, off, len);
+			if (n > 0)
+				read.bytes.addAndGet(n);
+
+			return n;
+		}
+
+		@Override
+		public void close() throws IOException {
+
+			super.close();
+			read.close();
+		}
+	}
+
+	private static Object forward(final Object target, final Method method, final Object[] args) throws Throwable {
+
+		try {
+			return method.invoke(target, args);
+		} catch (final InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/*
+	 * Reads are all calls with a path as first argument that do not only
+	 * compute paths.
+	 */
+	private static boolean isRead(final Method method, final Object[] args) {
+
+		return method.getDeclaringClass() != Object.class &&
+				!PATH_METHODS.contains(method.getName()) &&
+				args != null && args.length > 0 && args[0] instanceof String;
+	}
+
+	private static String key(final Method method, final Object[] args) {
+
+		final StringBuilder key = new StringBuilder(method.getName());
+		for (final Object arg : args) {
+			if (arg instanceof String)
+				key.append(' ').append(arg);
+			else if (arg instanceof long[])
+				key.append(' ').append(Arrays.toString((long[])arg));
+		}
+		return key.toString();
+	}
+
+	private static Subsystem subsystem() {
+
+		boolean blockLoad = false;
+		boolean sourceOpen = false;
+		for (final StackTraceElement element : new Throwable().getStackTrace()) {
+			final String className = element.getClassName();
+			if (className.contains(".tools.boundingbox.") || className.contains("CropController"))
+				return Subsystem.CROP;
+			if (className.contains("DatasetDiscoverer") || className.contains("N5MetadataUtils"))
+				return Subsystem.DISCOVERY;
+			if (className.endsWith("CacheLoader"))
+				blockLoad = true;
+			if (element.getMethodName().equals("buildN5Sources") || className.endsWith("MetadataSource"))
+				sourceOpen = true;
+		}
+		if (blockLoad)
+			return Subsystem.BLOCK_LOAD;
+		if (sourceOpen)
+			return Subsystem.SOURCE_OPEN;
+
+		return Subsystem.OTHER;
+	}
+
+	private synchronized void record(
+			final long t,
+			final Subsystem subsystem,
+			final String method,
+			final String key,
+			final long bytes,
+			final long nanos) {
+
+		writer.printf(
+				"%d,%s,%s,%s,\"%s\",%d,%d%n",
+				(t - start) / 1000,
+				Thread.currentThread().getName().replace(',', ' '),
+				subsystem,
+				method,
+				key.replace("\"", "\"\""),
+				bytes,
+				nanos / 1000);
+
+		final KeyStatistics stats = keys.computeIfAbsent(key, KeyStatistics::new);
+		++stats.count;
+		stats.bytes += Math.max(0, bytes);
+		stats.nanos += nanos;
+		stats.countBySubsystem.merge(subsystem, 1L, Long::sum);
+	}
+
+	/**
+	 * Writes the summary of the trace so far.
+	 *
+	 * @param out
+	 *            the writer
+	 */
+	public synchronized void writeSummary(final PrintWriter out) {
+
+		final List<KeyStatistics> all = new ArrayList<>(keys.values());
+
+		long count = 0, nanos = 0, bytes = 0, duplicates = 0;
+		final Map<Subsystem, long[]> bySubsystem = new EnumMap<>(Subsystem.class);
+		final Map<String, long[]> byMethod = new HashMap<>();
+		for (final KeyStatistics k : all) {
+			count += k.count;
+			nanos += k.nanos;
+			bytes += k.bytes;
+			duplicates += k.count - 1;
+			for (final Map.Entry<Subsystem, Long> e : k.countBySubsystem.entrySet())
+				bySubsystem.computeIfAbsent(e.getKey(), s -> new long[1])[0] += e.getValue();
+
+			final String method = k.key.substring(0, k.key.indexOf(' ') < 0 ? k.key.length() : k.key.indexOf(' '));
+			final long[] m = byMethod.computeIfAbsent(method, s -> new long[2]);
+			m[0] += k.count;
+			m[1] += k.nanos;
+		}
+
+		out.printf("%d reads of %d keys, %d duplicate reads, %.1f MiB read, %.1f s total latency%n",
+				count, all.size(), duplicates, bytes / (1024.0 * 1024.0), nanos * 1e-9);
+
+		out.println();
+		out.println("reads by subsystem:");
+		for (final Map.Entry<Subsystem, long[]> e : bySubsystem.entrySet())
+			out.printf("  %-12s %10d%n", e.getKey(), e.getValue()[0]);
+
+		out.println();
+		out.println("reads by method:");
+		byMethod.entrySet().stream()
+				.sorted((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]))
+				.forEach(e -> out.printf("  %-24s %10d reads %10.1f ms%n", e.getKey(), e.getValue()[0], e.getValue()[1] * 1e-6));
+
+		out.println();
+		out.println("top keys by total latency:");
+		all.sort(Comparator.comparingLong((KeyStatistics k) -> k.nanos).reversed());
+		for (final KeyStatistics k : all.subList(0, Math.min(TOP_KEYS, all.size())))
+			out.printf("  %10.1f ms %6d reads  %s%n", k.nanos * 1e-6, k.count, k.key);
+
+		out.println();
+		out.println("top duplicate reads:");
+		all.sort(Comparator.comparingLong((KeyStatistics k) -> k.count).reversed());
+		for (final KeyStatistics k : all.subList(0, Math.min(TOP_KEYS, all.size()))) {
+			if (k.count < 2)
+				break;
+
+			out.printf("  %6d reads %10.1f ms  %s  %s%n", k.count, k.nanos * 1e-6, k.key, k.countBySubsystem);
+		}
+		out.flush();
+	}
+
+	private synchronized void close() {
+
+		writer.flush();
+		writer.close();
+
+		final Path summaryPath = Paths.get(path.toString() + ".summary.txt");
+		try (final PrintWriter out = new PrintWriter(Files.newBufferedWriter(summaryPath))) {
+			writeSummary(out);
+		} catch (final IOException e) {
+			System.err.println("Could not write read trace summary " + summaryPath + ": " + e.getMessage());
+		}
+	}
+}
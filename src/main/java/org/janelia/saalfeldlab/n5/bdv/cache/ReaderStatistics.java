@@ -0,0 +1,90 @@
+package org.janelia.saalfeldlab.n5.bdv.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the blocks fetched from the storage of one
+ * {@link org.janelia.saalfeldlab.n5.N5Reader} over all sources that read from
+ * it, and their bytes, and records the latency of block reads. Unlike the
+ * bytes of {@link BlockLoadStatistics}, which count all loaded cells, only
+ * blocks that were read from the storage are counted. Readers do not expose
+ * the encoded size of blocks, so bytes are the decoded sizes of the fetched
+ * blocks.
+ */
+public class ReaderStatistics implements ReaderStatisticsMBean {
+
+	private final String name;
+
+	private final LongAdder reads = new LongAdder();
+
+	private final LongAdder missing = new LongAdder();
+
+	private final LongAdder bytes = new LongAdder();
+
+	private final LatencyHistogram readLatency = new LatencyHistogram();
+
+	public ReaderStatistics(final String name) {
+
+		this.name = name;
+	}
+
+	@Override
+	public String getName() {
+
+		return name;
+	}
+
+	void recordRead(final long nanos, final long numBytes) {
+
+		reads.increment();
+		bytes.add(numBytes);
+		readLatency.record(nanos);
+	}
+
+	void recordMissing(final long nanos) {
+
+		missing.increment();
+		readLatency.record(nanos);
+	}
+
+	@Override
+	public long getBlockReads() {
+
+		return reads.sum();
+	}
+
+	@Override
+	public long getMissingBlocks() {
+
+		return missing.sum();
+	}
+
+	@Override
+	public long getBytes() {
+
+		return bytes.sum();
+	}
+
+	public LatencyHistogram getReadLatency() {
+
+		return readLatency;
+	}
+
+	@Override
+	public long[] getReadLatencyBuckets() {
+
+		return readLatency.snapshot();
+	}
+
+	@Override
+	public double getReadLatencyP50Millis() {
+
+		return 1e-6 * LatencyHistogram.percentile(readLatency.snapshot(), 0.5);
+	}
+
+	@Override
+	public double getReadLatencyP99Millis() {
+
+		return 1e-6 * LatencyHistogram.percentile(readLatency.snapshot(), 0.99);
+	}
+}
@@ -0,0 +1,21 @@
+package org.janelia.saalfeldlab.n5.bdv.cache;
+
+/**
+ * JMX view of {@link ReaderStatistics}.
+ */
+public interface ReaderStatisticsMBean {
+
+	String getName();
+
+	long getBlockReads();
+
+	long getMissingBlocks();
+
+	long getBytes();
+
+	long[] getReadLatencyBuckets();
+
+	double getReadLatencyP50Millis();
+
+	double getReadLatencyP99Millis();
+}
@@ -0,0 +1,47 @@
+package org.janelia.saalfeldlab.n5.bdv.cache;
+
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.img.cell.Cell;
+
+/**
+ * Records the latency and size of every cell loaded by another
+ * {@link CacheLoader}.
+ *
+ * @param <A>
+ *            the access type
+ */
+public class StatisticsCacheLoader<A> implements CacheLoader<Long, Cell<A>> {
+
+	private final CacheLoader<Long, Cell<A>> loader;
+
+	private final BlockLoadStatistics statistics;
+
+	private final int bytesPerElement;
+
+	/**
+	 * @param loader
+	 *            the loader
+	 * @param statistics
+	 *            records the loads
+	 * @param bytesPerElement
+	 *            decoded bytes per element
+	 */
+	public StatisticsCacheLoader(
+			final CacheLoader<Long, Cell<A>> loader,
+			final BlockLoadStatistics statistics,
+			final int bytesPerElement) {
+
+		this.loader = loader;
+		this.statistics = statistics;
+		this.bytesPerElement = bytesPerElement;
+	}
+
+	@Override
+	public Cell<A> get(final Long key) throws Exception {
+
+		final long t = System.nanoTime();
+		final Cell<A> cell = loader.get(key);
+		statistics.recordLoad(System.nanoTime() - t, cell.size() * bytesPerElement, cell);
+		return cell;
+	}
+}
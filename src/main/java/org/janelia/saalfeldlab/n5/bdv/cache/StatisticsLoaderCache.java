@@ -0,0 +1,41 @@
+package org.janelia.saalfeldlab.n5.bdv.cache;
+
+import java.util.concurrent.ExecutionException;
+
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.cache.ref.SoftRefLoaderCache;
+
+/**
+ * A {@link SoftRefLoaderCache} that counts requests and hits.
+ *
+ * @param <K>
+ *            the key type
+ * @param <V>
+ *            the value type
+ */
+public class StatisticsLoaderCache<K, V> extends SoftRefLoaderCache<K, V> {
+
+	private final BlockLoadStatistics statistics;
+
+	public StatisticsLoaderCache(final BlockLoadStatistics statistics) {
+
+		this.statistics = statistics;
+	}
+
+	@Override
+	public V getIfPresent(final K key) {
+
+		final V value = super.getIfPresent(key);
+		if (value != null)
+			statistics.recordHit();
+
+		return value;
+	}
+
+	@Override
+	public V get(final K key, final CacheLoader<? super K, ? extends V> loader) throws ExecutionException {
+
+		statistics.recordRequest();
+		return super.get(key, loader);
+	}
+}
@@ -0,0 +1,121 @@
+package org.janelia.saalfeldlab.n5.bdv.cache;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registers the {@link ViewerStatistics} of one viewer and the statistics of
+ * its sources and readers as MBeans with the platform MBean server, so that
+ * they can be monitored with JConsole, VisualVM, or any JMX collector.
+ * <p>
+ * MBeans are registered in the domain {@value #DOMAIN} with the keys
+ * {@code type} (Viewer, Source, or Reader), {@code viewer} (a number unique
+ * in this JVM), and {@code name} for sources and readers. Sources and readers
+ * that are added to the viewer later are registered when they are added.
+ */
+public class StatisticsMBeans implements AutoCloseable {
+
+	public static final String DOMAIN = "org.janelia.saalfeldlab.n5.bdv";
+
+	private static final AtomicInteger nextViewerId = new AtomicInteger();
+
+	private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+	private final ViewerStatistics statistics;
+
+	private final String viewerId;
+
+	private final List<ObjectName> names = new ArrayList<>();
+
+	private final Consumer<Object> additionListener = this::register;
+
+	private boolean closed = false;
+
+	private StatisticsMBeans(final ViewerStatistics statistics) {
+
+		this.statistics = statistics;
+		viewerId = Integer.toString(nextViewerId.getAndIncrement());
+	}
+
+	/**
+	 * Registers MBeans for a viewer, its sources, and its readers.
+	 *
+	 * @param statistics
+	 *            the viewer statistics
+	 * @return the registration, close it to unregister all MBeans
+	 */
+	public static StatisticsMBeans register(final ViewerStatistics statistics) {
+
+		final StatisticsMBeans mbeans = new StatisticsMBeans(statistics);
+		mbeans.register(statistics);
+		statistics.addAdditionListener(mbeans.additionListener);
+		for (final BlockLoadStatistics source : statistics.getSourceStatistics())
+			mbeans.register(source);
+		for (final ReaderStatistics reader : statistics.getReaderStatistics())
+			mbeans.register(reader);
+
+		return mbeans;
+	}
+
+	private synchronized void register(final Object mbean) {
+
+		if (closed)
+			return;
+
+		try {
+			final ObjectName name = objectName(mbean);
+			if (server.isRegistered(name))
+				return;
+
+			server.registerMBean(mbean, name);
+			names.add(name);
+		} catch (final JMException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private ObjectName objectName(final Object mbean) throws JMException {
+
+		final StringBuilder name = new StringBuilder(DOMAIN).append(":type=");
+		if (mbean instanceof BlockLoadStatistics)
+			name.append("Source");
+		else if (mbean instanceof ReaderStatistics)
+			name.append("Reader");
+		else
+			name.append("Viewer");
+
+		name.append(",viewer=").append(viewerId);
+
+		if (mbean instanceof BlockLoadStatistics)
+			name.append(",name=").append(ObjectName.quote(((BlockLoadStatistics)mbean).getName()));
+		else if (mbean instanceof ReaderStatistics)
+			name.append(",name=").append(ObjectName.quote(((ReaderStatistics)mbean).getName()));
+
+		return new ObjectName(name.toString());
+	}
+
+	/**
+	 * Unregisters all MBeans.
+	 */
+	@Override
+	public synchronized void close() {
+
+		closed = true;
+		statistics.removeAdditionListener(additionListener);
+		for (final ObjectName name : names) {
+			try {
+				server.unregisterMBean(name);
+			} catch (final JMException e) {
+				// already unregistered
+			}
+		}
+		names.clear();
+	}
+}
@@ -0,0 +1,85 @@
+package org.janelia.saalfeldlab.n5.bdv.cache;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.janelia.saalfeldlab.n5.DataBlock;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5Reader;
+
+/**
+ * Forwards all calls to an {@link N5Reader} and records the latency and
+ * decoded size of {@link N5Reader#readBlock(String, DatasetAttributes, long...)
+ * readBlock} calls.
+ */
+class StatisticsReaderHandler implements InvocationHandler {
+
+	private final N5Reader n5;
+
+	private final BlockLoadStatistics sourceStatistics;
+
+	private final ReaderStatistics readerStatistics;
+
+	private StatisticsReaderHandler(
+			final N5Reader n5,
+			final BlockLoadStatistics sourceStatistics,
+			final ReaderStatistics readerStatistics) {
+
+		this.n5 = n5;
+		this.sourceStatistics = sourceStatistics;
+		this.readerStatistics = readerStatistics;
+	}
+
+	/**
+	 * @param n5
+	 *            the reader
+	 * @param sourceStatistics
+	 *            records read latencies of one source
+	 * @param readerStatistics
+	 *            records reads of all sources of the reader, can be null
+	 * @return a reader that records block reads
+	 */
+	static N5Reader wrap(
+			final N5Reader n5,
+			final BlockLoadStatistics sourceStatistics,
+			final ReaderStatistics readerStatistics) {
+
+		return (N5Reader)Proxy.newProxyInstance(
+				N5Reader.class.getClassLoader(),
+				new Class<?>[]{N5Reader.class},
+				new StatisticsReaderHandler(n5, sourceStatistics, readerStatistics));
+	}
+
+	@Override
+	public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+
+		if (!method.getName().equals("readBlock"))
+			return forward(method, args);
+
+		final long t = System.nanoTime();
+		final Object result = forward(method, args);
+		final long nanos = System.nanoTime() - t;
+
+		sourceStatistics.recordFetch(nanos);
+		if (readerStatistics != null) {
+			if (result instanceof DataBlock && args[1] instanceof DatasetAttributes) {
+				final long numBytes = (long)((DataBlock<?>)result).getNumElements() *
+						InstrumentedN5Utils.bytesPerElement(((DatasetAttributes)args[1]).getDataType());
+				readerStatistics.recordRead(nanos, numBytes);
+			} else
+				readerStatistics.recordMissing(nanos);
+		}
+		return result;
+	}
+
+	private Object forward(final Method method, final Object[] args) throws Throwable {
+
+		try {
+			return method.invoke(n5, args);
+		} catch (final InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+}
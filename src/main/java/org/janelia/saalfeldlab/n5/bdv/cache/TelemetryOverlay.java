@@ -0,0 +1,274 @@
+package org.janelia.saalfeldlab.n5.bdv.cache;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.Timer;
+
+import bdv.viewer.OverlayRenderer;
+import bdv.viewer.ViewerPanel;
+
+/**
+ * Draws render and cache telemetry of a viewer on top of its display:
+ * rendered frames per second, an estimate of the frames needed until the
+ * view is complete, fetch queue depth per priority, for every reader the
+ * blocks and bytes per second fetched from storage, and for every source
+ * block hits and loads, decoded bytes per second, and p50/p99 block load
+ * latency.
+ * <p>
+ * Rates and percentiles are computed over the refresh interval. While
+ * hidden, the overlay is not registered with the display and its timer is
+ * stopped. The statistics are recorded by instrumented caches and loaders
+ * as long as the {@link ViewerStatistics} are
+ * {@link ViewerStatistics#isCollecting() collecting}, whether the overlay is
+ * shown or not.
+ */
+public class TelemetryOverlay implements OverlayRenderer {
+
+	/**
+	 * Default refresh interval in milliseconds.
+	 */
+	public static final int DEFAULT_INTERVAL = 500;
+
+	private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+
+	private static final Color BACKGROUND = new Color(0, 0, 0, 160);
+
+	private final ViewerPanel viewer;
+
+	private final ViewerStatistics statistics;
+
+	private final Timer timer;
+
+	private final Map<BlockLoadStatistics, Snapshot> snapshots = new HashMap<>();
+
+	/* reads, missing blocks and bytes of the readers at the last update */
+	private final Map<ReaderStatistics, long[]> readerSnapshots = new HashMap<>();
+
+	private volatile List<String> lines = Collections.emptyList();
+
+	private boolean visible = false;
+
+	/* rendered frames at the last update */
+	private long frames;
+
+	private long lastUpdate;
+
+	private static class Snapshot {
+
+		final long hits;
+
+		final long loads;
+
+		final long bytes;
+
+		final long[] latency;
+
+		Snapshot(final BlockLoadStatistics stats) {
+
+			hits = stats.getHits();
+			loads = stats.getLoads();
+			bytes = stats.getBytes();
+			latency = stats.getLoadLatency().snapshot();
+		}
+	}
+
+	public TelemetryOverlay(final ViewerPanel viewer, final ViewerStatistics statistics, final int interval) {
+
+		this.viewer = viewer;
+		this.statistics = statistics;
+		timer = new Timer(interval, e -> update());
+		timer.setRepeats(true);
+		timer.setCoalesce(true);
+	}
+
+	public TelemetryOverlay(final ViewerPanel viewer, final ViewerStatistics statistics) {
+
+		this(viewer, statistics, DEFAULT_INTERVAL);
+	}
+
+	public boolean isVisible() {
+
+		return visible;
+	}
+
+	/**
+	 * Shows or hides the overlay. Must be called on the event dispatch thread.
+	 *
+	 * @param visible
+	 *            whether to show the overlay
+	 */
+	public void setVisible(final boolean visible) {
+
+		if (this.visible == visible)
+			return;
+
+		this.visible = visible;
+		if (visible) {
+			snapshots.clear();
+			for (final BlockLoadStatistics stats : statistics.getSourceStatistics())
+				snapshots.put(stats, new Snapshot(stats));
+
+			readerSnapshots.clear();
+			for (final ReaderStatistics stats : statistics.getReaderStatistics())
+				readerSnapshots.put(stats, snapshot(stats));
+
+			frames = statistics.getFrames();
+			lastUpdate = System.nanoTime();
+			lines = Collections.singletonList("collecting...");
+			viewer.getDisplay().overlays().add(this);
+			timer.start();
+		} else {
+			timer.stop();
+			viewer.getDisplay().overlays().remove(this);
+			snapshots.clear();
+			readerSnapshots.clear();
+		}
+		viewer.getDisplay().repaint();
+	}
+
+	@Override
+	public void drawOverlays(final Graphics g) {
+
+		final List<String> text = lines;
+		if (text.isEmpty())
+			return;
+
+		final Graphics2D g2 = (Graphics2D)g;
+		g2.setFont(FONT);
+		final FontMetrics metrics = g2.getFontMetrics();
+		int width = 0;
+		for (final String line : text)
+			width = Math.max(width, metrics.stringWidth(line));
+
+		final int lineHeight = metrics.getHeight();
+		final int x = 10;
+		final int y = 10;
+		g2.setColor(BACKGROUND);
+		g2.fillRect(x, y, width + 12, lineHeight * text.size() + 8);
+		g2.setColor(Color.WHITE);
+		for (int i = 0; i < text.size(); ++i)
+			g2.drawString(text.get(i), x + 6, y + 4 + metrics.getAscent() + i * lineHeight);
+	}
+
+	@Override
+	public void setCanvasSize(final int width, final int height) {}
+
+	private void update() {
+
+		final long now = System.nanoTime();
+		final double dt = Math.max(1e-9, (now - lastUpdate) * 1e-9);
+		lastUpdate = now;
+
+		final long currentFrames = statistics.getFrames();
+		final long frames = currentFrames - this.frames;
+		this.frames = currentFrames;
+
+		final int[] depths = statistics.getQueueDepths();
+		int queued = 0;
+		for (final int d : depths)
+			queued += d;
+
+		final List<String> text = new ArrayList<>();
+		final List<String> readerLines = new ArrayList<>();
+		for (final ReaderStatistics stats : statistics.getReaderStatistics()) {
+			final long[] current = snapshot(stats);
+			final long[] previous = readerSnapshots.put(stats, current);
+			if (previous == null)
+				continue;
+
+			readerLines.add(String.format(
+					"%s: %d reads, %d missing, %s/s fetched",
+					stats.getName(),
+					current[0] - previous[0],
+					current[1] - previous[1],
+					formatBytes((current[2] - previous[2]) / dt)));
+		}
+
+		final List<String> sourceLines = new ArrayList<>();
+		long loads = 0;
+		for (final BlockLoadStatistics stats : statistics.getSourceStatistics()) {
+			final Snapshot current = new Snapshot(stats);
+			final Snapshot previous = snapshots.put(stats, current);
+			if (previous == null)
+				continue;
+
+			final long[] latency = new long[current.latency.length];
+			for (int i = 0; i < latency.length; ++i)
+				latency[i] = current.latency[i] - previous.latency[i];
+
+			final long sourceLoads = current.loads - previous.loads;
+			loads += sourceLoads;
+			sourceLines.add(String.format(
+					"%s: %d hits, %d loads, %s/s, p50 %s, p99 %s",
+					stats.getName(),
+					current.hits - previous.hits,
+					sourceLoads,
+					formatBytes((current.bytes - previous.bytes) / dt),
+					formatMillis(LatencyHistogram.percentile(latency, 0.5)),
+					formatMillis(LatencyHistogram.percentile(latency, 0.99))));
+		}
+
+		text.add(String.format("render %.1f fps", frames / dt));
+		text.add("frames until complete: " + framesUntilComplete(queued, loads, frames));
+		text.add("queue: " + formatDepths(depths));
+		text.addAll(readerLines);
+		text.addAll(sourceLines);
+		lines = text;
+
+		/* repainting the display draws the last frame, it does not render */
+		viewer.getDisplay().repaint();
+	}
+
+	private static long[] snapshot(final ReaderStatistics stats) {
+
+		return new long[]{stats.getBlockReads(), stats.getMissingBlocks(), stats.getBytes()};
+	}
+
+	private static String framesUntilComplete(final int queued, final long loads, final long frames) {
+
+		if (queued == 0)
+			return "0";
+		if (loads == 0 || frames == 0)
+			return "?";
+
+		return String.format("~%d", (long)Math.ceil(queued / ((double)loads / frames)));
+	}
+
+	private static String formatDepths(final int[] depths) {
+
+		if (depths.length == 0)
+			return "n/a";
+
+		final StringBuilder s = new StringBuilder();
+		for (int i = 0; i < depths.length; ++i) {
+			if (i > 0)
+				s.append(' ');
+			s.append('p').append(i).append('=').append(depths[i]);
+		}
+		return s.toString();
+	}
+
+	private static String formatBytes(final double bytes) {
+
+		if (bytes >= 1024 * 1024)
+			return String.format("%.1f MiB", bytes / (1024 * 1024));
+		else if (bytes >= 1024)
+			return String.format("%.1f KiB", bytes / 1024);
+		else
+			return String.format("%.0f B", bytes);
+	}
+
+	private static String formatMillis(final long nanos) {
+
+		return nanos == 0 ? "-" : String.format("%.1f ms", nanos * 1e-6);
+	}
+}
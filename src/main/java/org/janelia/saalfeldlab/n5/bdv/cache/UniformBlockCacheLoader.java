@@ -0,0 +1,145 @@
+package org.janelia.saalfeldlab.n5.bdv.cache;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.janelia.saalfeldlab.n5.DataType;
+
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+
+/**
+ * Loads cells with another {@link CacheLoader}, except cells whose
+ * {@link BlockStatistics} say that all voxels have the same value. These are
+ * filled with the value without reading the block. Until the statistics are
+ * available, all cells are loaded.
+ * <p>
+ * Uniform cells of the same value share one array, cells of zeros share the
+ * array of the empty cells of the {@link N5BlockCacheLoader}. The arrays of
+ * the {@value #MAX_SHARED_VALUES} most recently used values are kept for
+ * sharing. The shared arrays must not be written to.
+ * <p>
+ * Values of 64-bit integer types are only substituted if they are exact as
+ * doubles.
+ *
+ * @param <A>
+ *            the access type
+ */
+public class UniformBlockCacheLoader<A extends ArrayDataAccess<A>> implements CacheLoader<Long, Cell<A>> {
+
+	public static final int MAX_SHARED_VALUES = 64;
+
+	/* the largest magnitude below which all longs are exact as doubles */
+	private static final double MAX_EXACT_LONG = 0x1p53;
+
+	private final CacheLoader<Long, Cell<A>> loader;
+
+	private final N5BlockCacheLoader<A> blocks;
+
+	private final CellGrid grid;
+
+	private final Supplier<BlockStatistics> statistics;
+
+	private final DataType dataType;
+
+	private final A accessType;
+
+	/* shared arrays of the size of a block by the bits of their value */
+	private final LinkedHashMap<Long, A> shared = new LinkedHashMap<Long, A>(16, 0.75f, true) {
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<Long, A> eldest) {
+
+			return size() > MAX_SHARED_VALUES;
+		}
+	};
+
+	/**
+	 * @param loader
+	 *            loads the other cells
+	 * @param blocks
+	 *            creates the cells of zeros
+	 * @param statistics
+	 *            the block statistics of the dataset, null until available
+	 * @param dataType
+	 *            the data type of the dataset
+	 * @param accessType
+	 *            creates the accesses of uniform cells
+	 */
+	public UniformBlockCacheLoader(
+			final CacheLoader<Long, Cell<A>> loader,
+			final N5BlockCacheLoader<A> blocks,
+			final Supplier<BlockStatistics> statistics,
+			final DataType dataType,
+			final A accessType) {
+
+		this.loader = loader;
+		this.blocks = blocks;
+		this.grid = blocks.getGrid();
+		this.statistics = statistics;
+		this.dataType = dataType;
+		this.accessType = accessType;
+	}
+
+	@Override
+	public Cell<A> get(final Long key) throws Exception {
+
+		final long index = key;
+		final BlockStatistics statistics = this.statistics.get();
+		if (statistics == null || !statistics.isUniform(index))
+			return loader.get(key);
+
+		final double value = statistics.get(index, BlockStatistics.MIN);
+		final boolean isLong = dataType == DataType.INT64 || dataType == DataType.UINT64;
+		if (isLong && !(Math.abs(value) < MAX_EXACT_LONG))
+			return loader.get(key);
+
+		if (value == 0)
+			return blocks.emptyCell(index);
+
+		final long[] min = new long[grid.numDimensions()];
+		final int[] size = new int[grid.numDimensions()];
+		grid.getCellDimensions(index, min, size);
+		return new Cell<>(size, min, shared(value));
+	}
+
+	/*
+	 * Cells at the border are smaller than a block and use the beginning of
+	 * the array.
+	 */
+	private synchronized A shared(final double value) {
+
+		final long bits = Double.doubleToLongBits(value);
+		A access = shared.get(bits);
+		if (access == null) {
+			final int[] blockSize = new int[grid.numDimensions()];
+			grid.cellDimensions(blockSize);
+			access = accessType.createArray((int)Arrays.stream(blockSize).asLongStream().reduce(1, (a, b) -> a * b));
+			fill(access.getCurrentStorageArray(), value);
+			shared.put(bits, access);
+		}
+		return access;
+	}
+
+	private static void fill(final Object array, final double value) {
+
+		if (array instanceof byte[])
+			Arrays.fill((byte[])array, (byte)(long)value);
+		else if (array instanceof short[])
+			Arrays.fill((short[])array, (short)(long)value);
+		else if (array instanceof int[])
+			Arrays.fill((int[])array, (int)(long)value);
+		else if (array instanceof long[])
+			Arrays.fill((long[])array, (long)value);
+		else if (array instanceof float[])
+			Arrays.fill((float[])array, (float)value);
+		else if (array instanceof double[])
+			Arrays.fill((double[])array, value);
+		else
+			throw new IllegalArgumentException("Unsupported array " + array.getClass());
+	}
+}
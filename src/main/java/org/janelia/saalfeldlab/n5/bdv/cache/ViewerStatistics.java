@@ -0,0 +1,316 @@
+package org.janelia.saalfeldlab.n5.bdv.cache;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+
+import org.janelia.saalfeldlab.n5.N5Reader;
+
+import bdv.cache.SharedQueue;
+import bdv.viewer.ViewerPanel;
+import bdv.viewer.ViewerStateChange;
+
+/**
+ * Block load statistics of all sources and readers of one viewer, the depth
+ * of the viewer's fetch queue, and the render latency of the viewer.
+ * <p>
+ * Block loads and reads are only recorded if collecting, which the viewer
+ * enables with the system property {@value #TELEMETRY_PROPERTY}. Otherwise
+ * sources are opened without instrumented caches and loaders, and the
+ * viewer has no telemetry overlay and registers no MBeans.
+ */
+public class ViewerStatistics implements ViewerStatisticsMBean {
+
+	public static final String TELEMETRY_PROPERTY = "n5.viewer.telemetry";
+
+	private static final int[] NO_DEPTHS = new int[0];
+
+	private final SharedQueue sharedQueue;
+
+	private final boolean collecting;
+
+	private final Map<String, BlockLoadStatistics> sources = new LinkedHashMap<>();
+
+	private final Map<String, ReaderStatistics> readers = new LinkedHashMap<>();
+
+	private final Set<String> datasets = new LinkedHashSet<>();
+
+	private final List<Consumer<Object>> additionListeners = new CopyOnWriteArrayList<>();
+
+	private final LongAdder frames = new LongAdder();
+
+	private final LatencyHistogram renderLatency = new LatencyHistogram();
+
+	/**
+	 * Creates statistics that are collected if the system property
+	 * {@value #TELEMETRY_PROPERTY} is {@code true}.
+	 *
+	 * @param sharedQueue
+	 *            the fetch queue of the viewer
+	 */
+	public ViewerStatistics(final SharedQueue sharedQueue) {
+
+		this(sharedQueue, Boolean.getBoolean(TELEMETRY_PROPERTY));
+	}
+
+	/**
+	 * @param sharedQueue
+	 *            the fetch queue of the viewer
+	 * @param collecting
+	 *            whether block loads, reads and rendered frames are recorded
+	 */
+	public ViewerStatistics(final SharedQueue sharedQueue, final boolean collecting) {
+
+		this.sharedQueue = sharedQueue;
+		this.collecting = collecting;
+	}
+
+	public boolean isCollecting() {
+
+		return collecting;
+	}
+
+	public SharedQueue getSharedQueue() {
+
+		return sharedQueue;
+	}
+
+	/**
+	 * Returns the statistics of a source, and creates them if they do not
+	 * exist. Multiscale levels and channels of one source share their
+	 * statistics.
+	 *
+	 * @param name
+	 *            the source name
+	 * @return the statistics, or null if not collecting
+	 */
+	public BlockLoadStatistics getSourceStatistics(final String name) {
+
+		if (!collecting)
+			return null;
+
+		final BlockLoadStatistics stats;
+		synchronized (this) {
+			if (sources.containsKey(name))
+				return sources.get(name);
+
+			stats = new BlockLoadStatistics(name);
+			sources.put(name, stats);
+		}
+		notifyAdded(stats);
+		return stats;
+	}
+
+	/**
+	 * Returns the statistics of a reader, and creates them if they do not
+	 * exist. Readers are identified by their URI.
+	 *
+	 * @param n5
+	 *            the reader
+	 * @return the statistics, or null if not collecting
+	 */
+	public ReaderStatistics getReaderStatistics(final N5Reader n5) {
+
+		if (!collecting)
+			return null;
+
+		final String name = n5.getURI().toString();
+		final ReaderStatistics stats;
+		synchronized (this) {
+			if (readers.containsKey(name))
+				return readers.get(name);
+
+			stats = new ReaderStatistics(name);
+			readers.put(name, stats);
+		}
+		notifyAdded(stats);
+		return stats;
+	}
+
+	/**
+	 * @return a snapshot of the statistics of all readers
+	 */
+	public synchronized List<ReaderStatistics> getReaderStatistics() {
+
+		return new ArrayList<>(readers.values());
+	}
+
+	/**
+	 * Remembers the uri of a dataset or group that is shown in the viewer, so
+	 * that a session can be opened again.
+	 *
+	 * @param uri
+	 *            the uri
+	 */
+	public synchronized void addDataset(final String uri) {
+
+		datasets.add(uri);
+	}
+
+	/**
+	 * @return the uris of all datasets and groups shown in the viewer
+	 */
+	public synchronized List<String> getDatasets() {
+
+		return new ArrayList<>(datasets);
+	}
+
+	/**
+	 * Adds a listener that is called with the {@link BlockLoadStatistics} or
+	 * {@link ReaderStatistics} of every source or reader that is added later.
+	 *
+	 * @param listener
+	 *            the listener
+	 */
+	public void addAdditionListener(final Consumer<Object> listener) {
+
+		additionListeners.add(listener);
+	}
+
+	public void removeAdditionListener(final Consumer<Object> listener) {
+
+		additionListeners.remove(listener);
+	}
+
+	private void notifyAdded(final Object stats) {
+
+		for (final Consumer<Object> listener : additionListeners)
+			listener.accept(stats);
+	}
+
+	/**
+	 * Records the render latency of a viewer, the time from a change of the
+	 * viewer transform until the first frame rendered with a new transform is
+	 * shown, and counts the rendered frames. Does nothing if not collecting.
+	 *
+	 * @param viewer
+	 *            the viewer
+	 */
+	public void monitorRendering(final ViewerPanel viewer) {
+
+		if (!collecting)
+			return;
+
+		final AtomicLong requested = new AtomicLong(-1);
+		viewer.state().changeListeners().add(change -> {
+			if (change == ViewerStateChange.VIEWER_TRANSFORM_CHANGED)
+				requested.compareAndSet(-1, System.nanoTime());
+		});
+		viewer.renderTransformListeners().add(transform -> {
+			frames.increment();
+			final long t = requested.getAndSet(-1);
+			if (t >= 0)
+				renderLatency.record(System.nanoTime() - t);
+		});
+	}
+
+	public LatencyHistogram getRenderLatency() {
+
+		return renderLatency;
+	}
+
+	@Override
+	public long getFrames() {
+
+		return frames.sum();
+	}
+
+	@Override
+	public long[] getRenderLatencyBuckets() {
+
+		return renderLatency.snapshot();
+	}
+
+	@Override
+	public double getRenderLatencyP50Millis() {
+
+		return 1e-6 * LatencyHistogram.percentile(renderLatency.snapshot(), 0.5);
+	}
+
+	@Override
+	public double getRenderLatencyP99Millis() {
+
+		return 1e-6 * LatencyHistogram.percentile(renderLatency.snapshot(), 0.99);
+	}
+
+	@Override
+	public synchronized int getNumSources() {
+
+		return sources.size();
+	}
+
+	@Override
+	public int getQueueDepth() {
+
+		int depth = 0;
+		for (final int d : getQueueDepths())
+			depth += d;
+
+		return depth;
+	}
+
+	/**
+	 * @return a snapshot of the statistics of all sources
+	 */
+	public synchronized List<BlockLoadStatistics> getSourceStatistics() {
+
+		return new ArrayList<>(sources.values());
+	}
+
+	/**
+	 * Returns the number of queued block requests per priority of the fetch
+	 * queue, highest priority first.
+	 * <p>
+	 * {@link SharedQueue} does not expose the sizes of its priority queues, so
+	 * they are read reflectively under the queue's lock. If the queue
+	 * implementation does not have the expected fields, an empty array is
+	 * returned.
+	 *
+	 * @return the queue depths, or an empty array if unknown
+	 */
+	@Override
+	public int[] getQueueDepths() {
+
+		try {
+			final Object queue = field(sharedQueue, "queue");
+			final Object[] queues = (Object[])field(queue, "queues");
+			final Lock lock = (Lock)field(queue, "lock");
+			lock.lock();
+			try {
+				final int[] depths = new int[queues.length];
+				for (int i = 0; i < queues.length; ++i)
+					depths[i] = ((Collection<?>)queues[i]).size();
+
+				return depths;
+			} finally {
+				lock.unlock();
+			}
+		} catch (final ReflectiveOperationException | ClassCastException | NullPointerException e) {
+			return NO_DEPTHS;
+		}
+	}
+
+	private static Object field(final Object object, final String name) throws ReflectiveOperationException {
+
+		for (Class<?> c = object.getClass(); c != null; c = c.getSuperclass()) {
+			try {
+				final Field field = c.getDeclaredField(name);
+				field.setAccessible(true);
+				return field.get(object);
+			} catch (final NoSuchFieldException e) {
+				// try super class
+			}
+		}
+		throw new NoSuchFieldException(name);
+	}
+}
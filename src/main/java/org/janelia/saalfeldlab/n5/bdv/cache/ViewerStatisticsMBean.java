@@ -0,0 +1,21 @@
+package org.janelia.saalfeldlab.n5.bdv.cache;
+
+/**
+ * JMX view of {@link ViewerStatistics}.
+ */
+public interface ViewerStatisticsMBean {
+
+	int getNumSources();
+
+	int getQueueDepth();
+
+	int[] getQueueDepths();
+
+	long getFrames();
+
+	long[] getRenderLatencyBuckets();
+
+	double getRenderLatencyP50Millis();
+
+	double getRenderLatencyP99Millis();
+}
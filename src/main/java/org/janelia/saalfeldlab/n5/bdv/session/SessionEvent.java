@@ -0,0 +1,53 @@
+package org.janelia.saalfeldlab.n5.bdv.session;
+
+/**
+ * One line of a session recorded by {@link SessionRecorder}. Fields that do
+ * not apply to the type of the event are null and are not written.
+ */
+public class SessionEvent {
+
+	public static final int VERSION = 1;
+
+	public static final String SESSION = "session";
+
+	public static final String TRANSFORM = "transform";
+
+	public static final String TIMEPOINT = "timepoint";
+
+	public static final String VISIBILITY = "visibility";
+
+	public static final String SIZE = "size";
+
+	/**
+	 * Milliseconds since the start of the recording.
+	 */
+	public long t;
+
+	public String type;
+
+	/* session */
+	public Integer version;
+
+	public String date;
+
+	public String[] uris;
+
+	public Integer numTimepoints;
+
+	/* session and size */
+	public Integer width;
+
+	public Integer height;
+
+	/* session: all sources, visibility: active sources */
+	public String[] sources;
+
+	/* visibility */
+	public String displayMode;
+
+	/* transform, the row-packed viewer transform */
+	public double[] transform;
+
+	/* timepoint */
+	public Integer timepoint;
+}
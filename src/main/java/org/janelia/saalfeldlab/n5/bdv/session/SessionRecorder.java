@@ -0,0 +1,259 @@
+package org.janelia.saalfeldlab.n5.bdv.session;
+
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.ComponentListener;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.gson.Gson;
+
+import bdv.viewer.SourceAndConverter;
+import bdv.viewer.ViewerPanel;
+import bdv.viewer.ViewerState;
+import bdv.viewer.ViewerStateChange;
+import bdv.viewer.ViewerStateChangeListener;
+import net.imglib2.realtransform.AffineTransform3D;
+
+/**
+ * Records the navigation of a viewer, so that a session can be replayed
+ * against the same data with {@link SessionReplay}.
+ * <p>
+ * A session is a gzipped file with one json {@link SessionEvent} per line.
+ * The first event has the type {@value SessionEvent#SESSION} and contains the
+ * uris of the datasets shown in the viewer, the names of the sources, and the
+ * size of the display. It is followed by the current state of the viewer and
+ * by every change of the viewer transform, the timepoint, the active sources
+ * and display mode, and the display size, each with the time in milliseconds
+ * since the start of the recording.
+ * <p>
+ * If the system property {@value #SESSION_PROPERTY} is set to a file or
+ * directory, {@link #startIfEnabled(ViewerPanel, List)} starts recording into
+ * that file or into a new file in that directory.
+ */
+public class SessionRecorder implements AutoCloseable {
+
+	public static final String SESSION_PROPERTY = "n5.viewer.session";
+
+	private static final long FLUSH_INTERVAL_NANOS = 1_000_000_000L;
+
+	private final ViewerPanel viewer;
+
+	private final Path path;
+
+	private final Writer writer;
+
+	private final Gson gson = new Gson();
+
+	private final long start = System.nanoTime();
+
+	private long lastFlush = start;
+
+	private final ViewerStateChangeListener stateListener = this::stateChanged;
+
+	private final ComponentListener sizeListener = new ComponentAdapter() {
+
+		@Override
+		public void componentResized(final ComponentEvent e) {
+
+			final SessionEvent event = event(SessionEvent.SIZE);
+			event.width = viewer.getDisplay().getWidth();
+			event.height = viewer.getDisplay().getHeight();
+			write(event);
+		}
+	};
+
+	private final Thread shutdownHook = new Thread(this::close, "n5-viewer session recorder");
+
+	private boolean closed = false;
+
+	private SessionRecorder(final ViewerPanel viewer, final Path path, final List<String> uris) throws IOException {
+
+		this.viewer = viewer;
+		this.path = path;
+		writer = new BufferedWriter(new OutputStreamWriter(
+				new GZIPOutputStream(Files.newOutputStream(path), true),
+				StandardCharsets.UTF_8));
+
+		final ViewerState state = viewer.state();
+		final SessionEvent header = event(SessionEvent.SESSION);
+		header.version = SessionEvent.VERSION;
+		header.date = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").format(new Date());
+		header.uris = uris.toArray(new String[0]);
+		header.sources = names(state.getSources());
+		header.width = viewer.getDisplay().getWidth();
+		header.height = viewer.getDisplay().getHeight();
+		header.numTimepoints = state.getNumTimepoints();
+		write(header);
+
+		stateChanged(ViewerStateChange.VIEWER_TRANSFORM_CHANGED);
+		stateChanged(ViewerStateChange.CURRENT_TIMEPOINT_CHANGED);
+		stateChanged(ViewerStateChange.VISIBILITY_CHANGED);
+
+		state.changeListeners().add(stateListener);
+		viewer.getDisplay().addComponentListener(sizeListener);
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	/**
+	 * Starts recording a viewer.
+	 *
+	 * @param viewer
+	 *            the viewer
+	 * @param path
+	 *            the session file
+	 * @param uris
+	 *            the uris of the datasets shown in the viewer
+	 * @return the recorder, close it to stop recording
+	 * @throws IOException
+	 *             if the file can not be created
+	 */
+	public static SessionRecorder start(final ViewerPanel viewer, final Path path, final List<String> uris) throws IOException {
+
+		return new SessionRecorder(viewer, path, uris);
+	}
+
+	/**
+	 * Starts recording a viewer if the system property
+	 * {@value #SESSION_PROPERTY} is set.
+	 *
+	 * @param viewer
+	 *            the viewer
+	 * @param uris
+	 *            the uris of the datasets shown in the viewer
+	 * @return the recorder, or null if recording is not enabled or the file
+	 *         can not be created
+	 */
+	public static SessionRecorder startIfEnabled(final ViewerPanel viewer, final List<String> uris) {
+
+		final String file = System.getProperty(SESSION_PROPERTY);
+		if (file == null || file.isEmpty())
+			return null;
+
+		Path path = Paths.get(file);
+		if (Files.isDirectory(path))
+			path = path.resolve(defaultFileName());
+
+		try {
+			return start(viewer, path, uris);
+		} catch (final IOException e) {
+			System.err.println("Could not record session to " + path + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @return a file name with the current date and time
+	 */
+	public static String defaultFileName() {
+
+		return "n5-viewer-session-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".jsonl.gz";
+	}
+
+	public Path getPath() {
+
+		return path;
+	}
+
+	private void stateChanged(final ViewerStateChange change) {
+
+		final ViewerState state = viewer.state();
+		final SessionEvent event;
+		switch (change) {
+		case VIEWER_TRANSFORM_CHANGED:
+			final AffineTransform3D transform = state.getViewerTransform();
+			event = event(SessionEvent.TRANSFORM);
+			event.transform = transform.getRowPackedCopy();
+			break;
+		case CURRENT_TIMEPOINT_CHANGED:
+			event = event(SessionEvent.TIMEPOINT);
+			event.timepoint = state.getCurrentTimepoint();
+			break;
+		case VISIBILITY_CHANGED:
+			event = event(SessionEvent.VISIBILITY);
+			event.sources = names(state.getActiveSources());
+			event.displayMode = state.getDisplayMode().name();
+			break;
+		default:
+			return;
+		}
+		write(event);
+	}
+
+	private SessionEvent event(final String type) {
+
+		final SessionEvent event = new SessionEvent();
+		event.t = (System.nanoTime() - start) / 1000000;
+		event.type = type;
+		return event;
+	}
+
+	private static String[] names(final Iterable<? extends SourceAndConverter<?>> sources) {
+
+		final List<String> names = new ArrayList<>();
+		for (final SourceAndConverter<?> source : sources)
+			names.add(source.getSpimSource().getName());
+
+		return names.toArray(new String[0]);
+	}
+
+	private synchronized void write(final SessionEvent event) {
+
+		if (closed)
+			return;
+
+		try {
+			writer.write(gson.toJson(event));
+			writer.write('\n');
+
+			final long t = System.nanoTime();
+			if (t - lastFlush > FLUSH_INTERVAL_NANOS) {
+				writer.flush();
+				lastFlush = t;
+			}
+		} catch (final IOException e) {
+			System.err.println("Could not write session " + path + ": " + e.getMessage());
+			close();
+		}
+	}
+
+	/**
+	 * Stops recording and closes the file.
+	 */
+	@Override
+	public void close() {
+
+		synchronized (this) {
+			if (closed)
+				return;
+
+			closed = true;
+			try {
+				writer.close();
+			} catch (final IOException e) {
+				System.err.println("Could not close session " + path + ": " + e.getMessage());
+			}
+		}
+
+		viewer.state().changeListeners().remove(stateListener);
+		viewer.getDisplay().removeComponentListener(sizeListener);
+		if (Thread.currentThread() != shutdownHook) {
+			try {
+				Runtime.getRuntime().removeShutdownHook(shutdownHook);
+			} catch (final IllegalStateException e) {
+				// shutting down
+			}
+		}
+	}
+}
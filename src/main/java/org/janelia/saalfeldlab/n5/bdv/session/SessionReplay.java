@@ -0,0 +1,323 @@
+package org.janelia.saalfeldlab.n5.bdv.session;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import javax.swing.SwingUtilities;
+
+import org.janelia.saalfeldlab.n5.bdv.N5Viewer;
+import org.janelia.saalfeldlab.n5.bdv.cache.BlockLoadStatistics;
+import org.janelia.saalfeldlab.n5.bdv.cache.LatencyHistogram;
+import org.janelia.saalfeldlab.n5.bdv.cache.ViewerStatistics;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import bdv.cache.SharedQueue;
+import bdv.tools.brightness.ConverterSetup;
+import bdv.util.BdvHandle;
+import bdv.util.BdvOptions;
+import bdv.viewer.DisplayMode;
+import bdv.viewer.SourceAndConverter;
+import bdv.viewer.ViewerPanel;
+import bdv.viewer.ViewerState;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+/**
+ * Replays a session recorded by {@link SessionRecorder} in a viewer, with the
+ * timing of the recording or faster or slower.
+ * <p>
+ * Viewer transforms are applied relative to the center of the display, so
+ * that a session recorded with a different display size shows the same
+ * region. Sources are matched by name.
+ * <p>
+ * Run as a Java application with the session file and the options
+ * <ul>
+ * <li>{@code --speed <f>} replay speed, default 1</li>
+ * <li>{@code --telemetry <file>} writes the fetch and cache telemetry as one
+ * json object per line, default stdout</li>
+ * <li>{@code --interval <ms>} telemetry interval, default 250</li>
+ * </ul>
+ * The datasets of the session are opened in a new viewer, and the telemetry
+ * is written every interval while the session is replayed. Counts and
+ * latency percentiles are cumulative since the start of the replay.
+ */
+public class SessionReplay {
+
+	private final ViewerPanel viewer;
+
+	private final List<SessionEvent> events;
+
+	private int recordedWidth;
+
+	private int recordedHeight;
+
+	private volatile int numReplayed = 0;
+
+	/**
+	 * @param viewer
+	 *            the viewer
+	 * @param events
+	 *            the events of the session, starting with the session header
+	 */
+	public SessionReplay(final ViewerPanel viewer, final List<SessionEvent> events) {
+
+		this.viewer = viewer;
+		this.events = events;
+
+		final SessionEvent header = events.get(0);
+		recordedWidth = header.width == null ? 0 : header.width;
+		recordedHeight = header.height == null ? 0 : header.height;
+	}
+
+	/**
+	 * Reads a session.
+	 *
+	 * @param path
+	 *            the session file
+	 * @return the events, starting with the session header
+	 * @throws IOException
+	 *             if the file can not be read or is not a session
+	 */
+	public static List<SessionEvent> read(final Path path) throws IOException {
+
+		final Gson gson = new Gson();
+		final List<SessionEvent> events = new ArrayList<>();
+		try (final BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new GZIPInputStream(Files.newInputStream(path)),
+				StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.isEmpty())
+					events.add(gson.fromJson(line, SessionEvent.class));
+			}
+		} catch (final JsonParseException | EOFException e) {
+			/* a session that was not closed properly ends with a partial line */
+			if (events.isEmpty())
+				throw new IOException("Could not read session " + path, e);
+		}
+
+		if (events.isEmpty() || !SessionEvent.SESSION.equals(events.get(0).type))
+			throw new IOException(path + " is not a session");
+
+		return events;
+	}
+
+	/**
+	 * @return the number of events that were replayed
+	 */
+	public int getNumReplayed() {
+
+		return numReplayed;
+	}
+
+	/**
+	 * Replays all events with the timing of the recording, blocks until the
+	 * last event was applied.
+	 *
+	 * @param speed
+	 *            replay speed, 2 replays twice as fast
+	 * @throws InterruptedException
+	 *             if interrupted
+	 */
+	public void replay(final double speed) throws InterruptedException {
+
+		final long start = System.nanoTime();
+		for (final SessionEvent event : events) {
+			final long wait = (long)(event.t * 1e6 / speed) - (System.nanoTime() - start);
+			if (wait > 0)
+				Thread.sleep(wait / 1000000, (int)(wait % 1000000));
+
+			try {
+				SwingUtilities.invokeAndWait(() -> apply(event));
+			} catch (final InvocationTargetException e) {
+				e.getCause().printStackTrace();
+			}
+			++numReplayed;
+		}
+	}
+
+	private void apply(final SessionEvent event) {
+
+		final ViewerState state = viewer.state();
+		switch (event.type) {
+		case SessionEvent.TRANSFORM:
+			final AffineTransform3D transform = new AffineTransform3D();
+			transform.set(event.transform);
+			transform.translate(
+					0.5 * (viewer.getDisplay().getWidth() - recordedWidth),
+					0.5 * (viewer.getDisplay().getHeight() - recordedHeight),
+					0);
+			state.setViewerTransform(transform);
+			break;
+		case SessionEvent.TIMEPOINT:
+			state.setCurrentTimepoint(event.timepoint);
+			break;
+		case SessionEvent.VISIBILITY:
+			final Set<String> active = new HashSet<>(Arrays.asList(event.sources));
+			for (final SourceAndConverter<?> source : state.getSources())
+				state.setSourceActive(source, active.contains(source.getSpimSource().getName()));
+
+			state.setDisplayMode(DisplayMode.valueOf(event.displayMode));
+			break;
+		case SessionEvent.SIZE:
+			recordedWidth = event.width;
+			recordedHeight = event.height;
+			break;
+		default:
+		}
+	}
+
+	public static void main(final String... args) throws IOException, InterruptedException {
+
+		String session = null, telemetry = null;
+		double speed = 1;
+		long interval = 250;
+		for (int i = 0; i < args.length; ++i) {
+			switch (args[i]) {
+			case "--speed":
+				speed = Double.parseDouble(args[++i]);
+				break;
+			case "--telemetry":
+				telemetry = args[++i];
+				break;
+			case "--interval":
+				interval = Long.parseLong(args[++i]);
+				break;
+			default:
+				session = args[i];
+			}
+		}
+
+		if (session == null) {
+			System.err.println("usage: SessionReplay <session> [--speed <f>] [--telemetry <file>] [--interval <ms>]");
+			System.exit(1);
+		}
+
+		final List<SessionEvent> events = read(Paths.get(session));
+		final SessionEvent header = events.get(0);
+
+		BdvOptions options = BdvOptions.options().frameTitle("N5 Viewer replay " + session);
+		if (header.width != null && header.height != null && header.width > 0 && header.height > 0)
+			options = options.preferredSize(header.width, header.height);
+
+		final SharedQueue sharedQueue = new SharedQueue(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+		final ViewerStatistics statistics = new ViewerStatistics(sharedQueue, true);
+		final List<SourceAndConverter<UnsignedShortType>> sources = new ArrayList<>();
+		final int numTimepoints = N5Viewer.buildN5Sources(header.uris, sharedQueue, statistics, new ArrayList<ConverterSetup>(), sources, options);
+		final BdvHandle bdv = N5Viewer.show(sources, numTimepoints, options, true, null, statistics);
+		if (bdv == null) {
+			System.err.println("Could not open " + Arrays.toString(header.uris));
+			System.exit(1);
+		}
+
+		/* wait until the viewer was shown and initialized its transform */
+		final ViewerPanel viewer = bdv.getViewerPanel();
+		while (!viewer.isShowing())
+			Thread.sleep(10);
+		Thread.sleep(500);
+
+		final SessionReplay replay = new SessionReplay(viewer, events);
+		try (final PrintWriter out = telemetry == null
+				? new PrintWriter(System.out)
+				: new PrintWriter(Files.newBufferedWriter(Paths.get(telemetry)))) {
+
+			final long samplingInterval = interval;
+			final long start = System.nanoTime();
+			final Thread sampler = new Thread(() -> {
+				try {
+					while (!Thread.interrupted()) {
+						sample(out, (System.nanoTime() - start) / 1000000, replay.getNumReplayed(), statistics);
+						Thread.sleep(samplingInterval);
+					}
+				} catch (final InterruptedException e) {
+					// replay finished
+				}
+			}, "n5-viewer replay telemetry");
+			sampler.start();
+
+			replay.replay(speed);
+
+			sampler.interrupt();
+			sampler.join();
+			sample(out, (System.nanoTime() - start) / 1000000, replay.getNumReplayed(), statistics);
+		}
+	}
+
+	private static class Sample {
+
+		long t;
+
+		int event;
+
+		long frames;
+
+		double renderP50Millis;
+
+		double renderP99Millis;
+
+		int queueDepth;
+
+		long loads;
+
+		long hits;
+
+		long bytes;
+
+		long evictions;
+
+		double loadP50Millis;
+
+		double loadP99Millis;
+	}
+
+	private static void sample(final PrintWriter out, final long t, final int event, final ViewerStatistics statistics) {
+
+		final Sample sample = new Sample();
+		sample.t = t;
+		sample.event = event;
+		sample.frames = statistics.getFrames();
+		sample.renderP50Millis = statistics.getRenderLatencyP50Millis();
+		sample.renderP99Millis = statistics.getRenderLatencyP99Millis();
+		sample.queueDepth = statistics.getQueueDepth();
+
+		long[] loadLatency = null;
+		for (final BlockLoadStatistics source : statistics.getSourceStatistics()) {
+			sample.loads += source.getLoads();
+			sample.hits += source.getHits();
+			sample.bytes += source.getBytes();
+			sample.evictions += source.getEvictions();
+
+			final long[] counts = source.getLoadLatency().snapshot();
+			if (loadLatency == null)
+				loadLatency = counts;
+			else
+				for (int i = 0; i < counts.length; ++i)
+					loadLatency[i] += counts[i];
+		}
+		if (loadLatency != null) {
+			sample.loadP50Millis = 1e-6 * LatencyHistogram.percentile(loadLatency, 0.5);
+			sample.loadP99Millis = 1e-6 * LatencyHistogram.percentile(loadLatency, 0.99);
+		}
+
+		synchronized (out) {
+			out.println(new Gson().toJson(sample));
+			out.flush();
+		}
+	}
+}
@@ -0,0 +1,348 @@
+package org.janelia.saalfeldlab.n5.bdv.tools.boundingbox;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.janelia.saalfeldlab.n5.Compression;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.bdv.SourceBlockStatistics;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+
+import bdv.viewer.Source;
+import bdv.viewer.SourceAndConverter;
+import ij.ImagePlus;
+import ij.io.FileSaver;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.display.imagej.ImageJFunctions;
+import net.imglib2.iterator.IntervalIterator;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.NumericType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Crops lists of {@link CropBox}es from sources without a viewer, using the
+ * same pixel interval logic as {@link BoxCrop}.
+ * <p>
+ * Boxes that touch a common storage block of any source are grouped and the
+ * boxes of a group are cropped one after the other by the same thread, so
+ * shared blocks are loaded once and are still cached when the next box of the
+ * group needs them. Groups are cropped in parallel. The blocks of N5 sources
+ * are those of their datasets, other sources are assumed to have blocks of
+ * {@link #setBlockSize(int...) the block size}.
+ * <p>
+ * Boxes whose names are equal after replacing characters that are not valid
+ * in file names get a numeric suffix, their index in the list unless that
+ * name is taken, so that their crops do not overwrite each other.
+ *
+ * @param <T>
+ *            the type of the sources
+ */
+public class BatchCrop<T extends NumericType<T> & NativeType<T>> {
+
+	public static final int DEFAULT_BLOCK_SIZE = 64;
+
+	/**
+	 * Writes the crop of one source for one box.
+	 *
+	 * @param <T>
+	 *            the type
+	 */
+	@FunctionalInterface
+	public static interface CropWriter<T> {
+
+		public void write(
+				final CropBox box,
+				final Source<T> src,
+				final int level,
+				final RandomAccessibleInterval<T> crop) throws IOException;
+	}
+
+	private final List<SourceAndConverter<T>> sources;
+
+	private int[] blockSize = Tiles.tileSize(3, DEFAULT_BLOCK_SIZE);
+
+	private int defaultLevel = 0;
+
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+
+	public BatchCrop(final List<SourceAndConverter<T>> sources) {
+
+		this.sources = sources;
+	}
+
+	/**
+	 * Sets the storage block size used to group boxes for sources whose
+	 * storage blocks are not known. If the array is shorter than the number of
+	 * dimensions of a source, its last value is used for the remaining
+	 * dimensions.
+	 *
+	 * @param blockSize
+	 *            the block size
+	 */
+	public void setBlockSize(final int... blockSize) {
+
+		this.blockSize = blockSize;
+	}
+
+	public void setDefaultLevel(final int defaultLevel) {
+
+		this.defaultLevel = defaultLevel;
+	}
+
+	public void setNumThreads(final int numThreads) {
+
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Groups boxes that share at least one storage block of any source at the
+	 * scale level they are cropped at. Groups are sorted by size, largest
+	 * first.
+	 *
+	 * @param boxes
+	 *            the boxes
+	 * @return the groups
+	 */
+	public List<List<CropBox>> group(final List<CropBox> boxes) {
+
+		final int[] parent = IntStream.range(0, boxes.size()).toArray();
+		final HashMap<String, Integer> blockOwners = new HashMap<>();
+
+		for (int i = 0; i < boxes.size(); i++) {
+			for (int s = 0; s < sources.size(); s++) {
+				final Source<T> src = sources.get(s).getSpimSource();
+				final int level = level(boxes.get(i), src);
+				final Interval pixItvl = Intervals.intersect(
+						BoxCrop.getPixelInterval(src, level, boxes.get(i).getInterval()),
+						src.getSource(0, level));
+				if (Intervals.isEmpty(pixItvl))
+					continue;
+
+				for (final String block : blocks(src, level, pixItvl)) {
+					final Integer owner = blockOwners.putIfAbsent(s + "/" + level + "/" + block, i);
+					if (owner != null)
+						union(parent, owner, i);
+				}
+			}
+		}
+
+		final HashMap<Integer, List<CropBox>> groups = new HashMap<>();
+		for (int i = 0; i < boxes.size(); i++)
+			groups.computeIfAbsent(find(parent, i), x -> new ArrayList<>()).add(boxes.get(i));
+
+		final List<List<CropBox>> groupList = new ArrayList<>(groups.values());
+		groupList.sort(Comparator.comparingInt(g -> -g.size()));
+		return groupList;
+	}
+
+	/**
+	 * Crops all sources for all boxes and passes the crops to the writer.
+	 *
+	 * @param boxes
+	 *            the boxes
+	 * @param writer
+	 *            the writer
+	 * @return the number of crops written
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 * @throws ExecutionException
+	 *             if a crop could not be written
+	 */
+	public int run(final List<CropBox> boxes, final CropWriter<T> writer) throws InterruptedException, ExecutionException {
+
+		final List<List<CropBox>> groups = group(uniqueNames(boxes));
+		final AtomicInteger numWritten = new AtomicInteger();
+
+		final ExecutorService exec = Executors.newFixedThreadPool(Math.max(1, numThreads));
+		try {
+			final List<Future<?>> futures = new ArrayList<>();
+			for (final List<CropBox> group : groups) {
+				futures.add(exec.submit(() -> {
+					for (final CropBox box : group) {
+						for (final SourceAndConverter<T> sac : sources) {
+							final Source<T> src = sac.getSpimSource();
+							final int level = level(box, src);
+							final Interval pixItvl = BoxCrop.getPixelInterval(src, level, box.getInterval());
+							writer.write(box, src, level, BoxCrop.cropSource(src, pixItvl, level));
+							numWritten.incrementAndGet();
+						}
+					}
+					return null;
+				}));
+			}
+
+			for (final Future<?> future : futures)
+				future.get();
+		} finally {
+			exec.shutdownNow();
+		}
+		return numWritten.get();
+	}
+
+	private int level(final CropBox box, final Source<?> src) {
+
+		final int level = box.getLevel() >= 0 ? box.getLevel() : defaultLevel;
+		return Math.min(level, src.getNumMipmapLevels() - 1);
+	}
+
+	/*
+	 * The keys of the storage blocks of a source that intersect an interval.
+	 * The blocks of N5 sources come from their dataset attributes.
+	 */
+	private List<String> blocks(final Source<?> src, final int level, final Interval pixItvl) {
+
+		final List<String> keys = new ArrayList<>();
+		final SourceBlockStatistics sourceBlocks = SourceBlockStatistics.of(src);
+		if (sourceBlocks != null && sourceBlocks.hasBlocks(level)) {
+			for (final long block : sourceBlocks.blocks(level, 0, pixItvl))
+				keys.add(Long.toString(block));
+			return keys;
+		}
+
+		final int nd = pixItvl.numDimensions();
+		final long[] gridMin = new long[nd];
+		final long[] gridMax = new long[nd];
+		for (int d = 0; d < nd; d++) {
+			final int bs = blockSize[Math.min(d, blockSize.length - 1)];
+			gridMin[d] = Math.floorDiv(pixItvl.min(d), bs);
+			gridMax[d] = Math.floorDiv(pixItvl.max(d), bs);
+		}
+
+		final long[] gridPosition = new long[nd];
+		final IntervalIterator it = new IntervalIterator(gridMin, gridMax);
+		while (it.hasNext()) {
+			it.fwd();
+			it.localize(gridPosition);
+			keys.add(Arrays.toString(gridPosition));
+		}
+		return keys;
+	}
+
+	/*
+	 * Appends a numeric suffix, starting with the index, to the names of boxes
+	 * whose sanitized names are not unique. Suffixes are incremented until the
+	 * name is not used by any other box.
+	 */
+	static List<CropBox> uniqueNames(final List<CropBox> boxes) {
+
+		final Set<String> taken = new HashSet<>();
+		final Set<String> duplicates = new HashSet<>();
+		for (final CropBox box : boxes)
+			if (!taken.add(sanitize(box.getName())))
+				duplicates.add(sanitize(box.getName()));
+
+		if (duplicates.isEmpty())
+			return boxes;
+
+		final List<CropBox> unique = new ArrayList<>(boxes.size());
+		for (int i = 0; i < boxes.size(); i++) {
+			final CropBox box = boxes.get(i);
+			if (!duplicates.contains(sanitize(box.getName()))) {
+				unique.add(box);
+				continue;
+			}
+
+			String name = box.getName() + "_" + i;
+			for (int suffix = i + 1; !taken.add(sanitize(name)); ++suffix)
+				name = box.getName() + "_" + suffix;
+
+			unique.add(new CropBox(
+					name,
+					box.getInterval().minAsDoubleArray(),
+					box.getInterval().maxAsDoubleArray(),
+					box.getLevel()));
+		}
+		return unique;
+	}
+
+	private static int find(final int[] parent, int i) {
+
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	private static void union(final int[] parent, final int i, final int j) {
+
+		final int ri = find(parent, i);
+		final int rj = find(parent, j);
+		if (ri != rj)
+			parent[Math.max(ri, rj)] = Math.min(ri, rj);
+	}
+
+	/**
+	 * Returns a writer that saves each crop as the dataset
+	 * "box-name/source-name" of an N5 or Zarr container. The pixel offset of
+	 * the crop and its scale level are stored as attributes.
+	 *
+	 * @param <T>
+	 *            the type
+	 * @param n5
+	 *            the writer
+	 * @param blockSize
+	 *            the block size of the written datasets
+	 * @param compression
+	 *            the compression
+	 * @return the crop writer
+	 */
+	public static <T extends NumericType<T> & NativeType<T>> CropWriter<T> n5Writer(
+			final N5Writer n5,
+			final int[] blockSize,
+			final Compression compression) {
+
+		return (box, src, level, crop) -> {
+			final String dataset = sanitize(box.getName()) + "/" + sanitize(src.getName());
+			N5Utils.save(Views.zeroMin(crop), n5, dataset, blockSize, compression);
+			n5.setAttribute(dataset, "offset", Intervals.minAsLongArray(crop));
+			n5.setAttribute(dataset, "level", level);
+		};
+	}
+
+	/**
+	 * Returns a writer that saves each crop as the calibrated tiff file
+	 * "box-name_source-name.tif" in a directory. The z dimension of 3D crops
+	 * is saved as slices.
+	 *
+	 * @param <T>
+	 *            the type
+	 * @param directory
+	 *            the output directory
+	 * @return the crop writer
+	 */
+	public static <T extends NumericType<T> & NativeType<T>> CropWriter<T> tiffWriter(final File directory) {
+
+		return (box, src, level, crop) -> {
+			final String name = sanitize(box.getName()) + "_" + sanitize(src.getName());
+			final ImagePlus imp = ImageJFunctions.wrap(
+					crop.numDimensions() == 3 ? Views.moveAxis(Views.addDimension(crop, 0, 0), 2, 3) : crop,
+					name);
+			BoxCrop.updateResolutionOffset(imp, src, crop, level);
+
+			final File file = new File(directory, name + ".tif");
+			if (!new FileSaver(imp).saveAsTiff(file.getAbsolutePath()))
+				throw new IOException("Could not write " + file);
+		};
+	}
+
+	private static String sanitize(final String name) {
+
+		return name.replaceAll("^/+", "").replaceAll("[^A-Za-z0-9._-]", "_");
+	}
+}
@@ -7,12 +7,16 @@ import java.awt.Font;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
+import java.io.IOException;
 import java.text.CharacterIterator;
 import java.text.StringCharacterIterator;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.function.DoubleConsumer;
 import java.util.stream.IntStream;
 
 import javax.swing.BoxLayout;
@@ -43,6 +47,7 @@ import bdv.viewer.Source;
 import bdv.viewer.SourceAndConverter;
 import bdv.viewer.ViewerStateChange;
 import bdv.viewer.ViewerStateChangeListener;
+import ij.IJ;
 import ij.ImagePlus;
 import net.imglib2.FinalInterval;
 import net.imglib2.FinalRealInterval;
@@ -53,6 +58,7 @@ import net.imglib2.RealPoint;
 import net.imglib2.Volatile;
 import net.imglib2.converter.Converter;
 import net.imglib2.display.RealARGBColorConverter;
+import net.imglib2.img.Img;
 import net.imglib2.img.display.imagej.ImageJFunctions;
 import net.imglib2.iterator.IntervalIterator;
 import net.imglib2.realtransform.AffineTransform3D;
@@ -81,6 +87,8 @@ public class BoxCrop extends TransformedRealBoxSelectionDialog implements ClickB
 	private JComboBox<Integer> scaleLevelDropdown;
 	private JComboBox<String> exportedSourcesDropddown;
 	private JCheckBox concatenateSourcesCheck;
+	private JCheckBox resampleCheck;
+	private JCheckBox diskBackedCheck;
 	private JLabel information;
 
 	private SourceAndConverter<?> currSrc;
@@ -139,8 +147,9 @@ public class BoxCrop extends TransformedRealBoxSelectionDialog implements ClickB
 
 		// add actions
 		super.buttons.onOk(() -> {
-			crop();
+			final Selection selection = new Selection();
 			viewer.state().changeListeners().remove(this);
+			CropProgress.run(viewer, "Cropping", progress -> crop(selection, progress));
 		});
 
 		super.buttons.onCancel(() -> {
@@ -296,7 +305,7 @@ public class BoxCrop extends TransformedRealBoxSelectionDialog implements ClickB
 			 */
 			this.selectedLevel = scaleLevelDropdown.getSelectedIndex();
 
-			if (EXPORT_VISIBLE.equals((String)exportedSourcesDropddown.getSelectedItem())) {
+			if (EXPORT_VISIBLE.equals((String)exportedSourcesDropddown.getSelectedItem()) && !resampleCheck.isSelected()) {
 				if (!canExportVisible(true)) {
 					exportedSourcesDropddown.setSelectedItem(EXPORT_CURRENT);
 					concatenateSourcesCheck.setEnabled(false);
@@ -315,15 +324,19 @@ public class BoxCrop extends TransformedRealBoxSelectionDialog implements ClickB
 		exportedSourcesDropddown = new JComboBox<>(new String[]{EXPORT_CURRENT, EXPORT_VISIBLE});
 		exportedSourcesDropddown.addActionListener((e) -> {
 			if (EXPORT_VISIBLE.equals((String)exportedSourcesDropddown.getSelectedItem())) {
-				if (concatenateSourcesCheck.isSelected() && !canStackVisibleSources(true))
-					exportedSourcesDropddown.setSelectedItem(EXPORT_CURRENT);
+				if (!resampleCheck.isSelected()) {
+					if (concatenateSourcesCheck.isSelected() && !canStackVisibleSources(true))
+						exportedSourcesDropddown.setSelectedItem(EXPORT_CURRENT);
 
-				if (!canExportVisible(true))
-					exportedSourcesDropddown.setSelectedItem(EXPORT_CURRENT);
+					if (!canExportVisible(true))
+						exportedSourcesDropddown.setSelectedItem(EXPORT_CURRENT);
+				}
 
 				concatenateSourcesCheck.setEnabled(true);
+				resampleCheck.setEnabled(concatenateSourcesCheck.isSelected());
 			} else {
 				concatenateSourcesCheck.setEnabled(false);
+				resampleCheck.setEnabled(false);
 			}
 		});
 		content.add(exportedSourcesDropddown, gbc);
@@ -334,12 +347,24 @@ public class BoxCrop extends TransformedRealBoxSelectionDialog implements ClickB
 		concatenateSourcesCheck.addActionListener((e) -> {
 			if (EXPORT_VISIBLE.equals((String)exportedSourcesDropddown.getSelectedItem())
 					&& concatenateSourcesCheck.isSelected()) {
-				if (!canStackVisibleSources(true))
+				if (!resampleCheck.isSelected() && !canStackVisibleSources(true))
 					concatenateSourcesCheck.setSelected(false);
 			}
+			resampleCheck.setEnabled(concatenateSourcesCheck.isSelected());
 		});
 		content.add(concatenateSourcesCheck, gbc);
 
+		gbc.gridy++;
+		resampleCheck = new JCheckBox("Resample to current image");
+		resampleCheck.setToolTipText("Resample all visible images onto the grid of the current image at the selected scale level");
+		resampleCheck.setEnabled(false);
+		content.add(resampleCheck, gbc);
+
+		gbc.gridy++;
+		diskBackedCheck = new JCheckBox("Disk-backed export");
+		diskBackedCheck.setToolTipText("Copy the crop to a temporary local N5 container in the background and read slices from there");
+		content.add(diskBackedCheck, gbc);
+
 		gbc.gridx = 0;
 		gbc.gridy++;
 		final JLabel lblTitle = new JLabel("Selection:");
@@ -431,11 +456,26 @@ public class BoxCrop extends TransformedRealBoxSelectionDialog implements ClickB
 
 	public Interval getPixelInterval(final Source<?> src, final int scale) {
 
+		return getPixelInterval(src, scale, model.getInterval());
+	}
+
+	/**
+	 * Returns the smallest pixel interval of the source at the given scale
+	 * level that contains a box in world coordinates.
+	 *
+	 * @param src
+	 *            the source
+	 * @param scale
+	 *            the scale level
+	 * @param requestedInterval
+	 *            the box in world coordinates
+	 * @return the pixel interval
+	 */
+	public static Interval getPixelInterval(final Source<?> src, final int scale, final RealInterval requestedInterval) {
+
 		final AffineTransform3D srcXfm = new AffineTransform3D();
 		src.getSourceTransform(0, scale, srcXfm);
 
-		final RealInterval requestedInterval = model.getInterval();
-
 		// get pixel interval from real interval
 		final FinalRealInterval bbox = transformedBoundingBox(srcXfm.inverse(), requestedInterval);
 		final long[] pixMin = new long[bbox.numDimensions()];
@@ -576,19 +616,49 @@ public class BoxCrop extends TransformedRealBoxSelectionDialog implements ClickB
 		return true;
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * The state of the dialog when a crop was requested, read on the event
+	 * dispatch thread so that the crop can run on another thread.
+	 */
+	private class Selection {
+
+		private final String exportOption = (String)exportedSourcesDropddown.getSelectedItem();
+
+		private final boolean doStack = concatenateSourcesCheck.isSelected();
+
+		private final boolean resample = resampleCheck.isSelected();
+
+		private final boolean diskBacked = diskBackedCheck.isSelected();
+
+		private final RealInterval interval = model.getInterval();
+
+		private final SourceAndConverter<?> current = currSrc;
+	}
+
+	/**
+	 * Crops the selected sources on the calling thread and shows the crops.
+	 *
+	 * @param <T>
+	 *            the type
+	 * @return the crops
+	 */
 	public <T extends NumericType<T> & NativeType<T>> ImagePlus[] crop() {
 
+		return crop(new Selection(), progress -> {});
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends NumericType<T> & NativeType<T>> ImagePlus[] crop(final Selection selection, final DoubleConsumer progress) {
+
 		// remember this interval for next time
-		lastInterval = model.getInterval();
+		lastInterval = selection.interval;
 
-		final String exportOption = (String)exportedSourcesDropddown.getSelectedItem();
 		final List<SourceAndConverter<?>> srcList = new ArrayList<>();
-		if (exportOption.equals(EXPORT_CURRENT))
-			srcList.add((SourceAndConverter<?>)currSrc);
+		if (selection.exportOption.equals(EXPORT_CURRENT))
+			srcList.add((SourceAndConverter<?>)selection.current);
 		else {
 			// make sure the current source is first in the list
-			srcList.add(currSrc);
+			srcList.add(selection.current);
 
 			final Set<SourceAndConverter<?>> visibleSources = viewer.state().getVisibleSources();
 			// add all other sources
@@ -597,14 +667,17 @@ public class BoxCrop extends TransformedRealBoxSelectionDialog implements ClickB
 				return x.getSpimSource().getType() == null;
 			});
 			visibleSources.forEach(x -> {
-				if (x != currSrc) // this check so that we don't double add the
+				if (x != selection.current) // this check so that we don't double add the
 									// current source
 					srcList.add((SourceAndConverter<T>)x);
 			});
 		}
 
 		// if exporting to a single stack, check that the types are all equal
-		boolean doStack = concatenateSourcesCheck.isSelected();
+		boolean doStack = selection.doStack;
+		if (doStack && selection.resample && srcList.size() > 1)
+			return cropResampled(srcList, selection.interval, progress);
+
 		if (doStack)
 			doStack = canStackSources(srcList, false);
 
@@ -613,27 +686,42 @@ public class BoxCrop extends TransformedRealBoxSelectionDialog implements ClickB
 			Arrays.fill(scales, selectedLevel);
 		}
 
-		final List<RandomAccessibleInterval<T>> imgList = new ArrayList<>();
-		int i = 0;
 		final Interval[] intervals = new Interval[srcList.size()];
-		for (final SourceAndConverter<?> sac : srcList) {
-			final Source<T> src = (Source<T>)sac.getSpimSource();
-			final int level = scales[i];
-			final Interval pixItvl = getPixelInterval(src, level);
+		for (int i = 0; i < srcList.size(); i++)
+			intervals[i] = getPixelInterval(srcList.get(i).getSpimSource(), scales[i], selection.interval);
+
+		// disk-backed exports are copied by the virtual stack, so keep them
+		// lazy if the virtual stack supports them
+		final boolean[] lazy = new boolean[srcList.size()];
+		final List<SourceAndConverter<?>> copyList = new ArrayList<>();
+		final List<Interval> copyIntervals = new ArrayList<>();
+		for (int i = 0; i < srcList.size(); i++) {
+			lazy[i] = selection.diskBacked && !doStack &&
+					intervals[i].numDimensions() == 3 &&
+					DiskCachedVirtualStack.isSupported(srcList.get(i).getSpimSource().getType());
+			if (!lazy[i]) {
+				copyList.add(srcList.get(i));
+				copyIntervals.add(intervals[i]);
+			}
+		}
 
-			// save the interval for later
-			intervals[i] = pixItvl;
+		// copy into memory only if the crops of all copied sources fit together
+		final boolean copy = fitsInMemory(copyList, copyIntervals.toArray(new Interval[0]));
 
-			imgList.add(cropSource(src, pixItvl, level));
-			i++;
+		final List<RandomAccessibleInterval<T>> imgList = new ArrayList<>();
+		for (int i = 0; i < srcList.size(); i++) {
+			final SourceAndConverter<T> sac = (SourceAndConverter<T>)srcList.get(i);
+			final int part = i;
+			final RandomAccessibleInterval<T> img = copy && !lazy[i]
+					? copySource(sac, intervals[i], scales[i], f -> progress.accept((part + f) / srcList.size()))
+					: cropSource(sac.getSpimSource(), intervals[i], scales[i]);
+			if (img == null)
+				return new ImagePlus[0];
+
+			imgList.add(img);
 		}
 
 		if (doStack) {
-			if (scales == null) {
-				scales = new int[imgList.size()];
-				Arrays.fill(scales, selectedLevel);
-			}
-
 			final RandomAccessibleInterval<T> imgTmp = Views.stack(imgList);
 			final RandomAccessibleInterval<T> imgP = Views.moveAxis(imgTmp, imgTmp.numDimensions() - 1, 2);
 			final ImagePlus imp = ImageJFunctions.wrap(imgP, "multichannel crop");
@@ -643,7 +731,7 @@ public class BoxCrop extends TransformedRealBoxSelectionDialog implements ClickB
 			return new ImagePlus[]{imp};
 		} else {
 			final ImagePlus[] results = new ImagePlus[imgList.size()];
-			for (i = 0; i < imgList.size(); i++) {
+			for (int i = 0; i < imgList.size(); i++) {
 				// TODO need different interval here than for the stacked case
 				final RandomAccessibleInterval<T> imgTmp = imgList.get(i);
 				final RandomAccessibleInterval<T> img;
@@ -652,7 +740,14 @@ public class BoxCrop extends TransformedRealBoxSelectionDialog implements ClickB
 				else
 					img = imgTmp;
 
-				final ImagePlus imp = ImageJFunctions.wrap(img, srcList.get(i).getSpimSource().getName() + "+_crop");
+				final String title = srcList.get(i).getSpimSource().getName() + "+_crop";
+				ImagePlus imp = null;
+				if (lazy[i])
+					imp = createDiskBacked(imgTmp, srcList.get(i).getSpimSource().getType(), title);
+
+				if (imp == null)
+					imp = ImageJFunctions.wrap(img, title);
+
 				updateDisplayRange(imp, srcList.get(i));
 				updateResolutionOffset(imp, srcList.get(0).getSpimSource(), intervals[i], scales[i]);
 				results[i] = imp;
@@ -662,7 +757,92 @@ public class BoxCrop extends TransformedRealBoxSelectionDialog implements ClickB
 		}
 	}
 
-	public <T extends NumericType<T> & NativeType<T>> RandomAccessibleInterval<T> cropSource(
+	/**
+	 * Resamples all sources onto the grid of the first (current) source at the
+	 * selected scale level and shows them as one multichannel image. The
+	 * image is resampled in parallel into a disk cached cell image before it
+	 * is shown, so showing it does not resample again. Sources whose type can
+	 * not be converted to the type of the current source are skipped and
+	 * reported in the ImageJ log.
+	 *
+	 * @param <T>
+	 *            the type
+	 * @param srcList
+	 *            the sources, the current source first
+	 * @return the multichannel image, or no image if interrupted
+	 */
+	protected <T extends NumericType<T> & NativeType<T>> ImagePlus[] cropResampled(final List<SourceAndConverter<?>> srcList) {
+
+		return cropResampled(srcList, model.getInterval(), progress -> {});
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends NumericType<T> & NativeType<T>> ImagePlus[] cropResampled(
+			final List<SourceAndConverter<?>> srcList,
+			final RealInterval interval,
+			final DoubleConsumer progress) {
+
+		final Source<T> reference = (Source<T>)srcList.get(0).getSpimSource();
+		final T type = reference.getType().createVariable();
+
+		final List<Source<?>> resampledSources = new ArrayList<>();
+		for (final SourceAndConverter<?> sac : srcList) {
+			if (GridResampler.canConvert(type, sac.getSpimSource().getType()))
+				resampledSources.add(sac.getSpimSource());
+			else
+				IJ.log("Can't resample source " + sac.getSpimSource().getName() + " : incompatible type, skipped");
+		}
+
+		final AffineTransform3D referenceTransform = new AffineTransform3D();
+		reference.getSourceTransform(0, selectedLevel, referenceTransform);
+		final Interval pixItvl = getPixelInterval(reference, selectedLevel, interval);
+
+		final RandomAccessibleInterval<T> imgTmp;
+		try {
+			imgTmp = GridResampler.resample(
+					resampledSources,
+					referenceTransform,
+					pixItvl,
+					type,
+					viewer.state().getInterpolation(),
+					0,
+					Runtime.getRuntime().availableProcessors(),
+					progress);
+		} catch (final InterruptedException e) {
+			IJ.log("Resampling of " + reference.getName() + " cancelled");
+			return new ImagePlus[0];
+		} catch (final ExecutionException e) {
+			e.printStackTrace();
+			return new ImagePlus[0];
+		}
+
+		final RandomAccessibleInterval<T> imgP = Views.moveAxis(imgTmp, imgTmp.numDimensions() - 1, 2);
+		final ImagePlus imp = ImageJFunctions.wrap(imgP, "multichannel crop");
+		updateDisplayRange(imp, srcList.get(0));
+		updateResolutionOffset(imp, reference, pixItvl, selectedLevel);
+		imp.show();
+		return new ImagePlus[]{imp};
+	}
+
+	private static <T extends NumericType<T> & NativeType<T>> ImagePlus createDiskBacked(
+			final RandomAccessibleInterval<T> img,
+			final Object type,
+			final String title) {
+
+		if (!DiskCachedVirtualStack.isSupported(type)) {
+			System.out.println("Disk-backed export not supported for " + type.getClass().getSimpleName());
+			return null;
+		}
+
+		try {
+			return DiskCachedVirtualStack.create(img, title);
+		} catch (final IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	public static <T extends NumericType<T> & NativeType<T>> RandomAccessibleInterval<T> cropSource(
 			final Source<T> src,
 			final Interval pixItvl,
 			final int level) {
@@ -672,6 +852,102 @@ public class BoxCrop extends TransformedRealBoxSelectionDialog implements ClickB
 		return cropImg;
 	}
 
+	/**
+	 * Crops the source at the given level. If the source has a volatile
+	 * counterpart and the crop fits into memory, the crop is copied into
+	 * memory, taking all voxels of cells that are already in the viewer cache
+	 * from there and loading only the missing cells. The fraction of voxels
+	 * served from the cache is logged. Otherwise, this returns the same lazy
+	 * view as {@link #cropSource(Source, Interval, int)}.
+	 *
+	 * @param <T>
+	 *            the type
+	 * @param sac
+	 *            the source and converter
+	 * @param pixItvl
+	 *            the pixel interval
+	 * @param level
+	 *            the scale level
+	 * @return the cropped image, or null if interrupted
+	 */
+	public <T extends NumericType<T> & NativeType<T>> RandomAccessibleInterval<T> cropSource(
+			final SourceAndConverter<T> sac,
+			final Interval pixItvl,
+			final int level) {
+
+		if (!fitsInMemory(Collections.singletonList(sac), new Interval[]{pixItvl}))
+			return cropSource(sac.getSpimSource(), pixItvl, level);
+
+		return copySource(sac, pixItvl, level, progress -> {});
+	}
+
+	/*
+	 * Copies the crop into memory as described above without checking the
+	 * memory. Returns null if interrupted.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T extends NumericType<T> & NativeType<T>, V extends Volatile<T>> RandomAccessibleInterval<T> copySource(
+			final SourceAndConverter<T> sac,
+			final Interval pixItvl,
+			final int level,
+			final DoubleConsumer progress) {
+
+		final Source<T> src = sac.getSpimSource();
+		if (sac.asVolatile() == null)
+			return cropSource(src, pixItvl, level);
+
+		final RandomAccessibleInterval<T> img = src.getSource(0, level);
+		final T type = Util.getTypeFromInterval(img).createVariable();
+		final Source<V> volatileSrc = (Source<V>)sac.asVolatile().getSpimSource();
+		final RandomAccessibleInterval<V> volatileImg = volatileSrc.getSource(0, level);
+
+		final Img<T> cropImg = Util.getSuitableImgFactory(pixItvl, type).create(pixItvl);
+		final RandomAccessibleInterval<T> crop = Views.translate(cropImg, Intervals.minAsLongArray(pixItvl));
+
+		// voxels outside of the source stay zero like in the extended view
+		final Interval overlap = Intervals.intersect(pixItvl, img);
+		if (Intervals.isEmpty(overlap))
+			return crop;
+
+		try {
+			final CacheFirstCrop.Statistics stats = CacheFirstCrop.copy(
+					img,
+					volatileImg,
+					Views.interval(crop, overlap),
+					Tiles.tileSize(overlap.numDimensions(), CacheFirstCrop.DEFAULT_TILE_SIZE),
+					Runtime.getRuntime().availableProcessors(),
+					progress);
+			IJ.log(String.format("Crop of %s at scale level %d: %s", src.getName(), level, stats));
+		} catch (final InterruptedException e) {
+			IJ.log("Crop of " + src.getName() + " cancelled");
+			return null;
+		} catch (final ExecutionException e) {
+			e.printStackTrace();
+			return cropSource(src, pixItvl, level);
+		}
+		return crop;
+	}
+
+	/*
+	 * Whether copies of all crops together fit into half of the free memory.
+	 */
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	private boolean fitsInMemory(final List<? extends SourceAndConverter<?>> srcList, final Interval[] intervals) {
+
+		long numBytes = 0;
+		for (int i = 0; i < srcList.size(); i++) {
+			final Source<?> src = srcList.get(i).getSpimSource();
+			final long sourceBytes = estimateBytes(intervals[i], (NativeType)src.getType(), 0);
+			if (sourceBytes < 0)
+				return false;
+
+			numBytes += sourceBytes;
+		}
+		final Runtime runtime = Runtime.getRuntime();
+		final long available = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+		return numBytes < available / 2;
+	}
+
 	/**
 	 * Modifies the display range of the ImagePlus using the provided
 	 * SourceAndConverter,
@@ -692,7 +968,7 @@ public class BoxCrop extends TransformedRealBoxSelectionDialog implements ClickB
 		}
 	}
 
-	private static void updateResolutionOffset(final ImagePlus imp, final Source<?> src, final Interval itvl, final int level) {
+	static void updateResolutionOffset(final ImagePlus imp, final Source<?> src, final Interval itvl, final int level) {
 
 		final AffineTransform3D tmp = new AffineTransform3D();
 		src.getSourceTransform(0, level, tmp);
@@ -778,6 +1054,9 @@ public class BoxCrop extends TransformedRealBoxSelectionDialog implements ClickB
 			g = t;
 
 		final DataType dataType = N5Utils.dataType(g);
+		if (dataType == null)
+			return -1;
+
 		final String typeString = dataType.toString();
 		final long N = Intervals.numElements(itvl);
 		long nBytes = -1;
@@ -0,0 +1,189 @@
+package org.janelia.saalfeldlab.n5.bdv.tools.boundingbox;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleConsumer;
+
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.Volatile;
+import net.imglib2.type.Type;
+import net.imglib2.view.Views;
+
+/**
+ * Copies a crop out of a source by reading the volatile view of the source
+ * first. Voxels of cells that the viewer has already loaded are valid in the
+ * volatile view and are copied without touching storage. Only voxels that are
+ * still invalid are read through the blocking non-volatile view.
+ *
+ * Reading the volatile view also enqueues the missing cells with the viewer's
+ * fetcher threads, so the blocking reads of the copy threads and the fetchers
+ * load the missing cells in parallel.
+ */
+public class CacheFirstCrop {
+
+	public static final int DEFAULT_TILE_SIZE = 64;
+
+	private CacheFirstCrop() {}
+
+	/**
+	 * Counts of voxels that were served from the viewer cache and voxels that
+	 * had to be loaded during a crop.
+	 */
+	public static class Statistics {
+
+		private final long cachedVoxels;
+
+		private final long loadedVoxels;
+
+		public Statistics(final long cachedVoxels, final long loadedVoxels) {
+
+			this.cachedVoxels = cachedVoxels;
+			this.loadedVoxels = loadedVoxels;
+		}
+
+		public long getCachedVoxels() {
+
+			return cachedVoxels;
+		}
+
+		public long getLoadedVoxels() {
+
+			return loadedVoxels;
+		}
+
+		/**
+		 * @return the fraction of voxels served from the viewer cache, or NaN
+		 *         if nothing was copied
+		 */
+		public double getHitRatio() {
+
+			final long total = cachedVoxels + loadedVoxels;
+			return total == 0 ? Double.NaN : (double)cachedVoxels / total;
+		}
+
+		@Override
+		public String toString() {
+
+			return String.format(
+					"%.1f%% of %d voxels served from viewer cache",
+					100 * getHitRatio(),
+					cachedVoxels + loadedVoxels);
+		}
+	}
+
+	/**
+	 * Copies the target interval from the source into the target.
+	 * The source, volatile source, and target share the same coordinate
+	 * system.
+	 *
+	 * @param <T>
+	 *            the type
+	 * @param <V>
+	 *            the volatile type
+	 * @param source
+	 *            the non-volatile source
+	 * @param volatileSource
+	 *            the volatile view of the same data
+	 * @param target
+	 *            the target
+	 * @param tileSize
+	 *            size of the tiles that are copied in parallel
+	 * @param numThreads
+	 *            the number of threads
+	 * @return the crop statistics
+	 * @throws InterruptedException
+	 *             if interrupted
+	 * @throws ExecutionException
+	 *             if the copy failed
+	 */
+	public static <T extends Type<T>, V extends Volatile<T>> Statistics copy(
+			final RandomAccessible<T> source,
+			final RandomAccessible<V> volatileSource,
+			final RandomAccessibleInterval<T> target,
+			final int[] tileSize,
+			final int numThreads) throws InterruptedException, ExecutionException {
+
+		return copy(source, volatileSource, target, tileSize, numThreads, progress -> {});
+	}
+
+	/**
+	 * As {@link #copy(RandomAccessible, RandomAccessible, RandomAccessibleInterval, int[], int)},
+	 * and reports the fraction of copied tiles. Interrupting the calling
+	 * thread stops the copy.
+	 *
+	 * @param <T>
+	 *            the type
+	 * @param <V>
+	 *            the volatile type
+	 * @param source
+	 *            the non-volatile source
+	 * @param volatileSource
+	 *            the volatile view of the same data
+	 * @param target
+	 *            the target
+	 * @param tileSize
+	 *            size of the tiles that are copied in parallel
+	 * @param numThreads
+	 *            the number of threads
+	 * @param progress
+	 *            receives the fraction of copied tiles
+	 * @return the crop statistics
+	 * @throws InterruptedException
+	 *             if interrupted
+	 * @throws ExecutionException
+	 *             if the copy failed
+	 */
+	public static <T extends Type<T>, V extends Volatile<T>> Statistics copy(
+			final RandomAccessible<T> source,
+			final RandomAccessible<V> volatileSource,
+			final RandomAccessibleInterval<T> target,
+			final int[] tileSize,
+			final int numThreads,
+			final DoubleConsumer progress) throws InterruptedException, ExecutionException {
+
+		final LongAdder cached = new LongAdder();
+		final LongAdder loaded = new LongAdder();
+
+		Tiles.forEach(
+				Tiles.split(target, tileSize),
+				tile -> copyTile(source, volatileSource, target, tile, cached, loaded),
+				numThreads,
+				progress);
+
+		return new Statistics(cached.sum(), loaded.sum());
+	}
+
+	private static <T extends Type<T>, V extends Volatile<T>> void copyTile(
+			final RandomAccessible<T> source,
+			final RandomAccessible<V> volatileSource,
+			final RandomAccessibleInterval<T> target,
+			final Interval tile,
+			final LongAdder cached,
+			final LongAdder loaded) {
+
+		final Cursor<V> vc = Views.flatIterable(Views.interval(volatileSource, tile)).cursor();
+		final Cursor<T> tc = Views.flatIterable(Views.interval(target, tile)).cursor();
+		final RandomAccess<T> ra = source.randomAccess(tile);
+
+		long numCached = 0;
+		long numLoaded = 0;
+		while (tc.hasNext()) {
+			final V v = vc.next();
+			final T t = tc.next();
+			if (v.isValid()) {
+				t.set(v.get());
+				++numCached;
+			} else {
+				ra.setPosition(vc);
+				t.set(ra.get());
+				++numLoaded;
+			}
+		}
+		cached.add(numCached);
+		loaded.add(numLoaded);
+	}
+}
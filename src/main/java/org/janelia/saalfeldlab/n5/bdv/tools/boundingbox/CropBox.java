@@ -0,0 +1,162 @@
+package org.janelia.saalfeldlab.n5.bdv.tools.boundingbox;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import net.imglib2.FinalRealInterval;
+import net.imglib2.RealInterval;
+
+/**
+ * A named box in world coordinates that is cropped by {@link BatchCrop}.
+ * <p>
+ * Boxes are read from csv files with one box per line
+ * <pre>
+ * name,minX,minY,minZ,maxX,maxY,maxZ[,level]
+ * </pre>
+ * or from json files containing an array of boxes
+ * <pre>
+ * [ { "name": "a", "min": [0, 0, 0], "max": [10, 10, 10], "level": 0 } ]
+ * </pre>
+ * Empty lines, lines starting with '#', and a header line are skipped in csv
+ * files. A negative or missing level means that the default level of the
+ * {@link BatchCrop} is used.
+ */
+public class CropBox {
+
+	private String name;
+
+	private double[] min;
+
+	private double[] max;
+
+	private int level = -1;
+
+	// for gson, so that the default level is kept for boxes without a level
+	private CropBox() {}
+
+	public CropBox(final String name, final double[] min, final double[] max, final int level) {
+
+		this.name = name;
+		this.min = min;
+		this.max = max;
+		this.level = level;
+	}
+
+	public CropBox(final String name, final RealInterval interval) {
+
+		this(name, interval.minAsDoubleArray(), interval.maxAsDoubleArray(), -1);
+	}
+
+	public String getName() {
+
+		return name;
+	}
+
+	public int getLevel() {
+
+		return level;
+	}
+
+	public RealInterval getInterval() {
+
+		return new FinalRealInterval(min, max);
+	}
+
+	@Override
+	public String toString() {
+
+		return name + " " + Arrays.toString(min) + " - " + Arrays.toString(max);
+	}
+
+	/**
+	 * Reads boxes from a json file if the path ends with ".json", from a csv
+	 * file otherwise.
+	 *
+	 * @param path
+	 *            the file path
+	 * @return the boxes
+	 * @throws IOException
+	 *             if the file can not be read or parsed
+	 */
+	public static List<CropBox> read(final String path) throws IOException {
+
+		try (final BufferedReader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+			if (path.toLowerCase().endsWith(".json"))
+				return readJson(reader);
+			else
+				return readCsv(reader);
+		}
+	}
+
+	public static List<CropBox> readJson(final Reader reader) throws IOException {
+
+		final CropBox[] boxes;
+		try {
+			boxes = new Gson().fromJson(reader, CropBox[].class);
+		} catch (final JsonParseException e) {
+			throw new IOException(e);
+		}
+		if (boxes == null)
+			return new ArrayList<>();
+
+		for (int i = 0; i < boxes.length; i++) {
+			final CropBox box = boxes[i];
+			if (box.min == null || box.max == null || box.min.length != box.max.length)
+				throw new IOException("Box " + i + " needs min and max of equal length");
+
+			if (box.name == null)
+				box.name = "box" + i;
+		}
+		return new ArrayList<>(Arrays.asList(boxes));
+	}
+
+	public static List<CropBox> readCsv(final BufferedReader reader) throws IOException {
+
+		final List<CropBox> boxes = new ArrayList<>();
+		String line;
+		int lineNumber = 0;
+		boolean headerSkipped = false;
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+
+			final String[] fields = line.split("\\s*,\\s*");
+			if (fields.length != 7 && fields.length != 8)
+				throw new IOException("Line " + lineNumber + ": expected name,minX,minY,minZ,maxX,maxY,maxZ[,level]");
+
+			final double[] min = new double[3];
+			final double[] max = new double[3];
+			int level = -1;
+			try {
+				for (int d = 0; d < 3; d++) {
+					min[d] = Double.parseDouble(fields[1 + d]);
+					max[d] = Double.parseDouble(fields[4 + d]);
+				}
+				if (fields.length == 8)
+					level = Integer.parseInt(fields[7]);
+			} catch (final NumberFormatException e) {
+				// skip a header line
+				if (boxes.isEmpty() && !headerSkipped) {
+					headerSkipped = true;
+					continue;
+				}
+
+				throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+			}
+			boxes.add(new CropBox(fields[0], min, max, level));
+		}
+		return boxes;
+	}
+}
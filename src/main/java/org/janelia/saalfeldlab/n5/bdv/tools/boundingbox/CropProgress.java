@@ -0,0 +1,71 @@
+package org.janelia.saalfeldlab.n5.bdv.tools.boundingbox;
+
+import java.awt.Component;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Runs a crop on a worker thread and shows its progress in a
+ * {@link ProgressMonitor}. Cancelling the monitor interrupts the worker.
+ */
+public class CropProgress implements DoubleConsumer {
+
+	private static final int MAX = 1000;
+
+	private final ProgressMonitor monitor;
+
+	private final Timer cancelPoller;
+
+	private CropProgress(final Component parent, final String message, final Thread worker) {
+
+		monitor = new ProgressMonitor(parent, message, null, 0, MAX);
+		monitor.setMillisToDecideToPopup(200);
+		cancelPoller = new Timer(200, e -> {
+			if (monitor.isCanceled())
+				worker.interrupt();
+		});
+	}
+
+	/**
+	 * Runs a task on a worker thread. Must be called on the event dispatch
+	 * thread.
+	 *
+	 * @param parent
+	 *            the parent of the progress monitor
+	 * @param message
+	 *            the message of the progress monitor
+	 * @param task
+	 *            the task, reports its progress as a fraction in [0, 1]
+	 */
+	public static void run(final Component parent, final String message, final Consumer<DoubleConsumer> task) {
+
+		final CropProgress[] progress = new CropProgress[1];
+		final Thread worker = new Thread(() -> {
+			try {
+				task.accept(progress[0]);
+			} finally {
+				SwingUtilities.invokeLater(progress[0]::close);
+			}
+		}, "n5-viewer crop");
+		worker.setDaemon(true);
+		progress[0] = new CropProgress(parent, message, worker);
+		progress[0].cancelPoller.start();
+		worker.start();
+	}
+
+	@Override
+	public void accept(final double fraction) {
+
+		SwingUtilities.invokeLater(() -> monitor.setProgress((int)Math.round(Math.min(1, fraction) * (MAX - 1))));
+	}
+
+	private void close() {
+
+		cancelPoller.stop();
+		monitor.close();
+	}
+}
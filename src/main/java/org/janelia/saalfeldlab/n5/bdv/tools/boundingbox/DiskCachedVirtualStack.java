@@ -0,0 +1,338 @@
+package org.janelia.saalfeldlab.n5.bdv.tools.boundingbox;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+
+import ij.IJ;
+import ij.ImageListener;
+import ij.ImagePlus;
+import ij.VirtualStack;
+import ij.process.ByteProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.NumericType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
+
+/**
+ * A {@link VirtualStack} over a 3D crop that is copied into a temporary local
+ * N5 container in the background, one slab of slices at a time.
+ * <p>
+ * Slices of slabs that are written are read from the local container, other
+ * slices from the crop itself. The most recently used slices are kept in a
+ * bounded cache of decoded planes, so scrolling back and forth through a crop
+ * that is larger than memory reads each slice from storage only once. The
+ * temporary container is deleted when the image is closed.
+ * <p>
+ * Only {@link RealType}s with an N5 {@link DataType} are supported, see
+ * {@link #isSupported(Object)}.
+ *
+ * @param <T>
+ *            the type
+ */
+public class DiskCachedVirtualStack<T extends NumericType<T> & NativeType<T>> extends VirtualStack {
+
+	public static final int DEFAULT_SLAB_DEPTH = 16;
+
+	public static final long DEFAULT_PLANE_CACHE_BYTES = 256L * 1024 * 1024;
+
+	private static final String DATASET = "crop";
+
+	/* seconds to wait for the slab being written when closing */
+	private static final long CLOSE_TIMEOUT = 10;
+
+	private final RandomAccessibleInterval<T> crop;
+
+	private final T type;
+
+	private final N5FSWriter n5;
+
+	private final RandomAccessibleInterval<T> written;
+
+	private final int slabDepth;
+
+	private final AtomicIntegerArray slabWritten;
+
+	private final ExecutorService writer;
+
+	private final Map<Integer, ImageProcessor> planes;
+
+	/**
+	 * Creates the virtual stack and starts writing the crop to a temporary
+	 * container.
+	 *
+	 * @param crop
+	 *            the 3D crop
+	 * @param slabDepth
+	 *            number of slices written at a time
+	 * @param planeCacheBytes
+	 *            bound for the memory used by cached planes
+	 * @throws IOException
+	 *             if the temporary container can not be created
+	 */
+	public DiskCachedVirtualStack(
+			final RandomAccessibleInterval<T> crop,
+			final int slabDepth,
+			final long planeCacheBytes) throws IOException {
+
+		super((int)crop.dimension(0), (int)crop.dimension(1), null, null);
+
+		this.crop = Views.zeroMin(crop);
+		this.slabDepth = slabDepth;
+		type = Util.getTypeFromInterval(this.crop).createVariable();
+
+		if (!isSupported(type))
+			throw new IllegalArgumentException("Unsupported type " + type.getClass().getSimpleName());
+
+		final DataType dataType = N5Utils.dataType(type);
+
+		final long[] dimensions = crop.dimensionsAsLongArray();
+		final int[] blockSize = new int[]{
+				(int)Math.min(dimensions[0], 256),
+				(int)Math.min(dimensions[1], 256),
+				slabDepth};
+
+		n5 = new N5FSWriter(Files.createTempDirectory("n5-viewer-crop").toString());
+		final DatasetAttributes attributes = new DatasetAttributes(dimensions, blockSize, dataType, new RawCompression());
+		n5.createDataset(DATASET, attributes);
+		written = N5Utils.open(n5, DATASET);
+
+		final int numSlabs = (int)((dimensions[2] + slabDepth - 1) / slabDepth);
+		slabWritten = new AtomicIntegerArray(numSlabs);
+
+		final long planeBytes = Math.max(1, dimensions[0] * dimensions[1] * bytesPerPixel(type));
+		final int capacity = (int)Math.max(4, Math.min(Integer.MAX_VALUE, planeCacheBytes / planeBytes));
+		planes = new LinkedHashMap<Integer, ImageProcessor>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Integer, ImageProcessor> eldest) {
+
+				return size() > capacity;
+			}
+		};
+
+		writer = Executors.newSingleThreadExecutor(r -> {
+			final Thread thread = new Thread(r, "n5-viewer crop writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		for (int s = 0; s < numSlabs; s++) {
+			final int slab = s;
+			writer.submit(() -> {
+				try {
+					writeSlab(slab, attributes);
+				} catch (final RuntimeException e) {
+					/* the slab is read from the crop instead */
+					IJ.log("Could not write slab " + slab + " of crop to " + n5.getURI() + ": " + e);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Creates an image of a crop backed by a disk cached virtual stack with
+	 * default parameters. The temporary container is deleted when the image
+	 * is closed.
+	 *
+	 * @param <T>
+	 *            the type
+	 * @param crop
+	 *            the 3D crop
+	 * @param title
+	 *            the image title
+	 * @return the image
+	 * @throws IOException
+	 *             if the temporary container can not be created
+	 */
+	public static <T extends NumericType<T> & NativeType<T>> ImagePlus create(
+			final RandomAccessibleInterval<T> crop,
+			final String title) throws IOException {
+
+		final DiskCachedVirtualStack<T> stack = new DiskCachedVirtualStack<>(crop, DEFAULT_SLAB_DEPTH, DEFAULT_PLANE_CACHE_BYTES);
+		final ImagePlus imp = new ImagePlus(title, stack);
+		ImagePlus.addImageListener(new ImageListener() {
+
+			@Override
+			public void imageOpened(final ImagePlus img) {}
+
+			@Override
+			public void imageUpdated(final ImagePlus img) {}
+
+			@Override
+			public void imageClosed(final ImagePlus img) {
+
+				if (img == imp) {
+					ImagePlus.removeImageListener(this);
+					stack.close();
+				}
+			}
+		});
+		return imp;
+	}
+
+	/**
+	 * @param type
+	 *            the type of a crop
+	 * @return whether the type is a {@link RealType} that can be written to
+	 *         an N5 container
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public static boolean isSupported(final Object type) {
+
+		return type instanceof RealType && type instanceof NativeType && N5Utils.dataType((NativeType)type) != null;
+	}
+
+	/**
+	 * Stops writing, waits for the slab being written and deletes the
+	 * temporary container.
+	 */
+	public void close() {
+
+		writer.shutdownNow();
+		try {
+			if (!writer.awaitTermination(CLOSE_TIMEOUT, TimeUnit.SECONDS))
+				IJ.log("Slab writer of crop did not stop, " + n5.getURI() + " may not be deleted completely");
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (planes) {
+			planes.clear();
+		}
+		n5.remove();
+	}
+
+	/**
+	 * @return the fraction of slices that are written to the temporary
+	 *         container
+	 */
+	public double getWrittenFraction() {
+
+		int n = 0;
+		for (int i = 0; i < slabWritten.length(); i++)
+			n += slabWritten.get(i);
+
+		return (double)n / slabWritten.length();
+	}
+
+	private void writeSlab(final int slab, final DatasetAttributes attributes) {
+
+		final long zMin = (long)slab * slabDepth;
+		final long zMax = Math.min(crop.max(2), zMin + slabDepth - 1);
+		final RandomAccessibleInterval<T> slabImg = Views.interval(
+				crop,
+				new FinalInterval(
+						new long[]{0, 0, zMin},
+						new long[]{crop.max(0), crop.max(1), zMax}));
+
+		N5Utils.saveBlock(Views.zeroMin(slabImg), n5, DATASET, attributes, new long[]{0, 0, slab});
+		slabWritten.set(slab, 1);
+	}
+
+	@Override
+	public ImageProcessor getProcessor(final int n) {
+
+		synchronized (planes) {
+			final ImageProcessor ip = planes.get(n);
+			if (ip != null)
+				return ip;
+		}
+
+		final int z = n - 1;
+		final RandomAccessibleInterval<T> img = slabWritten.get(z / slabDepth) == 1 ? written : crop;
+		final ImageProcessor ip = toProcessor(Views.hyperSlice(img, 2, z));
+		synchronized (planes) {
+			planes.put(n, ip);
+		}
+		return ip;
+	}
+
+	@Override
+	public Object getPixels(final int n) {
+
+		return getProcessor(n).getPixels();
+	}
+
+	@Override
+	public int getSize() {
+
+		return (int)crop.dimension(2);
+	}
+
+	@Override
+	public String getSliceLabel(final int n) {
+
+		return null;
+	}
+
+	@Override
+	public int getBitDepth() {
+
+		if (type instanceof UnsignedByteType)
+			return 8;
+		else if (type instanceof UnsignedShortType)
+			return 16;
+		else
+			return 32;
+	}
+
+	@SuppressWarnings("rawtypes")
+	private ImageProcessor toProcessor(final RandomAccessibleInterval<T> plane) {
+
+		final int w = (int)plane.dimension(0);
+		final int h = (int)plane.dimension(1);
+		final Cursor<T> c = Views.flatIterable(plane).cursor();
+		int i = 0;
+		if (type instanceof UnsignedByteType) {
+			final byte[] pixels = new byte[w * h];
+			while (c.hasNext())
+				pixels[i++] = (byte)((UnsignedByteType)c.next()).get();
+
+			return new ByteProcessor(w, h, pixels);
+		} else if (type instanceof UnsignedShortType) {
+			final short[] pixels = new short[w * h];
+			while (c.hasNext())
+				pixels[i++] = (short)((UnsignedShortType)c.next()).get();
+
+			return new ShortProcessor(w, h, pixels, null);
+		} else {
+			final float[] pixels = new float[w * h];
+			while (c.hasNext())
+				pixels[i++] = ((RealType)c.next()).getRealFloat();
+
+			return new FloatProcessor(w, h, pixels);
+		}
+	}
+
+	private static int bytesPerPixel(final Object type) {
+
+		if (type instanceof UnsignedByteType)
+			return 1;
+		else if (type instanceof UnsignedShortType)
+			return 2;
+		else
+			return 4;
+	}
+}
@@ -0,0 +1,201 @@
+package org.janelia.saalfeldlab.n5.bdv.tools.boundingbox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.DoubleConsumer;
+
+import bdv.util.MipmapTransforms;
+import bdv.viewer.Interpolation;
+import bdv.viewer.Source;
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.cache.img.DiskCachedCellImg;
+import net.imglib2.cache.img.DiskCachedCellImgFactory;
+import net.imglib2.cache.img.DiskCachedCellImgOptions;
+import net.imglib2.cache.img.DiskCachedCellImgOptions.CacheType;
+import net.imglib2.converter.Converters;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.realtransform.RealViews;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.NumericType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+
+/**
+ * Resamples several sources onto the pixel grid of a reference source at one
+ * scale level so that sources with different resolutions, orientations, or
+ * types can be exported as one multichannel image.
+ * <p>
+ * For every source, the scale level whose resolution best matches the
+ * reference grid is used. The output has one channel per source along the
+ * last dimension. It is either a lazy view whose voxels are resampled when
+ * they are accessed, or a disk cached cell image that is filled tile by tile
+ * in parallel. Only a bounded number of cells of the latter are held in
+ * memory, the others are written to a temporary directory.
+ */
+public class GridResampler {
+
+	/**
+	 * The maximum number of cells of a resampled image in memory.
+	 */
+	public static final int MAX_CACHED_CELLS = 256;
+
+	private GridResampler() {}
+
+	/**
+	 * Returns true if values of the given type can be written into the target
+	 * type, i.e. if the types are equal or both are {@link RealType}s.
+	 *
+	 * @param target
+	 *            the target type
+	 * @param type
+	 *            the source type
+	 * @return if the type can be converted
+	 */
+	public static boolean canConvert(final Object target, final Object type) {
+
+		return target.getClass().equals(type.getClass()) ||
+				(target instanceof RealType && type instanceof RealType);
+	}
+
+	/**
+	 * Resamples the sources onto the grid of the reference source.
+	 *
+	 * @param <T>
+	 *            the output type
+	 * @param sources
+	 *            the sources, one output channel each, of types that
+	 *            {@link #canConvert(Object, Object) can be converted} to the
+	 *            output type
+	 * @param referenceTransform
+	 *            the pixel to world transform of the reference grid
+	 * @param pixItvl
+	 *            the interval of the reference grid to resample
+	 * @param type
+	 *            the output type
+	 * @param interpolation
+	 *            the interpolation
+	 * @param timepoint
+	 *            the timepoint
+	 * @return the lazily resampled image, with pixItvl as the interval of the
+	 *         first dimensions and channels along the last dimension
+	 */
+	public static <T extends NumericType<T> & NativeType<T>> RandomAccessibleInterval<T> resample(
+			final List<? extends Source<?>> sources,
+			final AffineTransform3D referenceTransform,
+			final Interval pixItvl,
+			final T type,
+			final Interpolation interpolation,
+			final int timepoint) {
+
+		// the reference grid plays the role of the screen to find the best
+		// matching scale level of every source
+		final AffineTransform3D worldToReference = referenceTransform.inverse();
+		final List<RandomAccessibleInterval<T>> channels = new ArrayList<>();
+		for (final Source<?> src : sources) {
+			final int level = MipmapTransforms.getBestMipMapLevel(worldToReference, src, timepoint);
+
+			final AffineTransform3D srcXfm = new AffineTransform3D();
+			src.getSourceTransform(timepoint, level, srcXfm);
+			final AffineTransform3D sourceToReference = worldToReference.copy().concatenate(srcXfm);
+
+			final RealRandomAccessible<?> interpolated = src.getInterpolatedSource(timepoint, level, interpolation);
+			final RandomAccessibleInterval<?> resampled = Views.interval(Views.raster(RealViews.affine(interpolated, sourceToReference)), pixItvl);
+			channels.add(convert(resampled, src.getType(), type));
+		}
+		return Views.stack(channels);
+	}
+
+	/**
+	 * Resamples the sources onto the grid of the reference source into a disk
+	 * cached cell image. Cells are resampled in parallel, at most
+	 * {@value #MAX_CACHED_CELLS} cells are kept in memory.
+	 *
+	 * @param <T>
+	 *            the output type
+	 * @param sources
+	 *            the sources, one output channel each, of types that
+	 *            {@link #canConvert(Object, Object) can be converted} to the
+	 *            output type
+	 * @param referenceTransform
+	 *            the pixel to world transform of the reference grid
+	 * @param pixItvl
+	 *            the interval of the reference grid to resample
+	 * @param type
+	 *            the output type
+	 * @param interpolation
+	 *            the interpolation
+	 * @param timepoint
+	 *            the timepoint
+	 * @param numThreads
+	 *            the number of threads
+	 * @param progress
+	 *            receives the fraction of resampled cells
+	 * @return the resampled image, with pixItvl as the interval of the first
+	 *         dimensions and channels along the last dimension
+	 * @throws InterruptedException
+	 *             if interrupted
+	 * @throws ExecutionException
+	 *             if resampling failed
+	 */
+	public static <T extends NumericType<T> & NativeType<T>> RandomAccessibleInterval<T> resample(
+			final List<? extends Source<?>> sources,
+			final AffineTransform3D referenceTransform,
+			final Interval pixItvl,
+			final T type,
+			final Interpolation interpolation,
+			final int timepoint,
+			final int numThreads,
+			final DoubleConsumer progress) throws InterruptedException, ExecutionException {
+
+		final RandomAccessibleInterval<T> resampled = Views.zeroMin(
+				resample(sources, referenceTransform, pixItvl, type, interpolation, timepoint));
+
+		// one channel per cell, so that a cell is resampled from one source
+		final int[] cellDimensions = Tiles.tileSize(resampled.numDimensions(), CacheFirstCrop.DEFAULT_TILE_SIZE);
+		cellDimensions[cellDimensions.length - 1] = 1;
+		final DiskCachedCellImg<T, ?> out = new DiskCachedCellImgFactory<>(
+				type.createVariable(),
+				DiskCachedCellImgOptions
+						.options()
+						.cellDimensions(cellDimensions)
+						.cacheType(CacheType.BOUNDED)
+						.maxCacheSize(MAX_CACHED_CELLS))
+				.create(resampled);
+
+		Tiles.forEach(
+				Tiles.split(out, cellDimensions),
+				tile -> {
+					final Cursor<T> in = Views.flatIterable(Views.interval(resampled, tile)).cursor();
+					final Cursor<T> c = Views.flatIterable(Views.interval(out, tile)).cursor();
+					while (c.hasNext())
+						c.next().set(in.next());
+				},
+				numThreads,
+				progress);
+
+		final long[] min = new long[out.numDimensions()];
+		for (int d = 0; d < pixItvl.numDimensions(); ++d)
+			min[d] = pixItvl.min(d);
+
+		return Views.translate(out, min);
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static <T extends NumericType<T> & NativeType<T>> RandomAccessibleInterval<T> convert(
+			final RandomAccessibleInterval<?> img,
+			final Object sourceType,
+			final T type) {
+
+		if (type.getClass().equals(sourceType.getClass()))
+			return (RandomAccessibleInterval<T>)img;
+
+		return Converters.convert(
+				(RandomAccessibleInterval<RealType>)img,
+				(a, b) -> ((RealType)b).setReal(a.getRealDouble()),
+				(T)type.createVariable());
+	}
+}
@@ -0,0 +1,325 @@
+package org.janelia.saalfeldlab.n5.bdv.tools.boundingbox;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.DoubleConsumer;
+
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+
+import bdv.viewer.Interpolation;
+import bdv.viewer.Source;
+import net.imglib2.Cursor;
+import net.imglib2.FinalDimensions;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.img.Img;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.NumericType;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
+
+/**
+ * Resamples a box that is aligned with the viewer axes instead of the source
+ * axes. The output grid is isotropic with the smallest voxel size of the
+ * sources at the chosen scale level, so only the requested region is read and
+ * the output contains no padding around an oblique region of interest. All
+ * channels are resampled onto the same grid.
+ */
+public class ObliqueCrop {
+
+	private ObliqueCrop() {}
+
+	/**
+	 * Returns the transform from output pixel coordinates to world coordinates
+	 * for an output grid of the given size centered at a world point, with
+	 * axes aligned to the viewer axes.
+	 *
+	 * @param viewerTransform
+	 *            the viewer transform (world to screen)
+	 * @param center
+	 *            the center of the box in world coordinates
+	 * @param size
+	 *            the size of the output in pixels
+	 * @param spacing
+	 *            the isotropic output voxel size in world units
+	 * @return the output to world transform
+	 */
+	public static AffineTransform3D outputToWorld(
+			final AffineTransform3D viewerTransform,
+			final double[] center,
+			final long[] size,
+			final double spacing) {
+
+		// rows of the viewer transform are the world space directions of the
+		// screen axes
+		final AffineTransform3D outputToWorld = new AffineTransform3D();
+		for (int r = 0; r < 3; r++) {
+			double norm = 0;
+			for (int c = 0; c < 3; c++)
+				norm += viewerTransform.get(r, c) * viewerTransform.get(r, c);
+
+			norm = Math.sqrt(norm);
+			for (int c = 0; c < 3; c++)
+				outputToWorld.set(spacing * viewerTransform.get(r, c) / norm, c, r);
+		}
+
+		final double[] offset = new double[3];
+		for (int d = 0; d < 3; d++)
+			offset[d] = 0.5 * (size[d] - 1);
+
+		outputToWorld.apply(offset, offset);
+		for (int d = 0; d < 3; d++)
+			outputToWorld.set(center[d] - offset[d], d, 3);
+
+		return outputToWorld;
+	}
+
+	/**
+	 * Returns the smallest voxel size of a source at a scale level in world
+	 * units.
+	 *
+	 * @param src
+	 *            the source
+	 * @param timepoint
+	 *            the timepoint
+	 * @param level
+	 *            the scale level
+	 * @return the smallest voxel size
+	 */
+	public static double minVoxelSize(final Source<?> src, final int timepoint, final int level) {
+
+		final AffineTransform3D srcXfm = new AffineTransform3D();
+		src.getSourceTransform(timepoint, level, srcXfm);
+
+		double min = Double.MAX_VALUE;
+		for (int c = 0; c < 3; c++) {
+			double norm = 0;
+			for (int r = 0; r < 3; r++)
+				norm += srcXfm.get(r, c) * srcXfm.get(r, c);
+
+			min = Math.min(min, Math.sqrt(norm));
+		}
+		return min;
+	}
+
+	/**
+	 * Returns the smallest voxel size of a list of sources at a scale level in
+	 * world units, the spacing of a grid shared by all of them.
+	 *
+	 * @param sources
+	 *            the sources
+	 * @param timepoint
+	 *            the timepoint
+	 * @param level
+	 *            the scale level
+	 * @return the smallest voxel size
+	 */
+	public static double minVoxelSize(final List<? extends Source<?>> sources, final int timepoint, final int level) {
+
+		double min = Double.MAX_VALUE;
+		for (final Source<?> src : sources)
+			min = Math.min(min, minVoxelSize(src, timepoint, level));
+
+		return min;
+	}
+
+	/**
+	 * Whether the resampled images of all sources together fit into half of
+	 * the free memory.
+	 *
+	 * @param sources
+	 *            the sources
+	 * @param size
+	 *            the size of the output
+	 * @return whether the output fits into memory
+	 */
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	public static boolean fitsInMemory(final List<? extends Source<?>> sources, final long[] size) {
+
+		final long numElements = Intervals.numElements(size);
+		long numBytes = 0;
+		for (final Source<?> src : sources) {
+			final DataType dataType = N5Utils.dataType((NativeType)src.getType());
+			// 8 bytes for types that have no N5 data type, e.g. ARGB, to be safe
+			final int bytes = dataType == null ? 8 : bytesPerElement(dataType);
+			numBytes += numElements * bytes;
+		}
+		final Runtime runtime = Runtime.getRuntime();
+		final long available = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+		return numBytes < available / 2;
+	}
+
+	private static int bytesPerElement(final DataType dataType) {
+
+		final String typeString = dataType.toString();
+		if (typeString.endsWith("8"))
+			return 1;
+		else if (typeString.endsWith("16"))
+			return 2;
+		else if (typeString.endsWith("32"))
+			return 4;
+		else
+			return 8;
+	}
+
+	/**
+	 * Resamples a source at a scale level into a new image with the given
+	 * size. Tiles of the output are resampled in parallel, each with its own
+	 * accessor into the interpolated source.
+	 *
+	 * @param <T>
+	 *            the type
+	 * @param src
+	 *            the source
+	 * @param timepoint
+	 *            the timepoint
+	 * @param level
+	 *            the scale level
+	 * @param interpolation
+	 *            the interpolation
+	 * @param outputToWorld
+	 *            the transform from output pixel to world coordinates
+	 * @param size
+	 *            the size of the output
+	 * @param numThreads
+	 *            the number of threads
+	 * @return the resampled image
+	 * @throws InterruptedException
+	 *             if interrupted
+	 * @throws ExecutionException
+	 *             if resampling failed
+	 */
+	public static <T extends NumericType<T> & NativeType<T>> Img<T> resample(
+			final Source<T> src,
+			final int timepoint,
+			final int level,
+			final Interpolation interpolation,
+			final AffineTransform3D outputToWorld,
+			final long[] size,
+			final int numThreads) throws InterruptedException, ExecutionException {
+
+		return resample(src, timepoint, level, interpolation, outputToWorld, size, numThreads, progress -> {});
+	}
+
+	/**
+	 * As
+	 * {@link #resample(Source, int, int, Interpolation, AffineTransform3D, long[], int)},
+	 * and reports the fraction of resampled tiles. Tiles that have not started
+	 * when the calling thread is interrupted are not resampled.
+	 *
+	 * @param <T>
+	 *            the type
+	 * @param src
+	 *            the source
+	 * @param timepoint
+	 *            the timepoint
+	 * @param level
+	 *            the scale level
+	 * @param interpolation
+	 *            the interpolation
+	 * @param outputToWorld
+	 *            the transform from output pixel to world coordinates
+	 * @param size
+	 *            the size of the output
+	 * @param numThreads
+	 *            the number of threads
+	 * @param progress
+	 *            receives the fraction of resampled tiles
+	 * @return the resampled image
+	 * @throws InterruptedException
+	 *             if interrupted
+	 * @throws ExecutionException
+	 *             if resampling failed
+	 */
+	public static <T extends NumericType<T> & NativeType<T>> Img<T> resample(
+			final Source<T> src,
+			final int timepoint,
+			final int level,
+			final Interpolation interpolation,
+			final AffineTransform3D outputToWorld,
+			final long[] size,
+			final int numThreads,
+			final DoubleConsumer progress) throws InterruptedException, ExecutionException {
+
+		final AffineTransform3D srcXfm = new AffineTransform3D();
+		src.getSourceTransform(timepoint, level, srcXfm);
+		final AffineTransform3D outputToSource = srcXfm.inverse().concatenate(outputToWorld);
+
+		final RealRandomAccessible<T> interpolated = src.getInterpolatedSource(timepoint, level, interpolation);
+		final T type = Util.getTypeFromInterval(src.getSource(timepoint, level)).createVariable();
+		final Img<T> out = Util.getSuitableImgFactory(new FinalDimensions(size), type).create(size);
+
+		Tiles.forEach(
+				Tiles.split(out, Tiles.tileSize(3, CacheFirstCrop.DEFAULT_TILE_SIZE)),
+				tile -> {
+					final RealRandomAccess<T> access = interpolated.realRandomAccess();
+					final double[] position = new double[3];
+					final Cursor<T> c = Views.flatIterable(Views.interval(out, tile)).localizingCursor();
+					while (c.hasNext()) {
+						c.fwd();
+						c.localize(position);
+						outputToSource.apply(position, position);
+						access.setPosition(position);
+						c.get().set(access.get());
+					}
+				},
+				numThreads,
+				progress);
+
+		return out;
+	}
+
+	/**
+	 * Resamples a viewer aligned box centered at a world point.
+	 *
+	 * @param <T>
+	 *            the type
+	 * @param src
+	 *            the source
+	 * @param timepoint
+	 *            the timepoint
+	 * @param level
+	 *            the scale level
+	 * @param interpolation
+	 *            the interpolation
+	 * @param viewerTransform
+	 *            the viewer transform
+	 * @param center
+	 *            the center in world coordinates
+	 * @param size
+	 *            the size of the output in pixels
+	 * @return the resampled image
+	 * @throws InterruptedException
+	 *             if interrupted
+	 * @throws ExecutionException
+	 *             if resampling failed
+	 */
+	public static <T extends NumericType<T> & NativeType<T>> RandomAccessibleInterval<T> crop(
+			final Source<T> src,
+			final int timepoint,
+			final int level,
+			final Interpolation interpolation,
+			final AffineTransform3D viewerTransform,
+			final double[] center,
+			final long[] size) throws InterruptedException, ExecutionException {
+
+		final AffineTransform3D outputToWorld = outputToWorld(
+				viewerTransform,
+				center,
+				size,
+				minVoxelSize(src, timepoint, level));
+
+		return resample(
+				src,
+				timepoint,
+				level,
+				interpolation,
+				outputToWorld,
+				size,
+				Runtime.getRuntime().availableProcessors());
+	}
+}
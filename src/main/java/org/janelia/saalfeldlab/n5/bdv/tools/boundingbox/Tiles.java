@@ -0,0 +1,137 @@
+package org.janelia.saalfeldlab.n5.bdv.tools.boundingbox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.iterator.IntervalIterator;
+
+/**
+ * Splits intervals into tiles and processes tiles in parallel.
+ */
+public class Tiles {
+
+	private Tiles() {}
+
+	/**
+	 * Returns a tile size array of the given dimensionality with the same
+	 * size along every dimension.
+	 *
+	 * @param numDimensions
+	 *            the number of dimensions
+	 * @param size
+	 *            the tile size along every dimension
+	 * @return the tile size
+	 */
+	public static int[] tileSize(final int numDimensions, final int size) {
+
+		final int[] tileSize = new int[numDimensions];
+		Arrays.fill(tileSize, size);
+		return tileSize;
+	}
+
+	/**
+	 * Splits an interval into a grid of tiles. Tiles at the upper border are
+	 * truncated to the interval.
+	 *
+	 * @param interval
+	 *            the interval
+	 * @param tileSize
+	 *            the tile size
+	 * @return the list of tiles
+	 */
+	public static List<Interval> split(final Interval interval, final int[] tileSize) {
+
+		final int n = interval.numDimensions();
+		final long[] gridDimensions = new long[n];
+		for (int d = 0; d < n; ++d)
+			gridDimensions[d] = (interval.dimension(d) + tileSize[d] - 1) / tileSize[d];
+
+		final List<Interval> tiles = new ArrayList<>();
+		final long[] min = new long[n];
+		final long[] max = new long[n];
+		final IntervalIterator it = new IntervalIterator(gridDimensions);
+		while (it.hasNext()) {
+			it.fwd();
+			for (int d = 0; d < n; ++d) {
+				min[d] = interval.min(d) + it.getLongPosition(d) * tileSize[d];
+				max[d] = Math.min(interval.max(d), min[d] + tileSize[d] - 1);
+			}
+			tiles.add(new FinalInterval(min.clone(), max.clone()));
+		}
+		return tiles;
+	}
+
+	/**
+	 * Runs an action for each tile on a fixed size thread pool and waits for
+	 * all of them to finish.
+	 *
+	 * @param tiles
+	 *            the tiles
+	 * @param action
+	 *            the action
+	 * @param numThreads
+	 *            the number of threads
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 * @throws ExecutionException
+	 *             if an action threw an exception
+	 */
+	public static void forEach(
+			final List<? extends Interval> tiles,
+			final Consumer<Interval> action,
+			final int numThreads) throws InterruptedException, ExecutionException {
+
+		forEach(tiles, action, numThreads, progress -> {});
+	}
+
+	/**
+	 * As {@link #forEach(List, Consumer, int)}, and reports the fraction of
+	 * finished tiles after each tile. Tiles that have not started when the
+	 * calling thread is interrupted are not processed.
+	 *
+	 * @param tiles
+	 *            the tiles
+	 * @param action
+	 *            the action
+	 * @param numThreads
+	 *            the number of threads
+	 * @param progress
+	 *            receives the fraction of finished tiles
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 * @throws ExecutionException
+	 *             if an action threw an exception
+	 */
+	public static void forEach(
+			final List<? extends Interval> tiles,
+			final Consumer<Interval> action,
+			final int numThreads,
+			final DoubleConsumer progress) throws InterruptedException, ExecutionException {
+
+		final ExecutorService exec = Executors.newFixedThreadPool(Math.max(1, numThreads));
+		try {
+			final AtomicInteger finished = new AtomicInteger();
+			final List<Future<?>> futures = new ArrayList<>();
+			for (final Interval tile : tiles)
+				futures.add(exec.submit(() -> {
+					action.accept(tile);
+					progress.accept((double)finished.incrementAndGet() / tiles.size());
+				}));
+
+			for (final Future<?> future : futures)
+				future.get();
+		} finally {
+			exec.shutdownNow();
+		}
+	}
+}
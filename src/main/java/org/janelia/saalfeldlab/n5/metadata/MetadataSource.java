@@ -28,6 +28,9 @@ import java.util.stream.Stream;
 
 import org.janelia.saalfeldlab.n5.N5Exception;
 import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.bdv.cache.BlockLoadStatistics;
+import org.janelia.saalfeldlab.n5.bdv.cache.InstrumentedN5Utils;
+import org.janelia.saalfeldlab.n5.bdv.cache.ReaderStatistics;
 import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
 import org.janelia.saalfeldlab.n5.universe.N5TreeNode;
 import org.janelia.saalfeldlab.n5.universe.metadata.N5CosemMetadata;
@@ -82,6 +85,31 @@ public class MetadataSource<T extends NumericType<T> & NativeType<T>> implements
 			final int channelDim,
 			final int channelPos) {
 
+		this(n5, metadata, channelDim, channelPos, null, null);
+	}
+
+	/**
+	 * @param n5
+	 *            the reader
+	 * @param metadata
+	 *            the dataset metadata
+	 * @param channelDim
+	 *            the channel dimension
+	 * @param channelPos
+	 *            the channel index
+	 * @param statistics
+	 *            records block loads, can be null
+	 * @param readerStatistics
+	 *            records block reads of the reader, can be null
+	 */
+	public MetadataSource(
+			final N5Reader n5,
+			final N5DatasetMetadata metadata,
+			final int channelDim,
+			final int channelPos,
+			final BlockLoadStatistics statistics,
+			final ReaderStatistics readerStatistics) {
+
 		this.metadata = metadata;
 
 		if (metadata instanceof SpatialMetadata)
@@ -105,7 +133,9 @@ public class MetadataSource<T extends NumericType<T> & NativeType<T>> implements
 
 		if (isValid) {
 			try {
-				imgRaw = N5Utils.open(n5, metadata.getPath());
+				imgRaw = statistics == null
+						? N5Utils.open(n5, metadata.getPath())
+						: InstrumentedN5Utils.open(n5, metadata.getPath(), statistics, readerStatistics);
 			} catch (final N5Exception e) {
 				e.printStackTrace();
 			}
@@ -129,7 +159,16 @@ public class MetadataSource<T extends NumericType<T> & NativeType<T>> implements
 
 	public static List<MetadataSource<?>> buildMetadataSources(final N5Reader n5, final N5DatasetMetadata metadata) {
 
-		final MetadataSource<?> src0 = new MetadataSource<>(n5, metadata);
+		return buildMetadataSources(n5, metadata, null, null);
+	}
+
+	public static List<MetadataSource<?>> buildMetadataSources(
+			final N5Reader n5,
+			final N5DatasetMetadata metadata,
+			final BlockLoadStatistics statistics,
+			final ReaderStatistics readerStatistics) {
+
+		final MetadataSource<?> src0 = new MetadataSource<>(n5, metadata, -1, 0, statistics, readerStatistics);
 		if (!src0.isValid())
 			return null;
 
@@ -139,7 +178,7 @@ public class MetadataSource<T extends NumericType<T> & NativeType<T>> implements
 		sources.add(src0);
 
 		for (int i = 1; i < nc; i++) {
-			sources.add(new MetadataSource<>(n5, metadata, i));
+			sources.add(new MetadataSource<>(n5, metadata, -1, i, statistics, readerStatistics));
 		}
 
 		return sources;
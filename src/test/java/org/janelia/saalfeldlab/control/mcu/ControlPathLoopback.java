@@ -0,0 +1,209 @@
+package org.janelia.saalfeldlab.control.mcu;
+
+import java.awt.Dimension;
+import java.util.Arrays;
+import java.util.List;
+
+import org.janelia.saalfeldlab.control.mcu.RecordingReceiver.TimedMessage;
+
+import bdv.viewer.BasicViewerState;
+import bdv.viewer.SynchronizedViewerState;
+import bdv.viewer.ViewerStateChange;
+
+/**
+ * The control path from MIDI events to viewer transform updates without MIDI
+ * hardware: events are replayed into an {@link XTouchMiniMCUControlPanel}
+ * through a {@link LoopbackTransmitter}, a V-Pot shifts the viewer transform
+ * through a {@link ViewerTransformAccumulator}, and LED messages are counted
+ * by a {@link RecordingReceiver}.
+ *
+ * Every event shifts by one pixel, so the x translation of the viewer
+ * transform tells how many events an update contains, and the latency of an
+ * update is measured from the oldest event it contains.
+ */
+public class ControlPathLoopback implements AutoCloseable {
+
+	/* long enough for the delayed reset of the LED ring */
+	private static final long SETTLE_TIME = MCUVPotControl.RESET_DELAY + 3 * MCUVPotControl.LED_INTERVAL;
+
+	private static final long TIMEOUT = 5000;
+
+	public static class Result {
+
+		public final int numEvents;
+
+		public final int numApplied;
+
+		public final int numUpdates;
+
+		public final int numLedMessages;
+
+		public final long nanos;
+
+		/* sorted */
+		private final long[] latencies;
+
+		Result(final int numApplied, final int numUpdates, final int numLedMessages, final long nanos, final long[] latencies) {
+
+			this.numEvents = latencies.length;
+			this.numApplied = numApplied;
+			this.numUpdates = numUpdates;
+			this.numLedMessages = numLedMessages;
+			this.nanos = nanos;
+			this.latencies = latencies.clone();
+			Arrays.sort(this.latencies);
+		}
+
+		/**
+		 * @param p
+		 *            the percentile in [0, 1]
+		 * @return the latency percentile in nanoseconds
+		 */
+		public long latency(final double p) {
+
+			return latencies[Math.min(numEvents - 1, (int)(p * numEvents))];
+		}
+
+		@Override
+		public String toString() {
+
+			return String.format(
+					"%d events: %d applied, %.0f events/s, %d transform updates, %d LED messages, latency p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+					numEvents,
+					numApplied,
+					1e9 * numApplied / nanos,
+					numUpdates,
+					numLedMessages,
+					1e-6 * latency(0.5),
+					1e-6 * latency(0.99),
+					1e-6 * latency(1));
+		}
+	}
+
+	private final LoopbackTransmitter trans = new LoopbackTransmitter();
+
+	private final RecordingReceiver rec = new RecordingReceiver();
+
+	private final XTouchMiniMCUControlPanel panel;
+
+	private final SynchronizedViewerState state = new SynchronizedViewerState(new BasicViewerState());
+
+	private final ViewerTransformAccumulator accumulator;
+
+	private final Object lock = new Object();
+
+	/* the state of the running replay, guarded by lock */
+	private long[] sendTimes = null;
+
+	private long[] latencies = new long[0];
+
+	private int base = 0;
+
+	private int numApplied = 0;
+
+	private int numUpdates = 0;
+
+	public ControlPathLoopback() throws Exception {
+
+		panel = new XTouchMiniMCUControlPanel(trans, rec);
+		accumulator = new ViewerTransformAccumulator(
+				state,
+				() -> new Dimension(800, 600),
+				ViewerTransformAccumulator.DEFAULT_INTERVAL);
+
+		final MCUVPotControl vpot = panel.getVPotControl(0);
+		vpot.setAbsolute(false);
+		vpot.setMinMax(-10, 10);
+		vpot.addListener(value -> accumulator.shift(0, value));
+
+		state.changeListeners().add(change -> {
+			if (change != ViewerStateChange.VIEWER_TRANSFORM_CHANGED)
+				return;
+
+			final long now = System.nanoTime();
+			final int x = translation();
+			synchronized (lock) {
+				if (sendTimes == null)
+					return;
+
+				update(x, now);
+				++numUpdates;
+				lock.notifyAll();
+			}
+		});
+	}
+
+	private int translation() {
+
+		return (int)Math.round(state.getViewerTransform().get(0, 3));
+	}
+
+	/* guarded by lock */
+	private void update(final int x, final long now) {
+
+		final int applied = Math.min(x - base, latencies.length);
+		for (int i = numApplied; i < applied; ++i)
+			latencies[i] = now - sendTimes[i];
+
+		numApplied = Math.max(numApplied, applied);
+	}
+
+	/**
+	 * Replays messages at a rate and waits until all their events are applied
+	 * to the viewer transform, at most {@value #TIMEOUT} ms.
+	 *
+	 * @param messages
+	 *            the messages
+	 * @param rate
+	 *            the rate in messages per second
+	 * @param settle
+	 *            wait for the LED ring before and after replaying, so that
+	 *            the result counts all LED messages caused by the messages
+	 * @return the result
+	 * @throws Exception
+	 *             if interrupted
+	 */
+	public Result replay(final List<TimedMessage> messages, final double rate, final boolean settle) throws Exception {
+
+		if (settle)
+			Thread.sleep(SETTLE_TIME);
+
+		rec.clear();
+		synchronized (lock) {
+			sendTimes = null;
+			latencies = new long[messages.size()];
+			base = translation();
+			numApplied = 0;
+			numUpdates = 0;
+		}
+
+		final long t0 = System.nanoTime();
+		final long[] times = MidiReplay.replayAtRate(messages, trans, rate);
+		final long t1;
+		synchronized (lock) {
+			sendTimes = times;
+			// updates that happened before the send times were published
+			update(translation(), System.nanoTime());
+
+			final long deadline = System.currentTimeMillis() + TIMEOUT;
+			while (numApplied < messages.size() && System.currentTimeMillis() < deadline)
+				lock.wait(100);
+
+			t1 = System.nanoTime();
+		}
+
+		if (settle)
+			Thread.sleep(SETTLE_TIME);
+
+		synchronized (lock) {
+			return new Result(numApplied, numUpdates, rec.size(), t1 - t0, latencies);
+		}
+	}
+
+	@Override
+	public void close() {
+
+		accumulator.stop();
+		panel.close();
+	}
+}
@@ -0,0 +1,47 @@
+package org.janelia.saalfeldlab.control.mcu;
+
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.Transmitter;
+
+/**
+ * In-process {@link Transmitter} that forwards messages passed to
+ * {@link #send(MidiMessage, long)} to its receiver, as a MIDI input device
+ * would, on the calling thread.
+ */
+public class LoopbackTransmitter implements Transmitter {
+
+	private volatile Receiver receiver;
+
+	private volatile boolean closed = false;
+
+	@Override
+	public void setReceiver(final Receiver receiver) {
+
+		this.receiver = receiver;
+	}
+
+	@Override
+	public Receiver getReceiver() {
+
+		return receiver;
+	}
+
+	public void send(final MidiMessage msg, final long timeStamp) {
+
+		final Receiver r = receiver;
+		if (!closed && r != null)
+			r.send(msg, timeStamp);
+	}
+
+	public boolean isClosed() {
+
+		return closed;
+	}
+
+	@Override
+	public void close() {
+
+		closed = true;
+	}
+}
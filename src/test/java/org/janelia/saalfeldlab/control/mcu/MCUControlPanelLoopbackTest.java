@@ -0,0 +1,102 @@
+package org.janelia.saalfeldlab.control.mcu;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.janelia.saalfeldlab.control.mcu.RecordingReceiver.TimedMessage;
+import org.junit.Test;
+
+public class MCUControlPanelLoopbackTest {
+
+	private static final int VPOT_ID = 0x10;
+
+	private static final int VPOT_LED_ID = 0x30;
+
+	@Test
+	public void testVPotDispatchAndLedCoalescing() throws Exception {
+
+		final LoopbackTransmitter trans = new LoopbackTransmitter();
+		final RecordingReceiver rec = new RecordingReceiver();
+		final XTouchMiniMCUControlPanel panel = new XTouchMiniMCUControlPanel(trans, rec);
+		try {
+			final int n = 100;
+			final MCUVPotControl vpot = panel.getVPotControl(0);
+			vpot.setAbsolute(false);
+			vpot.setMinMax(-10, 10);
+
+			final AtomicInteger sum = new AtomicInteger();
+			final AtomicReference<Thread> listenerThread = new AtomicReference<>();
+			final CountDownLatch latch = new CountDownLatch(n);
+			vpot.addListener(value -> {
+				sum.addAndGet(value);
+				listenerThread.set(Thread.currentThread());
+				latch.countDown();
+			});
+
+			Thread.sleep(MCUVPotControl.RESET_DELAY + 3 * MCUVPotControl.LED_INTERVAL);
+			rec.clear();
+
+			MidiReplay.replayAtRate(MidiReplay.vpotTurns(VPOT_ID, 1, n), trans, Double.POSITIVE_INFINITY);
+			assertTrue(latch.await(5, TimeUnit.SECONDS));
+			assertEquals(n, sum.get());
+
+			/* listeners run on the panel's event thread */
+			assertNotSame(Thread.currentThread(), listenerThread.get());
+
+			/* wait for the delayed reset of the led ring */
+			Thread.sleep(MCUVPotControl.RESET_DELAY + 3 * MCUVPotControl.LED_INTERVAL);
+			final List<TimedMessage> ledMessages = rec.getMessages();
+			assertTrue("no led messages", ledMessages.size() > 0);
+			assertTrue("led messages not coalesced: " + ledMessages.size(), ledMessages.size() < n / 2);
+			assertEquals(VPOT_LED_ID, ledMessages.get(ledMessages.size() - 1).data1);
+		} finally {
+			panel.close();
+		}
+		assertTrue(trans.isClosed());
+		assertTrue(rec.isClosed());
+	}
+
+	@Test
+	public void testControlPathBounds() throws Exception {
+
+		try (final ControlPathLoopback loopback = new ControlPathLoopback()) {
+			final int n = 200;
+			final ControlPathLoopback.Result result = loopback.replay(MidiReplay.vpotTurns(VPOT_ID, 1, n), 1000, true);
+			assertEquals(result.toString(), n, result.numApplied);
+
+			/* events are coalesced into fewer transform updates and LED messages */
+			assertTrue(result.toString(), result.numUpdates < n);
+			assertTrue(result.toString(), result.numLedMessages > 0 && result.numLedMessages < n / 2);
+
+			/* a few accumulator intervals are typical, the bound leaves room for loaded machines */
+			assertTrue(result.toString(), result.latency(0.99) < TimeUnit.MILLISECONDS.toNanos(500));
+		}
+	}
+
+	@Test
+	public void testRecordingRoundTrip() throws Exception {
+
+		final List<TimedMessage> messages = MidiReplay.vpotTurns(VPOT_ID, -3, 10);
+		final StringWriter writer = new StringWriter();
+		RecordingReceiver.write(messages, writer);
+
+		final List<TimedMessage> read = RecordingReceiver.read(new BufferedReader(new StringReader(writer.toString())));
+		assertEquals(messages.size(), read.size());
+		for (int i = 0; i < messages.size(); ++i) {
+			assertEquals(messages.get(i).timeNanos, read.get(i).timeNanos);
+			assertEquals(messages.get(i).status, read.get(i).status);
+			assertEquals(messages.get(i).data1, read.get(i).data1);
+			assertEquals(messages.get(i).data2, read.get(i).data2);
+		}
+	}
+}
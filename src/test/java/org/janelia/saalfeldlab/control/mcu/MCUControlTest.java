@@ -0,0 +1,98 @@
+package org.janelia.saalfeldlab.control.mcu;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+
+import org.junit.Test;
+
+public class MCUControlTest {
+
+	static class TestControl extends MCUControl {
+
+		@Override
+		void update(final int data) {
+
+			setValue(data);
+		}
+	}
+
+	@Test
+	public void testAddRemove() {
+
+		final TestControl control = new TestControl();
+		final int[] received = new int[1];
+		final IntConsumer listener = i -> received[0] = i;
+
+		assertTrue(control.addListener(listener));
+		assertFalse(control.addListener(listener));
+		assertEquals(1, control.getListeners().size());
+
+		control.setValue(3);
+		assertEquals(3, received[0]);
+
+		assertTrue(control.removeListener(listener));
+		assertFalse(control.removeListener(listener));
+		assertEquals(0, control.getListeners().size());
+
+		control.setValue(5);
+		assertEquals(3, received[0]);
+
+		control.addListener(listener);
+		control.clearListeners();
+		assertEquals(0, control.getNumListeners());
+	}
+
+	@Test
+	public void testConcurrentListenerChanges() throws InterruptedException {
+
+		final TestControl control = new TestControl();
+		final AtomicLong sum = new AtomicLong();
+		control.addListener(sum::addAndGet);
+
+		final int n = 200000;
+		final AtomicReference<Throwable> error = new AtomicReference<>();
+		final Thread dispatcher = new Thread(() -> {
+			try {
+				for (int i = 0; i < n; ++i)
+					control.setValue(1);
+			} catch (final Throwable t) {
+				error.set(t);
+			}
+		});
+
+		final Thread[] mutators = new Thread[4];
+		for (int t = 0; t < mutators.length; ++t) {
+			mutators[t] = new Thread(() -> {
+				try {
+					while (dispatcher.isAlive()) {
+						final IntConsumer listener = i -> {};
+						control.addListener(listener);
+						control.removeListener(listener);
+					}
+				} catch (final Throwable e) {
+					error.set(e);
+				}
+			});
+		}
+
+		dispatcher.start();
+		for (final Thread mutator : mutators)
+			mutator.start();
+
+		dispatcher.join();
+		for (final Thread mutator : mutators)
+			mutator.join();
+
+		if (error.get() != null)
+			throw new AssertionError(error.get());
+
+		/* the permanent listener saw every event, the temporary ones are gone */
+		assertEquals(n, sum.get());
+		assertEquals(1, control.getNumListeners());
+	}
+}
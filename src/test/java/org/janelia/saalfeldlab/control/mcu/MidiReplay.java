@@ -0,0 +1,110 @@
+package org.janelia.saalfeldlab.control.mcu;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sound.midi.InvalidMidiDataException;
+
+import org.janelia.saalfeldlab.control.mcu.RecordingReceiver.TimedMessage;
+
+/**
+ * Replays MIDI event streams into a {@link LoopbackTransmitter} on the
+ * calling thread.
+ */
+public class MidiReplay {
+
+	private MidiReplay() {}
+
+	/**
+	 * Replays messages with their recorded timing, scaled by a speed factor.
+	 *
+	 * @param messages
+	 *            the messages
+	 * @param transmitter
+	 *            the transmitter
+	 * @param speed
+	 *            the speed factor, 2 replays twice as fast as recorded
+	 * @return the send times in nanoseconds
+	 * @throws InvalidMidiDataException
+	 *             if a message is invalid
+	 */
+	public static long[] replay(
+			final List<TimedMessage> messages,
+			final LoopbackTransmitter transmitter,
+			final double speed) throws InvalidMidiDataException {
+
+		final long[] sendTimes = new long[messages.size()];
+		if (messages.isEmpty())
+			return sendTimes;
+
+		final long t0 = messages.get(0).timeNanos;
+		final long start = System.nanoTime();
+		for (int i = 0; i < messages.size(); ++i) {
+			final TimedMessage m = messages.get(i);
+			waitUntil(start + (long)((m.timeNanos - t0) / speed));
+			sendTimes[i] = System.nanoTime();
+			transmitter.send(m.toMessage(), -1);
+		}
+		return sendTimes;
+	}
+
+	/**
+	 * Replays messages at a fixed rate.
+	 *
+	 * @param messages
+	 *            the messages
+	 * @param transmitter
+	 *            the transmitter
+	 * @param eventsPerSecond
+	 *            the rate, infinite for as fast as possible
+	 * @return the send times in nanoseconds
+	 * @throws InvalidMidiDataException
+	 *             if a message is invalid
+	 */
+	public static long[] replayAtRate(
+			final List<TimedMessage> messages,
+			final LoopbackTransmitter transmitter,
+			final double eventsPerSecond) throws InvalidMidiDataException {
+
+		final long[] sendTimes = new long[messages.size()];
+		final double interval = 1e9 / eventsPerSecond;
+		final long start = System.nanoTime();
+		for (int i = 0; i < messages.size(); ++i) {
+			waitUntil(start + (long)(i * interval));
+			sendTimes[i] = System.nanoTime();
+			transmitter.send(messages.get(i).toMessage(), -1);
+		}
+		return sendTimes;
+	}
+
+	/**
+	 * Creates a stream of relative V-Pot turns.
+	 *
+	 * @param vpotId
+	 *            the MIDI id of the V-Pot
+	 * @param ticks
+	 *            the ticks per event, negative for counter-clockwise
+	 * @param n
+	 *            the number of events
+	 * @return the messages, one millisecond apart
+	 */
+	public static List<TimedMessage> vpotTurns(final int vpotId, final int ticks, final int n) {
+
+		final int data = ticks >= 0 ? ticks : 0x40 | -ticks;
+		final List<TimedMessage> messages = new ArrayList<>();
+		for (int i = 0; i < n; ++i)
+			messages.add(new TimedMessage(i * 1000000L, 0xb0, vpotId, data));
+
+		return messages;
+	}
+
+	private static void waitUntil(final long time) {
+
+		long remaining;
+		while ((remaining = time - System.nanoTime()) > 0) {
+			if (remaining > 100000)
+				LockSupport.parkNanos(remaining - 50000);
+		}
+	}
+}
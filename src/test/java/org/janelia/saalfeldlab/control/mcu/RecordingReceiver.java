@@ -0,0 +1,124 @@
+package org.janelia.saalfeldlab.control.mcu;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+
+/**
+ * In-process {@link Receiver} that records all short messages with the time
+ * they were received, as a MIDI output device would receive LED messages.
+ *
+ * Recordings can be written to and read from a text format with one message
+ * per line:
+ * <pre>
+ * timeNanos status data1 data2
+ * </pre>
+ */
+public class RecordingReceiver implements Receiver {
+
+	public static class TimedMessage {
+
+		public final long timeNanos;
+
+		public final int status;
+
+		public final int data1;
+
+		public final int data2;
+
+		public TimedMessage(final long timeNanos, final int status, final int data1, final int data2) {
+
+			this.timeNanos = timeNanos;
+			this.status = status;
+			this.data1 = data1;
+			this.data2 = data2;
+		}
+
+		public ShortMessage toMessage() throws InvalidMidiDataException {
+
+			return new ShortMessage(status, data1, data2);
+		}
+	}
+
+	private final List<TimedMessage> messages = new ArrayList<>();
+
+	private volatile boolean closed = false;
+
+	@Override
+	public void send(final MidiMessage msg, final long timeStamp) {
+
+		if (closed || !(msg instanceof ShortMessage))
+			return;
+
+		final ShortMessage sm = (ShortMessage)msg;
+		synchronized (messages) {
+			messages.add(new TimedMessage(System.nanoTime(), sm.getStatus(), sm.getData1(), sm.getData2()));
+		}
+	}
+
+	public List<TimedMessage> getMessages() {
+
+		synchronized (messages) {
+			return new ArrayList<>(messages);
+		}
+	}
+
+	public int size() {
+
+		synchronized (messages) {
+			return messages.size();
+		}
+	}
+
+	public void clear() {
+
+		synchronized (messages) {
+			messages.clear();
+		}
+	}
+
+	public boolean isClosed() {
+
+		return closed;
+	}
+
+	@Override
+	public void close() {
+
+		closed = true;
+	}
+
+	public static void write(final List<TimedMessage> messages, final Writer writer) throws IOException {
+
+		for (final TimedMessage m : messages)
+			writer.write(m.timeNanos + " " + m.status + " " + m.data1 + " " + m.data2 + "\n");
+
+		writer.flush();
+	}
+
+	public static List<TimedMessage> read(final BufferedReader reader) throws IOException {
+
+		final List<TimedMessage> messages = new ArrayList<>();
+		String line;
+		while ((line = reader.readLine()) != null) {
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+
+			final String[] fields = line.split("\\s+");
+			messages.add(new TimedMessage(
+					Long.parseLong(fields[0]),
+					Integer.parseInt(fields[1]),
+					Integer.parseInt(fields[2]),
+					Integer.parseInt(fields[3])));
+		}
+		return messages;
+	}
+}
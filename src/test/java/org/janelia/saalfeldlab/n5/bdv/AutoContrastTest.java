@@ -0,0 +1,78 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+
+public class AutoContrastTest {
+
+	@Test
+	public void testPercentiles() {
+
+		/* 0 ... 999 with two outliers */
+		final ArrayImg<UnsignedShortType, ShortArray> img = ArrayImgs.unsignedShorts(10, 10, 10);
+		int i = 0;
+		for (final UnsignedShortType t : img)
+			t.set(i++);
+
+		final RandomAccess<UnsignedShortType> access = img.randomAccess();
+		access.setPosition(new long[]{0, 0, 0});
+		access.get().set(65535);
+		access.setPosition(new long[]{9, 9, 9});
+		access.get().set(65535);
+
+		assertArrayEquals(new double[]{5, 996}, AutoContrast.percentiles(img, img), 0);
+		assertArrayEquals(new double[]{100, 199}, AutoContrast.percentiles(img, new FinalInterval(new long[]{0, 0, 1}, new long[]{9, 9, 1})), 0);
+	}
+
+	@Test
+	public void testConstantAndNaN() {
+
+		final ArrayImg<FloatType, FloatArray> img = ArrayImgs.floats(4, 4, 4);
+		assertNull(AutoContrast.percentiles(img, img));
+
+		for (final FloatType t : img)
+			t.set(Float.NaN);
+
+		assertNull(AutoContrast.percentiles(img, img));
+	}
+
+	@Test
+	public void testSampleBox() {
+
+		final FinalInterval small = new FinalInterval(100, 100, 100);
+		assertSame(small, AutoContrast.sampleBox(small, new double[]{50, 50, 50}));
+
+		/* a cube around the center, clamped to the interval */
+		final FinalInterval large = new FinalInterval(4096, 4096, 1024);
+		final Interval box = AutoContrast.sampleBox(large, new double[]{2048, 2048, 512});
+		assertTrue(Intervals.numElements(box) <= AutoContrast.MAX_SAMPLES);
+		assertArrayEquals(new long[]{1998, 1998, 462}, box.minAsLongArray());
+		assertArrayEquals(new long[]{101, 101, 101}, box.dimensionsAsLongArray());
+
+		final Interval corner = AutoContrast.sampleBox(large, new double[]{-100, 5000, 0});
+		assertArrayEquals(new long[]{0, 3995, 0}, corner.minAsLongArray());
+
+		/* thin dimensions keep their size */
+		final FinalInterval slab = new FinalInterval(8192, 8192, 4);
+		final Interval slabBox = AutoContrast.sampleBox(slab, new double[]{0, 0, 0});
+		assertEquals(4, slabBox.dimension(2));
+		assertEquals(512, slabBox.dimension(0));
+		assertEquals(512, slabBox.dimension(1));
+	}
+}
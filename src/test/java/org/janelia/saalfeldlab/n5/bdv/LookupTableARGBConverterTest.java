@@ -0,0 +1,88 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import net.imglib2.converter.Converter;
+import net.imglib2.display.RealARGBColorConverter;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.type.volatiles.VolatileUnsignedShortType;
+
+public class LookupTableARGBConverterTest {
+
+	@Test
+	public void testUnsignedByte() {
+
+		final UnsignedByteType type = new UnsignedByteType();
+		final LookupTableARGBConverter.UnsignedByte lut = new LookupTableARGBConverter.UnsignedByte(0, 255);
+		final RealARGBColorConverter<UnsignedByteType> reference = RealARGBColorConverter.create(type, 0, 255);
+
+		assertSameColors(lut, reference, type, 256);
+
+		setRangeAndColor(lut, reference, 17, 100, new ARGBType(ARGBType.rgba(255, 128, 0, 255)));
+		assertSameColors(lut, reference, type, 256);
+	}
+
+	@Test
+	public void testUnsignedShort() {
+
+		final UnsignedShortType type = new UnsignedShortType();
+		final LookupTableARGBConverter.UnsignedShort lut = new LookupTableARGBConverter.UnsignedShort(0, 65535);
+		final RealARGBColorConverter<UnsignedShortType> reference = RealARGBColorConverter.create(type, 0, 65535);
+
+		assertSameColors(lut, reference, type, 65536);
+
+		setRangeAndColor(lut, reference, 1000, 3000.5, new ARGBType(ARGBType.rgba(0, 255, 64, 128)));
+		assertSameColors(lut, reference, type, 65536);
+
+		/* a range beyond the type */
+		setRangeAndColor(lut, reference, -100, 100000, new ARGBType(ARGBType.rgba(255, 255, 255, 255)));
+		assertSameColors(lut, reference, type, 65536);
+	}
+
+	@Test
+	public void testCreate() {
+
+		assertTrue(LookupTableARGBConverter.create(new UnsignedByteType(), 0, 255) instanceof LookupTableARGBConverter.UnsignedByte);
+		assertTrue(LookupTableARGBConverter.create(new VolatileUnsignedShortType(), 0, 255) instanceof LookupTableARGBConverter.VolatileUnsignedShort);
+		assertNull(LookupTableARGBConverter.create(new FloatType(), 0, 1));
+	}
+
+	private static void setRangeAndColor(
+			final RealARGBColorConverter<?> a,
+			final RealARGBColorConverter<?> b,
+			final double min,
+			final double max,
+			final ARGBType color) {
+
+		a.setMin(min);
+		a.setMax(max);
+		a.setColor(color);
+		b.setMin(min);
+		b.setMax(max);
+		b.setColor(color);
+	}
+
+	private static <T extends IntegerType<T>> void assertSameColors(
+			final Converter<T, ARGBType> lut,
+			final Converter<T, ARGBType> reference,
+			final T type,
+			final int size) {
+
+		final ARGBType expected = new ARGBType();
+		final ARGBType actual = new ARGBType();
+		for (int i = 0; i < size; ++i) {
+			type.setInteger(i);
+			reference.convert(type, expected);
+			lut.convert(type, actual);
+			assertEquals("value " + i, expected.get(), actual.get());
+		}
+	}
+}
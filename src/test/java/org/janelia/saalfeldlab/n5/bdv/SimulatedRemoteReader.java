@@ -0,0 +1,251 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.janelia.saalfeldlab.n5.DataBlock;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5Exception;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.bdv.cache.InstrumentedN5Utils;
+
+/**
+ * Makes a local container behave like remote storage, for tests and
+ * benchmarks of fetcher concurrency, prefetching, and caching.
+ * <p>
+ * Every read of the {@link #getReader() reader} waits for a latency with
+ * gaussian jitter. Blocks share a link of limited bandwidth, so concurrent
+ * block reads slow each other down, and the number of concurrent requests
+ * can be limited like the connection pool of a cloud client. A fraction of
+ * block reads fail with an {@link N5Exception.N5IOException}. Reads of
+ * attributes and listings wait for the latency but do not fail, so that
+ * metadata discovery is not affected.
+ * <p>
+ * The reader is a proxy that implements {@link N5Reader} and can be passed to
+ * {@link N5Viewer#show(N5Reader, java.util.List)} or
+ * {@link N5Viewer#buildN5Sources(N5Reader, java.util.List, bdv.cache.SharedQueue, java.util.List, java.util.List, bdv.util.BdvOptions)}.
+ * Bandwidth is applied to the decoded size of blocks because the encoded
+ * size is not known at the level of {@link N5Reader}. Settings can be changed
+ * while reading.
+ */
+public class SimulatedRemoteReader {
+
+	private final N5Reader reader;
+
+	private final Random random;
+
+	private volatile double latencyMillis = 0;
+
+	private volatile double jitterMillis = 0;
+
+	private volatile double bytesPerSecond = 0;
+
+	private volatile double errorRate = 0;
+
+	private volatile Semaphore connections = null;
+
+	private long linkFreeAt = 0;
+
+	private final LongAdder requests = new LongAdder();
+
+	private final LongAdder blockReads = new LongAdder();
+
+	private final LongAdder errors = new LongAdder();
+
+	private final LongAdder bytes = new LongAdder();
+
+	/**
+	 * @param n5
+	 *            the local reader
+	 * @param seed
+	 *            seed for jitter and errors
+	 */
+	public SimulatedRemoteReader(final N5Reader n5, final long seed) {
+
+		random = new Random(seed);
+		reader = (N5Reader)Proxy.newProxyInstance(
+				N5Reader.class.getClassLoader(),
+				new Class<?>[]{N5Reader.class},
+				new Handler(n5));
+	}
+
+	public SimulatedRemoteReader(final N5Reader n5) {
+
+		this(n5, 42);
+	}
+
+	/**
+	 * @return the reader that simulates remote storage
+	 */
+	public N5Reader getReader() {
+
+		return reader;
+	}
+
+	public SimulatedRemoteReader latency(final double millis) {
+
+		latencyMillis = millis;
+		return this;
+	}
+
+	/**
+	 * @param millis
+	 *            standard deviation of the latency, latencies are clamped at 0
+	 * @return this
+	 */
+	public SimulatedRemoteReader jitter(final double millis) {
+
+		jitterMillis = millis;
+		return this;
+	}
+
+	/**
+	 * @param bytesPerSecond
+	 *            bandwidth shared by all block reads, unlimited if &lt;= 0
+	 * @return this
+	 */
+	public SimulatedRemoteReader bandwidth(final double bytesPerSecond) {
+
+		this.bytesPerSecond = bytesPerSecond;
+		return this;
+	}
+
+	/**
+	 * @param errorRate
+	 *            probability that a block read fails
+	 * @return this
+	 */
+	public SimulatedRemoteReader errorRate(final double errorRate) {
+
+		this.errorRate = errorRate;
+		return this;
+	}
+
+	/**
+	 * @param maxConnections
+	 *            maximum number of concurrent requests, unlimited if &lt;= 0
+	 * @return this
+	 */
+	public SimulatedRemoteReader connections(final int maxConnections) {
+
+		connections = maxConnections > 0 ? new Semaphore(maxConnections, true) : null;
+		return this;
+	}
+
+	public long getRequests() {
+
+		return requests.sum();
+	}
+
+	public long getBlockReads() {
+
+		return blockReads.sum();
+	}
+
+	public long getErrors() {
+
+		return errors.sum();
+	}
+
+	/**
+	 * @return decoded bytes of all blocks read
+	 */
+	public long getBytes() {
+
+		return bytes.sum();
+	}
+
+	private class Handler implements InvocationHandler {
+
+		private final N5Reader n5;
+
+		Handler(final N5Reader n5) {
+
+			this.n5 = n5;
+		}
+
+		@Override
+		public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+
+			/* reads are all calls with a path as first argument */
+			if (method.getDeclaringClass() == Object.class || args == null || args.length == 0 || !(args[0] instanceof String))
+				return forward(method, args);
+
+			final Semaphore semaphore = connections;
+			if (semaphore != null)
+				semaphore.acquireUninterruptibly();
+
+			try {
+				requests.increment();
+				sleep(latencyNanos());
+
+				if (!method.getName().equals("readBlock"))
+					return forward(method, args);
+
+				blockReads.increment();
+				if (random.nextDouble() < errorRate) {
+					errors.increment();
+					throw new N5Exception.N5IOException("Simulated read error for block " + args[0]);
+				}
+
+				final Object result = forward(method, args);
+				if (result instanceof DataBlock && args[1] instanceof DatasetAttributes) {
+					final long numBytes = (long)((DataBlock<?>)result).getNumElements() *
+							InstrumentedN5Utils.bytesPerElement(((DatasetAttributes)args[1]).getDataType());
+					bytes.add(numBytes);
+					sleep(transferNanos(numBytes));
+				}
+				return result;
+			} finally {
+				if (semaphore != null)
+					semaphore.release();
+			}
+		}
+
+		private Object forward(final Method method, final Object[] args) throws Throwable {
+
+			try {
+				return method.invoke(n5, args);
+			} catch (final InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
+	private long latencyNanos() {
+
+		final double millis = latencyMillis + jitterMillis * random.nextGaussian();
+		return (long)(Math.max(0, millis) * 1e6);
+	}
+
+	/*
+	 * Reserves the link for the transfer after all transfers that were
+	 * started before, and returns the time until the transfer is complete.
+	 */
+	private synchronized long transferNanos(final long numBytes) {
+
+		if (bytesPerSecond <= 0)
+			return 0;
+
+		final long now = System.nanoTime();
+		linkFreeAt = Math.max(now, linkFreeAt) + (long)(numBytes * 1e9 / bytesPerSecond);
+		return linkFreeAt - now;
+	}
+
+	private static void sleep(final long nanos) {
+
+		if (nanos <= 0)
+			return;
+
+		try {
+			Thread.sleep(nanos / 1000000, (int)(nanos % 1000000));
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
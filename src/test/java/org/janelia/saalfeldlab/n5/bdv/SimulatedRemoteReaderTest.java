@@ -0,0 +1,82 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5Exception;
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.imglib2.img.array.ArrayImgs;
+
+public class SimulatedRemoteReaderTest {
+
+	private static final String DATASET = "img";
+
+	private N5FSWriter n5;
+
+	@Before
+	public void before() throws IOException {
+
+		n5 = new N5FSWriter(Files.createTempDirectory("n5-viewer-remote").toString());
+		N5Utils.save(ArrayImgs.unsignedShorts(32, 32, 8), n5, DATASET, new int[]{16, 16, 8}, new RawCompression());
+	}
+
+	@After
+	public void after() {
+
+		n5.remove();
+	}
+
+	@Test
+	public void testLatencyAndBandwidth() {
+
+		final SimulatedRemoteReader remote = new SimulatedRemoteReader(n5).latency(20);
+		final N5Reader reader = remote.getReader();
+
+		long t = System.nanoTime();
+		final DatasetAttributes attributes = reader.getDatasetAttributes(DATASET);
+		assertTrue(System.nanoTime() - t >= 20_000_000);
+
+		/* 4096 bytes per block at 40960 bytes per second take 100ms */
+		remote.latency(0).bandwidth(40960);
+		t = System.nanoTime();
+		assertNotNull(reader.readBlock(DATASET, attributes, 0, 0, 0));
+		assertNotNull(reader.readBlock(DATASET, attributes, 1, 0, 0));
+		assertTrue(System.nanoTime() - t >= 190_000_000);
+
+		assertEquals(3, remote.getRequests());
+		assertEquals(2, remote.getBlockReads());
+		assertEquals(2 * 4096, remote.getBytes());
+	}
+
+	@Test
+	public void testErrors() {
+
+		final SimulatedRemoteReader remote = new SimulatedRemoteReader(n5).errorRate(1);
+		final N5Reader reader = remote.getReader();
+
+		final DatasetAttributes attributes = reader.getDatasetAttributes(DATASET);
+		try {
+			reader.readBlock(DATASET, attributes, 0, 0, 0);
+			fail("expected a simulated error");
+		} catch (final N5Exception.N5IOException e) {
+			assertEquals(1, remote.getErrors());
+		}
+
+		remote.errorRate(0);
+		assertNotNull(reader.readBlock(DATASET, attributes, 0, 0, 0));
+		assertEquals(1, remote.getErrors());
+	}
+}
@@ -0,0 +1,93 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.bdv.SyntheticDataGenerator.Flavor;
+import org.janelia.saalfeldlab.n5.bdv.cache.BlockStatistics;
+import org.janelia.saalfeldlab.n5.bdv.cache.BlockStatisticsWriter;
+import org.janelia.saalfeldlab.n5.universe.StorageFormat;
+import org.junit.Test;
+
+import bdv.cache.SharedQueue;
+import bdv.tools.brightness.ConverterSetup;
+import bdv.util.BdvOptions;
+import bdv.viewer.Source;
+import bdv.viewer.SourceAndConverter;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+public class SourceBlockStatisticsTest {
+
+	@Test
+	public void testChannelsAndTimepoints() throws IOException, InterruptedException, ExecutionException {
+
+		final N5Writer n5 = SyntheticDataGenerator.createContainer(
+				StorageFormat.ZARR2,
+				Files.createTempDirectory("n5-viewer-blockstats").toString());
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			new SyntheticDataGenerator()
+					.flavor(Flavor.NGFF_V04)
+					.dimensions(64, 48, 32)
+					.blockSize(32, 32, 32)
+					.channels(2)
+					.timepoints(3)
+					.scales(2)
+					.fill(1)
+					.write(n5, "volume");
+
+			System.setProperty(BlockStatistics.BLOCK_STATISTICS_PROPERTY, "true");
+			final List<ConverterSetup> converterSetups = new ArrayList<>();
+			final List<SourceAndConverter<UnsignedShortType>> sources = new ArrayList<>();
+			N5Viewer.buildN5Sources(new String[]{n5.getURI() + "?volume"}, new SharedQueue(1), converterSetups, sources, BdvOptions.options());
+			final SourceBlockStatistics missing = SourceBlockStatistics.of(sources.get(0).getSpimSource());
+			Thread.sleep(500);
+			assertFalse(missing.hasLevel(0));
+
+			assertEquals(2, BlockStatisticsWriter.write(n5, "volume", executor).size());
+
+			sources.clear();
+			N5Viewer.buildN5Sources(new String[]{n5.getURI() + "?volume"}, new SharedQueue(1), converterSetups, sources, BdvOptions.options());
+			final Source<UnsignedShortType> source = sources.get(1).getSpimSource();
+			final SourceBlockStatistics statistics = SourceBlockStatistics.of(source);
+			assertNotNull(statistics);
+
+			/* read in the background */
+			for (int i = 0; i < 100 && !(statistics.hasLevel(0) && statistics.hasLevel(1)); ++i)
+				Thread.sleep(50);
+			assertTrue(statistics.hasLevel(0));
+			assertTrue(statistics.hasLevel(1));
+
+			/* the blocks of channel 1 and timepoint 2 at level 0, x, y, z, c, t in imglib2 order */
+			final long[] blocks = statistics.blocks(0, 2, source.getSource(2, 0));
+			assertEquals(4, blocks.length);
+			final CellGrid grid = new CellGrid(new long[]{64, 48, 32, 2, 3}, new int[]{32, 32, 32, 1, 1});
+			final long[] position = new long[5];
+			for (final long block : blocks) {
+				grid.getCellGridPositionFlat(block, position);
+				assertArrayEquals(new long[]{1, 2}, new long[]{position[3], position[4]});
+			}
+
+			final double[] range = statistics.percentiles(1, 0, source.getSource(0, 1), 0.005, 0.995);
+			assertNotNull(range);
+			assertTrue(range[0] < range[1]);
+		} finally {
+			System.clearProperty(BlockStatistics.BLOCK_STATISTICS_PROPERTY);
+			executor.shutdownNow();
+			n5.remove();
+		}
+	}
+}
@@ -0,0 +1,635 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.janelia.saalfeldlab.n5.Compression;
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.GzipCompression;
+import org.janelia.saalfeldlab.n5.N5Exception;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+import org.janelia.saalfeldlab.n5.universe.N5Factory;
+import org.janelia.saalfeldlab.n5.universe.StorageFormat;
+import org.janelia.saalfeldlab.n5.universe.metadata.N5CosemMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.N5CosemMetadata.CosemTransform;
+import org.janelia.saalfeldlab.n5.universe.metadata.N5CosemMetadataParser;
+import org.janelia.scicomp.n5.zstandard.ZstandardCompression;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Writes synthetic N5 and Zarr containers for scale tests and benchmarks.
+ * <p>
+ * An image has up to three spatial dimensions and optional channel and time
+ * dimensions, and is written as a multiscale pyramid with the metadata of
+ * one of the {@link Flavor flavors} that the viewer parses. The content is a
+ * smooth pattern with some noise that differs between channels and
+ * timepoints, and is evaluated at the full resolution coordinates for every
+ * scale level, so that the levels match without downsampling.
+ * <p>
+ * Only a fraction of the blocks is written, all other blocks are missing and
+ * read as fill value, so images of many terabytes logical size can be
+ * written in seconds. Every scale level gets at least one block.
+ * <p>
+ * Channels and time are only supported by flavors that have axis metadata:
+ * OME-NGFF, and N5 Viewer for channels (one multiscale group {@code c<i>}
+ * per channel).
+ * <p>
+ * Run as a Java application to write a container, run without arguments
+ * for the options.
+ */
+public class SyntheticDataGenerator {
+
+	public enum Flavor {
+		/** N5 Viewer multiscale groups, {@code pixelResolution} and {@code downsamplingFactors} */
+		N5_VIEWER,
+		/** COSEM {@code transform} attributes */
+		COSEM,
+		/** OME-NGFF v0.4 {@code multiscales}, for Zarr v2 */
+		NGFF_V04,
+		/** OME-NGFF v0.5 {@code ome.multiscales}, for Zarr v3 */
+		NGFF_V05,
+		/** n5-universe canonical {@code spatialTransform} attributes */
+		CANONICAL,
+		/** no metadata */
+		NONE
+	}
+
+	private long[] dimensions = {256, 256, 64};
+
+	private int[] blockSize = {64, 64, 64};
+
+	private int numChannels = 1;
+
+	private int numTimepoints = 1;
+
+	private int numScales = 1;
+
+	private DataType dataType = DataType.UINT16;
+
+	private Compression compression = new RawCompression();
+
+	private double[] resolution = {1, 1, 1};
+
+	private String unit = "um";
+
+	private double fillFraction = 1;
+
+	private Flavor flavor = Flavor.N5_VIEWER;
+
+	private long seed = 42;
+
+	private long blocksWritten = 0;
+
+	/**
+	 * @param dimensions
+	 *            spatial dimensions, x, y, and optionally z
+	 * @return this
+	 */
+	public SyntheticDataGenerator dimensions(final long... dimensions) {
+
+		this.dimensions = dimensions.clone();
+		return this;
+	}
+
+	/**
+	 * @param blockSize
+	 *            spatial block size
+	 * @return this
+	 */
+	public SyntheticDataGenerator blockSize(final int... blockSize) {
+
+		this.blockSize = blockSize.clone();
+		return this;
+	}
+
+	public SyntheticDataGenerator channels(final int numChannels) {
+
+		this.numChannels = numChannels;
+		return this;
+	}
+
+	public SyntheticDataGenerator timepoints(final int numTimepoints) {
+
+		this.numTimepoints = numTimepoints;
+		return this;
+	}
+
+	/**
+	 * @param numScales
+	 *            number of scale levels, each downsampled by 2 in all
+	 *            spatial dimensions
+	 * @return this
+	 */
+	public SyntheticDataGenerator scales(final int numScales) {
+
+		this.numScales = numScales;
+		return this;
+	}
+
+	public SyntheticDataGenerator dataType(final DataType dataType) {
+
+		this.dataType = dataType;
+		return this;
+	}
+
+	public SyntheticDataGenerator compression(final Compression compression) {
+
+		this.compression = compression;
+		return this;
+	}
+
+	public SyntheticDataGenerator resolution(final double... resolution) {
+
+		this.resolution = resolution.clone();
+		return this;
+	}
+
+	public SyntheticDataGenerator unit(final String unit) {
+
+		this.unit = unit;
+		return this;
+	}
+
+	/**
+	 * @param fillFraction
+	 *            fraction of the blocks of every scale level that are
+	 *            written
+	 * @return this
+	 */
+	public SyntheticDataGenerator fill(final double fillFraction) {
+
+		this.fillFraction = fillFraction;
+		return this;
+	}
+
+	public SyntheticDataGenerator flavor(final Flavor flavor) {
+
+		this.flavor = flavor;
+		return this;
+	}
+
+	public SyntheticDataGenerator seed(final long seed) {
+
+		this.seed = seed;
+		return this;
+	}
+
+	/**
+	 * @return the number of blocks written by this generator
+	 */
+	public long getBlocksWritten() {
+
+		return blocksWritten;
+	}
+
+	/**
+	 * Creates a writer for a container.
+	 *
+	 * @param format
+	 *            N5, ZARR2, or ZARR3
+	 * @param uri
+	 *            the container uri or path
+	 * @return the writer
+	 */
+	public static N5Writer createContainer(final StorageFormat format, final String uri) {
+
+		return new N5Factory().openWriter(format, uri);
+	}
+
+	/**
+	 * Writes an image with metadata into a group.
+	 *
+	 * @param n5
+	 *            the writer
+	 * @param group
+	 *            the group
+	 * @return the paths of the datasets of all channels and scale levels
+	 */
+	public List<String> write(final N5Writer n5, final String group) {
+
+		final int nd = dimensions.length;
+		final boolean hasChannelDimension = numChannels > 1 && (flavor == Flavor.NGFF_V04 || flavor == Flavor.NGFF_V05);
+		if ((numChannels > 1 && !hasChannelDimension && flavor != Flavor.N5_VIEWER) || (numTimepoints > 1 && !isNgff()))
+			throw new IllegalArgumentException(flavor + " does not support channels or timepoints");
+
+		if (nd < 2 || nd > 3 || blockSize.length != nd || resolution.length != nd)
+			throw new IllegalArgumentException("Expected 2 or 3 spatial dimensions, block size and resolution");
+
+		final List<String> datasets = new ArrayList<>();
+		if (flavor == Flavor.N5_VIEWER && numChannels > 1) {
+			for (int c = 0; c < numChannels; ++c)
+				datasets.addAll(writePyramid(n5, group + "/c" + c, c, false));
+		} else
+			datasets.addAll(writePyramid(n5, group, 0, hasChannelDimension));
+
+		return datasets;
+	}
+
+	private boolean isNgff() {
+
+		return flavor == Flavor.NGFF_V04 || flavor == Flavor.NGFF_V05;
+	}
+
+	private List<String> writePyramid(final N5Writer n5, final String group, final int channel, final boolean hasChannelDimension) {
+
+		final List<String> datasets = new ArrayList<>();
+		n5.createGroup(group);
+		for (int s = 0; s < numScales; ++s) {
+			final String dataset = group + "/s" + s;
+			writeLevel(n5, dataset, s, channel, hasChannelDimension);
+			writeDatasetMetadata(n5, dataset, s);
+			datasets.add(dataset);
+		}
+		writeGroupMetadata(n5, group, hasChannelDimension);
+		return datasets;
+	}
+
+	private void writeLevel(
+			final N5Writer n5,
+			final String dataset,
+			final int level,
+			final int channel,
+			final boolean hasChannelDimension) {
+
+		/* x, y, (z), (c), (t) */
+		final int nd = dimensions.length;
+		final List<Long> dims = new ArrayList<>();
+		final List<Integer> blocks = new ArrayList<>();
+		for (int d = 0; d < nd; ++d) {
+			dims.add(Math.max(1, (dimensions[d] + (1L << level) - 1) >> level));
+			blocks.add(blockSize[d]);
+		}
+		if (hasChannelDimension) {
+			dims.add((long)numChannels);
+			blocks.add(1);
+		}
+		if (numTimepoints > 1) {
+			dims.add((long)numTimepoints);
+			blocks.add(1);
+		}
+
+		final long[] levelDimensions = dims.stream().mapToLong(Long::longValue).toArray();
+		final int[] levelBlockSize = blocks.stream().mapToInt(Integer::intValue).toArray();
+		final DatasetAttributes attributes = new DatasetAttributes(levelDimensions, levelBlockSize, dataType, compression);
+		n5.createDataset(dataset, attributes);
+
+		final long[] gridDimensions = new long[levelDimensions.length];
+		long numBlocks = 1;
+		for (int d = 0; d < gridDimensions.length; ++d) {
+			gridDimensions[d] = (levelDimensions[d] + levelBlockSize[d] - 1) / levelBlockSize[d];
+			numBlocks *= gridDimensions[d];
+		}
+
+		final Random random = new Random(seed + 31 * level + dataset.hashCode());
+		final long numWritten = Math.max(1, Math.min(numBlocks, Math.round(fillFraction * numBlocks)));
+		final Set<List<Long>> written = new HashSet<>();
+		final long[] gridPosition = new long[gridDimensions.length];
+		for (long i = 0; written.size() < numWritten; ++i) {
+			if (numWritten == numBlocks)
+				/* all blocks in order */
+				for (int d = 0; d < gridDimensions.length; ++d) {
+					long k = i;
+					for (int e = 0; e < d; ++e)
+						k /= gridDimensions[e];
+					gridPosition[d] = k % gridDimensions[d];
+				}
+			else
+				for (int d = 0; d < gridDimensions.length; ++d)
+					gridPosition[d] = (long)(random.nextDouble() * gridDimensions[d]);
+
+			final List<Long> key = new ArrayList<>();
+			for (final long g : gridPosition)
+				key.add(g);
+
+			if (written.add(key)) {
+				writeBlock(n5, dataset, attributes, gridPosition, level, channel, hasChannelDimension);
+				++blocksWritten;
+			}
+		}
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private void writeBlock(
+			final N5Writer n5,
+			final String dataset,
+			final DatasetAttributes attributes,
+			final long[] gridPosition,
+			final int level,
+			final int channel,
+			final boolean hasChannelDimension) {
+
+		final long[] dims = attributes.getDimensions();
+		final int[] size = attributes.getBlockSize();
+		final long[] min = new long[dims.length];
+		final long[] blockDimensions = new long[dims.length];
+		for (int d = 0; d < dims.length; ++d) {
+			min[d] = gridPosition[d] * size[d];
+			blockDimensions[d] = Math.min(size[d], dims[d] - min[d]);
+		}
+
+		final NativeType type = N5Utils.type(dataType);
+		final Img img = new ArrayImgFactory(type).create(blockDimensions);
+		final double lo = Math.max(0, ((RealType<?>)type).getMinValue());
+		final double hi = Math.min(4095, ((RealType<?>)type).getMaxValue());
+		final Random noise = new Random(Arrays.hashCode(gridPosition) + 17L * level);
+
+		final int nd = dimensions.length;
+		final Cursor<RealType<?>> c = img.localizingCursor();
+		while (c.hasNext()) {
+			c.fwd();
+			double v = 0;
+			for (int d = 0; d < nd; ++d)
+				v += Math.sin(((min[d] + c.getLongPosition(d)) << level) * 0.02 * (d + 1));
+
+			int offset = channel;
+			if (hasChannelDimension)
+				offset += (int)(min[nd] + c.getLongPosition(nd));
+			if (numTimepoints > 1)
+				offset += 3 * (int)(min[dims.length - 1] + c.getLongPosition(dims.length - 1));
+
+			final double value = lo + (hi - lo) * (0.5 + 0.15 * v / nd + 0.05 * Math.sin(offset)) + noise.nextGaussian() * 0.01 * (hi - lo);
+			c.get().setReal(Math.max(lo, Math.min(hi, value)));
+		}
+
+		N5Utils.saveBlock(img, n5, dataset, attributes, gridPosition);
+	}
+
+	private double downsamplingFactor(final int level) {
+
+		return 1 << level;
+	}
+
+	private void writeDatasetMetadata(final N5Writer n5, final String dataset, final int level) {
+
+		final int nd = dimensions.length;
+		final double f = downsamplingFactor(level);
+		final double[] scale = new double[nd];
+		final double[] translation = new double[nd];
+		final double[] factors = new double[nd];
+		for (int d = 0; d < nd; ++d) {
+			scale[d] = resolution[d] * f;
+			translation[d] = resolution[d] * (f - 1) / 2;
+			factors[d] = f;
+		}
+
+		switch (flavor) {
+		case N5_VIEWER:
+			final Map<String, Object> pixelResolution = new LinkedHashMap<>();
+			pixelResolution.put("dimensions", resolution);
+			pixelResolution.put("unit", unit);
+			n5.setAttribute(dataset, "pixelResolution", pixelResolution);
+			n5.setAttribute(dataset, "downsamplingFactors", factors);
+			break;
+		case COSEM:
+			/* COSEM axes and transforms are in z, y, x order */
+			final String[] units = new String[nd];
+			Arrays.fill(units, unit);
+			try {
+				new N5CosemMetadataParser().writeMetadata(
+						new N5CosemMetadata(
+								dataset,
+								new CosemTransform(
+										Arrays.copyOfRange(new String[]{"z", "y", "x"}, 3 - nd, 3),
+										reverse(scale),
+										reverse(translation),
+										units),
+								n5.getDatasetAttributes(dataset)),
+						n5,
+						dataset);
+			} catch (final Exception e) {
+				throw new N5Exception("Could not write COSEM metadata for " + dataset, e);
+			}
+			break;
+		case CANONICAL:
+			final double[] affine = new double[12];
+			for (int d = 0; d < nd; ++d) {
+				affine[d * 4 + d] = scale[d];
+				affine[d * 4 + 3] = translation[d];
+			}
+			if (nd == 2)
+				affine[10] = 1;
+
+			final Map<String, Object> transform = new LinkedHashMap<>();
+			transform.put("type", "affine");
+			transform.put("affine", affine);
+			final Map<String, Object> spatialTransform = new LinkedHashMap<>();
+			spatialTransform.put("transform", transform);
+			spatialTransform.put("unit", unit);
+			n5.setAttribute(dataset, "spatialTransform", spatialTransform);
+			break;
+		default:
+		}
+	}
+
+	private void writeGroupMetadata(final N5Writer n5, final String group, final boolean hasChannelDimension) {
+
+		final int nd = dimensions.length;
+		switch (flavor) {
+		case N5_VIEWER:
+			final double[][] scales = new double[numScales][nd];
+			for (int s = 0; s < numScales; ++s)
+				Arrays.fill(scales[s], downsamplingFactor(s));
+
+			final Map<String, Object> pixelResolution = new LinkedHashMap<>();
+			pixelResolution.put("dimensions", resolution);
+			pixelResolution.put("unit", unit);
+			n5.setAttribute(group, "scales", scales);
+			n5.setAttribute(group, "pixelResolution", pixelResolution);
+			break;
+		case NGFF_V04:
+		case NGFF_V05:
+			final Map<String, Object> multiscale = ngffMultiscale(group, hasChannelDimension);
+			if (flavor == Flavor.NGFF_V04) {
+				multiscale.put("version", "0.4");
+				n5.setAttribute(group, "multiscales", Collections.singletonList(multiscale));
+			} else {
+				final Map<String, Object> ome = new LinkedHashMap<>();
+				ome.put("version", "0.5");
+				ome.put("multiscales", Collections.singletonList(multiscale));
+				n5.setAttribute(group, "ome", ome);
+			}
+			break;
+		default:
+		}
+	}
+
+	/*
+	 * OME-NGFF axes and transforms are in reverse order of the array
+	 * dimensions: t, c, z, y, x.
+	 */
+	private Map<String, Object> ngffMultiscale(final String group, final boolean hasChannelDimension) {
+
+		final int nd = dimensions.length;
+		final List<Map<String, Object>> axes = new ArrayList<>();
+		if (numTimepoints > 1)
+			axes.add(axis("t", "time", null));
+		if (hasChannelDimension)
+			axes.add(axis("c", "channel", null));
+		for (int d = nd - 1; d >= 0; --d)
+			axes.add(axis(new String[]{"x", "y", "z"}[d], "space", ngffUnit()));
+
+		final List<Map<String, Object>> datasets = new ArrayList<>();
+		for (int s = 0; s < numScales; ++s) {
+			final double f = downsamplingFactor(s);
+			final double[] scale = new double[axes.size()];
+			final double[] translation = new double[axes.size()];
+			Arrays.fill(scale, 1);
+			for (int d = 0; d < nd; ++d) {
+				scale[axes.size() - 1 - d] = resolution[d] * f;
+				translation[axes.size() - 1 - d] = resolution[d] * (f - 1) / 2;
+			}
+
+			final Map<String, Object> scaleTransform = new LinkedHashMap<>();
+			scaleTransform.put("type", "scale");
+			scaleTransform.put("scale", scale);
+			final Map<String, Object> translationTransform = new LinkedHashMap<>();
+			translationTransform.put("type", "translation");
+			translationTransform.put("translation", translation);
+
+			final Map<String, Object> dataset = new LinkedHashMap<>();
+			dataset.put("path", "s" + s);
+			dataset.put("coordinateTransformations", Arrays.asList(scaleTransform, translationTransform));
+			datasets.add(dataset);
+		}
+
+		final Map<String, Object> multiscale = new LinkedHashMap<>();
+		multiscale.put("name", group);
+		multiscale.put("axes", axes);
+		multiscale.put("datasets", datasets);
+		return multiscale;
+	}
+
+	private static Map<String, Object> axis(final String name, final String type, final String unit) {
+
+		final Map<String, Object> axis = new LinkedHashMap<>();
+		axis.put("name", name);
+		axis.put("type", type);
+		if (unit != null)
+			axis.put("unit", unit);
+
+		return axis;
+	}
+
+	/*
+	 * OME-NGFF requires UDUNITS-2 unit names.
+	 */
+	private String ngffUnit() {
+
+		switch (unit) {
+		case "um":
+			return "micrometer";
+		case "nm":
+			return "nanometer";
+		case "mm":
+			return "millimeter";
+		default:
+			return unit;
+		}
+	}
+
+	private static double[] reverse(final double[] a) {
+
+		final double[] r = new double[a.length];
+		for (int i = 0; i < a.length; ++i)
+			r[i] = a[a.length - 1 - i];
+
+		return r;
+	}
+
+	private static Compression parseCompression(final String codec) {
+
+		switch (codec) {
+		case "raw":
+			return new RawCompression();
+		case "gzip":
+			return new GzipCompression();
+		case "zstd":
+			return new ZstandardCompression();
+		default:
+			throw new IllegalArgumentException("Unknown codec " + codec);
+		}
+	}
+
+	private static long[] parseLongs(final String s) {
+
+		return Arrays.stream(s.split("x")).mapToLong(Long::parseLong).toArray();
+	}
+
+	public static void main(final String... args) {
+
+		final SyntheticDataGenerator generator = new SyntheticDataGenerator();
+		StorageFormat format = StorageFormat.N5;
+		String container = null, group = "volume";
+		for (int i = 0; i < args.length; ++i) {
+			switch (args[i]) {
+			case "--format":
+				format = StorageFormat.valueOf(args[++i].toUpperCase(Locale.ROOT));
+				break;
+			case "--flavor":
+				generator.flavor(Flavor.valueOf(args[++i].toUpperCase(Locale.ROOT).replace('-', '_')));
+				break;
+			case "--size":
+				generator.dimensions(parseLongs(args[++i]));
+				break;
+			case "--block":
+				generator.blockSize(Arrays.stream(parseLongs(args[++i])).mapToInt(x -> (int)x).toArray());
+				break;
+			case "--resolution":
+				generator.resolution(Arrays.stream(args[++i].split("x")).mapToDouble(Double::parseDouble).toArray());
+				break;
+			case "--type":
+				generator.dataType(DataType.fromString(args[++i]));
+				break;
+			case "--codec":
+				generator.compression(parseCompression(args[++i]));
+				break;
+			case "--channels":
+				generator.channels(Integer.parseInt(args[++i]));
+				break;
+			case "--timepoints":
+				generator.timepoints(Integer.parseInt(args[++i]));
+				break;
+			case "--scales":
+				generator.scales(Integer.parseInt(args[++i]));
+				break;
+			case "--fill":
+				generator.fill(Double.parseDouble(args[++i]));
+				break;
+			case "--group":
+				group = args[++i];
+				break;
+			default:
+				container = args[i];
+			}
+		}
+
+		if (container == null) {
+			System.err.println("usage: SyntheticDataGenerator <container> [--format n5|zarr2|zarr3]"
+					+ " [--flavor n5_viewer|cosem|ngff_v04|ngff_v05|canonical|none] [--group <path>]"
+					+ " [--size <x>x<y>[x<z>]] [--block <x>x<y>[x<z>]] [--resolution <x>x<y>[x<z>]]"
+					+ " [--type uint8|uint16|...|float64] [--codec raw|gzip|zstd]"
+					+ " [--channels <n>] [--timepoints <n>] [--scales <n>] [--fill <fraction>]");
+			System.exit(1);
+		}
+
+		final N5Writer n5 = createContainer(format, container);
+		final List<String> datasets = generator.write(n5, group);
+		System.out.println("Wrote " + generator.getBlocksWritten() + " blocks of " + datasets.size() + " datasets to " + n5.getURI() + "?" + group);
+	}
+}
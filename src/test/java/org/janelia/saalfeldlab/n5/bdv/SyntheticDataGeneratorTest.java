@@ -0,0 +1,100 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.bdv.SyntheticDataGenerator.Flavor;
+import org.janelia.saalfeldlab.n5.universe.StorageFormat;
+import org.junit.Test;
+
+import bdv.cache.SharedQueue;
+import bdv.tools.brightness.ConverterSetup;
+import bdv.util.BdvOptions;
+import bdv.viewer.SourceAndConverter;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+public class SyntheticDataGeneratorTest {
+
+	@Test
+	public void testSparse() throws IOException {
+
+		final N5Writer n5 = SyntheticDataGenerator.createContainer(
+				StorageFormat.N5,
+				Files.createTempDirectory("n5-viewer-synthetic").toString());
+		try {
+			/* 100000^3 uint16 is 2 PB */
+			final SyntheticDataGenerator generator = new SyntheticDataGenerator()
+					.dimensions(100000, 100000, 100000)
+					.blockSize(128, 128, 128)
+					.scales(3)
+					.fill(0);
+			final List<String> datasets = generator.write(n5, "volume");
+
+			/* at least one block per scale level */
+			assertEquals(3, datasets.size());
+			assertEquals(3, generator.getBlocksWritten());
+
+			final DatasetAttributes attributes = n5.getDatasetAttributes("volume/s2");
+			assertArrayEquals(new long[]{25000, 25000, 25000}, attributes.getDimensions());
+			assertEquals(DataType.UINT16, attributes.getDataType());
+		} finally {
+			n5.remove();
+		}
+	}
+
+	@Test
+	public void testFlavors() throws IOException {
+
+		testFlavor(StorageFormat.N5, Flavor.N5_VIEWER, 1, 1, 1);
+		testFlavor(StorageFormat.N5, Flavor.COSEM, 1, 1, 1);
+		testFlavor(StorageFormat.ZARR2, Flavor.NGFF_V04, 2, 3, 2);
+	}
+
+	private static void testFlavor(
+			final StorageFormat format,
+			final Flavor flavor,
+			final int numChannels,
+			final int numTimepoints,
+			final int expectedSources) throws IOException {
+
+		final N5Writer n5 = SyntheticDataGenerator.createContainer(
+				format,
+				Files.createTempDirectory("n5-viewer-synthetic").toString());
+		try {
+			new SyntheticDataGenerator()
+					.flavor(flavor)
+					.dimensions(64, 48, 32)
+					.blockSize(32, 32, 32)
+					.channels(numChannels)
+					.timepoints(numTimepoints)
+					.scales(2)
+					.fill(0.5)
+					.write(n5, "volume");
+
+			final List<ConverterSetup> converterSetups = new ArrayList<>();
+			final List<SourceAndConverter<UnsignedShortType>> sources = new ArrayList<>();
+			final int timepoints = N5Viewer.buildN5Sources(
+					new String[]{n5.getURI() + "?volume"},
+					new SharedQueue(1),
+					converterSetups,
+					sources,
+					BdvOptions.options());
+
+			assertEquals(flavor.toString(), expectedSources, sources.size());
+			assertEquals(flavor.toString(), numTimepoints, timepoints);
+			assertEquals(flavor.toString(), 2, sources.get(0).getSpimSource().getNumMipmapLevels());
+			assertTrue(flavor.toString(), sources.get(0).getSpimSource().isPresent(0));
+		} finally {
+			n5.remove();
+		}
+	}
+}
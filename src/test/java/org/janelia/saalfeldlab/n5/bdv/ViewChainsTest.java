@@ -0,0 +1,122 @@
+package org.janelia.saalfeldlab.n5.bdv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+import org.janelia.saalfeldlab.n5.universe.metadata.axes.AxisUtils;
+import org.janelia.saalfeldlab.n5.universe.metadata.axes.DefaultAxisMetadata;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.view.Views;
+
+public class ViewChainsTest {
+
+	private N5FSWriter n5;
+
+	@Before
+	public void before() throws IOException {
+
+		n5 = new N5FSWriter(Files.createTempDirectory("n5-viewer-views").toString());
+
+		/* x, y, z, c, t with unique values */
+		final ArrayImg<IntType, IntArray> img = ArrayImgs.ints(10, 6, 5, 3, 2);
+		int i = 0;
+		for (final IntType t : img)
+			t.set(i++);
+
+		N5Utils.save(img, n5, "thin", new int[]{4, 4, 4, 1, 1}, new RawCompression());
+		N5Utils.save(img, n5, "thick", new int[]{4, 4, 4, 2, 1}, new RawCompression());
+		N5Utils.save(Views.hyperSlice(Views.hyperSlice(img, 4, 0), 3, 0), n5, "xyz", new int[]{4, 4, 4}, new RawCompression());
+	}
+
+	@After
+	public void after() {
+
+		n5.remove();
+	}
+
+	@Test
+	public void testCellSlices() {
+
+		final RandomAccessibleInterval<IntType> xyczt = xyczt("thin", "x", "y", "z", "c", "t");
+		final RandomAccessibleInterval<IntType> flat = ViewChains.flatten(xyczt);
+		for (int c = 0; c < 3; ++c) {
+			final RandomAccessibleInterval<IntType> channel = ViewChains.hyperSlice(flat, 2, c);
+			assertTrue(channel instanceof CachedCellImg);
+			for (int t = 0; t < 2; ++t) {
+				final RandomAccessibleInterval<IntType> slice = ViewChains.hyperSlice(channel, 3, t);
+				assertTrue(slice instanceof CachedCellImg);
+				assertEqualValues(Views.hyperSlice(Views.hyperSlice(xyczt, 2, c), 3, t), slice);
+			}
+		}
+	}
+
+	@Test
+	public void testMixedTransform() {
+
+		/* two channels per block, the channels are not cells */
+		final RandomAccessibleInterval<IntType> xyczt = xyczt("thick", "x", "y", "z", "c", "t");
+		final RandomAccessibleInterval<IntType> channel = ViewChains.hyperSlice(ViewChains.flatten(xyczt), 2, 1);
+		assertFalse(channel instanceof CachedCellImg);
+		assertEqualValues(Views.hyperSlice(xyczt, 2, 1), channel);
+	}
+
+	@Test
+	public void testAddedDimensions() {
+
+		final CachedCellImg<IntType, ?> img = N5Utils.open(n5, "xyz");
+		final RandomAccessibleInterval<IntType> xyczt = N5Viewer.permuteForImagePlus(img, new AffineTransform3D(), axes("x", "y", "z"));
+		assertEquals(5, xyczt.numDimensions());
+
+		final RandomAccessibleInterval<IntType> slice = ViewChains.hyperSlice(ViewChains.hyperSlice(ViewChains.flatten(xyczt), 2, 0), 3, 0);
+		assertSame(img, slice);
+	}
+
+	private RandomAccessibleInterval<IntType> xyczt(final String dataset, final String... labels) {
+
+		final CachedCellImg<IntType, ?> img = N5Utils.open(n5, dataset);
+		return N5Viewer.permuteForImagePlus(img, new AffineTransform3D(), axes(labels));
+	}
+
+	private static DefaultAxisMetadata axes(final String... labels) {
+
+		final String[] units = new String[labels.length];
+		Arrays.fill(units, "um");
+		return new DefaultAxisMetadata("", labels, AxisUtils.getDefaultTypes(labels), units);
+	}
+
+	private static void assertEqualValues(final RandomAccessibleInterval<IntType> expected, final RandomAccessibleInterval<IntType> actual) {
+
+		assertEquals(expected.numDimensions(), actual.numDimensions());
+		for (int d = 0; d < expected.numDimensions(); ++d)
+			assertEquals(expected.dimension(d), actual.dimension(d));
+
+		final Cursor<IntType> c = Views.flatIterable(expected).localizingCursor();
+		final RandomAccess<IntType> a = actual.randomAccess();
+		while (c.hasNext()) {
+			c.fwd();
+			a.setPosition(c);
+			assertEquals(c.get().get(), a.get().get());
+		}
+	}
+}
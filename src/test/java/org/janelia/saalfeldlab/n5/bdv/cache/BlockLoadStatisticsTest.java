@@ -0,0 +1,84 @@
+package org.janelia.saalfeldlab.n5.bdv.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+public class BlockLoadStatisticsTest {
+
+	private static final String DATASET = "img";
+
+	private N5FSWriter n5;
+
+	@Before
+	public void before() throws IOException {
+
+		n5 = new N5FSWriter(Files.createTempDirectory("n5-viewer-stats").toString());
+		final ArrayImg<UnsignedShortType, ShortArray> img = ArrayImgs.unsignedShorts(32, 32, 8);
+		N5Utils.save(img, n5, DATASET, new int[]{16, 16, 8}, new RawCompression());
+	}
+
+	@After
+	public void after() {
+
+		n5.remove();
+	}
+
+	@Test
+	public void testLoadsAndHits() {
+
+		final BlockLoadStatistics stats = new BlockLoadStatistics(DATASET);
+		final ReaderStatistics readerStats = new ReaderStatistics("reader");
+		final CachedCellImg<UnsignedShortType, ?> img = InstrumentedN5Utils.openVolatile(n5, DATASET, stats, readerStats);
+
+		final RandomAccess<UnsignedShortType> access = img.randomAccess();
+		for (int pass = 0; pass < 2; ++pass)
+			for (int y = 0; y < 32; y += 16)
+				for (int x = 0; x < 32; x += 16) {
+					access.setPosition(new long[]{x, y, 0});
+					assertEquals(0, access.get().get());
+				}
+
+		assertEquals(4, stats.getLoads());
+		assertEquals(4 * 16 * 16 * 8 * 2, stats.getBytes());
+		assertEquals(4, stats.getLoadLatency().getCount());
+		assertTrue(stats.getHits() >= 4);
+		assertEquals(4, stats.getFetchLatency().getCount());
+		assertEquals(4, stats.getCachedBlocks() + stats.getEvictions());
+
+		assertEquals(4, readerStats.getBlockReads());
+		assertEquals(0, readerStats.getMissingBlocks());
+		assertEquals(stats.getBytes(), readerStats.getBytes());
+	}
+
+	@Test
+	public void testPercentile() {
+
+		final LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 99; ++i)
+			histogram.record(1500_000);
+		histogram.record(100_000_000);
+
+		final long[] counts = histogram.snapshot();
+		assertEquals(2048_000, LatencyHistogram.percentile(counts, 0.5));
+		assertEquals(2048_000, LatencyHistogram.percentile(counts, 0.99));
+		assertEquals(131072_000, LatencyHistogram.percentile(counts, 1.0));
+		assertEquals(0, LatencyHistogram.percentile(new long[LatencyHistogram.NUM_BUCKETS], 0.5));
+	}
+}
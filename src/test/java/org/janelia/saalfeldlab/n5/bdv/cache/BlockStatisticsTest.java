@@ -0,0 +1,208 @@
+package org.janelia.saalfeldlab.n5.bdv.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.janelia.saalfeldlab.n5.ShortArrayDataBlock;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+public class BlockStatisticsTest {
+
+	private N5FSWriter n5;
+
+	private ExecutorService executor;
+
+	@Before
+	public void before() throws IOException {
+
+		n5 = new N5FSWriter(Files.createTempDirectory("n5-viewer-blockstats").toString());
+		executor = Executors.newFixedThreadPool(2);
+
+		/* 10 x 6 with blocks of 4 x 4: a ramp in the first row of blocks, 7 in the second */
+		final ArrayImg<UnsignedShortType, ShortArray> img = ArrayImgs.unsignedShorts(10, 6);
+		final Cursor<UnsignedShortType> c = img.localizingCursor();
+		while (c.hasNext()) {
+			c.fwd();
+			c.get().set(c.getIntPosition(1) < 4 ? c.getIntPosition(0) : 7);
+		}
+		N5Utils.save(img, n5, "img", new int[]{4, 4}, new RawCompression());
+
+		/* only the first block */
+		n5.createDataset("sparse", new DatasetAttributes(new long[]{8, 8}, new int[]{4, 4}, DataType.UINT16, new RawCompression()));
+		final short[] data = new short[16];
+		data[5] = 1000;
+		n5.writeBlock("sparse", n5.getDatasetAttributes("sparse"), new ShortArrayDataBlock(new int[]{4, 4}, new long[]{0, 0}, data));
+	}
+
+	@After
+	public void after() {
+
+		executor.shutdownNow();
+		n5.remove();
+	}
+
+	@Test
+	public void testCompute() throws InterruptedException, ExecutionException {
+
+		final BlockStatistics statistics = BlockStatisticsWriter.compute(n5, "img", executor);
+		assertEquals(6, statistics.numBlocks());
+
+		/* block (0, 0): x in 0..3 */
+		assertBlock(statistics, 0, 0, 3, 1.5, 12, 16);
+		/* block (2, 0): x in 8..9 at the border */
+		assertBlock(statistics, 2, 8, 9, 8.5, 8, 8);
+		assertFalse(statistics.isUniform(0));
+
+		/* blocks of the second row */
+		for (int block = 3; block < 6; ++block)
+			assertTrue(statistics.isUniform(block));
+		assertBlock(statistics, 5, 7, 7, 7, 4, 4);
+
+		/* missing blocks are zero */
+		final BlockStatistics sparse = BlockStatisticsWriter.compute(n5, "sparse", executor);
+		assertBlock(sparse, 0, 0, 1000, 62.5, 1, 16);
+		assertBlock(sparse, 3, 0, 0, 0, 0, 16);
+	}
+
+	@Test
+	public void testWriteRead() throws InterruptedException, ExecutionException {
+
+		assertNull(BlockStatistics.read(n5, "img"));
+
+		assertEquals(2, BlockStatisticsWriter.write(n5, "", executor).size());
+		assertTrue(n5.datasetExists(BlockStatistics.sidecarPath("img")));
+
+		final BlockStatistics statistics = BlockStatistics.read(n5, "img");
+		assertNotNull(statistics);
+		assertArrayEquals(new long[]{10, 6}, statistics.getDimensions());
+		assertArrayEquals(new int[]{4, 4}, statistics.blockSize());
+		assertBlock(statistics, 2, 8, 9, 8.5, 8, 8);
+
+		/* sidecars are skipped */
+		assertEquals(2, BlockStatisticsWriter.write(n5, "", executor).size());
+		assertTrue(BlockStatistics.isSidecar(BlockStatistics.sidecarPath("img")));
+
+		/* out of date */
+		n5.setDatasetAttributes("img", new DatasetAttributes(new long[]{12, 6}, new int[]{4, 4}, DataType.UINT16, new RawCompression()));
+		assertNull(BlockStatistics.read(n5, "img"));
+	}
+
+	@Test
+	public void testStamp() throws InterruptedException, ExecutionException {
+
+		BlockStatisticsWriter.write(n5, "img", executor);
+		assertNotNull(BlockStatistics.read(n5, "img"));
+
+		/* rewritten with the same attributes, the last block is sampled */
+		n5.writeBlock("img", n5.getDatasetAttributes("img"), new ShortArrayDataBlock(new int[]{4, 4}, new long[]{2, 1}, new short[16]));
+		assertNull(BlockStatistics.read(n5, "img"));
+
+		/* stamp removed */
+		BlockStatisticsWriter.write(n5, "img", executor);
+		assertNotNull(BlockStatistics.read(n5, "img"));
+		n5.removeAttribute("img", BlockStatistics.STAMP_KEY);
+		assertNull(BlockStatistics.read(n5, "img"));
+	}
+
+	@Test
+	public void testUniformBlocks() throws InterruptedException, ExecutionException {
+
+		final BlockStatistics statistics = BlockStatisticsWriter.compute(n5, "img", executor);
+
+		/* overwrite a uniform block after computing the statistics: it must not be read */
+		n5.writeBlock("img", n5.getDatasetAttributes("img"), new ShortArrayDataBlock(new int[]{4, 4}, new long[]{0, 1}, new short[16]));
+
+		final BlockLoadStatistics loads = new BlockLoadStatistics("img");
+		final CachedCellImg<UnsignedShortType, ?> img = InstrumentedN5Utils.openVolatile(n5, "img", loads, null, () -> statistics);
+		final RandomAccess<UnsignedShortType> access = img.randomAccess();
+		for (int y = 0; y < 6; ++y) {
+			for (int x = 0; x < 10; ++x) {
+				access.setPosition(new long[]{x, y});
+				assertEquals(y < 4 ? x : 7, access.get().get());
+			}
+		}
+
+		/* only the blocks of the first row were read */
+		assertEquals(3, loads.getLoads());
+
+		/* uniform blocks of the same value share their array */
+		final RandomAccess<? extends Cell<?>> cells = img.getCells().randomAccess();
+		cells.setPosition(new long[]{0, 1});
+		final Object sevens = ((ArrayDataAccess<?>)cells.get().getData()).getCurrentStorageArray();
+		cells.setPosition(new long[]{2, 1});
+		assertSame(sevens, ((ArrayDataAccess<?>)cells.get().getData()).getCurrentStorageArray());
+	}
+
+	@Test
+	public void testBlockIndicesAndPercentiles() throws InterruptedException, ExecutionException {
+
+		final BlockStatistics statistics = BlockStatisticsWriter.compute(n5, "img", executor);
+		final RandomAccessibleInterval<LongType> indices = statistics.blockIndices();
+		final RandomAccess<LongType> access = indices.randomAccess();
+		access.setPosition(new long[]{9, 5});
+		assertEquals(5, access.get().get());
+		access.setPosition(new long[]{4, 3});
+		assertEquals(1, access.get().get());
+
+		/* the ramp blocks: 0 ... 9, and 7s */
+		final double[] range = statistics.percentiles(new long[]{0, 1, 2, 3, 4, 5}, 0.005, 0.995);
+		assertNotNull(range);
+		assertEquals(0, range[0], 0.1);
+		assertEquals(9, range[1], 0.1);
+
+		/* uniform */
+		assertNull(statistics.percentiles(new long[]{3, 4}, 0.005, 0.995));
+
+		/* mostly zeros */
+		final BlockStatistics sparse = BlockStatisticsWriter.compute(n5, "sparse", executor);
+		final double[] histogram = sparse.histogram(new long[]{0, 1, 2, 3}, 0, 1000, 10);
+		assertEquals(63.1, histogram[0], 1e-9);
+		assertEquals(0.1, histogram[9], 1e-9);
+	}
+
+	private static void assertBlock(
+			final BlockStatistics statistics,
+			final long block,
+			final double min,
+			final double max,
+			final double mean,
+			final double nonzero,
+			final long numElements) {
+
+		assertEquals(min, statistics.get(block, BlockStatistics.MIN), 0);
+		assertEquals(max, statistics.get(block, BlockStatistics.MAX), 0);
+		assertEquals(mean, statistics.get(block, BlockStatistics.MEAN), 1e-9);
+		assertEquals(nonzero, statistics.get(block, BlockStatistics.NONZERO), 0);
+		assertEquals(numElements, statistics.numElements(block));
+	}
+}
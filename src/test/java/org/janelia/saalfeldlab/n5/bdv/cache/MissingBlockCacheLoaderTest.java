@@ -0,0 +1,171 @@
+package org.janelia.saalfeldlab.n5.bdv.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.janelia.saalfeldlab.n5.ShortArrayDataBlock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+public class MissingBlockCacheLoaderTest {
+
+	private N5FSWriter n5;
+
+	@Before
+	public void before() throws IOException {
+
+		n5 = new N5FSWriter(Files.createTempDirectory("n5-viewer-missing").toString());
+
+		/* 10 x 10 with blocks of 4 x 4, only the first block exists */
+		n5.createDataset("sparse", new DatasetAttributes(new long[]{10, 10}, new int[]{4, 4}, DataType.UINT16, new RawCompression()));
+		final short[] data = new short[16];
+		data[5] = 1000;
+		n5.writeBlock("sparse", n5.getDatasetAttributes("sparse"), new ShortArrayDataBlock(new int[]{4, 4}, new long[]{0, 0}, data));
+	}
+
+	@After
+	public void after() {
+
+		n5.remove();
+	}
+
+	@Test
+	public void testSharedCells() {
+
+		final BlockLoadStatistics statistics = new BlockLoadStatistics("sparse");
+		final CachedCellImg<UnsignedShortType, ?> img = InstrumentedN5Utils.openVolatile(n5, "sparse", statistics, null);
+		assertValues(img);
+		assertEquals(9, statistics.getLoads());
+
+		/* all missing blocks share one array, also at the border */
+		final RandomAccess<? extends Cell<?>> cells = img.getCells().randomAccess();
+		cells.setPosition(new long[]{1, 0});
+		final Object empty = ((ArrayDataAccess<?>)cells.get().getData()).getCurrentStorageArray();
+		cells.setPosition(new long[]{2, 2});
+		assertSame(empty, ((ArrayDataAccess<?>)cells.get().getData()).getCurrentStorageArray());
+		assertEquals(4, cells.get().size());
+		cells.setPosition(new long[]{0, 0});
+		assertNotSame(empty, ((ArrayDataAccess<?>)cells.get().getData()).getCurrentStorageArray());
+
+		/* missing blocks are not read again after eviction */
+		img.getCache().invalidateAll();
+		assertValues(img);
+		assertEquals(10, statistics.getLoads());
+	}
+
+	@Test
+	public void testWritableCells() {
+
+		/* missing cells of writable images do not share their array */
+		final CachedCellImg<UnsignedShortType, ?> img = InstrumentedN5Utils.open(n5, "sparse", new BlockLoadStatistics("sparse"), null);
+		final RandomAccess<UnsignedShortType> access = img.randomAccess();
+		access.setPosition(new long[]{4, 0});
+		access.get().set(7);
+		access.setPosition(new long[]{8, 8});
+		assertEquals(0, access.get().get());
+		access.setPosition(new long[]{4, 0});
+		assertEquals(7, access.get().get());
+	}
+
+	@Test
+	public void testListing() {
+
+		final BlockListing listing = BlockListing.create(n5, "sparse");
+		assertFalse(listing.isMissing(0, 0));
+		assertTrue(listing.isMissing(1, 0));
+		assertTrue(listing.isMissing(2, 2));
+
+		/* missing blocks are not read at all */
+		System.setProperty(BlockListing.LIST_BLOCKS_PROPERTY, "true");
+		try {
+			final BlockLoadStatistics statistics = new BlockLoadStatistics("sparse");
+			final CachedCellImg<UnsignedShortType, ?> img = InstrumentedN5Utils.openVolatile(n5, "sparse", statistics, null);
+			assertValues(img);
+			assertEquals(1, statistics.getLoads());
+		} finally {
+			System.clearProperty(BlockListing.LIST_BLOCKS_PROPERTY);
+		}
+	}
+
+	@Test
+	public void testPaddedBlock() {
+
+		/* a full size block at the border, as written by Zarr */
+		final short[] data = new short[16];
+		for (int i = 0; i < data.length; ++i)
+			data[i] = (short)i;
+		n5.writeBlock("sparse", n5.getDatasetAttributes("sparse"), new ShortArrayDataBlock(new int[]{4, 4}, new long[]{2, 0}, data));
+
+		final CachedCellImg<UnsignedShortType, ?> img = InstrumentedN5Utils.openVolatile(n5, "sparse", new BlockLoadStatistics("sparse"), null);
+		final RandomAccess<UnsignedShortType> access = img.randomAccess();
+		for (int y = 0; y < 4; ++y) {
+			for (int x = 8; x < 10; ++x) {
+				access.setPosition(new long[]{x, y});
+				assertEquals(y * 4 + x - 8, access.get().get());
+			}
+		}
+	}
+
+	@Test
+	public void testNegativeCacheSize() {
+
+		final NegativeBlockCache cache = new NegativeBlockCache(2);
+		cache.add(1);
+		cache.add(2);
+		assertTrue(cache.contains(1));
+
+		/* 2 is the least recently used */
+		cache.add(3);
+		assertEquals(2, cache.size());
+		assertTrue(cache.contains(1));
+		assertFalse(cache.contains(2));
+		assertTrue(cache.contains(3));
+	}
+
+	@Test
+	public void testNegativeCacheTtl() throws InterruptedException {
+
+		final NegativeBlockCache cache = new NegativeBlockCache(2, 50);
+		cache.add(1);
+		assertTrue(cache.contains(1));
+		Thread.sleep(100);
+		assertFalse(cache.contains(1));
+		assertEquals(0, cache.size());
+
+		/* blocks written after listing are found when the listing expired */
+		final BlockListing listing = BlockListing.create(n5, "sparse", 50);
+		assertTrue(listing.isMissing(1, 0));
+		n5.writeBlock("sparse", n5.getDatasetAttributes("sparse"), new ShortArrayDataBlock(new int[]{4, 4}, new long[]{1, 0}, new short[16]));
+		assertTrue(listing.isMissing(1, 0));
+		Thread.sleep(100);
+		assertFalse(listing.isMissing(1, 0));
+	}
+
+	private static void assertValues(final CachedCellImg<UnsignedShortType, ?> img) {
+
+		final RandomAccess<UnsignedShortType> access = img.randomAccess();
+		for (int y = 0; y < 10; ++y) {
+			for (int x = 0; x < 10; ++x) {
+				access.setPosition(new long[]{x, y});
+				assertEquals(x == 1 && y == 1 ? 1000 : 0, access.get().get());
+			}
+		}
+	}
+}
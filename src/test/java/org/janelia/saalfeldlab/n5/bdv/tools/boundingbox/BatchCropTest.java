@@ -0,0 +1,36 @@
+package org.janelia.saalfeldlab.n5.bdv.tools.boundingbox;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BatchCropTest {
+
+	@Test
+	public void testUniqueNames() {
+
+		final List<CropBox> unique = new ArrayList<>();
+		final List<CropBox> boxes = Arrays.asList(box("a"), box("a"), box("a_1"), box("b/c"), box("b_c"));
+		final List<String> names = new ArrayList<>();
+		for (final CropBox box : BatchCrop.uniqueNames(boxes)) {
+			unique.add(box);
+			names.add(box.getName());
+		}
+
+		assertEquals(Arrays.asList("a_0", "a_2", "a_1", "b/c_3", "b_c_4"), names);
+		assertSame(boxes.get(2), unique.get(2));
+
+		final List<CropBox> distinct = Arrays.asList(box("a"), box("b"));
+		assertSame(distinct, BatchCrop.uniqueNames(distinct));
+	}
+
+	private static CropBox box(final String name) {
+
+		return new CropBox(name, new double[]{0, 0, 0}, new double[]{1, 1, 1}, -1);
+	}
+}
@@ -0,0 +1,63 @@
+package org.janelia.saalfeldlab.n5.bdv.tools.boundingbox;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import ij.process.ImageProcessor;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+public class DiskCachedVirtualStackTest {
+
+	@Test
+	public void testSupportedTypes() {
+
+		assertTrue(DiskCachedVirtualStack.isSupported(new UnsignedShortType()));
+		assertTrue(DiskCachedVirtualStack.isSupported(new FloatType()));
+		assertFalse(DiskCachedVirtualStack.isSupported(new ARGBType()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsupportedType() throws IOException {
+
+		new DiskCachedVirtualStack<>(ArrayImgs.argbs(4, 4, 4), 2, 1024);
+	}
+
+	@Test
+	public void testSlices() throws IOException, InterruptedException {
+
+		final ArrayImg<UnsignedShortType, ShortArray> img = ArrayImgs.unsignedShorts(5, 4, 7);
+		int i = 0;
+		for (final UnsignedShortType t : img)
+			t.set(i++);
+
+		final DiskCachedVirtualStack<UnsignedShortType> stack = new DiskCachedVirtualStack<>(img, 2, 1024);
+		try {
+			assertEquals(7, stack.getSize());
+			assertEquals(16, stack.getBitDepth());
+
+			/* wait until all slabs are written, then read them back */
+			for (int n = 0; n < 100 && stack.getWrittenFraction() < 1; ++n)
+				Thread.sleep(20);
+			assertEquals(1, stack.getWrittenFraction(), 0);
+
+			for (int z = 0; z < 7; ++z) {
+				final ImageProcessor ip = stack.getProcessor(z + 1);
+				for (int y = 0; y < 4; ++y)
+					for (int x = 0; x < 5; ++x)
+						assertEquals((z * 4 + y) * 5 + x, ip.get(x, y));
+			}
+		} finally {
+			stack.close();
+		}
+	}
+}